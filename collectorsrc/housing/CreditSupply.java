@@ -26,15 +26,8 @@ public class CreditSupply extends CollectorBase {
 	 */
 	public void step() {
         double oldTotalCredit = totalOOCredit + totalBTLCredit;
-        totalOOCredit = 0.0;
-        totalBTLCredit = 0.0;
-        for(MortgageAgreement m : Model.bank.mortgages) {
-        	if(m.isBuyToLet) {
-            	totalBTLCredit += m.principal;
-        	} else {
-        		totalOOCredit += m.principal;
-        	}
-        }
+        totalOOCredit = Model.bank.mortgages.getOutstandingPrincipal(false);
+        totalBTLCredit = Model.bank.mortgages.getOutstandingPrincipal(true);
         netCreditGrowth = (totalOOCredit + totalBTLCredit - oldTotalCredit)/oldTotalCredit;
         nApprovedMortgages = mortgageCounter;
         nFTBMortgages = ftbCounter;
@@ -49,7 +42,7 @@ public class CreditSupply extends CollectorBase {
 	 * @param h
 	 * @param approval
 	 */
-	public void recordLoan(Household h, MortgageAgreement approval, House house) {
+	public void recordLoan(Household h, MortgageAgreement approval, int house) {
 		double housePrice;
 		if(DIAGNOSTICS_ACTIVE) {
 			housePrice = approval.principal + approval.downPayment;
@@ -116,7 +109,7 @@ public class CreditSupply extends CollectorBase {
     
 
     public int getNRegisteredMortgages() {
-    	return(Model.bank.mortgages.size());
+    	return(Model.bank.mortgages.getNOutstanding());
     }
 
 	public int getArchiveLength() {
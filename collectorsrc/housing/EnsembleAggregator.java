@@ -0,0 +1,117 @@
+package housing;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+
+import utilities.QuantileSketch;
+
+/***
+ * Summarises the indicators of an ensemble of Monte-Carlo runs as they are
+ * produced, without keeping the runs themselves.
+ *
+ * For each indicator and each month, it keeps the number of runs, the
+ * running mean and variance (Welford's algorithm), the minimum and maximum,
+ * and streaming estimates of the 5th, 25th, 50th, 75th and 95th percentiles
+ * (see QuantileSketch). Memory and the size of the summary depend on the
+ * number of months and indicators, but not on the number of runs.
+ *
+ * The Recorder adds each run's indicators every month (see
+ * Recorder.ensemble), and the summary is written with write().
+ */
+public class EnsembleAggregator {
+
+	public static final double [] QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+	/***
+	 * @param names names of the indicators, in the order they will be added
+	 */
+	public EnsembleAggregator(String [] names) {
+		this.names = names;
+		markers = new QuantileSketch.Markers(QUANTILES);
+		months = new ArrayList<>();
+		nRuns = 0;
+	}
+
+	/***
+	 * Add one run's indicators for one month.
+	 * @param time month of the run
+	 * @param values value of each indicator, in the order of the names
+	 */
+	public void record(int time, double [] values) {
+		while(months.size() <= time) months.add(null);
+		Cell [] month = months.get(time);
+		if(month == null) {
+			month = new Cell[names.length];
+			for(int i=0; i<names.length; ++i) month[i] = new Cell(markers);
+			months.set(time, month);
+		}
+		for(int i=0; i<names.length; ++i) {
+			month[i].add(values[i]);
+		}
+	}
+
+	/*** Note the end of a run */
+	public void endOfRun() {
+		++nRuns;
+	}
+
+	/*** @return number of runs completed so far */
+	public int getNRuns() {
+		return(nRuns);
+	}
+
+	/***
+	 * Write the summary so far as a CSV file, with one row per indicator per month.
+	 */
+	public void write(String filename) throws FileNotFoundException, UnsupportedEncodingException {
+		PrintWriter out = new PrintWriter(filename, "UTF-8");
+		out.println("Indicator, Model time, Runs, Mean, StdDev, Min, Q05, Q25, Median, Q75, Q95, Max");
+		for(int i=0; i<names.length; ++i) {
+			for(int t=0; t<months.size(); ++t) {
+				if(months.get(t) == null) continue;
+				Cell cell = months.get(t)[i];
+				out.print(names[i]+", "+t+", "+cell.n+", "+cell.mean+", "+cell.getStdDev()+", "+cell.quantiles.getMin());
+				for(int j=0; j<QUANTILES.length; ++j) {
+					out.print(", "+cell.quantiles.getQuantile(j));
+				}
+				out.println(", "+cell.quantiles.getMax());
+			}
+		}
+		out.close();
+	}
+
+	/***
+	 * Running statistics of one indicator in one month
+	 */
+	static class Cell {
+		Cell(QuantileSketch.Markers markers) {
+			quantiles = new QuantileSketch(markers);
+		}
+
+		void add(double x) {
+			if(Double.isNaN(x)) return;
+			++n;
+			double delta = x - mean;
+			mean += delta/n;
+			m2 += delta*(x - mean);
+			quantiles.add(x);
+		}
+
+		double getStdDev() {
+			if(n < 2) return(0.0);
+			return(Math.sqrt(m2/(n-1)));
+		}
+
+		int				n;
+		double			mean;
+		double			m2;			// sum of squared differences from the mean
+		QuantileSketch	quantiles;
+	}
+
+	String []				names;
+	QuantileSketch.Markers	markers;
+	ArrayList<Cell []>		months;		// statistics of each indicator in each month (null before recording starts)
+	int						nRuns;
+}
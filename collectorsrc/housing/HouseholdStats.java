@@ -1,8 +1,27 @@
 package housing;
 
+import sim.util.Double2D;
+import utilities.Histogram;
+
 public class HouseholdStats extends CollectorBase {
 	private static final long serialVersionUID = -402486195880710795L;
 
+	/**
+	 * Binning of the distributions shown by the inspectors
+	 */
+	static public class Config {
+		public static double MIN_AGE = 15.0;
+		public static double MAX_AGE = 105.0;
+		public static int N_AGE_BINS = 90;
+		public static int MAX_BTL_PROPERTIES = 50;		// larger portfolios are counted in the last bin
+		public static double MAX_RENTAL_YIELD = 0.25;
+		public static double MIN_INCOME = 1000.0;		// incomes and bank balances are binned on a log scale
+		public static double MAX_INCOME = 1e7;
+		public static double MIN_BANK_BALANCE = 1.0;	// (zero and negative balances are counted in the first bin)
+		public static double MAX_BANK_BALANCE = 1e8;
+		public static int N_BINS = 100;
+	}
+
 	public void step() {
 		BtLTotalAnnualIncome = 0.0;
     	OOTotalAnnualIncome = 0.0;
@@ -23,7 +42,7 @@ public class HouseholdStats extends CollectorBase {
     	    	NonOwnerTotalAnnualIncome += h.monthlyEmploymentIncome;
     		} else if(h.isRenting()) {
     			++nRenting;
-    			rentalYield += h.housePayments.get(h.home).monthlyPayment*12.0/Model.housingMarket.getAverageSalePrice(h.home.getQuality());
+    			rentalYield += h.housePayments.get(h.home).monthlyPayment*12.0/Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(h.home));
     	    	NonOwnerTotalAnnualIncome += h.monthlyEmploymentIncome;
     		} else {
     			OOTotalAnnualIncome += h.monthlyEmploymentIncome;
@@ -38,15 +57,66 @@ public class HouseholdStats extends CollectorBase {
 
 	}
 
-	public double [] getAgeDistribution() {
-		double [] result = new double[Model.households.size()];
-		int i = 0;
+	/***
+	 * Rebuild all the distribution histograms in a single pass over the households.
+	 * This is done the first time one of them is asked for in a month, so the
+	 * inspectors can be refreshed as often as they like without re-scanning
+	 * the population, and headless runs never pay for it.
+	 */
+	protected void recordDistributions() {
+		if(distributionTime == Model.getTime() && ageDistribution != null) return;
+		if(ageDistribution == null) {
+			ageDistribution = new Histogram(Config.MIN_AGE, Config.MAX_AGE, Config.N_AGE_BINS);
+			nonOwnerAges = new Histogram(Config.MIN_AGE, Config.MAX_AGE, Config.N_AGE_BINS);
+			ownerOccupierAges = new Histogram(Config.MIN_AGE, Config.MAX_AGE, Config.N_AGE_BINS);
+			btlNProperties = new Histogram(-0.5, Config.MAX_BTL_PROPERTIES+0.5, Config.MAX_BTL_PROPERTIES+1);
+			rentalYields = new Histogram(0.0, Config.MAX_RENTAL_YIELD, Config.N_BINS);
+			incomes = new Histogram(Config.MIN_INCOME, Config.MAX_INCOME, Config.N_BINS, true);
+			bankBalances = new Histogram(Config.MIN_BANK_BALANCE, Config.MAX_BANK_BALANCE, Config.N_BINS, true);
+		}
+		ageDistribution.clear();
+		nonOwnerAges.clear();
+		ownerOccupierAges.clear();
+		btlNProperties.clear();
+		rentalYields.clear();
+		incomes.clear();
+		bankBalances.clear();
 		for(Household h : Model.households) {
-			result[i] = h.lifecycle.age;
-			++i;
+			ageDistribution.add(h.lifecycle.age);
+			if(h.isHomeowner()) {
+				ownerOccupierAges.add(h.lifecycle.age);
+			} else {
+				nonOwnerAges.add(h.lifecycle.age);
+				if(h.isRenting()) {
+					rentalYields.add(h.housePayments.get(h.home).monthlyPayment*12.0/Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(h.home)));
+				}
+			}
+			if(h.behaviour.isPropertyInvestor()) btlNProperties.add(h.nInvestmentProperties());
+			incomes.add(h.annualEmploymentIncome());
+			bankBalances.add(h.bankBalance);
+		}
+		distributionTime = Model.getTime();
+	}
+
+	/***
+	 * @return histogram as (bin centre, count) points, for the inspectors
+	 * @param log if true, the x values are the logs of the bin centres
+	 */
+	protected static Double2D [] points(Histogram hist, boolean log) {
+		Double2D [] result = new Double2D[hist.getNBins()];
+		double x;
+		for(int i=0; i<hist.getNBins(); ++i) {
+			x = hist.getBinCentre(i);
+			if(log) x = Math.log(x);
+			result[i] = new Double2D(x, hist.getCount(i));
 		}
 		return(result);
 	}
+
+	public Double2D [] getAgeDistribution() {
+		recordDistributions();
+		return(points(ageDistribution, false));
+	}
 	public String desAgeDistribution() {
 		return("Age distribution of all households");
 	}
@@ -54,18 +124,9 @@ public class HouseholdStats extends CollectorBase {
 		return("Age distribution of all households");
 	}
 
-	public double [] getNonOwnerAges() {
-		double [] result = new double[(int)nNonOwner];
-		int i = 0;
-		for(Household h : Model.households) {
-			if(!h.isHomeowner() && i < nNonOwner) {
-				result[i++] = h.lifecycle.age;
-			}
-		}
-		while(i < nNonOwner) {
-			result[i++] = 0.0;
-		}
-		return(result);
+	public Double2D [] getNonOwnerAges() {
+		recordDistributions();
+		return(points(nonOwnerAges, false));
 	}
 	public String desNonOwnerAges() {
 		return("Ages of Renters and households in social housing");
@@ -74,19 +135,9 @@ public class HouseholdStats extends CollectorBase {
 		return("Renter and Social-housing ages");
 	}
 	
-	public double [] getOwnerOccupierAges() {
-		double [] result = new double[(int)nNonOwner];
-		int i = 0;
-		for(Household h : Model.households) {
-			if(!h.isHomeowner() && i < nNonOwner) {
-				result[i] = h.lifecycle.age;
-				++i;
-			}
-		}
-		while(i < nNonOwner) {
-			result[i++] = 0.0;
-		}
-		return(result);
+	public Double2D [] getOwnerOccupierAges() {
+		recordDistributions();
+		return(points(ownerOccupierAges, false));
 	}
 	public String desOwnerOccupierAges() {
 		return("Ages of owner-occupiers");
@@ -95,19 +146,9 @@ public class HouseholdStats extends CollectorBase {
 		return("Ages of owner-occupiers");
 	}
 
-	public double [] getBtLNProperties() {
-		if(isActive() && nBtL > 0) {
-			double [] result = new double[(int)nBtL];
-			int i = 0;
-			for(Household h : Model.households) {
-				if(h.behaviour.isPropertyInvestor() && i<nBtL) {
-					result[i] = h.nInvestmentProperties();
-					++i;
-				}
-			}
-			return(result);
-		}
-		return null;
+	public Double2D [] getBtLNProperties() {
+		recordDistributions();
+		return(points(btlNProperties, false));
 	}
 	public String desBtLNProperties() {
 		return("Dist of Number of properties owned by BTL investors");
@@ -126,15 +167,9 @@ public class HouseholdStats extends CollectorBase {
 		return("Buy-to-let housing stock proportion");
 	}
 	
-	public double [] getRentalYields() {
-		double [] result = new double[nRenting];
-		int i = 0;
-		for(Household h : Model.households) {
-			if(h.isRenting() && i<nRenting) {
-				result[i++] = h.housePayments.get(h.home).monthlyPayment*12.0/Model.housingMarket.getAverageSalePrice(h.home.getQuality());
-			}
-		}
-		return(result);
+	public Double2D [] getRentalYields() {
+		recordDistributions();
+		return(points(rentalYields, false));
 	}
 	public String desRentalYields() {
 		return("Gross annual rental yield on occupied rental properties");
@@ -143,22 +178,14 @@ public class HouseholdStats extends CollectorBase {
 		return("Rental Yields");
 	}
 	
-	public double [] getLogIncomes() {
-		double [] result = new double[Model.households.size()];
-		int i = 0;
-		for(Household h : Model.households) {
-			result[i++] = Math.log(h.annualEmploymentIncome());
-		}
-		return(result);
+	public Double2D [] getLogIncomes() {
+		recordDistributions();
+		return(points(incomes, true));
 	}
 
-	public double [] getLogBankBalances() {
-		double [] result = new double[Model.households.size()];
-		int i = 0;
-		for(Household h : Model.households) {
-			result[i++] = Math.log(Math.max(0.0, h.bankBalance));
-		}
-		return(result);
+	public Double2D [] getLogBankBalances() {
+		recordDistributions();
+		return(points(bankBalances, true));
 	}
 
     public int getnRenting() {
@@ -213,4 +240,14 @@ public class HouseholdStats extends CollectorBase {
 	public double	  OOTotalAnnualIncome;
 	public double	  NonOwnerTotalAnnualIncome;	
 	public double	  rentalYield; // gross annual yield on occupied rental properties
+
+	// ---- distributions for the inspectors (see recordDistributions())
+	Histogram		  ageDistribution;
+	Histogram		  nonOwnerAges;
+	Histogram		  ownerOccupierAges;
+	Histogram		  btlNProperties;
+	Histogram		  rentalYields;
+	Histogram		  incomes;
+	Histogram		  bankBalances;
+	int				  distributionTime;	// month in which the histograms were last rebuilt
 }
@@ -42,30 +42,15 @@ public class HousingMarketStats extends CollectorBase {
 		nSales = saleCount; saleCount = 0;
 		nFTBSales = ftbSaleCount; ftbSaleCount = 0;
 		nBTLSales = btlSaleCount; btlSaleCount = 0;
-		nNewBuild = 0;
-		nEmpty = 0;
-		nSellers = market.offersPQ.size();
+		nSellers = market.getNOffers();
 		nBuyers = market.bids.size();
-
-		// -- Record average bid price
-		// ---------------------------
-		averageBidPrice = 0.0;
-		for(HouseBuyerRecord buyer : market.bids) {
-			averageBidPrice += buyer.getPrice();
-		}
-		if(market.bids.size() > 0) averageBidPrice /= market.bids.size();
-
-		// -- Record average offer price
-		// -----------------------------
-		averageOfferPrice = 0.0;
-		for(HousingMarketRecord sale : market.offersPQ) {
-			averageOfferPrice += sale.getPrice();
-			if(((HouseSaleRecord)sale).house.owner == Model.construction) nNewBuild++;
-			if(((HouseSaleRecord)sale).house.resident == null) nEmpty++;
-		}
-		if(market.offersPQ.size() > 0) averageOfferPrice /= market.offersPQ.size();
-		recordOfferPrices();
-		recordBidPrices();
+		// the market keeps running totals as offers and bids come and go
+		averageBidPrice = market.getAverageBidPrice();
+		averageOfferPrice = market.getAverageOfferPrice();
+		nNewBuild = market.getNNewBuildOffers();
+		nEmpty = market.getNEmptyOffers();
+		offerPricesValid = false;
+		bidPricesValid = false;
 	}
 	
 	/*
@@ -93,23 +78,21 @@ public class HousingMarketStats extends CollectorBase {
 		Model.transactionRecorder.recordSale(purchase, sale, mortgage, market);
 	}
 		
+	/***
+	 * The price arrays are only filled in when they are asked for (e.g. by
+	 * an inspector), at most once a month, re-using the previous month's
+	 * array if it is the right length.
+	 */
 	protected void recordOfferPrices() {
-		offerPrices = new double[market.offersPQ.size()];
-		int i = 0;
-		for(HousingMarketRecord sale : market.offersPQ) {
-			offerPrices[i] = sale.getPrice();
-			++i;
-		}
+		if(offerPricesValid) return;
+		offerPrices = market.getOfferPrices(offerPrices);
+		offerPricesValid = true;
 	}
 
 	protected void recordBidPrices() {
-		bidPrices = new double[market.bids.size()];
-		int i = 0;
-		
-		for(HouseBuyerRecord bid : market.bids) {
-			bidPrices[i] = bid.getPrice();
-			++i;
-		}
+		if(bidPricesValid) return;
+		bidPrices = market.getBidPrices(bidPrices);
+		bidPricesValid = true;
 	}
 
 	public double averageSoldPriceToOLP;
@@ -125,6 +108,8 @@ public class HousingMarketStats extends CollectorBase {
 	public double [][]    referencePriceData;
 	double [] offerPrices;
 	double [] bidPrices;
+	boolean	  offerPricesValid;
+	boolean	  bidPricesValid;
 	HousingMarket market;
 //	MicroDataRecorder recorder;
 	
@@ -139,6 +124,7 @@ public class HousingMarketStats extends CollectorBase {
 	}
 	
 	public double[] getOfferPrices() {
+		recordOfferPrices();
 		return(offerPrices);
 	}
 	public String nameOfferPrices() {
@@ -146,6 +132,7 @@ public class HousingMarketStats extends CollectorBase {
 	}
 
 	public double[] getBidPrices() {
+		recordBidPrices();
 		return(bidPrices);
 	}
 	public String nameBidPrices() {
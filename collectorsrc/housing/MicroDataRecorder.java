@@ -1,6 +1,7 @@
 package housing;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.UUID;
@@ -16,13 +17,13 @@ public class MicroDataRecorder {
 	public void openNewFile() {
 //		String simID = Integer.toHexString(UUID.randomUUID().hashCode());
 		try {
-			outfile = new PrintWriter("transactions-"+Model.nSimulation+".csv", "UTF-8");
-			outfile.println(
-					"Timestamp, transactionType, houseId, houseQuality, initialListedPrice, timeFirstOffered, transactionPrice, "+
-					"buyerId, buyerAge(years), buyerHasBTLGene, buyerMonthlyPreTaxIncome, buyerMonthlyEmploymentIncome, buyerBankBalance, buyerCapGainCoeff, "+
-					"mortgageDownpayment, firstTimeBuyerMortgage, buyToLetMortgage, "+
-					"sellerId, sellerAge(years), sellerHasBTLGene, sellerMonthlyPreTaxIncome, sellerMonthlyEmploymentIncome, sellerBankBalance, sellerCapGainCoeff");
-		} catch (FileNotFoundException | UnsupportedEncodingException e) {
+			if(Model.MICRO_DATA_ARCHIVE) {
+				archive = new TransactionArchiveWriter(Model.OUTPUT_DIRECTORY+"transactions-"+Model.nSimulation+".htx");
+			} else {
+				outfile = new PrintWriter(Model.OUTPUT_DIRECTORY+"transactions-"+Model.nSimulation+".csv", "UTF-8");
+				outfile.println(Transaction.CSV_HEADER);
+			}
+		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
@@ -30,60 +31,32 @@ public class MicroDataRecorder {
 	
 	public void recordSale(HouseBuyerRecord purchase, HouseSaleRecord sale, MortgageAgreement mortgage, HousingMarket market) {
 		if(!active) return;
-		outfile.print(
-    			Model.getTime()+", "
-    			);
-		if(market instanceof HouseSaleMarket) {
-			outfile.print("sale, ");
-		} else {
-			outfile.print("rental, ");
-		}
-		outfile.print(
-    			sale.house.id+", "+
-    			sale.house.getQuality()+", "+
-    			sale.initialListedPrice+", "+
-    			sale.tInitialListing+", "+
-    			sale.getPrice()+", "+
-    			purchase.buyer.id+", "+
-    			purchase.buyer.lifecycle.age+", "+
-    			purchase.buyer.behaviour.isPropertyInvestor()+", "+
-    			purchase.buyer.getMonthlyPreTaxIncome()+", "+
-    			purchase.buyer.monthlyEmploymentIncome+", "+
-    			purchase.buyer.bankBalance+", "+
-    			purchase.buyer.behaviour.BtLCapGainCoeff+", "
-				);
-		if(mortgage != null) {
-			outfile.print(
-					mortgage.downPayment+", "+
-					mortgage.isFirstTimeBuyer+", "+
-					mortgage.isBuyToLet+", "
-					);			
-		} else {
-			outfile.print("-1, false, false, ");
-		}
-		if(sale.house.owner instanceof Household) {
-			Household seller = (Household)sale.house.owner;
-			outfile.println(
-					seller.id+", "+
-					seller.lifecycle.age+", "+
-					seller.behaviour.isPropertyInvestor()+", "+
-					seller.getMonthlyPreTaxIncome()+", "+
-					seller.monthlyEmploymentIncome+", "+
-					seller.bankBalance+", "+
-					seller.behaviour.BtLCapGainCoeff
-					);			
+		transaction.set(purchase, sale, mortgage, market);
+		if(archive != null) {
+			try {
+				archive.append(transaction);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		} else {
-			// must be construction sector
-			outfile.println("-1, 0, false, 0, 0, 0, 0");
+			outfile.println(transaction.toCSV());
 		}
 	}
 	
 	public void finish() {
-		outfile.close();
+		if(archive != null) {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			archive = null;
+		}
+		if(outfile != null) outfile.close();
 	}
 		
 	public void endOfSim() {
-		outfile.close();
+		finish();
 		openNewFile();
 	}
 	
@@ -109,5 +82,7 @@ public class MicroDataRecorder {
 	}
 
 	PrintWriter 	outfile;
+	TransactionArchiveWriter	archive;	// if Model.MICRO_DATA_ARCHIVE
+	Transaction		transaction = new Transaction();
 	public boolean  active=false;
 }
@@ -3,8 +3,6 @@ package housing;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.UUID;
-import org.apache.commons.math3.linear.ArrayRealVector;
 
 /***
  * For recording output to file
@@ -12,38 +10,107 @@ import org.apache.commons.math3.linear.ArrayRealVector;
  *
  */
 public class Recorder {
+
+	/*** Columns of output-N.csv after "Model time", then the core indicators: the indicators sampled every month */
+	public static final String [] INDICATORS = {
+		"NRegisteredMortgages", "nBtL(gene)", "nEmpty", "nHomeless", "nHouseholds", "nRenting", "AverageBidPrice",
+		"AverageDaysOnMarket", "AverageOfferPrice", "BTLSalesProportion", "FTBSalesProportion", "HPA", "HPI", "nBuyers",
+		"nSellers", "nSales", "nNewBuild", "Rental AverageBidPrice", "Rental AverageDaysOnMarket", "Rental AverageOfferPrice", "Rental HPA", "Rental HPI",
+		"Rental nBuyers", "Rental nSellers", "Rental nSales", "averageNewRentalGrossYield", "nBtL(active)", "ProportionOfHousingStockBtL",
+		"ooLTI", "btlLTV", "creditGrowth", "debtToIncome", "ooDebtToIncome", "mortgageApprovals", "housingTransactions",
+		"advancesToFTB", "advancesToBTL", "advancesToMovers", "priceToIncome", "rentalYield", "housePriceGrowth", "interestRateSpread"
+	};
+	static final int N_OUTPUTS = 28;	// number of INDICATORS in output-N.csv; the rest each have a coreIndicator file
+	static final boolean [] IS_COUNT = new boolean[INDICATORS.length]; // indicators written as integers
+	static {
+		for(int i : new int[] {0, 1, 2, 3, 4, 5, 13, 14, 15, 16, 22, 23, 24, 26, 33, 34, 35, 36, 37}) IS_COUNT[i] = true;
+	}
 	
+	/*** If not null, every run's indicators are added to this ensemble summary (shared by all models) */
+	public static EnsembleAggregator ensemble = null;
+
 	public void start() throws FileNotFoundException, UnsupportedEncodingException {
-		// --- open files for core indicators
-        ooLTI = new PrintWriter("coreIndicator-ooLTI.csv", "UTF-8");
-        btlLTV = new PrintWriter("coreIndicator-btlLTV.csv", "UTF-8");
-        creditGrowth = new PrintWriter("coreIndicator-creditGrowth.csv", "UTF-8");
-        debtToIncome = new PrintWriter("coreIndicator-debtToIncome.csv", "UTF-8");
-        ooDebtToIncome = new PrintWriter("coreIndicator-ooDebtToIncome.csv", "UTF-8");
-        mortgageApprovals = new PrintWriter("coreIndicator-mortgageApprovals.csv", "UTF-8");
-        housingTransactions = new PrintWriter("coreIndicator-housingTransactions.csv", "UTF-8");
-        advancesToFTBs = new PrintWriter("coreIndicator-advancesToFTB.csv", "UTF-8");
-        advancesToBTL = new PrintWriter("coreIndicator-advancesToBTL.csv", "UTF-8");
-        advancesToHomeMovers = new PrintWriter("coreIndicator-advancesToMovers.csv", "UTF-8");
-        priceToIncome = new PrintWriter("coreIndicator-priceToIncome.csv", "UTF-8");
-        rentalYield = new PrintWriter("coreIndicator-rentalYield.csv", "UTF-8");
-        housePriceGrowth = new PrintWriter("coreIndicator-housePriceGrowth.csv", "UTF-8");
-        interestRateSpread = new PrintWriter("coreIndicator-interestRateSpread.csv", "UTF-8");
-		
+		values = new double[INDICATORS.length];
+		if(Model.RECORD_RUN_FILES) {
+			// --- open files for core indicators
+			coreIndicators = new PrintWriter[INDICATORS.length - N_OUTPUTS];
+			for(int i=0; i<coreIndicators.length; ++i) {
+				coreIndicators[i] = new PrintWriter(Model.OUTPUT_DIRECTORY+"coreIndicator-"+INDICATORS[N_OUTPUTS+i]+".csv", "UTF-8");
+			}
+		}
         newSim = true;
 	}
 
+	/***
+	 * Sample the indicators of the current month into values (in the order of INDICATORS)
+	 */
+	public static void sample(double [] values) {
+		int i = 0;
+		values[i++] = Model.collectors.creditSupply.getNRegisteredMortgages();
+		values[i++] = Model.collectors.householdStats.getnBtL();
+		values[i++] = Model.collectors.householdStats.getnEmpty();
+		values[i++] = Model.collectors.householdStats.getnHomeless();
+		values[i++] = Model.collectors.householdStats.getnHouseholds();
+		values[i++] = Model.collectors.householdStats.getnRenting();
+		values[i++] = Model.collectors.housingMarketStats.getAverageBidPrice();
+		values[i++] = Model.collectors.housingMarketStats.getAverageDaysOnMarket();
+		values[i++] = Model.collectors.housingMarketStats.getAverageOfferPrice();
+		values[i++] = Model.collectors.housingMarketStats.getBTLSalesProportion();
+		values[i++] = Model.collectors.housingMarketStats.getFTBSalesProportion();
+		values[i++] = Model.collectors.housingMarketStats.getHPA();
+		values[i++] = Model.collectors.housingMarketStats.getHPI();
+		values[i++] = Model.collectors.housingMarketStats.getnBuyers();
+		values[i++] = Model.collectors.housingMarketStats.getnSellers();
+		values[i++] = Model.collectors.housingMarketStats.getnSales();
+		values[i++] = Model.collectors.housingMarketStats.getnNewBuild();
+		values[i++] = Model.collectors.rentalMarketStats.getAverageBidPrice();
+		values[i++] = Model.collectors.rentalMarketStats.getAverageDaysOnMarket();
+		values[i++] = Model.collectors.rentalMarketStats.getAverageOfferPrice();
+		values[i++] = Model.collectors.rentalMarketStats.getHPA();
+		values[i++] = Model.collectors.rentalMarketStats.getHPI();
+		values[i++] = Model.collectors.rentalMarketStats.getnBuyers();
+		values[i++] = Model.collectors.rentalMarketStats.getnSellers();
+		values[i++] = Model.collectors.rentalMarketStats.getnSales();
+		values[i++] = Model.rentalMarket.averageSoldGrossYield;
+		values[i++] = Model.collectors.householdStats.getnActiveBtL();
+		values[i++] = Model.collectors.householdStats.getBTLProportion();
+		values[i++] = Model.collectors.coreIndicators.getOwnerOccupierLTIMeanAboveMedian();
+		values[i++] = Model.collectors.coreIndicators.getBuyToLetLTVMean();
+		values[i++] = Model.collectors.coreIndicators.getHouseholdCreditGrowth();
+		values[i++] = Model.collectors.coreIndicators.getDebtToIncome();
+		values[i++] = Model.collectors.coreIndicators.getOODebtToIncome();
+		values[i++] = Model.collectors.coreIndicators.getMortgageApprovals();
+		values[i++] = Model.collectors.coreIndicators.getHousingTransactions();
+		values[i++] = Model.collectors.coreIndicators.getAdvancesToFTBs();
+		values[i++] = Model.collectors.coreIndicators.getAdvancesToBTL();
+		values[i++] = Model.collectors.coreIndicators.getAdvancesToHomeMovers();
+		values[i++] = Model.collectors.coreIndicators.getPriceToIncome();
+		values[i++] = Model.collectors.coreIndicators.getRentalYield();
+		values[i++] = Model.collectors.coreIndicators.getHousePriceGrowth();
+		values[i++] = Model.collectors.coreIndicators.getInterestRateSpread();
+	}
+
+	/*** @return value i as it is written to file */
+	protected String format(int i) {
+		if(IS_COUNT[i]) return(String.valueOf((long)values[i]));
+		return(String.valueOf(values[i]));
+	}
+
 	public void step() {
+		sample(values);
+		if(ensemble != null) ensemble.record(Model.getTime(), values);
+		if(!Model.RECORD_RUN_FILES) {
+			newSim = false;
+			return;
+		}
 		if(newSim) {
 //			String simID = Integer.toHexString(UUID.randomUUID().hashCode());
 	        try {
-				outfile = new PrintWriter("output-"+Model.nSimulation+".csv", "UTF-8");
-		    	outfile.println(
-		    			"Model time, NRegisteredMortgages, nBtL(gene), nEmpty, nHomeless, nHouseholds, nRenting, AverageBidPrice, "+
-		    			"AverageDaysOnMarket, AverageOfferPrice, BTLSalesProportion, FTBSalesProportion, HPA, HPI, nBuyers, "+
-		    			"nSellers, nSales, nNewBuild, Rental AverageBidPrice, Rental AverageDaysOnMarket, Rental AverageOfferPrice, Rental HPA, Rental HPI, "+
-		    			"Rental nBuyers, Rental nSellers, Rental nSales, averageNewRentalGrossYield, nBtL(active), ProportionOfHousingStockBtL");
-		        paramfile = new PrintWriter("parameters-"+Model.nSimulation+".csv", "UTF-8");
+				outfile = new PrintWriter(Model.OUTPUT_DIRECTORY+"output-"+Model.nSimulation+".csv", "UTF-8");
+				outfile.print("Model time");
+				for(int i=0; i<N_OUTPUTS; ++i) outfile.print(", "+INDICATORS[i]);
+				outfile.println();
+		        paramfile = new PrintWriter(Model.OUTPUT_DIRECTORY+"parameters-"+Model.nSimulation+".csv", "UTF-8");
 		        paramfile.println("BtL P_INVESTOR, CentralBank ICR Limit");
 		        paramfile.println(
 		        		housing.HouseholdBehaviour.P_INVESTOR+", "+
@@ -58,132 +125,43 @@ public class Recorder {
 	        paramfile.close();
 			newSim = false;
 		} else {
-			ooLTI.print(", ");
-			btlLTV.print(", ");
-			creditGrowth.print(", ");
-			debtToIncome.print(", ");
-			ooDebtToIncome.print(", ");
-			mortgageApprovals.print(", ");
-			housingTransactions.print(", ");
-			advancesToFTBs.print(", ");
-			advancesToBTL.print(", ");
-			advancesToHomeMovers.print(", ");
-			priceToIncome.print(", ");
-			rentalYield.print(", ");
-			housePriceGrowth.print(", ");			
-			interestRateSpread.print(", ");			
+			for(PrintWriter file : coreIndicators) file.print(", ");
+		}
+		for(int i=0; i<coreIndicators.length; ++i) {
+			coreIndicators[i].print(format(N_OUTPUTS+i));
+		}
+		outfile.print(Model.getTime());
+		for(int i=0; i<N_OUTPUTS; ++i) {
+			outfile.print(", "+format(i));
 		}
-        ooLTI.print(Model.collectors.coreIndicators.getOwnerOccupierLTIMeanAboveMedian());
-    	btlLTV.print(Model.collectors.coreIndicators.getBuyToLetLTVMean());
-    	creditGrowth.print(Model.collectors.coreIndicators.getHouseholdCreditGrowth());
-    	debtToIncome.print(Model.collectors.coreIndicators.getDebtToIncome());
-    	ooDebtToIncome.print(Model.collectors.coreIndicators.getOODebtToIncome());
-    	mortgageApprovals.print(Model.collectors.coreIndicators.getMortgageApprovals());
-    	housingTransactions.print(Model.collectors.coreIndicators.getHousingTransactions());
-    	advancesToFTBs.print(Model.collectors.coreIndicators.getAdvancesToFTBs());
-    	advancesToBTL.print(Model.collectors.coreIndicators.getAdvancesToBTL());
-    	advancesToHomeMovers.print(Model.collectors.coreIndicators.getAdvancesToHomeMovers());
-    	priceToIncome.print(Model.collectors.coreIndicators.getPriceToIncome());
-    	rentalYield.print(Model.collectors.coreIndicators.getRentalYield());
-    	housePriceGrowth.print(Model.collectors.coreIndicators.getHousePriceGrowth());
-    	interestRateSpread.print(Model.collectors.coreIndicators.getInterestRateSpread());
-    	
-    	outfile.println(
-    			Model.getTime()+", "+
-    			Model.collectors.creditSupply.getNRegisteredMortgages()+", "+
-    			Model.collectors.householdStats.getnBtL()+", "+
-    			Model.collectors.householdStats.getnEmpty()+", "+
-    			Model.collectors.householdStats.getnHomeless()+", "+
-    			Model.collectors.householdStats.getnHouseholds()+", "+
-    			Model.collectors.householdStats.getnRenting()+", "+
-    			Model.collectors.housingMarketStats.getAverageBidPrice()+", "+
-    			Model.collectors.housingMarketStats.getAverageDaysOnMarket()+", "+
-    			Model.collectors.housingMarketStats.getAverageOfferPrice()+", "+
-    			Model.collectors.housingMarketStats.getBTLSalesProportion()+", "+
-    			Model.collectors.housingMarketStats.getFTBSalesProportion()+", "+
-    			Model.collectors.housingMarketStats.getHPA()+", "+
-    			Model.collectors.housingMarketStats.getHPI()+", "+
-    			Model.collectors.housingMarketStats.getnBuyers()+", "+
-    			Model.collectors.housingMarketStats.getnSellers()+", "+
-    			Model.collectors.housingMarketStats.getnSales()+", "+
-    			Model.collectors.housingMarketStats.getnNewBuild()+", "+
-    			Model.collectors.rentalMarketStats.getAverageBidPrice()+", "+
-    			Model.collectors.rentalMarketStats.getAverageDaysOnMarket()+", "+
-    			Model.collectors.rentalMarketStats.getAverageOfferPrice()+", "+
-    			Model.collectors.rentalMarketStats.getHPA()+", "+
-    			Model.collectors.rentalMarketStats.getHPI()+", "+
-    			Model.collectors.rentalMarketStats.getnBuyers()+", "+
-    			Model.collectors.rentalMarketStats.getnSellers()+", "+
-    			Model.collectors.rentalMarketStats.getnSales()+", "+
-    			Model.rentalMarket.averageSoldGrossYield+", "+
-    			Model.collectors.householdStats.getnActiveBtL()+", "+
-    			Model.collectors.householdStats.getBTLProportion());
+		outfile.println();
 	}
 	
 	public void finish() {
-		ooLTI.println("");
-		btlLTV.println("");
-		creditGrowth.println("");
-		debtToIncome.println("");
-		ooDebtToIncome.println("");
-		mortgageApprovals.println("");
-		housingTransactions.println("");
-		advancesToFTBs.println("");
-		advancesToBTL.println("");
-		advancesToHomeMovers.println("");
-		priceToIncome.println("");
-        ooLTI.close();		
-    	btlLTV.close();
-    	creditGrowth.close();
-    	debtToIncome.close();
-    	ooDebtToIncome.close();
-    	mortgageApprovals.close();
-    	housingTransactions.close();
-    	advancesToFTBs.close();
-    	advancesToBTL.close();
-    	advancesToHomeMovers.close();
-    	priceToIncome.close();
-    	rentalYield.close();
-    	housePriceGrowth.close();
-    	interestRateSpread.close();
+		if(coreIndicators != null) {
+			for(PrintWriter file : coreIndicators) {
+				file.println("");
+				file.close();
+			}
+			coreIndicators = null;
+		}
 		if(outfile != null) outfile.close();
+		if(ensemble != null && !newSim) ensemble.endOfRun();
+		newSim = true; // in case we're finished twice
 	}
 		
 	public void endOfSim() {
-		ooLTI.println("");
-		btlLTV.println("");
-		creditGrowth.println("");
-		debtToIncome.println("");
-		ooDebtToIncome.println("");
-		mortgageApprovals.println("");
-		housingTransactions.println("");
-		advancesToFTBs.println("");
-		advancesToBTL.println("");
-		advancesToHomeMovers.println("");
-		priceToIncome.println("");
-		rentalYield.println("");
-		housePriceGrowth.println("");
-		interestRateSpread.println("");
-		outfile.close();
+		if(coreIndicators != null) {
+			for(PrintWriter file : coreIndicators) file.println("");
+		}
+		if(outfile != null) outfile.close();
+		if(ensemble != null && !newSim) ensemble.endOfRun();
 		newSim = true;
 	}
 	
-	PrintWriter ooLTI;
-	PrintWriter btlLTV;
-	PrintWriter creditGrowth;
-	PrintWriter debtToIncome;
-	PrintWriter ooDebtToIncome;
-	PrintWriter mortgageApprovals;
-	PrintWriter housingTransactions;
-	PrintWriter advancesToFTBs;
-	PrintWriter advancesToBTL;
-	PrintWriter advancesToHomeMovers;
-	PrintWriter priceToIncome;
-	PrintWriter	rentalYield;
-	PrintWriter	housePriceGrowth;
-	PrintWriter	interestRateSpread;
+	PrintWriter []	coreIndicators;	// a file for each core indicator, with a row for each run (null if not writing run files)
+	double []		values;			// this month's value of each of INDICATORS
 
-	ArrayRealVector output;
 	PrintWriter 	outfile;
 	PrintWriter 	paramfile;
 	public boolean newSim = true;
@@ -0,0 +1,219 @@
+package housing;
+
+import java.util.Arrays;
+
+/***
+ * Decides, while a run is going, when the model has settled into its steady
+ * state, so that recording can start then rather than after a fixed burn-in
+ * (see Model.AUTO_START_RECORDING).
+ *
+ * Each month it samples a few series: the house price index, the average
+ * days on the market, the mortgage interest rate, the owner-occupier and
+ * renter shares of households and household credit growth. These are
+ * averaged over batches of Config.BATCH months, and every time a batch is
+ * complete, each series that hasn't settled yet is tested on all its batch
+ * means so far:
+ *  - the warm-up is cut off where the standard error of the mean of the
+ *    batches left is smallest (the marginal standard error rule, MSER), as
+ *    long as at least Config.MIN_RETAINED batches are left. If the best cut
+ *    is at that limit, the series is still moving.
+ *  - the batches left are split in two halves, and the difference between
+ *    their means has to be within Config.Z standard errors, estimated from
+ *    the spread of the batch means in each half (as in Geweke's test). This
+ *    rejects a series that is still trending after the cut, whatever the size
+ *    of the trend.
+ * A series has settled when it has passed for Config.HOLD batches in a row,
+ * and the run is stationary when all series have settled. A run that hasn't
+ * after Config.MAX_BURN_IN months is flagged as not converged.
+ *
+ * The series wander on the scale of the model's cycles (the tenure shares
+ * stay correlated for several years), so the test can't pass in less than
+ * Config.MIN_BATCHES batches, and usually takes longer. Requiring all the
+ * series to pass in the same batch, rather than each to settle in turn,
+ * makes that several times longer, even for a run that settled long ago.
+ * From an equilibrium start (see EquilibriumInitialiser), the prices, days
+ * on the market, mortgage rate, renter share and credit growth have usually
+ * settled after 4 to 8 years, but the owner-occupier share falls for several
+ * years, so runs converge after about 10 years (6 to 15): about as long as
+ * it takes to recognise the steady state of a run that settled long ago.
+ * From an empty model, the mortgage rate is still rising after 50 years, so
+ * runs are flagged.
+ */
+public class SteadyStateDetector {
+
+	static public class Config {
+		public static int BATCH = 5; // months in each batch mean
+		public static int MIN_BATCHES = 8; // batches before a series can be tested
+		public static int MIN_RETAINED = 6; // fewest batches to leave after cutting off the warm-up
+		public static double Z = 3.0; // largest difference between the means of the two halves of the batches left, in standard errors
+		public static int HOLD = 2; // batches in a row for which a series has to pass the test before it has settled
+		public static int MAX_BURN_IN = 500; // months after which a run that has not converged is flagged, and recording starts anyway
+		public static boolean CHECKPOINT = false; // true to write a checkpoint of the model to steadyState-N.checkpoint when the run converges
+	}
+
+	public static final String [] SERIES = {"HPI", "AverageDaysOnMarket", "MortgageInterestRate", "OwnerOccupierShare", "RenterShare", "creditGrowth"};
+
+	public SteadyStateDetector() {
+		batchMeans = new double[SERIES.length][Config.MAX_BURN_IN/Config.BATCH + 1];
+		init();
+	}
+
+	/*** Start looking for the steady state of a new run */
+	public void init() {
+		restart();
+		steadyStateMonth = -1;
+		flagged = false;
+	}
+
+	/*** Forget the batches so far, and start collecting them again */
+	protected void restart() {
+		Arrays.fill(batchSum, 0.0);
+		nInBatch = 0;
+		nBatches = 0;
+		Arrays.fill(nPassed, 0);
+		Arrays.fill(settledMonth, -1);
+	}
+
+	/***
+	 * Sample this month's series and, at the end of a batch, test the series
+	 * that haven't settled (once the run has converged, this does nothing).
+	 * A month in which a series isn't finite (e.g. credit growth when there
+	 * was no credit the month before) starts the batches again.
+	 * @return true if the run became stationary this month
+	 */
+	public boolean step() {
+		if(steadyStateMonth >= 0) return(false);
+		int i;
+		sample(values);
+		for(i=0; i<SERIES.length; ++i) {
+			if(Double.isNaN(values[i]) || Double.isInfinite(values[i])) {
+				restart();
+				return(false);
+			}
+			batchSum[i] += values[i];
+		}
+		if(++nInBatch < Config.BATCH) return(false);
+		if(nBatches == batchMeans[0].length) {
+			for(i=0; i<SERIES.length; ++i) batchMeans[i] = Arrays.copyOf(batchMeans[i], 2*nBatches);
+		}
+		for(i=0; i<SERIES.length; ++i) {
+			batchMeans[i][nBatches] = batchSum[i]/nInBatch;
+			batchSum[i] = 0.0;
+		}
+		++nBatches;
+		nInBatch = 0;
+		if(nBatches < Config.MIN_BATCHES) return(false);
+		boolean stationary = true;
+		for(i=0; i<SERIES.length; ++i) {
+			if(settledMonth[i] >= 0) continue;
+			if(isStationary(batchMeans[i], nBatches)) {
+				if(++nPassed[i] >= Config.HOLD) settledMonth[i] = Model.getTime();
+			} else {
+				nPassed[i] = 0;
+			}
+			if(settledMonth[i] < 0) stationary = false;
+		}
+		if(stationary) {
+			steadyStateMonth = Model.getTime();
+			return(true);
+		}
+		return(false);
+	}
+
+	/***
+	 * @param y batch means of a series
+	 * @param k number of batches
+	 * @return true if, once its warm-up is cut off, the series has no trend
+	 */
+	protected static boolean isStationary(double [] y, int k) {
+		// --- MSER: the cut that minimises the squared standard error of the mean of y[cut..k-1]
+		int lastCut = k - Config.MIN_RETAINED;
+		if(lastCut <= 0) return(false);
+		double ref = y[k-1]; // sums are of differences from this, so they don't lose precision
+		double sum = 0.0, sumSq = 0.0, se2;
+		double best = Double.POSITIVE_INFINITY;
+		int cut = lastCut;
+		int j, m;
+		for(j=k-1; j>=0; --j) {
+			sum += y[j] - ref;
+			sumSq += (y[j] - ref)*(y[j] - ref);
+			if(j <= lastCut) {
+				m = k - j;
+				se2 = (sumSq - sum*sum/m)/((double)m*m);
+				if(se2 <= best) {
+					best = se2;
+					cut = j;
+				}
+			}
+		}
+		if(cut == lastCut) return(false);
+
+		// --- Geweke: compare the means of the two halves of the batches left
+		int h = (k - cut)/2;
+		double meanA = mean(y, cut, h);
+		double meanB = mean(y, k-h, h);
+		double se = Math.sqrt((variance(y, cut, h, meanA) + variance(y, k-h, h, meanB))/h);
+		return(Math.abs(meanA - meanB) <= Config.Z*se);
+	}
+
+	static double mean(double [] y, int from, int n) {
+		double sum = 0.0;
+		for(int j=from; j<from+n; ++j) sum += y[j];
+		return(sum/n);
+	}
+
+	static double variance(double [] y, int from, int n, double mean) {
+		double ss = 0.0;
+		for(int j=from; j<from+n; ++j) ss += (y[j] - mean)*(y[j] - mean);
+		return(ss/(n - 1));
+	}
+
+	/***
+	 * Sample the current value of each series into values (in the order of SERIES)
+	 */
+	public static void sample(double [] values) {
+		HouseholdStats stats = Model.collectors.householdStats;
+		int nHouseholds = stats.getnHouseholds();
+		values[0] = Model.collectors.housingMarketStats.getHPI();
+		values[1] = Model.collectors.housingMarketStats.getAverageDaysOnMarket();
+		values[2] = Model.bank.getMortgageInterestRate();
+		values[3] = (nHouseholds == 0 ? 0.0 : (nHouseholds - stats.getnNonOwner())/(double)nHouseholds);
+		values[4] = (nHouseholds == 0 ? 0.0 : stats.getnRenting()/(double)nHouseholds);
+		values[5] = Model.collectors.coreIndicators.getHouseholdCreditGrowth();
+	}
+
+	/*** @return true if all the series have settled */
+	public boolean hasConverged() {
+		return(steadyStateMonth >= 0);
+	}
+
+	/*** @return month at which the run became stationary (-1 if it hasn't) */
+	public int getSteadyStateMonth() {
+		return(steadyStateMonth);
+	}
+
+	/*** @return month at which the i'th series (see SERIES) settled (-1 if it hasn't) */
+	public int getSettledMonth(int i) {
+		return(settledMonth[i]);
+	}
+
+	/*** @return true if the run has passed Config.MAX_BURN_IN months without converging */
+	public boolean isFlagged() {
+		return(flagged);
+	}
+
+	/*** Note that the run has not converged in Config.MAX_BURN_IN months */
+	public void flag() {
+		flagged = true;
+	}
+
+	double [][]	batchMeans;	// batch means of each series since the last restart
+	double []	batchSum = new double[SERIES.length];	// sums over the current batch
+	double []	values = new double[SERIES.length];
+	int			nInBatch;	// months in the current batch
+	int			nBatches;	// complete batches
+	int []		nPassed = new int[SERIES.length];	// consecutive batches for which each series has passed the test
+	int []		settledMonth = new int[SERIES.length];	// month at which each series settled (-1 if it hasn't)
+	int			steadyStateMonth;
+	boolean		flagged;
+}
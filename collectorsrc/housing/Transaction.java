@@ -0,0 +1,135 @@
+package housing;
+
+/***
+ * One transaction on the sale or rental market, as recorded in the micro-data
+ * (see MicroDataRecorder). The same record is written to transactions-N.csv
+ * or to a TransactionArchive, and read back from an archive.
+ */
+public class Transaction {
+
+	public static final String CSV_HEADER =
+			"Timestamp, transactionType, houseId, houseQuality, initialListedPrice, timeFirstOffered, transactionPrice, "+
+			"buyerId, buyerAge(years), buyerHasBTLGene, buyerMonthlyPreTaxIncome, buyerMonthlyEmploymentIncome, buyerBankBalance, buyerCapGainCoeff, "+
+			"mortgageDownpayment, firstTimeBuyerMortgage, buyToLetMortgage, "+
+			"sellerId, sellerAge(years), sellerHasBTLGene, sellerMonthlyPreTaxIncome, sellerMonthlyEmploymentIncome, sellerBankBalance, sellerCapGainCoeff";
+
+	/***
+	 * Fill in this record from a sale that is being completed.
+	 */
+	public void set(HouseBuyerRecord purchase, HouseSaleRecord sale, MortgageAgreement mortgage, HousingMarket market) {
+		time = Model.getTime();
+		isSale = market instanceof HouseSaleMarket;
+		houseId = Model.houses.getId(sale.house);
+		houseQuality = Model.houses.getQuality(sale.house);
+		initialListedPrice = sale.initialListedPrice;
+		timeFirstOffered = sale.tInitialListing;
+		price = sale.getPrice();
+		buyerId = purchase.buyer.id;
+		buyerAge = purchase.buyer.lifecycle.age;
+		buyerHasBTLGene = purchase.buyer.behaviour.isPropertyInvestor();
+		buyerMonthlyPreTaxIncome = purchase.buyer.getMonthlyPreTaxIncome();
+		buyerMonthlyEmploymentIncome = purchase.buyer.monthlyEmploymentIncome;
+		buyerBankBalance = purchase.buyer.bankBalance;
+		buyerCapGainCoeff = purchase.buyer.behaviour.BtLCapGainCoeff;
+		hasMortgage = (mortgage != null);
+		if(hasMortgage) {
+			mortgageDownpayment = mortgage.downPayment;
+			firstTimeBuyerMortgage = mortgage.isFirstTimeBuyer;
+			buyToLetMortgage = mortgage.isBuyToLet;
+		} else {
+			mortgageDownpayment = -1.0;
+			firstTimeBuyerMortgage = false;
+			buyToLetMortgage = false;
+		}
+		sellerIsHousehold = (Model.houses.getOwner(sale.house) instanceof Household);
+		if(sellerIsHousehold) {
+			Household seller = (Household)Model.houses.getOwner(sale.house);
+			sellerId = seller.id;
+			sellerAge = seller.lifecycle.age;
+			sellerHasBTLGene = seller.behaviour.isPropertyInvestor();
+			sellerMonthlyPreTaxIncome = seller.getMonthlyPreTaxIncome();
+			sellerMonthlyEmploymentIncome = seller.monthlyEmploymentIncome;
+			sellerBankBalance = seller.bankBalance;
+			sellerCapGainCoeff = seller.behaviour.BtLCapGainCoeff;
+		} else { // must be construction sector
+			clearSeller();
+		}
+	}
+
+	void clearSeller() {
+		sellerId = -1;
+		sellerAge = 0.0;
+		sellerHasBTLGene = false;
+		sellerMonthlyPreTaxIncome = 0.0;
+		sellerMonthlyEmploymentIncome = 0.0;
+		sellerBankBalance = 0.0;
+		sellerCapGainCoeff = 0.0;
+	}
+
+	/***
+	 * @return this record as a line of transactions-N.csv (without the line end)
+	 */
+	public String toCSV() {
+		StringBuilder line = new StringBuilder(256);
+		line.append(time).append(", ")
+			.append(isSale ? "sale, " : "rental, ")
+			.append(houseId).append(", ")
+			.append(houseQuality).append(", ")
+			.append(initialListedPrice).append(", ")
+			.append(timeFirstOffered).append(", ")
+			.append(price).append(", ")
+			.append(buyerId).append(", ")
+			.append(buyerAge).append(", ")
+			.append(buyerHasBTLGene).append(", ")
+			.append(buyerMonthlyPreTaxIncome).append(", ")
+			.append(buyerMonthlyEmploymentIncome).append(", ")
+			.append(buyerBankBalance).append(", ")
+			.append(buyerCapGainCoeff).append(", ");
+		if(hasMortgage) {
+			line.append(mortgageDownpayment).append(", ")
+				.append(firstTimeBuyerMortgage).append(", ")
+				.append(buyToLetMortgage).append(", ");
+		} else {
+			line.append("-1, false, false, ");
+		}
+		if(sellerIsHousehold) {
+			line.append(sellerId).append(", ")
+				.append(sellerAge).append(", ")
+				.append(sellerHasBTLGene).append(", ")
+				.append(sellerMonthlyPreTaxIncome).append(", ")
+				.append(sellerMonthlyEmploymentIncome).append(", ")
+				.append(sellerBankBalance).append(", ")
+				.append(sellerCapGainCoeff);
+		} else {
+			line.append("-1, 0, false, 0, 0, 0, 0");
+		}
+		return(line.toString());
+	}
+
+	public int		time;				// month of the transaction
+	public boolean	isSale;				// sale market (true) or rental market (false)
+	public int		houseId;
+	public int		houseQuality;
+	public double	initialListedPrice;
+	public int		timeFirstOffered;
+	public double	price;
+	public int		buyerId;
+	public double	buyerAge;
+	public boolean	buyerHasBTLGene;
+	public double	buyerMonthlyPreTaxIncome;
+	public double	buyerMonthlyEmploymentIncome;
+	public double	buyerBankBalance;
+	public double	buyerCapGainCoeff;
+	public boolean	hasMortgage;
+	public double	mortgageDownpayment;	// -1 if there's no mortgage
+	public boolean	firstTimeBuyerMortgage;
+	public boolean	buyToLetMortgage;
+	public boolean	sellerIsHousehold;		// false if the seller is the construction sector
+	public int		sellerId;				// -1 for the construction sector
+	public double	sellerAge;
+	public boolean	sellerHasBTLGene;
+	public double	sellerMonthlyPreTaxIncome;
+	public double	sellerMonthlyEmploymentIncome;
+	public double	sellerBankBalance;
+	public double	sellerCapGainCoeff;
+}
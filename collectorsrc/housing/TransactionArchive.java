@@ -0,0 +1,334 @@
+package housing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/***
+ * Reads the transactions of a simulation from a compressed, month-indexed
+ * archive (transactions-N.htx), written by a TransactionArchiveWriter.
+ *
+ * The file is a header (MAGIC, VERSION), one block per month and an index.
+ * Each block is a header (month, number of transactions, raw length,
+ * compressed length) followed by the deflated transactions of the month,
+ * laid out by column:
+ * - a byte of flags per transaction
+ * - variable-length ints: house ids (delta-encoded), house qualities, months
+ *   on the market, buyer ids (delta-encoded) and, for household sellers only,
+ *   seller ids (delta-encoded)
+ * - one column of doubles per field, byte-shuffled (all the high bytes first)
+ *   so that the exponents of similar values compress together. Downpayments
+ *   are only stored for mortgages, and seller fields only for household sellers.
+ * The index is a list of (month, offset, number of transactions) followed by
+ * the offset of the index and TRAILER_MAGIC. A file without an index (e.g. a
+ * simulation that didn't finish) is indexed by scanning its blocks.
+ *
+ * The file is memory-mapped, so reading a month only touches its own block.
+ * Methods may be called from several threads at once.
+ */
+public class TransactionArchive implements Closeable {
+
+	public static final int MAGIC = 0x48545841;			// "HTXA"
+	public static final int VERSION = 1;
+	public static final int INDEX_MAGIC = 0x48545849;	// "HTXI"
+	public static final int TRAILER_MAGIC = 0x48545845;	// "HTXE"
+	public static final int BLOCK_HEADER_BYTES = 16;
+	static final int TRAILER_BYTES = 12;
+	static final int INDEX_ENTRY_BYTES = 16;
+
+	// --- flags
+	static final int SALE = 1;
+	static final int BUYER_BTL_GENE = 2;
+	static final int MORTGAGE = 4;
+	static final int FTB_MORTGAGE = 8;
+	static final int BTL_MORTGAGE = 16;
+	static final int SELLER_HOUSEHOLD = 32;
+	static final int SELLER_BTL_GENE = 64;
+
+	// --- int columns
+	static final int I_HOUSE = 0;
+	static final int I_QUALITY = 1;
+	static final int I_MONTHS_ON_MARKET = 2;
+	static final int I_BUYER = 3;
+	static final int I_SELLER = 4;
+	static final int N_INTS = 5;
+
+	// --- double columns
+	static final int D_INITIAL_PRICE = 0;
+	static final int D_PRICE = 1;
+	static final int D_BUYER_AGE = 2;
+	static final int D_BUYER_PRETAX_INCOME = 3;
+	static final int D_BUYER_EMPLOYMENT_INCOME = 4;
+	static final int D_BUYER_BANK_BALANCE = 5;
+	static final int D_BUYER_CAP_GAIN_COEFF = 6;
+	static final int D_DOWNPAYMENT = 7;
+	static final int D_SELLER_AGE = 8;
+	static final int D_SELLER_PRETAX_INCOME = 9;
+	static final int D_SELLER_EMPLOYMENT_INCOME = 10;
+	static final int D_SELLER_BANK_BALANCE = 11;
+	static final int D_SELLER_CAP_GAIN_COEFF = 12;
+	static final int N_DOUBLES = 13;
+
+	public TransactionArchive(String filename) throws IOException {
+		this(new File(filename));
+	}
+
+	public TransactionArchive(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		size = channel.size();
+		if(size <= Integer.MAX_VALUE) data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		ByteBuffer header = map(0, 8);
+		if(size < 8 || header.getInt() != MAGIC) {
+			channel.close();
+			throw(new IOException(file+" is not a transaction archive"));
+		}
+		int version = header.getInt();
+		if(version != VERSION) {
+			channel.close();
+			throw(new IOException(file+" is version "+version+" of the transaction archive format; can only read version "+VERSION));
+		}
+		if(!readIndex()) scanBlocks();
+	}
+
+	/***
+	 * Read the index at the end of the file.
+	 * @return false if there is no (valid) index
+	 */
+	private boolean readIndex() throws IOException {
+		if(size < 8 + TRAILER_BYTES + 8) return(false);
+		ByteBuffer trailer = map(size - TRAILER_BYTES, TRAILER_BYTES);
+		long indexOffset = trailer.getLong();
+		if(trailer.getInt() != TRAILER_MAGIC || indexOffset < 8 || indexOffset > size - TRAILER_BYTES - 8) return(false);
+		ByteBuffer index = map(indexOffset, (int)(size - TRAILER_BYTES - indexOffset));
+		if(index.getInt() != INDEX_MAGIC) return(false);
+		int n = index.getInt();
+		if(n < 0 || index.remaining() != (long)n*INDEX_ENTRY_BYTES) return(false);
+		months = new int[n];
+		offsets = new long[n];
+		counts = new int[n];
+		for(int i=0; i<n; ++i) {
+			months[i] = index.getInt();
+			offsets[i] = index.getLong();
+			counts[i] = index.getInt();
+		}
+		return(true);
+	}
+
+	/***
+	 * Index the file by walking through its blocks, up to the first incomplete one.
+	 */
+	private void scanBlocks() throws IOException {
+		int n = 0;
+		months = new int[64];
+		offsets = new long[64];
+		counts = new int[64];
+		long offset = 8;
+		while(offset + BLOCK_HEADER_BYTES <= size) {
+			ByteBuffer header = map(offset, BLOCK_HEADER_BYTES);
+			int month = header.getInt();
+			if(month == INDEX_MAGIC) break;
+			int count = header.getInt();
+			header.getInt();
+			int length = header.getInt();
+			if(count < 0 || length < 0 || offset + BLOCK_HEADER_BYTES + length > size) break;
+			if(n == months.length) {
+				months = Arrays.copyOf(months, 2*n);
+				offsets = Arrays.copyOf(offsets, 2*n);
+				counts = Arrays.copyOf(counts, 2*n);
+			}
+			months[n] = month;
+			offsets[n] = offset;
+			counts[n] = count;
+			++n;
+			offset += BLOCK_HEADER_BYTES + length;
+		}
+		months = Arrays.copyOf(months, n);
+		offsets = Arrays.copyOf(offsets, n);
+		counts = Arrays.copyOf(counts, n);
+	}
+
+	/***
+	 * @return a view of length bytes of the file, starting at offset
+	 */
+	private ByteBuffer map(long offset, int length) throws IOException {
+		if(data != null) {
+			ByteBuffer view = data.duplicate();
+			view.position((int)offset);
+			view.limit((int)offset + length);
+			return(view.slice());
+		}
+		return(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+	}
+
+	/*** @return the months that have transactions, in increasing order */
+	public int [] getMonths() {
+		return(months.clone());
+	}
+
+	/*** @return the number of transactions in a month */
+	public int getNTransactions(int month) {
+		int i = Arrays.binarySearch(months, month);
+		if(i < 0) return(0);
+		return(counts[i]);
+	}
+
+	/*** @return the number of transactions in the archive */
+	public long getNTransactions() {
+		long n = 0;
+		for(int count : counts) n += count;
+		return(n);
+	}
+
+	/***
+	 * @return the transactions of a month, in the order they were recorded
+	 */
+	public ArrayList<Transaction> read(int month) throws IOException {
+		ArrayList<Transaction> result = new ArrayList<>();
+		int i = Arrays.binarySearch(months, month);
+		if(i >= 0) readBlock(offsets[i], result);
+		return(result);
+	}
+
+	/***
+	 * @return the transactions of months firstMonth to lastMonth (inclusive)
+	 */
+	public ArrayList<Transaction> read(int firstMonth, int lastMonth) throws IOException {
+		ArrayList<Transaction> result = new ArrayList<>();
+		for(int i=0; i<months.length; ++i) {
+			if(months[i] >= firstMonth && months[i] <= lastMonth) readBlock(offsets[i], result);
+		}
+		return(result);
+	}
+
+	private void readBlock(long offset, ArrayList<Transaction> result) throws IOException {
+		ByteBuffer header = map(offset, BLOCK_HEADER_BYTES);
+		int month = header.getInt();
+		int n = header.getInt();
+		int rawLength = header.getInt();
+		int length = header.getInt();
+		// --- decompress
+		byte [] compressed = new byte[length];
+		map(offset + BLOCK_HEADER_BYTES, length).get(compressed);
+		byte [] raw = new byte[rawLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			if(inflater.inflate(raw) != rawLength) throw(new IOException("Corrupt block for month "+month));
+		} catch(DataFormatException e) {
+			throw(new IOException("Corrupt block for month "+month, e));
+		} finally {
+			inflater.end();
+		}
+		// --- read the columns
+		int [] pos = {n}; // flags come first
+		int nMortgages = 0;
+		int nHouseholdSellers = 0;
+		Transaction [] block = new Transaction[n];
+		for(int i=0; i<n; ++i) {
+			int f = raw[i];
+			Transaction t = new Transaction();
+			t.time = month;
+			t.isSale = (f & SALE) != 0;
+			t.buyerHasBTLGene = (f & BUYER_BTL_GENE) != 0;
+			t.hasMortgage = (f & MORTGAGE) != 0;
+			t.firstTimeBuyerMortgage = (f & FTB_MORTGAGE) != 0;
+			t.buyToLetMortgage = (f & BTL_MORTGAGE) != 0;
+			t.sellerIsHousehold = (f & SELLER_HOUSEHOLD) != 0;
+			if(t.hasMortgage) ++nMortgages; else t.mortgageDownpayment = -1.0;
+			if(t.sellerIsHousehold) {
+				t.sellerHasBTLGene = (f & SELLER_BTL_GENE) != 0;
+				++nHouseholdSellers;
+			} else {
+				t.clearSeller();
+			}
+			block[i] = t;
+		}
+		int last = 0;
+		for(Transaction t : block) t.houseId = last += unzigzag(readVarint(raw, pos));
+		for(Transaction t : block) t.houseQuality = unzigzag(readVarint(raw, pos));
+		for(Transaction t : block) t.timeFirstOffered = month - unzigzag(readVarint(raw, pos));
+		last = 0;
+		for(Transaction t : block) t.buyerId = last += unzigzag(readVarint(raw, pos));
+		last = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerId = last += unzigzag(readVarint(raw, pos));
+		int p = pos[0];
+		for(int i=0; i<n; ++i) block[i].initialListedPrice = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].price = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].buyerAge = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].buyerMonthlyPreTaxIncome = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].buyerMonthlyEmploymentIncome = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].buyerBankBalance = readDouble(raw, p, n, i);
+		p += 8*n;
+		for(int i=0; i<n; ++i) block[i].buyerCapGainCoeff = readDouble(raw, p, n, i);
+		p += 8*n;
+		int j = 0;
+		for(Transaction t : block) if(t.hasMortgage) t.mortgageDownpayment = readDouble(raw, p, nMortgages, j++);
+		p += 8*nMortgages;
+		int m = nHouseholdSellers;
+		j = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerAge = readDouble(raw, p, m, j++);
+		p += 8*m;
+		j = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerMonthlyPreTaxIncome = readDouble(raw, p, m, j++);
+		p += 8*m;
+		j = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerMonthlyEmploymentIncome = readDouble(raw, p, m, j++);
+		p += 8*m;
+		j = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerBankBalance = readDouble(raw, p, m, j++);
+		p += 8*m;
+		j = 0;
+		for(Transaction t : block) if(t.sellerIsHousehold) t.sellerCapGainCoeff = readDouble(raw, p, m, j++);
+		p += 8*m;
+		if(p != rawLength) throw(new IOException("Corrupt block for month "+month));
+		result.addAll(Arrays.asList(block));
+	}
+
+	/*** @return the i'th of m byte-shuffled doubles in the column starting at p */
+	private static double readDouble(byte [] raw, int p, int m, int i) {
+		long bits = 0;
+		for(int b=0; b<8; ++b) bits = (bits << 8) | (raw[p + b*m + i] & 0xff);
+		return(Double.longBitsToDouble(bits));
+	}
+
+	private static int readVarint(byte [] raw, int [] pos) {
+		int x = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = raw[pos[0]++];
+			x |= (b & 0x7f) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return(x);
+	}
+
+	private static int unzigzag(int x) {
+		return((x >>> 1) ^ -(x & 1));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	FileChannel			channel;
+	long				size;
+	MappedByteBuffer	data;		// the whole file, if it's small enough to map in one go
+	int []				months;		// index: month of each block
+	long []				offsets;	// offset of each block
+	int []				counts;		// number of transactions in each block
+}
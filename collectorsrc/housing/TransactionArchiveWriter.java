@@ -0,0 +1,220 @@
+package housing;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/***
+ * Writes transactions to a TransactionArchive file (see there for the format).
+ *
+ * Transactions are appended in order of time. Those of the current month are
+ * held in column buffers, and each month is compressed and appended to the
+ * file as a block when the first transaction of the next month arrives (or on
+ * flush() or close()). close() writes the index of the blocks at the end of
+ * the file.
+ */
+public class TransactionArchiveWriter implements Closeable {
+
+	public TransactionArchiveWriter(String filename) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1<<16));
+		out.writeInt(TransactionArchive.MAGIC);
+		out.writeInt(TransactionArchive.VERSION);
+		offset = 8;
+		flags = new Bytes();
+		ints = new Bytes[TransactionArchive.N_INTS];
+		for(int i=0; i<ints.length; ++i) ints[i] = new Bytes();
+		doubles = new long[TransactionArchive.N_DOUBLES][64];
+		nDoubles = new int[TransactionArchive.N_DOUBLES];
+		raw = new Bytes();
+		compressed = new byte[1<<16];
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		blockMonths = new int[64];
+		blockOffsets = new long[64];
+		blockSizes = new int[64];
+		month = -1;
+	}
+
+	/***
+	 * Add a transaction to the archive (a copy is taken, so the record can be re-used).
+	 */
+	public void append(Transaction t) throws IOException {
+		if(t.time != month) {
+			if(t.time < month) throw(new IllegalArgumentException("Transactions must be archived in order of time"));
+			flush();
+			month = t.time;
+		}
+		int f = 0;
+		if(t.isSale) f |= TransactionArchive.SALE;
+		if(t.buyerHasBTLGene) f |= TransactionArchive.BUYER_BTL_GENE;
+		if(t.hasMortgage) f |= TransactionArchive.MORTGAGE;
+		if(t.firstTimeBuyerMortgage) f |= TransactionArchive.FTB_MORTGAGE;
+		if(t.buyToLetMortgage) f |= TransactionArchive.BTL_MORTGAGE;
+		if(t.sellerIsHousehold) f |= TransactionArchive.SELLER_HOUSEHOLD;
+		if(t.sellerHasBTLGene) f |= TransactionArchive.SELLER_BTL_GENE;
+		flags.add((byte)f);
+		ints[TransactionArchive.I_HOUSE].addVarint(zigzag(t.houseId - lastHouseId));
+		ints[TransactionArchive.I_QUALITY].addVarint(zigzag(t.houseQuality));
+		ints[TransactionArchive.I_MONTHS_ON_MARKET].addVarint(zigzag(t.time - t.timeFirstOffered));
+		ints[TransactionArchive.I_BUYER].addVarint(zigzag(t.buyerId - lastBuyerId));
+		lastHouseId = t.houseId;
+		lastBuyerId = t.buyerId;
+		addDouble(TransactionArchive.D_INITIAL_PRICE, t.initialListedPrice);
+		addDouble(TransactionArchive.D_PRICE, t.price);
+		addDouble(TransactionArchive.D_BUYER_AGE, t.buyerAge);
+		addDouble(TransactionArchive.D_BUYER_PRETAX_INCOME, t.buyerMonthlyPreTaxIncome);
+		addDouble(TransactionArchive.D_BUYER_EMPLOYMENT_INCOME, t.buyerMonthlyEmploymentIncome);
+		addDouble(TransactionArchive.D_BUYER_BANK_BALANCE, t.buyerBankBalance);
+		addDouble(TransactionArchive.D_BUYER_CAP_GAIN_COEFF, t.buyerCapGainCoeff);
+		if(t.hasMortgage) addDouble(TransactionArchive.D_DOWNPAYMENT, t.mortgageDownpayment);
+		if(t.sellerIsHousehold) {
+			ints[TransactionArchive.I_SELLER].addVarint(zigzag(t.sellerId - lastSellerId));
+			lastSellerId = t.sellerId;
+			addDouble(TransactionArchive.D_SELLER_AGE, t.sellerAge);
+			addDouble(TransactionArchive.D_SELLER_PRETAX_INCOME, t.sellerMonthlyPreTaxIncome);
+			addDouble(TransactionArchive.D_SELLER_EMPLOYMENT_INCOME, t.sellerMonthlyEmploymentIncome);
+			addDouble(TransactionArchive.D_SELLER_BANK_BALANCE, t.sellerBankBalance);
+			addDouble(TransactionArchive.D_SELLER_CAP_GAIN_COEFF, t.sellerCapGainCoeff);
+		}
+	}
+
+	/***
+	 * Write the transactions of the current month to the file as a block.
+	 */
+	public void flush() throws IOException {
+		int n = flags.size;
+		if(n == 0) return;
+		// --- lay out the columns
+		raw.size = 0;
+		raw.add(flags);
+		for(Bytes column : ints) raw.add(column);
+		for(int c=0; c<doubles.length; ++c) {
+			long [] column = doubles[c];
+			int m = nDoubles[c];
+			raw.ensure(raw.size + 8*m);
+			for(int shift = 56; shift >= 0; shift -= 8) { // byte-shuffled: high bytes of every value first
+				for(int i=0; i<m; ++i) raw.data[raw.size++] = (byte)(column[i] >>> shift);
+			}
+		}
+		// --- compress
+		deflater.reset();
+		deflater.setInput(raw.data, 0, raw.size);
+		deflater.finish();
+		int length = 0;
+		while(!deflater.finished()) {
+			if(length == compressed.length) compressed = Arrays.copyOf(compressed, 2*length);
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		// --- append the block and note it for the index
+		if(nBlocks == blockMonths.length) {
+			blockMonths = Arrays.copyOf(blockMonths, 2*nBlocks);
+			blockOffsets = Arrays.copyOf(blockOffsets, 2*nBlocks);
+			blockSizes = Arrays.copyOf(blockSizes, 2*nBlocks);
+		}
+		blockMonths[nBlocks] = month;
+		blockOffsets[nBlocks] = offset;
+		blockSizes[nBlocks] = n;
+		++nBlocks;
+		out.writeInt(month);
+		out.writeInt(n);
+		out.writeInt(raw.size);
+		out.writeInt(length);
+		out.write(compressed, 0, length);
+		offset += TransactionArchive.BLOCK_HEADER_BYTES + length;
+		// --- start a new month
+		flags.size = 0;
+		for(Bytes column : ints) column.size = 0;
+		Arrays.fill(nDoubles, 0);
+		lastHouseId = 0;
+		lastBuyerId = 0;
+		lastSellerId = 0;
+	}
+
+	/***
+	 * Write any remaining transactions and the index, and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(out == null) return;
+		flush();
+		long indexOffset = offset;
+		out.writeInt(TransactionArchive.INDEX_MAGIC);
+		out.writeInt(nBlocks);
+		for(int i=0; i<nBlocks; ++i) {
+			out.writeInt(blockMonths[i]);
+			out.writeLong(blockOffsets[i]);
+			out.writeInt(blockSizes[i]);
+		}
+		out.writeLong(indexOffset);
+		out.writeInt(TransactionArchive.TRAILER_MAGIC);
+		out.close();
+		out = null;
+		deflater.end();
+	}
+
+	private void addDouble(int c, double x) {
+		if(nDoubles[c] == doubles[c].length) doubles[c] = Arrays.copyOf(doubles[c], 2*nDoubles[c]);
+		doubles[c][nDoubles[c]++] = Double.doubleToRawLongBits(x);
+	}
+
+	static int zigzag(int x) {
+		return((x << 1) ^ (x >> 31));
+	}
+
+	/*** growable array of bytes */
+	static class Bytes {
+		Bytes() {
+			data = new byte[256];
+		}
+
+		void ensure(int capacity) {
+			if(capacity > data.length) data = Arrays.copyOf(data, Math.max(capacity, 2*data.length));
+		}
+
+		void add(byte b) {
+			ensure(size + 1);
+			data[size++] = b;
+		}
+
+		void add(Bytes other) {
+			ensure(size + other.size);
+			System.arraycopy(other.data, 0, data, size, other.size);
+			size += other.size;
+		}
+
+		/*** add an unsigned variable-length int: 7 bits per byte, low bits first */
+		void addVarint(int x) {
+			while((x & ~0x7f) != 0) {
+				add((byte)((x & 0x7f) | 0x80));
+				x >>>= 7;
+			}
+			add((byte)x);
+		}
+
+		byte []	data;
+		int		size;
+	}
+
+	DataOutputStream	out;
+	long				offset;			// position in the file
+	int					month;			// month of the transactions being buffered
+	// --- columns of the current month
+	Bytes				flags;
+	Bytes []			ints;
+	long [][]			doubles;		// raw bits of the double columns
+	int []				nDoubles;		// number of values in each double column
+	int					lastHouseId;	// previous ids in the month, for delta encoding
+	int					lastBuyerId;
+	int					lastSellerId;
+	Bytes				raw;			// uncompressed block
+	byte []				compressed;
+	Deflater			deflater;
+	// --- index
+	int					nBlocks;
+	int []				blockMonths;
+	long []				blockOffsets;
+	int []				blockSizes;		// number of transactions in each block
+}
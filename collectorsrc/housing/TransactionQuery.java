@@ -0,0 +1,687 @@
+package housing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**************************************************************************************************
+ * Query the output of a run after it has finished, without loading it all into memory.
+ *
+ * Usage: java housing.TransactionQuery <file> [options]
+ *
+ * where <file> is a transaction archive (transactions-N.htx, see TransactionArchive), a
+ * transactions-N.csv or an output-N.csv. Options:
+ *
+ *  -months A-B			only months A to B (inclusive), or just month A
+ *  -type sale|rental	only sales or only rentals
+ *  -quality A-B		only houses of quality A to B (inclusive)
+ *  -house ID, -buyer ID, -seller ID	only transactions of this house, buyer or seller
+ *  -ftb true|false		only transactions with (or without) a first-time-buyer mortgage
+ *  -btl true|false		only transactions with (or without) a buy-to-let mortgage
+ *  -investor true|false	only buyers with (or without) the BTL gene
+ *  -field NAME			field to summarise (default transactionPrice): a column of the
+ *  					.csv, or monthsOnMarket
+ *  -by none|month|quality|type		how to group the summary (default none)
+ *  -band N				width of the quality bands for "-by quality" (default 1)
+ *  -list				print the matching transactions (or rows of output-N.csv) instead of
+ *  					a summary
+ *
+ * The summary gives the count, mean, minimum and maximum of the field in each group, as CSV.
+ * Seller fields are only summarised over household sellers, and mortgageDownpayment only over
+ * transactions with a mortgage.
+ *
+ * Files are memory-mapped and only the months asked for are read: an archive is indexed by
+ * month, and the rows of a .csv are in order of time, so the months are found by bisection.
+ * The rest of the filters are applied as the transactions are decoded, and the file is split
+ * between the threads of the common ForkJoinPool (one month of an archive, or CHUNK_BYTES of a
+ * .csv, per task). output-N.csv has one row per month, so it is simply read in order, and
+ * only -months, -field, -by month and -list apply to it.
+ *
+ * For example, first-time-buyer prices by quality band over months 600 to 700:
+ *
+ *   java housing.TransactionQuery transactions-0.htx -months 600-700 -type sale -ftb true -by quality -band 10
+ *
+ * and all the trades of house 1234:
+ *
+ *   java housing.TransactionQuery transactions-0.htx -house 1234 -list
+ **************************************************************************************************/
+public class TransactionQuery {
+
+	public static final int CHUNK_BYTES = 1<<25;	// size of the pieces of a .csv read by each task
+	static final int MAX_LINE = 4096;				// longest line expected in a .csv
+
+	static final String [] FIELDS = {"transactionPrice", "initialListedPrice", "houseQuality", "timeFirstOffered", "monthsOnMarket",
+			"buyerId", "buyerAge(years)", "buyerMonthlyPreTaxIncome", "buyerMonthlyEmploymentIncome", "buyerBankBalance", "buyerCapGainCoeff",
+			"mortgageDownpayment", "sellerId", "sellerAge(years)", "sellerMonthlyPreTaxIncome", "sellerMonthlyEmploymentIncome",
+			"sellerBankBalance", "sellerCapGainCoeff"};
+
+	enum Grouping {none, month, quality, type}
+
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.out.println("Usage: java housing.TransactionQuery <file> [options] (see the TransactionQuery class comment)");
+			System.exit(1);
+		}
+		TransactionQuery query = new TransactionQuery();
+		try {
+			query.parseOptions(Arrays.copyOfRange(args, 1, args.length));
+		} catch (IllegalArgumentException e) {
+			System.out.println("Problem with query: "+e.getMessage());
+			System.exit(1);
+		}
+		try {
+			query.run(new File(args[0]), System.out);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Problem reading "+args[0]+": "+e.getMessage());
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/***
+	 * Set the query from command-line options (see the class comment).
+	 */
+	public void parseOptions(String [] options) {
+		for(int i=0; i<options.length; ++i) {
+			String option = options[i];
+			if(option.equals("-list")) {
+				list = true;
+				continue;
+			}
+			if(i+1 == options.length) throw(new IllegalArgumentException("no value for "+option));
+			String value = options[++i];
+			try {
+				if(option.equals("-months")) {
+					int [] range = parseRange(value);
+					firstMonth = range[0];
+					lastMonth = range[1];
+				} else if(option.equals("-quality")) {
+					int [] range = parseRange(value);
+					minQuality = range[0];
+					maxQuality = range[1];
+				} else if(option.equals("-type")) {
+					if(!value.equals("sale") && !value.equals("rental")) throw(new IllegalArgumentException("type must be sale or rental"));
+					sale = Boolean.valueOf(value.equals("sale"));
+				} else if(option.equals("-house")) {
+					houseId = Integer.valueOf(value);
+				} else if(option.equals("-buyer")) {
+					buyerId = Integer.valueOf(value);
+				} else if(option.equals("-seller")) {
+					sellerId = Integer.valueOf(value);
+				} else if(option.equals("-ftb")) {
+					firstTimeBuyer = parseBoolean(value);
+				} else if(option.equals("-btl")) {
+					buyToLet = parseBoolean(value);
+				} else if(option.equals("-investor")) {
+					investor = parseBoolean(value);
+				} else if(option.equals("-field")) {
+					field = value;
+				} else if(option.equals("-by")) {
+					by = Grouping.valueOf(value);
+				} else if(option.equals("-band")) {
+					band = Integer.parseInt(value);
+					if(band < 1) throw(new IllegalArgumentException("band must be at least 1"));
+				} else {
+					throw(new IllegalArgumentException("unknown option "+option));
+				}
+			} catch (NumberFormatException e) {
+				throw(new IllegalArgumentException("bad value "+value+" for "+option));
+			}
+		}
+	}
+
+	static int [] parseRange(String value) {
+		int dash = value.indexOf('-', 1);
+		if(dash < 0) {
+			int x = Integer.parseInt(value.trim());
+			return(new int[] {x, x});
+		}
+		return(new int[] {Integer.parseInt(value.substring(0, dash).trim()), Integer.parseInt(value.substring(dash+1).trim())});
+	}
+
+	static Boolean parseBoolean(String value) {
+		if(!value.equals("true") && !value.equals("false")) throw(new IllegalArgumentException("expected true or false, not "+value));
+		return(Boolean.valueOf(value));
+	}
+
+	/***
+	 * Run the query on a file and print the result.
+	 */
+	public void run(File file, PrintStream out) throws IOException {
+		if(file.getName().endsWith(".htx")) {
+			fieldIndex = transactionField(field);
+			TransactionArchive archive = new TransactionArchive(file);
+			try {
+				print(ForkJoinPool.commonPool().invoke(new ArchiveTask(archive, selectMonths(archive.getMonths()))), out);
+			} finally {
+				archive.close();
+			}
+			return;
+		}
+		String header;
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			header = in.readLine();
+		} finally {
+			in.close();
+		}
+		if(header != null && header.startsWith("Timestamp")) {
+			fieldIndex = transactionField(field);
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				long dataStart = header.length() + 1;
+				long start = findMonth(channel, dataStart, firstMonth);
+				long end = (lastMonth == Integer.MAX_VALUE ? channel.size() : findMonth(channel, start, lastMonth + 1));
+				int nChunks = (int)((end - start + CHUNK_BYTES - 1)/CHUNK_BYTES);
+				print(ForkJoinPool.commonPool().invoke(new CsvTask(channel, start, end, 0, nChunks)), out);
+			} finally {
+				channel.close();
+			}
+		} else if(header != null && header.startsWith("Model time")) {
+			queryOutputFile(file, out);
+		} else {
+			throw(new IllegalArgumentException("not a transaction archive, transactions .csv or output .csv"));
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// Filters and fields
+	/////////////////////////////////////////////////////////////////////////
+
+	static int transactionField(String name) {
+		for(int i=0; i<FIELDS.length; ++i) {
+			if(FIELDS[i].equals(name) || FIELDS[i].equals(name+"(years)")) return(i);
+		}
+		throw(new IllegalArgumentException("unknown field "+name+" (choose from "+Arrays.toString(FIELDS)+")"));
+	}
+
+	/*** @return true if the first fields of the transaction (time, type, house) pass the filters */
+	boolean matchesHouse(Transaction t) {
+		if(t.time < firstMonth || t.time > lastMonth) return(false);
+		if(sale != null && t.isSale != sale.booleanValue()) return(false);
+		if(houseId != null && t.houseId != houseId.intValue()) return(false);
+		if(t.houseQuality < minQuality || t.houseQuality > maxQuality) return(false);
+		return(true);
+	}
+
+	/*** @return true if the rest of the transaction passes the filters */
+	boolean matchesRest(Transaction t) {
+		if(buyerId != null && t.buyerId != buyerId.intValue()) return(false);
+		if(sellerId != null && (!t.sellerIsHousehold || t.sellerId != sellerId.intValue())) return(false);
+		if(firstTimeBuyer != null && t.firstTimeBuyerMortgage != firstTimeBuyer.booleanValue()) return(false);
+		if(buyToLet != null && t.buyToLetMortgage != buyToLet.booleanValue()) return(false);
+		if(investor != null && t.buyerHasBTLGene != investor.booleanValue()) return(false);
+		return(true);
+	}
+
+	/*** @return the field being summarised, or NaN if the transaction doesn't have it */
+	double value(Transaction t) {
+		switch(fieldIndex) {
+		case 0: return(t.price);
+		case 1: return(t.initialListedPrice);
+		case 2: return(t.houseQuality);
+		case 3: return(t.timeFirstOffered);
+		case 4: return(t.time - t.timeFirstOffered);
+		case 5: return(t.buyerId);
+		case 6: return(t.buyerAge);
+		case 7: return(t.buyerMonthlyPreTaxIncome);
+		case 8: return(t.buyerMonthlyEmploymentIncome);
+		case 9: return(t.buyerBankBalance);
+		case 10: return(t.buyerCapGainCoeff);
+		case 11: return(t.hasMortgage ? t.mortgageDownpayment : Double.NaN);
+		}
+		if(!t.sellerIsHousehold) return(Double.NaN);
+		switch(fieldIndex) {
+		case 12: return(t.sellerId);
+		case 13: return(t.sellerAge);
+		case 14: return(t.sellerMonthlyPreTaxIncome);
+		case 15: return(t.sellerMonthlyEmploymentIncome);
+		case 16: return(t.sellerBankBalance);
+		default: return(t.sellerCapGainCoeff);
+		}
+	}
+
+	int group(Transaction t) {
+		switch(by) {
+		case month: return(t.time);
+		case quality: return(t.houseQuality - t.houseQuality % band);
+		case type: return(t.isSale ? 1 : 0);
+		default: return(0);
+		}
+	}
+
+	String groupName(int key) {
+		switch(by) {
+		case quality: return(band == 1 ? Integer.toString(key) : key+"-"+(key+band-1));
+		case type: return(key == 1 ? "sale" : "rental");
+		case none: return("all");
+		default: return(Integer.toString(key));
+		}
+	}
+
+	/*** Add a transaction that has passed the filters to a result */
+	void add(Transaction t, Result result) {
+		if(list) {
+			result.rows.add(t);
+		} else {
+			result.add(group(t), value(t));
+		}
+	}
+
+	void print(Result result, PrintStream out) {
+		if(list) {
+			out.println(Transaction.CSV_HEADER);
+			for(Transaction t : result.rows) out.println(t.toCSV());
+		} else {
+			printSummary(result, by == Grouping.none ? "Group" : by.toString(), out);
+		}
+	}
+
+	void printSummary(Result result, String groupHeader, PrintStream out) {
+		out.println(groupHeader+", Count, Mean, Min, Max");
+		for(Map.Entry<Integer, Stats> group : result.groups.entrySet()) {
+			Stats stats = group.getValue();
+			out.println(groupName(group.getKey())+", "+stats.n+", "+stats.getMean()+", "+stats.min+", "+stats.max);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// Transaction archives
+	/////////////////////////////////////////////////////////////////////////
+
+	int [] selectMonths(int [] months) {
+		int n = 0;
+		for(int month : months) {
+			if(month >= firstMonth && month <= lastMonth) months[n++] = month;
+		}
+		return(Arrays.copyOf(months, n));
+	}
+
+	/*** Reads the months from..to-1 of the selected months of an archive */
+	class ArchiveTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 4629108341870265601L;
+
+		ArchiveTask(TransactionArchive archive, int [] months) {
+			this(archive, months, 0, months.length);
+		}
+
+		ArchiveTask(TransactionArchive archive, int [] months, int from, int to) {
+			this.archive = archive;
+			this.months = months;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if(to - from > 1) {
+				int mid = (from + to)/2;
+				ArchiveTask left = new ArchiveTask(archive, months, from, mid);
+				left.fork();
+				Result result = new ArchiveTask(archive, months, mid, to).compute();
+				return(left.join().merge(result));
+			}
+			Result result = new Result();
+			if(to == from) return(result);
+			try {
+				for(Transaction t : archive.read(months[from])) {
+					if(matchesHouse(t) && matchesRest(t)) add(t, result);
+				}
+			} catch (IOException e) {
+				throw(new IllegalArgumentException(e.getMessage(), e));
+			}
+			return(result);
+		}
+
+		TransactionArchive	archive;
+		int []				months;
+		int					from;
+		int					to;
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// Transactions .csv
+	/////////////////////////////////////////////////////////////////////////
+
+	/***
+	 * @return the offset of the first line at or after offset
+	 */
+	static long nextLine(FileChannel channel, long offset, long dataStart) throws IOException {
+		if(offset <= dataStart) return(dataStart);
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE);
+		long position = offset - 1; // a line starts at offset if the previous byte ends a line
+		while(true) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if(n <= 0) return(channel.size());
+			for(int i=0; i<n; ++i) {
+				if(buffer.get(i) == '\n') return(position + i + 1);
+			}
+			position += n;
+		}
+	}
+
+	/***
+	 * @return the offset of the first line of the first month at or after month, by
+	 * bisection over the file (the rows are in order of time)
+	 */
+	static long findMonth(FileChannel channel, long dataStart, int month) throws IOException {
+		long size = channel.size();
+		long lo = dataStart;
+		long hi = size;
+		while(lo < hi) {
+			long mid = lo + (hi - lo)/2;
+			long line = nextLine(channel, mid, dataStart);
+			if(line >= size || lineMonth(channel, line) >= month) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return(nextLine(channel, lo, dataStart));
+	}
+
+	static int lineMonth(FileChannel channel, long line) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		channel.read(buffer, line);
+		buffer.flip();
+		return(new CsvLine(buffer, 0, buffer.limit()).nextInt());
+	}
+
+	/*** Reads chunks from..to-1 of the bytes start..end-1 of a transactions .csv */
+	class CsvTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = -2785936028871404413L;
+
+		CsvTask(FileChannel channel, long start, long end, int from, int to) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if(to - from > 1) {
+				int mid = (from + to)/2;
+				CsvTask left = new CsvTask(channel, start, end, from, mid);
+				left.fork();
+				Result result = new CsvTask(channel, start, end, mid, to).compute();
+				return(left.join().merge(result));
+			}
+			Result result = new Result();
+			if(to == from) return(result);
+			try {
+				readChunk(start + (long)from*CHUNK_BYTES, Math.min(end, start + (long)to*CHUNK_BYTES), result);
+			} catch (IOException e) {
+				throw(new IllegalArgumentException(e.getMessage(), e));
+			}
+			return(result);
+		}
+
+		/***
+		 * Read the lines that start between chunkStart and chunkEnd
+		 */
+		void readChunk(long chunkStart, long chunkEnd, Result result) throws IOException {
+			long mapStart = (chunkStart > start ? chunkStart - 1 : chunkStart); // from the end of the previous line, if any
+			long mapEnd = Math.min(channel.size(), chunkEnd + MAX_LINE);
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+			int limit = (int)(chunkEnd - mapStart);
+			int p = (int)(chunkStart - mapStart);
+			if(p > 0 && data.get(p-1) != '\n') { // skip the end of a line that started in the previous chunk
+				while(p < limit && data.get(p) != '\n') ++p;
+				++p;
+			}
+			CsvLine line = new CsvLine(data, 0, 0);
+			while(p < limit) {
+				int lineEnd = p;
+				while(lineEnd < data.limit() && data.get(lineEnd) != '\n') ++lineEnd;
+				if(lineEnd == data.limit() && mapEnd < channel.size()) throw(new IOException("line longer than "+MAX_LINE+" characters at "+(mapStart + p)));
+				line.reset(p, lineEnd);
+				Transaction t = new Transaction();
+				if(line.parseHouse(t) && matchesHouse(t)) {
+					line.parseRest(t);
+					if(matchesRest(t)) add(t, result);
+				}
+				p = lineEnd + 1;
+			}
+		}
+
+		FileChannel	channel;
+		long		start;
+		long		end;
+		int			from;
+		int			to;
+	}
+
+	/***
+	 * Parses a line of a transactions .csv (see Transaction.toCSV) straight from the bytes of the file.
+	 */
+	static class CsvLine {
+		CsvLine(ByteBuffer data, int start, int end) {
+			this.data = data;
+			reset(start, end);
+		}
+
+		void reset(int start, int end) {
+			p = start;
+			this.end = end;
+		}
+
+		/*** Read the time, type, house and quality. @return false for a blank line */
+		boolean parseHouse(Transaction t) {
+			if(p == end || (p == end - 1 && data.get(p) == '\r')) return(false);
+			t.time = nextInt();
+			t.isSale = (data.get(p) == 's');
+			skipField();
+			t.houseId = nextInt();
+			t.houseQuality = nextInt();
+			return(true);
+		}
+
+		void parseRest(Transaction t) {
+			t.initialListedPrice = nextDouble();
+			t.timeFirstOffered = nextInt();
+			t.price = nextDouble();
+			t.buyerId = nextInt();
+			t.buyerAge = nextDouble();
+			t.buyerHasBTLGene = nextBoolean();
+			t.buyerMonthlyPreTaxIncome = nextDouble();
+			t.buyerMonthlyEmploymentIncome = nextDouble();
+			t.buyerBankBalance = nextDouble();
+			t.buyerCapGainCoeff = nextDouble();
+			t.hasMortgage = !isNoValue(); // no mortgage is written as "-1", a downpayment as a double
+			t.mortgageDownpayment = nextDouble();
+			t.firstTimeBuyerMortgage = nextBoolean();
+			t.buyToLetMortgage = nextBoolean();
+			t.sellerIsHousehold = !isNoValue();
+			if(!t.sellerIsHousehold) {
+				t.clearSeller();
+				return;
+			}
+			t.sellerId = nextInt();
+			t.sellerAge = nextDouble();
+			t.sellerHasBTLGene = nextBoolean();
+			t.sellerMonthlyPreTaxIncome = nextDouble();
+			t.sellerMonthlyEmploymentIncome = nextDouble();
+			t.sellerBankBalance = nextDouble();
+			t.sellerCapGainCoeff = nextDouble();
+		}
+
+		/*** @return true if the next field is "-1" */
+		boolean isNoValue() {
+			return(p + 2 <= end && data.get(p) == '-' && data.get(p+1) == '1' && (p + 2 == end || isSeparator(data.get(p+2))));
+		}
+
+		int nextInt() {
+			boolean negative = (data.get(p) == '-');
+			if(negative) ++p;
+			int x = 0;
+			byte c;
+			while(p < end && (c = data.get(p)) >= '0' && c <= '9') {
+				x = 10*x + (c - '0');
+				++p;
+			}
+			skipSeparator();
+			return(negative ? -x : x);
+		}
+
+		double nextDouble() {
+			int n = 0;
+			while(p < end && !isSeparator(data.get(p))) chars[n++] = (char)data.get(p++);
+			skipSeparator();
+			return(Double.parseDouble(new String(chars, 0, n)));
+		}
+
+		boolean nextBoolean() {
+			boolean x = (data.get(p) == 't');
+			skipField();
+			return(x);
+		}
+
+		void skipField() {
+			while(p < end && !isSeparator(data.get(p))) ++p;
+			skipSeparator();
+		}
+
+		void skipSeparator() {
+			while(p < end && isSeparator(data.get(p))) ++p;
+		}
+
+		static boolean isSeparator(byte c) {
+			return(c == ',' || c == ' ' || c == '\r');
+		}
+
+		ByteBuffer	data;
+		int			p;
+		int			end;
+		char []		chars = new char[64];
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// output-N.csv
+	/////////////////////////////////////////////////////////////////////////
+
+	/***
+	 * Summarise (or list) the field of an output-N.csv over the selected months.
+	 */
+	void queryOutputFile(File file, PrintStream out) throws IOException {
+		if(by != Grouping.none && by != Grouping.month) throw(new IllegalArgumentException("output files can only be grouped by month"));
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String header = in.readLine();
+			String [] columns = header.split(",");
+			int column = -1;
+			for(int i=0; i<columns.length; ++i) {
+				if(columns[i].trim().equals(field)) column = i;
+			}
+			if(column < 0 && !list) throw(new IllegalArgumentException("no column "+field+" in "+file));
+			if(list) out.println(header);
+			Result result = new Result();
+			String line;
+			while((line = in.readLine()) != null) {
+				String [] values = line.split(",");
+				int month = Integer.parseInt(values[0].trim());
+				if(month < firstMonth || month > lastMonth) continue;
+				if(list) {
+					out.println(line);
+				} else {
+					result.add(by == Grouping.month ? month : 0, Double.parseDouble(values[column].trim()));
+				}
+			}
+			if(!list) printSummary(result, by == Grouping.none ? "Group" : "month", out);
+		} finally {
+			in.close();
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// Results
+	/////////////////////////////////////////////////////////////////////////
+
+	/*** Summary statistics of a group */
+	static class Stats {
+		void add(double x) {
+			++n;
+			sum += x;
+			if(x < min) min = x;
+			if(x > max) max = x;
+		}
+
+		void add(Stats other) {
+			n += other.n;
+			sum += other.sum;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+
+		double getMean() {
+			return(n == 0 ? Double.NaN : sum/n);
+		}
+
+		long	n;
+		double	sum;
+		double	min = Double.POSITIVE_INFINITY;
+		double	max = Double.NEGATIVE_INFINITY;
+	}
+
+	/*** The result of a query on part of a file */
+	static class Result {
+		void add(int group, double x) {
+			Stats stats = groups.get(group);
+			if(stats == null) {
+				stats = new Stats();
+				groups.put(group, stats);
+			}
+			if(!Double.isNaN(x)) stats.add(x);
+		}
+
+		/*** Add the result of a later part of the file to this one. @return this */
+		Result merge(Result later) {
+			for(Map.Entry<Integer, Stats> group : later.groups.entrySet()) {
+				Stats stats = groups.get(group.getKey());
+				if(stats == null) {
+					groups.put(group.getKey(), group.getValue());
+				} else {
+					stats.add(group.getValue());
+				}
+			}
+			rows.addAll(later.rows);
+			return(this);
+		}
+
+		TreeMap<Integer, Stats>	groups = new TreeMap<>();
+		ArrayList<Transaction>	rows = new ArrayList<>();
+	}
+
+	// --- filters
+	int			firstMonth = Integer.MIN_VALUE;
+	int			lastMonth = Integer.MAX_VALUE;
+	int			minQuality = Integer.MIN_VALUE;
+	int			maxQuality = Integer.MAX_VALUE;
+	Boolean		sale;				// null for any of the following
+	Integer		houseId;
+	Integer		buyerId;
+	Integer		sellerId;
+	Boolean		firstTimeBuyer;
+	Boolean		buyToLet;
+	Boolean		investor;
+	// --- result
+	String		field = "transactionPrice";
+	int			fieldIndex;
+	Grouping	by = Grouping.none;
+	int			band = 1;
+	boolean		list;
+}
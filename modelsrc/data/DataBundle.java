@@ -0,0 +1,234 @@
+package data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+import housing.House;
+import utilities.BinnedData;
+import utilities.BinnedDataDouble;
+import utilities.Pdf;
+
+/***
+ * Pre-compiled binary form of the calibration data that is otherwise parsed
+ * from .csv files and integrated at class-load time (income given age, the
+ * static age distribution and the reference prices for each house quality).
+ *
+ * The bundle is built by running this class:
+ *
+ *   java data.DataBundle
+ *
+ * which writes FILENAME. At run time the file is memory-mapped and each
+ * section is only decoded when it is first asked for. The header records
+ * the CRC32 of each source .csv file and the Pdf table resolution: if any
+ * of these has changed, or the file doesn't exist, the bundle is ignored
+ * and the data is loaded from the .csv files as before.
+ *
+ * File format (big-endian):
+ *   int MAGIC, int VERSION, int Pdf.DEFAULT_CDF_SAMPLES,
+ *   long CRC32 of each file in SOURCES,
+ *   int offset of each section in Section order,
+ *   sections...
+ */
+public class DataBundle {
+	public static final String	FILENAME = "modelsrc/data/DataBundle.bin";
+	public static final String	INCOME_GIVEN_AGE = "modelsrc/data/IncomeGivenAge.csv";
+	public static final String	AGE_MARGINAL = "modelsrc/data/AgeMarginalPDFstatic.csv";
+	static final String []		SOURCES = {INCOME_GIVEN_AGE, AGE_MARGINAL};
+	static final int			MAGIC = 0x48534e47; // "HSNG"
+	static final int			VERSION = 1;
+
+	enum Section {
+		INCOME_GIVEN_AGE,	// BinnedData<Pdf> of ln(income) given age
+		AGE_MARGINAL,		// Pdf of age
+		REF_PRICE			// lognormal parameters, int N_QUALITY, reference prices
+	}
+
+	/***
+	 * Build the bundle from the source .csv files
+	 */
+	public static void main(String[] args) {
+		String filename = (args.length > 0 ? args[0] : FILENAME);
+		try {
+			write(filename);
+			System.out.println("Wrote data bundle to "+filename);
+		} catch (IOException e) {
+			System.out.println("Problem writing data bundle to "+filename);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/***
+	 * @return the bundle, or null if there is no up-to-date bundle
+	 */
+	public static DataBundle get() {
+		return(Holder.bundle);
+	}
+
+	/** Loads the bundle on first use */
+	static class Holder {
+		static final DataBundle bundle = open(FILENAME);
+	}
+
+	/***
+	 * Memory-map a bundle and check that it is up-to-date.
+	 * @return the bundle or null if it doesn't exist or is stale
+	 */
+	static DataBundle open(String filename) {
+		File file = new File(filename);
+		if(!file.isFile()) return(null);
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			MappedByteBuffer buffer;
+			try {
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			} finally {
+				raf.close();
+			}
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != Pdf.DEFAULT_CDF_SAMPLES) {
+				return(null);
+			}
+			for(String source : SOURCES) {
+				if(buffer.getLong() != crc(source)) return(null);
+			}
+			int [] offsets = new int[Section.values().length];
+			for(int i=0; i<offsets.length; ++i) offsets[i] = buffer.getInt();
+			return(new DataBundle(buffer, offsets));
+		} catch (IOException e) {
+			System.out.println("Problem reading data bundle "+filename+": loading from .csv files");
+			return(null);
+		}
+	}
+
+	DataBundle(ByteBuffer buffer, int [] offsets) {
+		this.buffer = buffer;
+		this.offsets = offsets;
+	}
+
+	/***
+	 * @return probability density of ln(income) given age
+	 */
+	public BinnedData<Pdf> incomeGivenAge() {
+		ByteBuffer in = section(Section.INCOME_GIVEN_AGE);
+		BinnedData<Pdf> data = new BinnedData<Pdf>(in.getDouble(), in.getDouble());
+		int n = in.getInt();
+		for(int i=0; i<n; ++i) {
+			data.add(readPdf(in));
+		}
+		return(data);
+	}
+
+	/***
+	 * @return probability density of age of the representative householder
+	 */
+	public Pdf ageMarginal() {
+		return(readPdf(section(Section.AGE_MARGINAL)));
+	}
+
+	/***
+	 * @return reference price for each house quality, or null if the
+	 * bundle was built with different price parameters or number of qualities
+	 */
+	public double [] refPrice() {
+		ByteBuffer in = section(Section.REF_PRICE);
+		if(in.getDouble() != HouseSaleMarket.INITIAL_HPI || in.getDouble() != HouseSaleMarket.HPI_LOG_MEDIAN ||
+				in.getDouble() != HouseSaleMarket.HPI_SHAPE || in.getInt() != House.Config.N_QUALITY) {
+			return(null);
+		}
+		double [] result = new double[House.Config.N_QUALITY];
+		in.asDoubleBuffer().get(result);
+		return(result);
+	}
+
+	ByteBuffer section(Section s) {
+		ByteBuffer in = buffer.duplicate();
+		in.position(offsets[s.ordinal()]);
+		return(in);
+	}
+
+	/***
+	 * Format: double firstBinMin, double binWidth, int nBins, double[nBins] bins,
+	 * int nSamples, double[nSamples] inverseCDF
+	 */
+	static Pdf readPdf(ByteBuffer in) {
+		BinnedDataDouble bins = new BinnedDataDouble(in.getDouble(), in.getDouble());
+		int n = in.getInt();
+		for(int i=0; i<n; ++i) bins.add(in.getDouble());
+		double [] inverseCDF = new double[in.getInt()];
+		in.asDoubleBuffer().get(inverseCDF);
+		in.position(in.position() + 8*inverseCDF.length);
+		return(new Pdf(bins, inverseCDF));
+	}
+
+	static void writePdf(ByteBuffer out, BinnedDataDouble bins) {
+		Pdf pdf = new Pdf(bins);
+		out.putDouble(bins.getSupportLowerBound());
+		out.putDouble(bins.getBinWidth());
+		out.putInt(bins.size());
+		for(double x : bins) out.putDouble(x);
+		out.putInt(pdf.getInverseCDF().length);
+		for(double x : pdf.getInverseCDF()) out.putDouble(x);
+	}
+
+	static void write(String filename) throws IOException {
+		BinnedData<BinnedDataDouble> income = Lifecycle.loadIncomeDataGivenAge();
+		BinnedDataDouble age = new BinnedDataDouble(AGE_MARGINAL);
+		double [] refPrice = HouseSaleMarket.setupRefPrice();
+		int nPdfs = income.size() + 1;
+		int maxBins = age.size();
+		for(BinnedDataDouble d : income) maxBins = Math.max(maxBins, d.size());
+		ByteBuffer out = ByteBuffer.allocate(1024 + nPdfs*(64 + 8*(maxBins + Pdf.DEFAULT_CDF_SAMPLES)) + 8*refPrice.length);
+
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putInt(Pdf.DEFAULT_CDF_SAMPLES);
+		for(String source : SOURCES) out.putLong(crc(source));
+		int offsetTable = out.position();
+		int [] offsets = new int[Section.values().length];
+		out.position(offsetTable + 4*offsets.length);
+
+		offsets[Section.INCOME_GIVEN_AGE.ordinal()] = out.position();
+		out.putDouble(income.getSupportLowerBound());
+		out.putDouble(income.getBinWidth());
+		out.putInt(income.size());
+		for(BinnedDataDouble d : income) writePdf(out, d);
+
+		offsets[Section.AGE_MARGINAL.ordinal()] = out.position();
+		writePdf(out, age);
+
+		offsets[Section.REF_PRICE.ordinal()] = out.position();
+		out.putDouble(HouseSaleMarket.INITIAL_HPI);
+		out.putDouble(HouseSaleMarket.HPI_LOG_MEDIAN);
+		out.putDouble(HouseSaleMarket.HPI_SHAPE);
+		out.putInt(refPrice.length);
+		for(double p : refPrice) out.putDouble(p);
+
+		int end = out.position();
+		out.position(offsetTable);
+		for(int offset : offsets) out.putInt(offset);
+
+		FileOutputStream file = new FileOutputStream(filename);
+		try {
+			file.write(out.array(), 0, end);
+		} finally {
+			file.close();
+		}
+	}
+
+	static long crc(String filename) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(Files.readAllBytes(Paths.get(filename)));
+		return(crc.getValue());
+	}
+
+	ByteBuffer	buffer;		// the mapped file
+	int []		offsets;	// start of each section
+}
@@ -15,7 +15,13 @@ public class Demographics {
 	 * at time t=0
 	 * Calibrated against (LCFS 2012)
 	 */
-	public static Pdf pdfAge = new Pdf("modelsrc/data/AgeMarginalPDFstatic.csv");
+	public static Pdf pdfAge = loadPdfAge();
+	
+	static Pdf loadPdfAge() {
+		DataBundle bundle = DataBundle.get();
+		if(bundle != null) return(bundle.ageMarginal());
+		return(new Pdf(DataBundle.AGE_MARGINAL));
+	}
 
 	/**
 	 * Probability density by age of the representative householder given that
@@ -19,7 +19,7 @@ public class HouseSaleMarket {
 //	public static LogNormalDistribution buyToLetDistribution  = new LogNormalDistribution(Math.log(3.44), 1.050); // No. of houses owned by buy-to-let investors Source: ARLA review and index Q2 2014
 //	public static double P_INVESTOR = 0.04; 		// Prior probability of being (wanting to be) a property investor (should be 4%, 3% for stability for now)
 //	public static double SEASONAL_VOL_ADJ = 0.2; // amplitude of seasonal oscillation of volume of sales on market (approximated from HM Revenue and Customs UK Property Transactions Count - July 2015)
-	public static double [] refPrice = setupRefPrice();
+	public static double [] refPrice = loadRefPrice();
 
 	/***
 	 * @param quality Quality of a house for sale
@@ -29,6 +29,16 @@ public class HouseSaleMarket {
 		return(refPrice[quality]);
 	}
 
+	/**
+	 * @return Initial reference prices from the data bundle if it is up-to-date, otherwise from setupRefPrice()
+	 */
+	static double [] loadRefPrice() {
+		DataBundle bundle = DataBundle.get();
+		double [] result = (bundle == null ? null : bundle.refPrice());
+		if(result == null) result = setupRefPrice();
+		return(result);
+	}
+
 	/**
 	 * @return Set up initial reference prices for each house quality
      */
@@ -14,14 +14,32 @@ import utilities.Pdf;
 
 public class Lifecycle {
 	
+	/***
+	 * @return probability density of ln(income) given age, from the data bundle
+	 * if it is up-to-date, otherwise from IncomeGivenAge.csv
+	 */
 	static BinnedData<Pdf> loadIncomePDFGivenAge() {
+		DataBundle bundle = DataBundle.get();
+		if(bundle != null) return(bundle.incomeGivenAge());
+		BinnedData<BinnedDataDouble> pdfData = loadIncomeDataGivenAge();
+		BinnedData<Pdf> data = new BinnedData<Pdf>(pdfData.getSupportLowerBound(), pdfData.getBinWidth());
+		for(BinnedDataDouble d : pdfData) {
+			data.add(new Pdf(d));
+		}
+		return(data);
+	}
+	
+	/***
+	 * Parse IncomeGivenAge.csv
+	 * @return binned probability of ln(income), binned by age
+	 */
+	static BinnedData<BinnedDataDouble> loadIncomeDataGivenAge() {
 		final int givenMinCol = 0;
 		final int givenMaxCol = 1;
 		final int varMinCol = 2;
 		final int varMaxCol = 3;
 		final int probCol = 4;
-		BinnedData<Pdf> data = new BinnedData<Pdf>(0.0, 0.0);
-		BinnedData<BinnedDataDouble> pdfData = new BinnedData<>(0.0,0.0);
+		BinnedData<BinnedDataDouble> data = new BinnedData<>(0.0,0.0);
 		BinnedDataDouble pdf;
 		double pdfBinMin;
 		double pdfBinWidth;
@@ -30,7 +48,7 @@ public class Lifecycle {
 		
 		Iterator<CSVRecord> records;
 		try {
-			Reader in = new FileReader("modelsrc/data/IncomeGivenAge.csv");
+			Reader in = new FileReader(DataBundle.INCOME_GIVEN_AGE);
 			records = CSVFormat.EXCEL.withHeader().parse(in).iterator();
 			CSVRecord record;
 			if(records.hasNext()) {
@@ -40,7 +58,7 @@ public class Lifecycle {
 			    pdfBinMin = Double.valueOf(record.get(varMinCol));
 			    pdfBinWidth = Double.valueOf(record.get(varMaxCol)) - pdfBinMin;
 			    pdf = new BinnedDataDouble(pdfBinMin, pdfBinWidth);
-			    pdfData.add(pdf);
+			    data.add(pdf);
 			    pdf.add(Double.valueOf(record.get(probCol)));
 			
 			    lastBinMin = data.getSupportLowerBound();
@@ -48,14 +66,11 @@ public class Lifecycle {
 			    	record = records.next();
 			    	if(Double.valueOf(record.get(givenMinCol)) != lastBinMin) {
 					    pdf = new BinnedDataDouble(pdfBinMin, pdfBinWidth);
-					    pdfData.add(pdf);
+					    data.add(pdf);
 					    lastBinMin = Double.valueOf(record.get(givenMinCol));
 			    	}
 		    		pdf.add(Double.valueOf(record.get(probCol)));
 			    }
-				for(BinnedDataDouble d : pdfData) {
-					data.add(new Pdf(d));
-				}
 			}
 		} catch (IOException e) {
 			System.out.println("Error loading data for income given age in data.Lifecycle");
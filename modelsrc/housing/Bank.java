@@ -1,7 +1,6 @@
 package housing;
 
 import java.io.Serializable;
-import java.util.HashSet;
 
 /*************************************************
  * This class represents a mortgage-lender (i.e. a bank or building society).
@@ -30,7 +29,7 @@ public class Bank implements Serializable {
 	 * pre-computed values.
 	 ********************************/
 	public Bank() {
-		mortgages = new HashSet<>();
+		mortgages = new MortgageLedger();
 		init();
 	}
 	
@@ -139,13 +138,13 @@ public class Bank implements Serializable {
 	 * @param isHome true if 'h' plans to live in the house.
 	 * @return The MortgageApproval object, or NULL if the mortgage is declined
 	 ****************************/
-	public MortgageAgreement requestLoan(Household h, double housePrice, double desiredDownPayment, boolean isHome, House house) {
-		MortgageAgreement approval = requestApproval(h, housePrice, desiredDownPayment, isHome);
+	public MortgageAgreement requestLoan(Household h, double housePrice, double desiredDownPayment, boolean isHome, int house) {
+		MortgageAgreement approval = approve(new MortgageAgreement(h, !isHome), h, housePrice, desiredDownPayment, isHome);
 		if(approval == null) return(null);
 		// --- if all's well, go ahead and arrange mortgage
 		supplyVal += approval.principal;
 		if(approval.principal > 0.0) {
-			mortgages.add(approval);
+			mortgages.add(approval, h);
 			Model.collectors.creditSupply.recordLoan(h, approval, house);
 			++nLoans;
 			if(isHome) {
@@ -161,6 +160,18 @@ public class Bank implements Serializable {
 	}
 	
 	
+	/***
+	 * Make this month's payments on all mortgages, in bulk. Each payment is
+	 * added to its borrower's mortgagePayments, to be paid out of the borrower's
+	 * income when it steps.
+	 */
+	public void collectMortgagePayments() {
+		mortgages.makeMonthlyPayments();
+	}
+
+	/***
+	 * Take a mortgage off the books (when paid off, or given up by the borrower)
+	 */
 	public void endMortgageContract(MortgageAgreement mortgage) {
 		mortgages.remove(mortgage);
 	}
@@ -170,13 +181,30 @@ public class Bank implements Serializable {
 	 * This is useful if you want to inspect the details of the mortgage contract before
 	 * deciding whether to actually go ahead and sign.
 	 * 
+	 * If Model.POOL_RECORDS is set, the bank re-uses the same MortgageAgreement
+	 * for every approval, so the result is only valid until the next call.
+	 * 
 	 * @param h 			The household that is requesting the approval.
 	 * @param housePrice 	The price of the house that 'h' wants to buy
 	 * @param isHome 		does 'h' plan to live in the house?
 	 * @return A MortgageApproval object, or NULL if the mortgage is declined
 	 */
 	public MortgageAgreement requestApproval(Household h, double housePrice, double desiredDownPayment, boolean isHome) {
-		MortgageAgreement approval = new MortgageAgreement(h, !isHome);
+		MortgageAgreement approval;
+		if(Model.POOL_RECORDS && probe != null) {
+			approval = probe;
+			approval.reset(h, !isHome);
+		} else {
+			approval = new MortgageAgreement(h, !isHome);
+			if(Model.POOL_RECORDS) probe = approval;
+		}
+		return(approve(approval, h, housePrice, desiredDownPayment, isHome));
+	}
+
+	/***
+	 * Fill in the terms of an approval (see requestApproval())
+	 */
+	private MortgageAgreement approve(MortgageAgreement approval, Household h, double housePrice, double desiredDownPayment, boolean isHome) {
 		double r = getMortgageInterestRate()/12.0; // monthly interest rate
 		double lti_principal, affordable_principal, icr_principal;
 		double liquidWealth = h.bankBalance;
@@ -310,7 +338,7 @@ public class Bank implements Serializable {
 		return(BTL_STRESSED_INTEREST);
 	}
 	
-	public HashSet<MortgageAgreement>		mortgages;	// all unpaid mortgage contracts supplied by the bank
+	public MortgageLedger	mortgages;		// all mortgage contracts supplied by the bank and not yet paid off
 	public double 		k; 				// principal to monthly payment factor
 	public double		interestSpread;	// current mortgage interest spread above base rate (monthly rate*12)
 	public double		baseRate;
@@ -323,5 +351,6 @@ public class Bank implements Serializable {
 	public int			nOverLTICapLoans; 	// number of (non-BTL) loans above LTI cap this step
 	public int			nOverLTVCapLoans;	// number of (non-BTL) loans above LTV cap this step
 	public int			nLoans; 			// total number of non-BTL loans this step
+	MortgageAgreement	probe;				// approval re-used by requestApproval() when pooling records
 	
 }
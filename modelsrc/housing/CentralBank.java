@@ -1,10 +1,23 @@
 package housing;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class CentralBank implements Serializable {
 	private static final long serialVersionUID = -2857716547766065142L;
 
+	/***
+	 * The policy rule of the central bank (see PolicyRule). Set at most one of these;
+	 * if neither is set, the limits stay at their initial values (unless step() is edited).
+	 */
+	static public class Config {
+		public static String POLICY_CLASS = "";	// name of a class that implements PolicyRule
+		public static String POLICY_SCRIPT = ""; // a PolicyScript, or "@filename" to read it from a file
+	}
+
 	public CentralBank() {
 		// Setup initial values
 		firstTimeBuyerLTVLimit = 0.95;
@@ -19,10 +32,42 @@ public class CentralBank implements Serializable {
 		proportionOverLTVLimit= 0.0;
 		
 		interestCoverRatioLimit = 1.25;
+		
+		policy = loadPolicy();
+	}
+
+	/***
+	 * @return the policy rule given in Config (or null if there isn't one)
+	 * @throws IllegalArgumentException if the rule can't be loaded
+	 */
+	public static PolicyRule loadPolicy() {
+		if(!Config.POLICY_CLASS.equals("")) {
+			if(!Config.POLICY_SCRIPT.equals("")) {
+				throw(new IllegalArgumentException("Set only one of CentralBank.Config.POLICY_CLASS and POLICY_SCRIPT"));
+			}
+			try {
+				return((PolicyRule)Class.forName(Config.POLICY_CLASS).getDeclaredConstructor().newInstance());
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw(new IllegalArgumentException("Can't load policy rule "+Config.POLICY_CLASS+": "+e));
+			}
+		}
+		if(!Config.POLICY_SCRIPT.equals("")) {
+			String script = Config.POLICY_SCRIPT;
+			if(script.startsWith("@")) {
+				try {
+					script = new String(Files.readAllBytes(Paths.get(script.substring(1))), StandardCharsets.UTF_8);
+				} catch (IOException e) {
+					throw(new IllegalArgumentException("Can't read policy script "+script.substring(1)+": "+e));
+				}
+			}
+			return(PolicyScript.compile(script));
+		}
+		return(null);
 	}
 	
 	/***
-	 * This method implements the policy strategy of the Central Bank.
+	 * This method implements the policy strategy of the Central Bank, by
+	 * applying its policy rule if it has one (see Config).
 	 * @param coreIndicators The current value of the core indicators
 	 */
 	public void step(CoreIndicators coreIndicators) {
@@ -45,7 +90,25 @@ public class CentralBank implements Serializable {
 
 		// Include the policy strategy code here:
 
+		
+		if(policy != null) {
+			if(!coreIndicators.isActive()) {
+				System.out.println("Policy rule needs the core indicators: switching them on");
+				coreIndicators.setActive(true);
+			}
+			policy.apply(this, Model.bank, coreIndicators);
+		}
+	}
+
+	/***
+	 * Change the policy rule (null for none), e.g. between the runs of a policy sweep.
+	 */
+	public void setPolicy(PolicyRule rule) {
+		policy = rule;
+	}
 
+	public PolicyRule getPolicy() {
+		return(policy);
 	}
 	
 	public double loanToIncomeRegulation(boolean firstTimeBuyer) {
@@ -78,4 +141,5 @@ public class CentralBank implements Serializable {
 	public double proportionOverLTILimit;	// proportion of mortgages that are allowed to be above the respective LTI limit
 	public double proportionOverLTVLimit;	// proportion of mortgages that are allowed to be above the respective LTV limit
 	public double interestCoverRatioLimit;
+	transient PolicyRule policy;			// rule that sets the limits each month (or null)
 }
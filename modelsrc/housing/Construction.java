@@ -1,16 +1,17 @@
 package housing;
 
 import java.io.Serializable;
-import java.util.HashSet;
 
 
 public class Construction implements IHouseOwner, Serializable {
 	private static final long serialVersionUID = -6288390048595500248L;
 
+	public static double NEW_BUILD_PRICE_DECAY = 0.95; // monthly factor by which the list price of an unsold new build is reduced
+
 	public Construction() {
 		housesPerHousehold = 82.0/100.0;
 		housingStock = 0;
-		onMarket = new HashSet<>();
+		houses = new HouseTable();
 //		for(j = 0; j<Nh; ++j) { // setup houses
 //			houses[j] = new House();
 //			houses[j].quality = (int)(House.Config.N_QUALITY*j*1.0/Nh); // roughly same number of houses in each quality band
@@ -19,7 +20,7 @@ public class Construction implements IHouseOwner, Serializable {
 	
 	public void init() {
 		housingStock = 0;
-		onMarket.clear();
+		houses.clear();
 	}
 	
 	public void step() {
@@ -30,19 +31,16 @@ public class Construction implements IHouseOwner, Serializable {
 			targetStock = (int)(Demographics.TARGET_POPULATION*housesPerHousehold);			
 		}
 		int shortFall = targetStock - housingStock;
-		House newBuild;
+		int newBuild;
 		double price;
-		for(House h : onMarket) {
-			Model.housingMarket.updateOffer(h.getSaleRecord(), h.getSaleRecord().getPrice()*0.95);
-		}
+		Model.housingMarket.decayOffers(); // reduce prices of unsold new builds
 		while(shortFall > 0) {
-			newBuild = new House();
-			newBuild.owner = this;
+			newBuild = houses.build();
+			houses.setOwner(newBuild, this);
 			++housingStock;
-			price = Model.housingMarket.referencePrice(newBuild.getQuality());
+			price = Model.housingMarket.referencePrice(houses.getQuality(newBuild));
 //			if(Model.rand.nextDouble() < 0.9) {
-			Model.housingMarket.offer(newBuild, price);
-			onMarket.add(newBuild);
+			Model.housingMarket.offer(newBuild, price, true);
 //			} else {
 //				Model.households.get(Model.rand.nextInt(Model.households.size())).inheritHouse(newBuild);
 //			}
@@ -58,11 +56,11 @@ public class Construction implements IHouseOwner, Serializable {
 
 	@Override
 	public void completeHouseSale(HouseSaleRecord sale) {
-		onMarket.remove(sale.house);
+		// nothing to do: the market has already taken the offer off, and the buyer becomes the owner
 	}
 
 	@Override
-	public void endOfLettingAgreement(House h, PaymentAgreement p) {
+	public void endOfLettingAgreement(int h, PaymentAgreement p) {
 		// TODO Auto-generated method stub
 
 	}
@@ -74,5 +72,5 @@ public class Construction implements IHouseOwner, Serializable {
 
 	public double housesPerHousehold; 	// target number of houses per household
 	public int housingStock;			// total number of houses built
-	HashSet<House> onMarket; 
+	public HouseTable houses;			// the housing stock
 }
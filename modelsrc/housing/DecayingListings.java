@@ -0,0 +1,249 @@
+package housing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import utilities.PriorityQueue2D;
+
+/**************************************************************************
+ * A group of offers on a housing market whose prices all fall by the same
+ * factor every month (e.g. unsold new builds, or buy-to-lets waiting for a
+ * tenant).
+ *
+ * Instead of storing its price, each offer in the group stores a key: its
+ * price divided by the group's current factor at the time it was listed.
+ * The price of an offer is its key times the group's factor, so reducing
+ * every price in the group is a single multiplication of the factor, and
+ * since the ordering of the keys doesn't change, the offers never need to
+ * be re-indexed. Only the ordering between this group and the rest of the
+ * market needs to be reconciled, which the market does when it looks for
+ * the best offer for a bid.
+ *
+ * If yields are needed (sale market), the group snapshots each quality's
+ * expected rental income when it steps, so that the yield of an offer is
+ * that snapshot divided by its current price, and keeps the offers of each
+ * quality sorted by price, since the cheapest offer of a quality has the
+ * highest yield.
+ *************************************************************************/
+public class DecayingListings implements Serializable {
+	private static final long serialVersionUID = 4458813071596290158L;
+
+	static final double MIN_FACTOR = 1e-100;	// rebase the keys when the factor gets this small
+
+	/***
+	 * @param decay monthly factor by which prices in the group fall
+	 * @param comparator ordering of offers in the market
+	 * @param trackYields whether to keep the group's offers indexed by yield
+	 * @param authority the market's authority to change prices
+	 */
+	public DecayingListings(double decay, PriorityQueue2D.XYComparator<HousingMarketRecord> comparator,
+			boolean trackYields, HousingMarket.Authority authority) {
+		this.decay = decay;
+		this.authority = authority;
+		offers = new PriorityQueue2D<>(comparator);
+		if(trackYields) {
+			yieldFactor = new double[House.Config.N_QUALITY];
+			cheapestFirst = new ArrayList<>(House.Config.N_QUALITY);
+			for(int q=0; q<House.Config.N_QUALITY; ++q) {
+				cheapestFirst.add(new TreeSet<HouseSaleRecord>(new KeyComparator()));
+			}
+		}
+		factor = 1.0;
+	}
+
+	public void clear() {
+		for(HousingMarketRecord offer : offers) {
+			detach((HouseSaleRecord)offer);
+		}
+		offers.clear();
+		if(cheapestFirst != null) {
+			for(TreeSet<HouseSaleRecord> set : cheapestFirst) set.clear();
+		}
+		keySum = 0.0;
+		factor = 1.0;
+	}
+
+	/***
+	 * Reduce the price of every offer in the group by one month's decay.
+	 */
+	public void step() {
+		factor *= decay;
+		if(factor < MIN_FACTOR) rebase();
+		if(yieldFactor != null) {
+			for(int q=0; q<House.Config.N_QUALITY; ++q) {
+				yieldFactor[q] = Model.rentalMarket.getExpectedGrossYield(q)*Model.housingMarket.getAverageSalePrice(q);
+			}
+		}
+	}
+
+	/***
+	 * Audit the group (see HousingMarket.checkConsistency)
+	 * @return true if its queue is consistent and it indexes each of its offers once
+	 */
+	public boolean checkConsistency() {
+		boolean ok = offers.checkConsistency();
+		for(HousingMarketRecord offer : offers) {
+			if(((HouseSaleRecord)offer).listings != this) {
+				System.out.println("Strange: decaying offer doesn't know its group");
+				ok = false;
+			}
+		}
+		if(cheapestFirst != null) {
+			int n = 0;
+			for(TreeSet<HouseSaleRecord> set : cheapestFirst) n += set.size();
+			if(n != offers.size()) {
+				System.out.println("Strange: "+n+" decaying offers are indexed by yield, but there are "+offers.size());
+				ok = false;
+			}
+		}
+		return(ok);
+	}
+
+	/***
+	 * Add an offer (whose price is already set) to the group
+	 */
+	public void add(HouseSaleRecord offer) {
+		double price = offer.getPrice();
+		offer.listings = this;
+		offer.setPrice(price, authority); // stores price/factor as the key
+		keySum += offer.getStoredPrice();
+		offers.add(offer);
+		if(cheapestFirst != null) cheapestFirst.get(offer.getQuality()).add(offer);
+	}
+
+	/***
+	 * Remove an offer from the group. Its price is fixed at its current value.
+	 */
+	public void remove(HouseSaleRecord offer) {
+		offers.remove(offer);
+		if(cheapestFirst != null) cheapestFirst.get(offer.getQuality()).remove(offer);
+		detach(offer);
+	}
+
+	/***
+	 * @param bound record whose price is the bid price divided by getFactor()
+	 * @return the best offer in the group whose price is not above the bid price,
+	 * in the ordering of the market
+	 */
+	public HouseSaleRecord peek(HousingMarketRecord bound) {
+		return((HouseSaleRecord)offers.peek(bound));
+	}
+
+	/***
+	 * @return the offer with the highest yield among those whose price is not
+	 * above the given price (needs trackYields)
+	 */
+	public HouseSaleRecord peekHighestYield(double price) {
+		HouseSaleRecord best = null;
+		HouseSaleRecord offer;
+		for(int q=0; q<House.Config.N_QUALITY; ++q) {
+			if(cheapestFirst.get(q).isEmpty()) continue;
+			offer = cheapestFirst.get(q).first();
+			if(offer.getPrice() <= price && (best == null || yieldComparator.YCompare(offer, best) == 1)) {
+				best = offer;
+			}
+		}
+		return(best);
+	}
+
+	/***
+	 * @return current yield of an offer in the group
+	 */
+	public double getYield(HouseSaleRecord offer) {
+		return(yieldFactor[offer.getQuality()]/offer.getPrice());
+	}
+
+	public boolean hasYields() {
+		return(yieldFactor != null);
+	}
+
+	/***
+	 * @return the factor that converts keys to prices
+	 */
+	public double getFactor() {
+		return(factor);
+	}
+
+	public int size() {
+		return(offers.size());
+	}
+
+	/***
+	 * @return the sum of the current prices of all offers in the group
+	 */
+	public double getTotalPrice() {
+		return(keySum*factor);
+	}
+
+	/***
+	 * @return iterator over the offers in the group in the market's Y-order.
+	 * Removing an offer through the iterator removes it from the group.
+	 */
+	public Iterator<HousingMarketRecord> iterator() {
+		final PriorityQueue2D<HousingMarketRecord>.Iter it = offers.iterator();
+		return(new Iterator<HousingMarketRecord>() {
+			@Override
+			public boolean hasNext() {
+				return(it.hasNext());
+			}
+			@Override
+			public HousingMarketRecord next() {
+				return(it.next());
+			}
+			@Override
+			public void remove() {
+				it.remove();
+				if(cheapestFirst != null) cheapestFirst.get(it.last.getQuality()).remove(it.last);
+				detach((HouseSaleRecord)it.last);
+			}
+		});
+	}
+
+	/***
+	 * Fix the price of an offer that is leaving the group
+	 */
+	private void detach(HouseSaleRecord offer) {
+		keySum -= offer.getStoredPrice();
+		if(offers.size() == 0) keySum = 0.0; // don't let rounding errors accumulate
+		double price = offer.getPrice();
+		offer.listings = null;
+		offer.setPrice(price, authority);
+	}
+
+	/***
+	 * Fold the factor into the keys, before it underflows. Scaling the keys doesn't
+	 * change their order, but the offers are re-inserted to be on the safe side.
+	 */
+	private void rebase() {
+		ArrayList<HouseSaleRecord> all = new ArrayList<>(offers.size());
+		for(HousingMarketRecord offer : offers) all.add((HouseSaleRecord)offer);
+		clear();
+		for(HouseSaleRecord offer : all) add(offer);
+	}
+
+	/***
+	 * Orders offers of the same quality by key, and then highest id first (the
+	 * offer with the highest yield first, with the same tie-break as PYComparator)
+	 */
+	static class KeyComparator implements Comparator<HouseSaleRecord>, Serializable {
+		private static final long serialVersionUID = -3365401922418000467L;
+		@Override
+		public int compare(HouseSaleRecord arg0, HouseSaleRecord arg1) {
+			int diff = Double.compare(arg0.getStoredPrice(), arg1.getStoredPrice());
+			if(diff == 0) diff = arg1.getId() - arg0.getId();
+			return(diff);
+		}
+	}
+
+	double								decay;			// monthly factor by which prices fall
+	double								factor;			// price = key*factor
+	PriorityQueue2D<HousingMarketRecord>	offers;			// offers, ordered by key
+	ArrayList<TreeSet<HouseSaleRecord>>	cheapestFirst;	// offers of each quality, cheapest first (if tracking yields)
+	double								keySum;			// sum of the keys of the offers in the group
+	double []							yieldFactor;	// expected gross yield times average sale price, by quality, when last stepped
+	HousingMarket.Authority				authority;
+	static final HousingMarketRecord.PYComparator yieldComparator = new HousingMarketRecord.PYComparator();
+}
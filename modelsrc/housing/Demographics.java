@@ -24,9 +24,9 @@ public class Demographics {
 	public void step() {
 		// --- birth
 		int nBirths;
-		if(SPINUP && Model.getTime() < spinupYears*12) {
+		if(SPINUP && Model.getTime() < Spinup.years*12) {
 			// --- still in spinup phase of simulation
-			nBirths = (int)(spinupBirthRatePerHousehold.getEntry((int)(Model.getTime()/12.0))*TARGET_POPULATION/12.0 + 0.5);
+			nBirths = (int)(Spinup.birthRatePerHousehold.getEntry((int)(Model.getTime()/12.0))*TARGET_POPULATION/12.0 + 0.5);
 			while(--nBirths >= 0) {
 				Model.households.add(new Household(data.Demographics.pdfSpinupHouseholdAgeAtBirth.nextDouble()));
 			}
@@ -42,13 +42,14 @@ public class Demographics {
 		double pDeath;
 		Iterator<Household> iterator = Model.households.iterator();
 //	    double pMult = 1.0;
-//	    if(Model.getTime() > spinupYears*12) pMult = Model.households.size()/TARGET_POPULATION;
+//	    if(Model.getTime() > Spinup.years*12) pMult = Model.households.size()/TARGET_POPULATION;
 		while(iterator.hasNext()) {
 		    Household h = iterator.next();
 		    pDeath = data.Demographics.probDeathGivenAge(h.lifecycle.age)/12.0;
 			if(Model.rand.nextDouble() < pDeath) {
 				// --- inheritance
 				iterator.remove();
+				Model.householdScheduler.cancel(h);
 				h.transferAllWealthTo(Model.households.get(Model.rand.nextInt(Model.households.size())));
 			}
 		}
@@ -59,22 +60,22 @@ public class Demographics {
 	 * of spinup period we hit the target population and age distribution
 	 */
 	public static RealVector spinupBirthRate() {
-		RealVector targetDemographic = new ArrayRealVector(spinupYears);
-		RealVector birthDist 		 = new ArrayRealVector(spinupYears);
-		RealMatrix M			 	 = new Array2DRowRealMatrix(spinupYears, spinupYears);
-		RealMatrix timeStep 		 = new Array2DRowRealMatrix(spinupYears, spinupYears);
+		RealVector targetDemographic = new ArrayRealVector(Spinup.years);
+		RealVector birthDist 		 = new ArrayRealVector(Spinup.years);
+		RealMatrix M			 	 = new Array2DRowRealMatrix(Spinup.years, Spinup.years);
+		RealMatrix timeStep 		 = new Array2DRowRealMatrix(Spinup.years, Spinup.years);
 		double baseAge	= data.Demographics.pdfSpinupHouseholdAgeAtBirth.getSupportLowerBound();
 		int i,j;
 		
 		// --- setup vectors
-		for(i=0; i<spinupYears; ++i) {
+		for(i=0; i<Spinup.years; ++i) {
 			birthDist.setEntry(i, data.Demographics.pdfSpinupHouseholdAgeAtBirth.density(baseAge+i));
 			targetDemographic.setEntry(i,data.Demographics.pdfAge.density(baseAge+i));
 		}
 		
 		// --- setup timestep matrix
-		for(i=0; i<spinupYears; ++i) {
-			for(j=0; j<spinupYears; ++j) {
+		for(i=0; i<Spinup.years; ++i) {
+			for(j=0; j<Spinup.years; ++j) {
 				if(i == j+1) {
 					timeStep.setEntry(i,j,1.0-data.Demographics.probDeathGivenAge(j + baseAge));
 				} else {
@@ -84,7 +85,7 @@ public class Demographics {
 		}
 		
 		// --- setup aged birth distribution matrix
-		for(i=0; i<spinupYears; ++i) {
+		for(i=0; i<Spinup.years; ++i) {
 			M.setColumnVector(i, birthDist);
 			birthDist = timeStep.operate(birthDist);
 		}
@@ -93,6 +94,12 @@ public class Demographics {
 		return(solver.solve(targetDemographic));
 	}
 	
-	public static int spinupYears = (int)Math.ceil(data.Demographics.pdfAge.getSupportUpperBound()-data.Demographics.pdfAge.getSupportLowerBound());			// number of years to spinup
-	public static RealVector spinupBirthRatePerHousehold = spinupBirthRate(); // birth rate per year by year per household-at-year-0
+	/***
+	 * Spinup data is held in a nested class so that the birth rate (an LU solve)
+	 * is only calculated when the class is first used, i.e. if SPINUP is true.
+	 */
+	public static class Spinup {
+		public static int years = (int)Math.ceil(data.Demographics.pdfAge.getSupportUpperBound()-data.Demographics.pdfAge.getSupportLowerBound());			// number of years to spinup
+		public static RealVector birthRatePerHousehold = spinupBirthRate(); // birth rate per year by year per household-at-year-0
+	}
 }
@@ -0,0 +1,363 @@
+package housing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utilities.DoubleUnaryOperator;
+import utilities.Pdf;
+
+/**************************************************************************
+ * Sets up a starting state close to the model's long-run equilibrium (used
+ * when Model.EQUILIBRIUM_START is true), so that a run only needs a short
+ * settling period before recording, rather than hundreds of months of
+ * building up from an empty model.
+ *
+ * The whole target population is created at once, with ages drawn from the
+ * age distribution that the model's births and deaths settle to (see
+ * stationaryAgeDistribution()) and incomes given by age as for any new
+ * household. The whole housing stock is built at once. Households are ranked
+ * by log income plus the noise on their bids, then
+ *  - investors and the highest ranked households own their home, up to OWNER_OCCUPIER_SHARE
+ *  - the next RENTER_SHARE of households rent
+ *  - the rest are in social housing
+ * and homes are matched to the housed households by quality, in order of
+ * their rank plus some more noise, so that owner-occupiers' and renters'
+ * houses overlap in quality as they do in a standard run. The houses that
+ * aren't owner-occupied are shared out among the investors in proportion to
+ * a lognormal appetite, so portfolio sizes are skewed, and those without a
+ * tenant are put on the rental market. A few houses start on the sale market.
+ *
+ * The market averages, yields and mortgage rate are set in one pass to a
+ * steady level. Every house was bought at the market price. The share of
+ * homes with a mortgage still being paid depends on the owner's age and on
+ * the home's quality (the best homes were mostly bought outright); of the
+ * rest, older owners' homes may have a mortgage that has been paid off, and
+ * the others were bought outright or inherited. Investors' rental houses are
+ * split in fixed shares. A mortgage was taken out with the buyer's usual
+ * downpayment, within the bank's limits, a geometrically distributed number
+ * of months ago (for a home, the waiting time to sell at
+ * HouseholdBehaviour.P_SELL), and has been paid down since. Tenancies are
+ * part way through.
+ *
+ * The default parameters are those of a standard run when its population has
+ * reached the target (around month 1000), including the number of mortgages
+ * and the debt to income ratios. From this state, prices swing and the share
+ * of owner-occupiers falls for several years, so a run needs about 10 years
+ * to settle (see SteadyStateDetector).
+ *************************************************************************/
+public class EquilibriumInitialiser {
+
+	static public class Config {
+		public static double OWNER_OCCUPIER_SHARE = 0.43;	// proportion of households that own their home (including investors)
+		public static double RENTER_SHARE = 0.31;			// proportion of households renting from investors
+		public static double BTL_PORTFOLIO_SHAPE = 1.05;	// shape of the lognormal distribution of investor portfolio sizes (ARLA Q2 2014)
+		public static double FOR_SALE_SHARE = 0.025;		// proportion of houses that owners (other than investors' homes) have up for sale
+		public static double HOUSE_PRICE_INDEX = 1.4;		// house prices over their reference prices
+		public static double RENT_INDEX = 1.2;				// rents over their reference rents
+		public static double MORTGAGE_RATE = 0.0295;		// annual mortgage interest rate
+		public static double QUALITY_NOISE = 1.0;			// standard deviation of the noise added to households' ranks when homes are matched to them by quality
+		// Owner-occupied homes: the log odds that a home has a mortgage still being paid are the sum of a term by the decade
+		// of the owner's age, from under 20 to 90 and over, and one by the quintile of the home's quality among owner-occupied homes
+		public static double [] HOME_MORTGAGE_LOG_ODDS_BY_AGE = {3.26, 0.97, 0.95, 0.78, 0.38, -0.46, -1.25, -2.32, -2.62};
+		public static double [] HOME_MORTGAGE_LOG_ODDS_BY_QUALITY = {0.99, 0.56, 0.0, -0.64, -1.79};
+		public static double [] HOME_PAID_OFF_SHARE = {0.0, 0.0, 0.0, 0.08, 0.25, 0.37, 0.38, 0.44, 0.40}; // by age, proportion of the other homes with a mortgage that has been paid off (the rest were bought outright or inherited)
+		public static double BTL_MORTGAGE_SHARE = 0.445;	// proportion of investors' rental houses with a mortgage still being paid
+		public static double BTL_PAID_OFF_SHARE = 0.275;	// proportion of investors' rental houses whose (interest-only) mortgage has run its term
+		public static double BTL_VINTAGE_RATE = 0.0025;		// monthly rate of the geometric distribution of the ages of investors' mortgages
+	}
+
+	static final double AGE_STEP = 0.1; // years between tabulated points of the stationary age distribution
+
+	/***
+	 * Add the households, houses, mortgages and tenancies to an empty model
+	 */
+	public void populate() {
+		int nHouseholds = Demographics.TARGET_POPULATION;
+		int nHouses = (int)(nHouseholds*Model.construction.housesPerHousehold);
+		int nOwners = (int)(Config.OWNER_OCCUPIER_SHARE*nHouseholds + 0.5);
+		int nRenters = (int)(Config.RENTER_SHARE*nHouseholds + 0.5);
+		int i;
+
+		// --- market indexes and interest rate
+		Model.housingMarket.setPriceLevel(Config.HOUSE_PRICE_INDEX);
+		Model.rentalMarket.setPriceLevel(Config.RENT_INDEX);
+		Model.bank.setMortgageInterestRate(Config.MORTGAGE_RATE);
+
+		// --- households, ranked by income and the noise on their bids
+		Pdf pdfAge = stationaryAgeDistribution();
+		Ranked [] ranking = new Ranked[nHouseholds];
+		Household h;
+		for(i=0; i<nHouseholds; ++i) {
+			h = new Household(pdfAge.nextDouble());
+			Model.households.add(h);
+			ranking[i] = new Ranked(h, Math.log(h.monthlyEmploymentIncome) + HouseholdBehaviour.BUY_EPSILON*Model.rand.nextGaussian());
+		}
+		Arrays.sort(ranking);
+
+		// --- tenure: investors own first, then the highest ranked
+		nOwners = Math.min(nOwners, nHouses);
+		nRenters = Math.min(nRenters, nHouses - nOwners);
+		ArrayList<Household> investors = new ArrayList<Household>();
+		int nHoused = 0;
+		for(i=0; i<nHouseholds && nHoused < nOwners; ++i) {
+			if(ranking[i].household.behaviour.isPropertyInvestor()) {
+				ranking[i].isOwner = true;
+				investors.add(ranking[i].household);
+				++nHoused;
+			}
+		}
+		for(i=0; i<nHouseholds && nHoused < nOwners; ++i) {
+			if(!ranking[i].isOwner) {
+				ranking[i].isOwner = true;
+				++nHoused;
+			}
+		}
+		if(investors.isEmpty()) nRenters = 0; // no landlords
+		Ranked [] housed = new Ranked[nOwners + nRenters];
+		int nRenting = 0;
+		nHoused = 0;
+		for(i=0; i<nHouseholds; ++i) {
+			if(ranking[i].isOwner) {
+				housed[nHoused++] = ranking[i];
+			} else if(nRenting < nRenters) {
+				housed[nHoused++] = ranking[i];
+				++nRenting;
+			}
+		}
+
+		// --- housing stock: a random choice of vacant houses, the rest matched by quality to the housed
+		// households ranked with more noise, so owner-occupiers don't all have better houses than renters
+		for(i=0; i<housed.length; ++i) housed[i].key += Config.QUALITY_NOISE*Model.rand.nextGaussian();
+		Arrays.sort(housed);
+		int [] stock = new int[nHouses];
+		for(i=0; i<nHouses; ++i) stock[i] = Model.houses.build();
+		Model.construction.housingStock = nHouses;
+		int swap;
+		int j;
+		for(i=nHouses-1; i>0; --i) {
+			j = Model.rand.nextInt(i+1);
+			swap = stock[i];
+			stock[i] = stock[j];
+			stock[j] = swap;
+		}
+		int nVacant = nHouses - housed.length;
+		int [] homes = sortByQuality(stock, nVacant, nHouses);
+
+		// --- owner-occupiers move in
+		int [] rentals = new int[nHouses - nOwners];
+		int nRentals = 0;
+		int nOwnersHoused = 0;
+		ArrayList<Household> tenants = new ArrayList<Household>(nRenters);
+		for(i=0; i<nVacant; ++i) {
+			rentals[nRentals++] = stock[i];
+			tenants.add(null);
+		}
+		for(i=0; i<housed.length; ++i) {
+			h = housed[i].household;
+			if(housed[i].isOwner) {
+				h.loadOwnedHouse(homes[i], newMortgage(h, homes[i], 1.0 - (nOwnersHoused++ + 0.5)/nOwners));
+			} else {
+				rentals[nRentals++] = homes[i];
+				tenants.add(h);
+			}
+		}
+
+		// --- investors' portfolios, tenancies and vacant lettings
+		if(investors.isEmpty()) {
+			for(i=0; i<nRentals; ++i) { // left with the developer
+				Model.houses.setOwner(rentals[i], Model.construction);
+				Model.housingMarket.offer(rentals[i], Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(rentals[i])), true);
+			}
+		} else {
+			letHouses(rentals, nRentals, tenants, investors);
+		}
+
+		// --- houses already up for sale
+		for(Household owner : Model.households) {
+			for(i=0; i<owner.housePayments.size(); ++i) {
+				int owned = owner.housePayments.getHouse(i);
+				if(owned == owner.home && (Model.houses.getOwner(owned) != owner || owner.behaviour.isPropertyInvestor())) continue;
+				if(Model.rand.nextDouble() < Config.FOR_SALE_SHARE) {
+					if(Model.houses.isOnRentalMarket(owned)) Model.rentalMarket.removeOffer(Model.houses.getRentalRecord(owned));
+					owner.putHouseForSale(owned);
+				}
+			}
+		}
+	}
+
+	/***
+	 * Share out houses among investors in proportion to a lognormal appetite,
+	 * and let them to their tenants (or put them on the rental market)
+	 * @param houses handles of the houses to let (the first nHouses)
+	 * @param tenants tenant of each house, or null if it's vacant
+	 */
+	protected void letHouses(int [] houses, int nHouses, ArrayList<Household> tenants, ArrayList<Household> investors) {
+		double [] appetite = new double[investors.size()];
+		double total = 0.0;
+		int i, j;
+		for(i=0; i<appetite.length; ++i) {
+			total += Math.exp(Config.BTL_PORTFOLIO_SHAPE*Model.rand.nextGaussian());
+			appetite[i] = total; // cumulative
+		}
+		Household landlord, tenant;
+		int house;
+		RentalAgreement rent;
+		int length;
+		for(i=0; i<nHouses; ++i) {
+			house = houses[i];
+			j = Arrays.binarySearch(appetite, Model.rand.nextDouble()*total);
+			if(j < 0) j = -j - 1;
+			landlord = investors.get(Math.min(j, appetite.length-1));
+			landlord.loadOwnedHouse(house, newMortgage(landlord, house, -1.0));
+			tenant = tenants.get(i);
+			if(tenant != null) {
+				rent = new RentalAgreement();
+				rent.monthlyPayment = landlord.buyToLetRent(house);
+				length = data.HouseRentalMarket.AVERAGE_TENANCY_LENGTH + Model.rand.nextInt(13) - 6;
+				rent.nPayments = length - Model.rand.nextInt(Math.max(length, 1)); // months left
+				rent.expiry = Model.getTime() + rent.nPayments - 1; // month of the last payment: the first is made this month
+				tenant.loadTenancy(house, rent);
+			} else {
+				Model.rentalMarket.offer(house, landlord.buyToLetRent(house));
+			}
+		}
+	}
+
+	/***
+	 * The payment agreement on a house bought at its market price some months
+	 * ago: a mortgage still being paid, one that has been paid off or, if the
+	 * house was bought outright (or inherited), none (a cash purchase, as
+	 * the bank would record it), in the proportions given in Config. Mortgages
+	 * are put on the bank's ledger with the payments made since.
+	 * @param qualityRank for a home, the rank of its quality among the
+	 * owner-occupied homes, from 0 (the worst) to 1 (the best); negative for
+	 * an investment
+	 */
+	protected MortgageAgreement newMortgage(Household h, int house, double qualityRank) {
+		Bank bank = Model.bank;
+		boolean isHome = (qualityRank >= 0.0);
+		double price = Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(house));
+		MortgageAgreement mortgage = new MortgageAgreement(h, !isHome);
+		mortgage.isFirstTimeBuyer = false;
+		mortgage.purchasePrice = price;
+		mortgage.monthlyInterestRate = bank.getMortgageInterestRate()/12.0;
+
+		// --- bought with a mortgage that is still being paid, one that has been paid off, or outright
+		double adultMonths = 12.0*(h.lifecycle.age - data.Demographics.pdfHouseholdAgeAtBirth.getSupportLowerBound());
+		double mortgageShare, paidOffShare;
+		if(isHome) {
+			int decade = Math.max(0, Math.min((int)(h.lifecycle.age/10.0) - 1, Config.HOME_MORTGAGE_LOG_ODDS_BY_AGE.length - 1));
+			int quintile = Math.min((int)(qualityRank*Config.HOME_MORTGAGE_LOG_ODDS_BY_QUALITY.length), Config.HOME_MORTGAGE_LOG_ODDS_BY_QUALITY.length - 1);
+			mortgageShare = 1.0/(1.0 + Math.exp(-Config.HOME_MORTGAGE_LOG_ODDS_BY_AGE[decade] - Config.HOME_MORTGAGE_LOG_ODDS_BY_QUALITY[quintile]));
+			paidOffShare = (1.0 - mortgageShare)*Config.HOME_PAID_OFF_SHARE[decade];
+		} else {
+			mortgageShare = Config.BTL_MORTGAGE_SHARE;
+			paidOffShare = Config.BTL_PAID_OFF_SHARE;
+		}
+		if(adultMonths < bank.N_PAYMENTS) paidOffShare = 0.0; // too young to have paid off a mortgage
+		double kind = Model.rand.nextDouble();
+		if(kind >= mortgageShare + paidOffShare) {
+			mortgage.downPayment = price;
+			mortgage.principal = 0.0;
+			mortgage.monthlyPayment = 0.0;
+			mortgage.nPayments = bank.N_PAYMENTS;
+			return(mortgage);
+		}
+
+		// --- principal: the buyer's usual downpayment (as a home mover, who had the equity from a
+		// previous home), within the bank's limits
+		double maxPrincipal = price*bank.loanToValue(false, isHome);
+		if(isHome) {
+			maxPrincipal = Math.min(maxPrincipal, Math.max(0.0, bank.AFFORDABILITY_COEFF*h.getMonthlyPostTaxIncome())/bank.monthlyPaymentFactor(true));
+			maxPrincipal = Math.min(maxPrincipal, h.annualEmploymentIncome()*bank.loanToIncome(false));
+		} else {
+			maxPrincipal = Math.min(maxPrincipal, Model.rentalMarket.averageSoldGrossYield*price/(bank.interestCoverageRatio()*bank.getBtLStressedMortgageInterestRate()));
+		}
+		double principal = Math.max(0.0, Math.min(price - h.behaviour.usualDownPayment(h, price, false), maxPrincipal));
+		mortgage.downPayment = price - principal;
+		mortgage.monthlyPayment = principal*bank.monthlyPaymentFactor(isHome);
+
+		// --- vintage: months since purchase, no earlier than the household was formed. Mortgages still
+		// being paid are less than N_PAYMENTS months old: the months are geometrically distributed
+		// (as the waiting time to sell), cut off there.
+		int nPaid = bank.N_PAYMENTS;
+		if(kind < mortgageShare) {
+			double rate = (isHome ? HouseholdBehaviour.P_SELL : Config.BTL_VINTAGE_RATE);
+			double maxMonths = Math.min(adultMonths, bank.N_PAYMENTS);
+			double wait = Math.floor(Math.log(1.0 - Model.rand.nextDouble()*(1.0 - Math.pow(1.0 - rate, maxMonths)))/Math.log(1.0 - rate));
+			nPaid = (int)Math.max(0.0, Math.min(wait, maxMonths - 1.0));
+		}
+		for(int m=0; m<nPaid; ++m) { // as MortgageLedger.makeMonthlyPayments
+			principal = principal*(1.0 + mortgage.monthlyInterestRate) - mortgage.monthlyPayment;
+		}
+		mortgage.principal = principal;
+		mortgage.nPayments = bank.N_PAYMENTS - nPaid;
+		if(mortgage.purchasePrice > mortgage.downPayment) bank.mortgages.add(mortgage, h); // cash purchases aren't on the ledger
+
+		return(mortgage);
+	}
+
+	/***
+	 * @return the houses stock[from..to-1] in descending order of quality
+	 * (houses of the same quality stay in the order they're in in stock)
+	 */
+	static int [] sortByQuality(int [] stock, int from, int to) {
+		int [] end = new int[House.Config.N_QUALITY]; // counting sort, on N_QUALITY-1-quality
+		int i;
+		for(i=from; i<to; ++i) ++end[House.Config.N_QUALITY - 1 - Model.houses.getQuality(stock[i])];
+		for(i=1; i<end.length; ++i) end[i] += end[i-1];
+		int [] sorted = new int[to - from];
+		for(i=to-1; i>=from; --i) {
+			sorted[--end[House.Config.N_QUALITY - 1 - Model.houses.getQuality(stock[i])]] = stock[i];
+		}
+		return(sorted);
+	}
+
+	/***
+	 * The age distribution that the model's own demographics settle to: the
+	 * density at each age is proportional to the probability of a household
+	 * having formed by that age (data.Demographics.pdfHouseholdAgeAtBirth)
+	 * times the probability of it surviving to that age
+	 * (data.Demographics.probDeathGivenAge). data.Demographics.pdfAge is younger
+	 * than this, so a population drawn from it would grow for decades.
+	 */
+	public static Pdf stationaryAgeDistribution() {
+		final double start = data.Demographics.pdfHouseholdAgeAtBirth.getSupportLowerBound();
+		final double end = data.Demographics.pdfAge.getSupportUpperBound();
+		final int n = (int)Math.ceil((end - start)/AGE_STEP);
+		final double [] density = new double[n+1]; // density at start + i*AGE_STEP
+		double formed = 0.0;
+		double logSurvival = 0.0;
+		double age;
+		for(int i=0; i<=n; ++i) {
+			density[i] = formed*Math.exp(logSurvival);
+			age = start + (i + 0.5)*AGE_STEP;
+			formed += data.Demographics.pdfHouseholdAgeAtBirth.density(age)*AGE_STEP;
+			logSurvival -= data.Demographics.probDeathGivenAge(age)*AGE_STEP;
+		}
+		return(new Pdf(start, end, new DoubleUnaryOperator() {
+			public double applyAsDouble(double age) {
+				double x = (age - start)/AGE_STEP;
+				int i = Math.min((int)x, n-1);
+				return(density[i] + (x - i)*(density[i+1] - density[i]));
+			}
+		}));
+	}
+
+	/*** A household and its ranking key, in descending order of key */
+	static class Ranked implements Comparable<Ranked> {
+		Ranked(Household household, double key) {
+			this.household = household;
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(Ranked o) {
+			return(Double.compare(o.key, key));
+		}
+
+		Household	household;
+		double		key;
+		boolean		isOwner;
+	}
+}
@@ -17,6 +17,12 @@ public class HouseBuyerRecord extends HousingMarketRecord {
 		super(price);
 		buyer = h;
 	}
+
+	/*** Re-initialise a pooled record (see HousingMarket) */
+	void reset(Household h, double price) {
+		reset(price);
+		buyer = h;
+	}
 	
 	public static class PComparator implements Comparator<HouseBuyerRecord> {
 		@Override
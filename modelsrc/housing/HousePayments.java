@@ -0,0 +1,104 @@
+package housing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**************************************************************************
+ * A household's houses (by handle, see HouseTable) and the payment agreement
+ * on each: the mortgage on a house it owns, or the rent on the house it
+ * lives in.
+ *
+ * Most households have one house, so rather than a map with an entry object
+ * per house, this is a pair of parallel arrays sorted by handle: lookups are
+ * a binary search, and iterating over indices 0..size()-1 visits the houses
+ * in the order of their handles (the order in which they were built).
+ *************************************************************************/
+public class HousePayments implements Serializable {
+	private static final long serialVersionUID = 2954086145129738532L;
+
+	static final int INITIAL_CAPACITY = 2;
+
+	public HousePayments() {
+		houses = new int[INITIAL_CAPACITY];
+		payments = new PaymentAgreement[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/*** @return the number of houses */
+	public int size() {
+		return(size);
+	}
+
+	public boolean isEmpty() {
+		return(size == 0);
+	}
+
+	/*** @return handle of the i'th house, in order of handle */
+	public int getHouse(int i) {
+		return(houses[i]);
+	}
+
+	/*** @return the payment agreement on the i'th house, in order of handle */
+	public PaymentAgreement getPayment(int i) {
+		return(payments[i]);
+	}
+
+	public boolean containsKey(int house) {
+		return(Arrays.binarySearch(houses, 0, size, house) >= 0);
+	}
+
+	/*** @return the payment agreement on the given house (null if there is none) */
+	public PaymentAgreement get(int house) {
+		int i = Arrays.binarySearch(houses, 0, size, house);
+		if(i < 0) return(null);
+		return(payments[i]);
+	}
+
+	/***
+	 * Set the payment agreement on the given house
+	 * @return the agreement it replaces (null if there was none)
+	 */
+	public PaymentAgreement put(int house, PaymentAgreement payment) {
+		int i = Arrays.binarySearch(houses, 0, size, house);
+		if(i >= 0) {
+			PaymentAgreement old = payments[i];
+			payments[i] = payment;
+			return(old);
+		}
+		i = -(i + 1);
+		if(size == houses.length) {
+			houses = Arrays.copyOf(houses, 2*size);
+			payments = Arrays.copyOf(payments, 2*size);
+		}
+		System.arraycopy(houses, i, houses, i + 1, size - i);
+		System.arraycopy(payments, i, payments, i + 1, size - i);
+		houses[i] = house;
+		payments[i] = payment;
+		++size;
+		return(null);
+	}
+
+	/***
+	 * Remove the given house
+	 * @return its payment agreement (null if there was none)
+	 */
+	public PaymentAgreement remove(int house) {
+		int i = Arrays.binarySearch(houses, 0, size, house);
+		if(i < 0) return(null);
+		PaymentAgreement old = payments[i];
+		--size;
+		System.arraycopy(houses, i + 1, houses, i, size - i);
+		System.arraycopy(payments, i + 1, payments, i, size - i);
+		payments[size] = null;
+		return(old);
+	}
+
+	public void clear() {
+		Arrays.fill(payments, 0, size, null);
+		size = 0;
+	}
+
+	int []					houses;		// handles, in ascending order
+	PaymentAgreement []		payments;	// payments[i] is the agreement on houses[i]
+	int						size;
+}
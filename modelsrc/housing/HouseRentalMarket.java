@@ -22,36 +22,97 @@ public class HouseRentalMarket extends HousingMarket {
 		averageSoldGrossYield = data.HouseRentalMarket.RENT_GROSS_YIELD;
 		longTermAverageGrossYield = data.HouseRentalMarket.RENT_GROSS_YIELD;
 	}
+
+	/***
+	 * All offers on the rental market are decaying: investors reduce the rent on
+	 * a house that hasn't found a tenant by a fixed factor every month.
+	 */
+	@Override
+	protected DecayingListings newDecayingListings(Authority auth) {
+		return(new DecayingListings(HouseholdBehaviour.RENT_DECAY, new HousingMarketRecord.PQComparator(), false, auth));
+	}
+
+	@Override
+	protected HouseSaleRecord getListing(int house) {
+		return(Model.houses.getRentalRecord(house));
+	}
+
+	@Override
+	public void init() {
+		super.init();
+		if(tenancies == null) { // init() is called from the HousingMarket constructor
+			tenancies = new TenancyWheel();
+		} else {
+			tenancies.init();
+		}
+	}
+
+	/***
+	 * As HousingMarket.setPriceLevel(), also setting the average yields to
+	 * those of rents at this level on houses at the sale market's price level.
+	 */
+	@Override
+	public void setPriceLevel(double index) {
+		super.setPriceLevel(index);
+		averageSoldGrossYield = data.HouseRentalMarket.RENT_GROSS_YIELD*index/Model.housingMarket.housePriceIndex;
+		longTermAverageGrossYield = averageSoldGrossYield;
+		recalculateExpectedGrossYield();
+	}
+
+	/***
+	 * Register a new rental agreement, to be ended in its expiry month
+	 */
+	public void startTenancy(RentalAgreement rent) {
+		tenancies.add(rent);
+	}
+
+	/***
+	 * A rental agreement has ended early (e.g. eviction, or the tenant has moved out)
+	 */
+	public void cancelTenancy(PaymentAgreement rent) {
+		if(rent instanceof RentalAgreement) tenancies.cancel((RentalAgreement)rent);
+	}
+
+	/***
+	 * End all tenancies whose last payment was this month and which are still
+	 * running: each tenant moves out and looks for a new home. This is the only
+	 * place where tenancies run to their end, so it is called after the
+	 * households have been stepped (and have paid their rent) and before the
+	 * markets clear.
+	 */
+	public void endExpiredTenancies() {
+		tenancies.advance(Model.getTime());
+	}
 	
 	@Override
 	public void completeTransaction(HouseBuyerRecord purchase, HouseSaleRecord sale) {
 		super.completeTransaction(purchase, sale);
-		monthsOnMarket[sale.house.getQuality()] = Config.E*monthsOnMarket[sale.house.getQuality()] + (1.0-Config.E)*(Model.getTime() - sale.tInitialListing);
-		sale.house.rentalRecord = null;
+		monthsOnMarket[sale.getQuality()] = Config.E*monthsOnMarket[sale.getQuality()] + (1.0-Config.E)*(Model.getTime() - sale.tInitialListing);
+		Model.houses.resetRentalRecord(sale.house);
 		purchase.buyer.completeHouseRental(sale);
-		sale.house.owner.completeHouseLet(sale);
+		Model.houses.getOwner(sale.house).completeHouseLet(sale);
 		Model.collectors.rentalMarketStats.recordSale(purchase, sale);
-		double yield = sale.getPrice()*12.0/Model.housingMarket.getAverageSalePrice(sale.house.getQuality());
+		double yield = sale.getPrice()*12.0/Model.housingMarket.getAverageSalePrice(sale.getQuality());
 		averageSoldGrossYield = averageSoldGrossYield*K + (1.0-K)*yield;
 		longTermAverageGrossYield = longTermAverageGrossYield*KL + (1.0-KL)*yield;
 	}
 	
-	public HouseSaleRecord offer(House house, double price) {
-//		if(house.resident != null) {
+	public HouseSaleRecord offer(int house, double price) {
+//		if(house.getResident() != null) {
 //			System.out.println("Got offer on rental market of house with resident");
 //		}
-		if(house.isOnMarket()) {
+		if(Model.houses.isOnMarket(house)) {
 			System.out.println("Got offer on rental market of house already on sale market");			
 		}
-		HouseSaleRecord hsr = super.offer(house, price);
-		house.putForRent(hsr);
+		HouseSaleRecord hsr = super.offer(house, price, true); // rents on vacant houses are reduced every month
+		Model.houses.putForRent(house, hsr);
 		return(hsr);
 	}
 	
 	@Override
 	public void removeOffer(HouseSaleRecord hsr) {
 		super.removeOffer(hsr);
-		hsr.house.resetRentalRecord();
+		Model.houses.resetRentalRecord(hsr.house);
 	}
 
 	@Override
@@ -113,5 +174,6 @@ public class HouseRentalMarket extends HousingMarket {
 	public double expectedGrossYield[] = new double[House.Config.N_QUALITY];
 	public double averageSoldGrossYield;
 	public double longTermAverageGrossYield; // averaged over a long time
+	public TenancyWheel tenancies; // rental agreements by expiry month
 //	public double bestGrossYield;
 }
@@ -26,47 +26,89 @@ public class HouseSaleMarket extends HousingMarket {
 		super.init();
 		if(offersPY != null) offersPY.clear();
 	}
+
+	/***
+	 * The decaying offers on the sale market are the developer's unsold new builds.
+	 */
+	@Override
+	protected DecayingListings newDecayingListings(Authority auth) {
+		return(new DecayingListings(Construction.NEW_BUILD_PRICE_DECAY, new HousingMarketRecord.PQComparator(), true, auth));
+	}
 		
+	@Override
+	protected HouseSaleRecord getListing(int house) {
+		return(Model.houses.getSaleRecord(house));
+	}
+
+	@Override
+	public boolean checkConsistency() {
+		return(super.checkConsistency() & offersPY.checkConsistency());
+	}
+
 	/**
 	 * This method deals with doing all the stuff necessary whenever a house gets sold.
 	 */
 	public void completeTransaction(HouseBuyerRecord purchase, HouseSaleRecord sale) {
 		super.completeTransaction(purchase, sale);
-		sale.house.saleRecord = null;
+		Model.houses.resetSaleRecord(sale.house);
 		Household buyer = purchase.buyer;
-		if(buyer == sale.house.owner) return;
-		sale.house.owner.completeHouseSale(sale);
+		if(buyer == Model.houses.getOwner(sale.house)) return;
+		Model.houses.getOwner(sale.house).completeHouseSale(sale);
 		buyer.completeHousePurchase(sale);
 		Model.collectors.housingMarketStats.recordSale(purchase, sale);
-		sale.house.owner = buyer;
+		Model.houses.setOwner(sale.house, buyer);
 	}
 
 	@Override
-	public HouseSaleRecord offer(House house, double price) {
-		HouseSaleRecord hsr = super.offer(house, price);
-		offersPY.add(hsr);
-		house.putForSale(hsr);
+	public HouseSaleRecord offer(int house, double price, boolean decaying) {
+		HouseSaleRecord hsr = super.offer(house, price, decaying);
+		if(!decaying) offersPY.add(hsr); // decaying offers are indexed by yield in decayingOffers
+		Model.houses.putForSale(house, hsr);
 		return(hsr);
 	}
 	
 	@Override
 	public void removeOffer(HouseSaleRecord hsr) {
+		boolean decaying = hsr.isDecaying();
 		super.removeOffer(hsr);
-		offersPY.remove(hsr);
-		hsr.house.resetSaleRecord();
+		if(!decaying) offersPY.remove(hsr);
+		Model.houses.resetSaleRecord(hsr.house);
 	}
 	
+	/***
+	 * Reduce the prices of the developer's unsold new builds, and bring the
+	 * yields of all other offers up to date with this month's rental market,
+	 * so that buy-to-let bids are matched on current yields.
+	 */
+	@Override
+	public void decayOffers() {
+		super.decayOffers();
+		for(HousingMarketRecord offer : offersPY) {
+			((HouseSaleRecord)offer).recalcYield();
+		}
+		offersPY.rebuild();
+	}
+
 	@Override
 	public void updateOffer(HouseSaleRecord hsr, double newPrice) {
-		offersPY.remove(hsr);
-		super.updateOffer(hsr, newPrice);
-		offersPY.add(hsr);
+		if(hsr.isDecaying()) {
+			super.updateOffer(hsr, newPrice);
+		} else {
+			if(newPrice == hsr.getPrice()) return; // nothing to re-index: decayOffers() keeps the yields up to date
+			offersPY.remove(hsr);
+			super.updateOffer(hsr, newPrice);
+			offersPY.add(hsr);
+		}
 	}
 	
 	@Override
 	protected HouseSaleRecord getBestOffer(HouseBuyerRecord bid) {
 		if(bid.getClass() == BtLBuyerRecord.class) { // BTL buyer (yield driven)
 			HouseSaleRecord bestOffer = (HouseSaleRecord)offersPY.peek(bid);
+			HouseSaleRecord newBuild = decayingOffers.peekHighestYield(bid.getPrice());
+			if(newBuild != null && (bestOffer == null || offersPY.getComparator().YCompare(newBuild, bestOffer) == 1)) {
+				bestOffer = newBuild;
+			}
 			if(bestOffer != null) {
 					double minDownpayment = bestOffer.getPrice()*(1.0 - Model.rentalMarket.averageSoldGrossYield/(Model.bank.interestCoverageRatio()*Model.bank.getBtLStressedMortgageInterestRate()));
 //					if(bestOffer.getExpectedAnnualRent()/(bestOffer.getPrice()-bid.buyer.behaviour.downPayment(bid.buyer, bestOffer.getPrice())) >= Model.bank.interestCoverageRatio()*Model.bank.getBtLStressedMortgageInterestRate()) {
@@ -98,7 +140,7 @@ public class HouseSaleMarket extends HousingMarket {
 		*/
 	
 	public Iterator<HousingMarketRecord> offersIterator() {
-		final PriorityQueue2D<HousingMarketRecord>.Iter underlyingIterator = (PriorityQueue2D<HousingMarketRecord>.Iter)super.offersIterator();
+		final Iterator<HousingMarketRecord> underlyingIterator = super.offersIterator();
 		return(new Iterator<HousingMarketRecord>() {
 			@Override
 			public boolean hasNext() {
@@ -106,13 +148,16 @@ public class HouseSaleMarket extends HousingMarket {
 			}
 			@Override
 			public HousingMarketRecord next() {
-				return underlyingIterator.next();
+				last = underlyingIterator.next();
+				return last;
 			}
 			@Override
 			public void remove() {
+				boolean decaying = ((HouseSaleRecord)last).isDecaying();
 				underlyingIterator.remove();
-				if(underlyingIterator.last != null) HouseSaleMarket.this.offersPY.remove(underlyingIterator.last);
+				if(!decaying) HouseSaleMarket.this.offersPY.remove(last);
 			}
+			HousingMarketRecord last;
 		});
 	}
 	
@@ -129,7 +174,13 @@ public class HouseSaleMarket extends HousingMarket {
 	 * @param maxPrice The maximum price that the household is willing to pay.
 	 ******************************************/
 	public void BTLbid(Household buyer, double maxPrice) {
-		bids.add(new BtLBuyerRecord(buyer, maxPrice));
+		BtLBuyerRecord bid = Model.POOL_RECORDS ? btlBidPool.acquire() : null;
+		if(bid == null) {
+			bid = new BtLBuyerRecord(buyer, maxPrice);
+		} else {
+			bid.reset(buyer, maxPrice);
+		}
+		addBid(bid);
 	}
 
 	/*
@@ -184,7 +235,7 @@ public class HouseSaleMarket extends HousingMarket {
 			if(!potentialBuyers.isEmpty()) {
 				i = (int)(Model.rand.nextDouble()*potentialBuyers.size());
 				buyer = potentialBuyers.get(i);
-				if(buyer.buyer != seller.house.owner && 
+				if(buyer.buyer != seller.house.getOwner() && 
 						buyer.buyer.decideToBuyBuyToLet(seller.house, seller.price)) {
 					removeOffer(seller.house);
 					completeTransaction(buyer, seller);
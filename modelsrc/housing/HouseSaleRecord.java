@@ -19,7 +19,7 @@ public class HouseSaleRecord extends HousingMarketRecord {
 	 * @param h The house that is for sale.
 	 * @param price The initial list price for the house.
 	 ***********************************************/
-	public HouseSaleRecord(House h, double price) {
+	public HouseSaleRecord(int h, double price) {
 		super(price);
 		house = h;
 //		setPrice(p);
@@ -29,6 +29,20 @@ public class HouseSaleRecord extends HousingMarketRecord {
 		matchedBids = new ArrayList<>(8); // Why 8 bids?
 		recalcYield();
 	}
+
+	/***********************************************
+	 * Re-initialise a pooled record, as though it had been
+	 * newly constructed (see HousingMarket).
+	 ***********************************************/
+	void reset(int h, double price) {
+		reset(price);
+		house = h;
+		initialListedPrice = price;
+		tInitialListing = Model.getTime();
+		matchedBids.clear();
+		listings = null;
+		recalcYield();
+	}
 	
 //	/***********************************************
 //	 * Set the list price to a given value,
@@ -46,7 +60,7 @@ public class HouseSaleRecord extends HousingMarketRecord {
 	
 	@Override
 	public int getQuality() {
-		return(house.getQuality());
+		return(Model.houses.getQuality(house));
 	}
 	
 	/***
@@ -54,8 +68,23 @@ public class HouseSaleRecord extends HousingMarketRecord {
 	 */
 	@Override
 	public double getYield() {
+		if(listings != null && listings.hasYields()) return(listings.getYield(this));
 		return yield;
 	}
+
+	/***
+	 * @return the current list price (for offers in DecayingListings, the stored
+	 * key times the group's decay factor)
+	 */
+	@Override
+	public double getPrice() {
+		if(listings != null) return(super.getPrice()*listings.getFactor());
+		return(super.getPrice());
+	}
+
+	public boolean isDecaying() {
+		return(listings != null);
+	}
 	
 	/*** returns gross yield */
 //	public double getGrossYield() {
@@ -63,12 +92,16 @@ public class HouseSaleRecord extends HousingMarketRecord {
 //	}
 	
 	public double getExpectedAnnualRent() {
-		return(Model.rentalMarket.getAverageSalePrice(house.getQuality())*12.0);
+		return(Model.rentalMarket.getAverageSalePrice(Model.houses.getQuality(house))*12.0);
 	}
 
 	public void setPrice(double newPrice, HousingMarket.Authority auth) {
-		super.setPrice(newPrice, auth);
-		recalcYield();
+		if(listings != null) {
+			super.setPrice(newPrice/listings.getFactor(), auth); // store the key
+		} else {
+			super.setPrice(newPrice, auth);
+			recalcYield();
+		}
 	}
 
 	/**
@@ -76,19 +109,20 @@ public class HouseSaleRecord extends HousingMarketRecord {
 	 * @param bid the bid being matched to the offer
      */
 	public void matchWith(HouseBuyerRecord bid) {
-//		if(house.owner != bid.buyer) {
+//		if(house.getOwner() != bid.buyer) {
 			matchedBids.add(bid);
 //		}
 	}
 	
 	protected void recalcYield() {
-		int q = house.getQuality();
+		int q = Model.houses.getQuality(house);
 		yield = Model.rentalMarket.getExpectedGrossYield(q)*Model.housingMarket.getAverageSalePrice(q)/getPrice();		
 	}
 	
-	public House 	house;
+	public int	 	house;	// handle of the house (see HouseTable)
 	public double 	initialListedPrice;
 	public int		tInitialListing; // time of initial listing
 	public ArrayList<HouseBuyerRecord> matchedBids;
 	private double	yield;
+	DecayingListings	listings;	// the group of decaying offers this offer belongs to, if any
 }
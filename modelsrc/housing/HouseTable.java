@@ -0,0 +1,169 @@
+package housing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**************************************************************************
+ * The housing stock, stored column by column: each house built occupies one
+ * row, and its row number is its handle. Houses are referred to by their
+ * handle everywhere (in the markets' records, households' portfolios and so
+ * on), so there is no object per house: the whole stock adds up to a handful
+ * of arrays.
+ *
+ * Houses are never demolished, so a handle stays valid until the table is
+ * cleared at the start of a run (when all the households and records that
+ * refer to houses are dropped). House ids carry on from House.id_pool as
+ * before, so that they are unique over all runs: the id of a house is
+ * firstId plus its handle.
+ *
+ * As in MortgageLedger, the owner and resident columns hold references, as
+ * households and the developer have no handles of their own. So do the sale
+ * and rental record columns: the markets keep their offers in priority
+ * queues rather than tables, so an offer has no index to store instead. With
+ * compressed references (the default for heaps under 32GB) a reference takes
+ * 4 bytes, as an int would, so an index column wouldn't make the table any
+ * smaller, and the markets would need a table of their offers as well.
+ *************************************************************************/
+public class HouseTable implements Serializable {
+	private static final long serialVersionUID = -3407829313386245411L;
+
+	public static final int NONE = -1;		// handle meaning "no house"
+	static final int INITIAL_CAPACITY = 1024;
+
+	public HouseTable() {
+		allocate(INITIAL_CAPACITY);
+		clear();
+	}
+
+	public void clear() {
+		Arrays.fill(owner, 0, size, null);
+		Arrays.fill(resident, 0, size, null);
+		Arrays.fill(saleRecord, 0, size, null);
+		Arrays.fill(rentalRecord, 0, size, null);
+		size = 0;
+		firstId = House.id_pool + 1;
+	}
+
+	/***
+	 * Build a new house of random quality, with no owner or resident
+	 * @return its handle
+	 */
+	public int build() {
+		return(add((int)(Model.rand.nextDouble()*House.Config.N_QUALITY)));
+	}
+
+	/***
+	 * Add a newly built house, with no owner or resident
+	 * @return its handle
+	 */
+	public int add(int houseQuality) {
+		if(size == quality.length) allocate(2*size);
+		quality[size] = houseQuality;
+		++House.id_pool;
+		return(size++);
+	}
+
+	/*** @return the number of houses built since the table was cleared */
+	public int size() {
+		return(size);
+	}
+
+	/*** @return id of the house with the given handle */
+	public int getId(int h) {
+		return(firstId + h);
+	}
+
+	public int getQuality(int h) {
+		return(quality[h]);
+	}
+
+	public IHouseOwner getOwner(int h) {
+		return(owner[h]);
+	}
+
+	/***
+	 * Change the owner of house h. If the house is on a market and passes
+	 * to or from the developer, the market's count of new builds on offer
+	 * is updated.
+	 */
+	public void setOwner(int h, IHouseOwner o) {
+		if((owner[h] == Model.construction) != (o == Model.construction)) {
+			if(saleRecord[h] != null) Model.housingMarket.newBuildChanged(o == Model.construction);
+			if(rentalRecord[h] != null) Model.rentalMarket.newBuildChanged(o == Model.construction);
+		}
+		owner[h] = o;
+	}
+
+	public Household getResident(int h) {
+		return(resident[h]);
+	}
+
+	/***
+	 * Change the resident of house h. If the house is on a market and
+	 * becomes empty or occupied, the market's count of empty houses on offer
+	 * is updated.
+	 */
+	public void setResident(int h, Household r) {
+		if((resident[h] == null) != (r == null)) {
+			if(saleRecord[h] != null) Model.housingMarket.occupancyChanged(r == null);
+			if(rentalRecord[h] != null) Model.rentalMarket.occupancyChanged(r == null);
+		}
+		resident[h] = r;
+	}
+
+	public boolean isOnMarket(int h) {
+		return(saleRecord[h] != null);
+	}
+
+	public HouseSaleRecord getSaleRecord(int h) {
+		return(saleRecord[h]);
+	}
+
+	public void putForSale(int h, HouseSaleRecord record) {
+		saleRecord[h] = record;
+	}
+
+	public void resetSaleRecord(int h) {
+		saleRecord[h] = null;
+	}
+
+	public boolean isOnRentalMarket(int h) {
+		return(rentalRecord[h] != null);
+	}
+
+	public HouseSaleRecord getRentalRecord(int h) {
+		return(rentalRecord[h]);
+	}
+
+	public void putForRent(int h, HouseSaleRecord record) {
+		rentalRecord[h] = record;
+	}
+
+	public void resetRentalRecord(int h) {
+		rentalRecord[h] = null;
+	}
+
+	private void allocate(int capacity) {
+		if(quality == null) {
+			quality = new int[capacity];
+			owner = new IHouseOwner[capacity];
+			resident = new Household[capacity];
+			saleRecord = new HouseSaleRecord[capacity];
+			rentalRecord = new HouseSaleRecord[capacity];
+		} else {
+			quality = Arrays.copyOf(quality, capacity);
+			owner = Arrays.copyOf(owner, capacity);
+			resident = Arrays.copyOf(resident, capacity);
+			saleRecord = Arrays.copyOf(saleRecord, capacity);
+			rentalRecord = Arrays.copyOf(rentalRecord, capacity);
+		}
+	}
+
+	int []					quality;
+	IHouseOwner []			owner;
+	Household []			resident;
+	HouseSaleRecord []		saleRecord;		// offer on the sale market (null if not for sale)
+	HouseSaleRecord []		rentalRecord;	// offer on the rental market (null if not to let)
+	int						size;			// number of rows in use
+	int						firstId;		// id of the house in row 0
+}
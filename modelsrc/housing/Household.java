@@ -1,12 +1,8 @@
 package housing;
 
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-
-import ec.util.MersenneTwisterFast;
+import utilities.Invariants;
+import utilities.RandomEngine;
 
 /**********************************************
  * This represents a household who receives an income, consumes,
@@ -39,7 +35,7 @@ public class Household implements IHouseOwner, Serializable {
 //		houseMarket = Model.housingMarket;
 //		rentalMarket = Model.rentalMarket;
 		rand = Model.rand;
-		home = null;
+		home = HouseTable.NONE;
 		isFirstTimeBuyer = true;
 		id = ++id_pool;
 		lifecycle = new Lifecycle(age);
@@ -67,14 +63,27 @@ public class Household implements IHouseOwner, Serializable {
 	 * - buy/sell/rent out properties if BTL investor
 	 ********************************************************/
 	public void step() {
+		stepFinances();
+		stepDecisions();
+	}
+
+	/********************************************************
+	 * First part of the monthly step: age, receive income, pay
+	 * rent/mortgage and consume.
+	 ********************************************************/
+	public void stepFinances() {
 		double disposableIncome;
 //		House  house;
 		
 		lifecycle.step();
 		monthlyEmploymentIncome = lifecycle.annualIncome()/12.0;
 		disposableIncome = getMonthlyPostTaxIncome() - HouseholdBehaviour.ESSENTIAL_CONSUMPTION_FRACTION * Government.Config.INCOME_SUPPORT; // necessary consumption
-		for(PaymentAgreement payment : housePayments.values()) {
-			disposableIncome -= payment.makeMonthlyPayment();
+		disposableIncome -= mortgagePayments; // collected in bulk by Bank.collectMortgagePayments()
+		mortgagePayments = 0.0;
+		PaymentAgreement payment;
+		for(int i=0; i<housePayments.size(); ++i) {
+			payment = housePayments.getPayment(i);
+			if(!(payment instanceof MortgageAgreement)) disposableIncome -= payment.makeMonthlyPayment();
 		}
 		
 		// --- consume based on disposable income after house payments
@@ -87,19 +96,23 @@ public class Household implements IHouseOwner, Serializable {
 				bankrupt = true;
 			}
 		}
+	}
 
-		for(House h : housePayments.keySet()) {
-			if(h.owner == this) manageHouse(h); // Manage all owned properties
-
+	/********************************************************
+	 * Second part of the monthly step: manage owned houses and
+	 * make the decision to buy, rent or invest.
+	 ********************************************************/
+	public void stepDecisions() {
+		int h;
+		for(int i=0; i<housePayments.size(); ++i) {
+			h = housePayments.getHouse(i);
+			if(Model.houses.getOwner(h) == this) manageHouse(h); // Manage all owned properties
 		}
 		
 		if(isInSocialHousing()) {
 			bidForAHome();
 		} else if(isRenting()) {
-			if(housePayments.get(home).nPayments == 0) { // end of rental period for renter
-				endTenancy();
-				bidForAHome();
-			}			
+			// nothing to decide: the rental market ends the tenancy in its last month (see HouseRentalMarket.endExpiredTenancies)
 		} else if(behaviour.isPropertyInvestor()) {
 //			for(House h : housePayments.keySet()) {
 //				manageHouse(h);
@@ -123,35 +136,29 @@ public class Household implements IHouseOwner, Serializable {
 	 * Decide what to do with a house h owned by the household:
 	 *  - if the household lives in h, decide whether to sell it
 	 *  - if h is up for sale, rethink its offer price, and possibly put it up for rent instead (only BTL investors)
-	 *  - if h is up for rent, rethink the rent demanded
+	 *  (the rent demanded on houses up for rent is reduced by the rental market)
 	 *
 	 * @param h a house owned by the household
      *****************************/
-	protected void manageHouse(House h) {
-		HouseSaleRecord forSale, forRent;
+	protected void manageHouse(int h) {
+		HouseSaleRecord forSale;
 		double newPrice;
 		
-		forSale = h.getSaleRecord();
+		forSale = Model.houses.getSaleRecord(h);
 		if(forSale != null) { // reprice house for sale
 			newPrice = behaviour.rethinkHouseSalePrice(forSale);
-			if(newPrice > mortgageFor(h).principal) {
+			if(newPrice > mortgageFor(h).getPrincipal()) {
 				Model.housingMarket.updateOffer(forSale, newPrice);						
 			} else {
 				Model.housingMarket.removeOffer(forSale);
-				if(h != home && h.resident == null) {
+				if(h != home && Model.houses.getResident(h) == null) {
 					Model.rentalMarket.offer(h, buyToLetRent(h));
 				}
 			}
 		} else if(decideToSellHouse(h)) { // put house on market?
-			if(h.isOnRentalMarket()) Model.rentalMarket.removeOffer(h.getRentalRecord());
+			if(Model.houses.isOnRentalMarket(h)) Model.rentalMarket.removeOffer(Model.houses.getRentalRecord(h));
 			putHouseForSale(h);
 		}
-		
-		forRent = h.getRentalRecord();
-		if(forRent != null) { // reprice house for rent
-			newPrice = behaviour.rethinkBuyToLetRent(forRent);
-			Model.rentalMarket.updateOffer(forRent, newPrice);		
-		}		
 	}
 
 	/******************************************************
@@ -159,16 +166,16 @@ public class Household implements IHouseOwner, Serializable {
 	 *
 	 * @param h the house being sold
      ******************************************************/
-	protected void putHouseForSale(House h) {
+	protected void putHouseForSale(int h) {
 		double principal;
 		MortgageAgreement mortgage = mortgageFor(h);
 		if(mortgage != null) {
-			principal = mortgage.principal;
+			principal = mortgage.getPrincipal();
 		} else {
 			principal = 0.0;
 		}
 		Model.housingMarket.offer(h, behaviour.initialSalePrice(
-				Model.housingMarket.averageSalePrice[h.getQuality()],
+				Model.housingMarket.averageSalePrice[Model.houses.getQuality(h)],
 				Model.housingMarket.averageDaysOnMarket,
 				principal
 		));
@@ -188,14 +195,14 @@ public class Household implements IHouseOwner, Serializable {
 	 ********************************************************/
 	public void completeHousePurchase(HouseSaleRecord sale) {
 		if(isRenting()) { // give immediate notice to landlord and move out
-			if(sale.house.resident != null) System.out.println("Strange: my new house has someone in it!");
+			if(Invariants.CHECKING && Model.houses.getResident(sale.house) != null) System.out.println("Strange: my new house has someone in it!");
 			if(home == sale.house) {
 				System.out.println("Strange: I've just bought a house I'm renting out");
 			} else {
 				endTenancy();
 			}
 		}
-		MortgageAgreement mortgage = Model.bank.requestLoan(this, sale.getPrice(), behaviour.downPayment(this,sale.getPrice()), home == null, sale.house);
+		MortgageAgreement mortgage = Model.bank.requestLoan(this, sale.getPrice(), behaviour.downPayment(this,sale.getPrice()), home == HouseTable.NONE, sale.house);
 		if(mortgage == null) {
 			// TODO: need to either provide a way for house sales to fall through or to ensure that pre-approvals are always satisfiable
 			System.out.println("Can't afford to buy house: strange");
@@ -207,17 +214,17 @@ public class Household implements IHouseOwner, Serializable {
 			if(isInSocialHousing()) System.out.println("Is homeless");
 			if(isFirstTimeBuyer()) System.out.println("Is firsttimebuyer");
 			if(behaviour.isPropertyInvestor()) System.out.println("Is investor");
-			System.out.println("House owner = "+sale.house.owner);
+			System.out.println("House owner = "+Model.houses.getOwner(sale.house));
 			System.out.println("me = "+this);
 		}
 		bankBalance -= mortgage.downPayment;
 		housePayments.put(sale.house, mortgage);
-		if(home == null) { // move in to house
+		if(home == HouseTable.NONE) { // move in to house
 			home = sale.house;
-			sale.house.resident = this;
+			Model.houses.setResident(sale.house, this);
 //			System.out.println((sale.house.getQuality()-desiredQuality)*1.0/House.Config.N_QUALITY);
-			desiredQuality = sale.house.getQuality();
-		} else if(sale.house.resident == null) { // put empty buy-to-let house on rental market
+			desiredQuality = Model.houses.getQuality(sale.house);
+		} else if(Model.houses.getResident(sale.house) == null) { // put empty buy-to-let house on rental market
 			Model.rentalMarket.offer(sale.house, buyToLetRent(sale.house));
 //			endOfLettingAgreement(sale.house);
 		}
@@ -231,19 +238,20 @@ public class Household implements IHouseOwner, Serializable {
 		MortgageAgreement mortgage = mortgageFor(sale.house);
 		bankBalance += sale.getPrice();
 		bankBalance -= mortgage.payoff(bankBalance);
-		if(sale.house.isOnRentalMarket()) {
-			Model.rentalMarket.removeOffer(sale);
+		if(Model.houses.isOnRentalMarket(sale.house)) {
+			Model.rentalMarket.removeOffer(Model.houses.getRentalRecord(sale.house));
 		}
-		if(mortgage.nPayments == 0) {
+		if(mortgage.getNPayments() == 0) {
+			Model.bank.endMortgageContract(mortgage);
 			housePayments.remove(sale.house);
 		}
 		if(sale.house == home) { // move out of home and become (temporarily) homeless
-			home.resident = null;
-			home = null;
+			Model.houses.setResident(home, null);
+			home = HouseTable.NONE;
 //			bidOnHousingMarket(1.0);
-		} else if(sale.house.resident != null) { // evict current renter
-			monthlyPropertyIncome -= sale.house.resident.housePayments.get(sale.house).monthlyPayment;
-			sale.house.resident.getEvicted();
+		} else if(Model.houses.getResident(sale.house) != null) { // evict current renter
+			monthlyPropertyIncome -= Model.houses.getResident(sale.house).housePayments.get(sale.house).monthlyPayment;
+			Model.houses.getResident(sale.house).getEvicted();
 		}
 	}
 	
@@ -255,17 +263,17 @@ public class Household implements IHouseOwner, Serializable {
 	 * market.
 	 ********************************************************/
 	@Override
-	public void endOfLettingAgreement(House h, PaymentAgreement contract) {
+	public void endOfLettingAgreement(int h, PaymentAgreement contract) {
 		monthlyPropertyIncome -= contract.monthlyPayment;
 
 		// put house back on rental market
-		if(!housePayments.containsKey(h)) {
+		if(Invariants.CHECKING && !housePayments.containsKey(h)) {
 			System.out.println("Strange: I don't own this house in endOfLettingAgreement");
 		}
-//		if(h.resident != null) System.out.println("Strange: renting out a house that has a resident");		
-//		if(h.resident != null && h.resident == h.owner) System.out.println("Strange: renting out a house that belongs to a homeowner");		
-		if(h.isOnRentalMarket()) System.out.println("Strange: got endOfLettingAgreement on house on rental market");
-		if(!h.isOnMarket()) Model.rentalMarket.offer(h, buyToLetRent(h));
+//		if(h.getResident() != null) System.out.println("Strange: renting out a house that has a resident");		
+//		if(h.getResident() != null && h.getResident() == h.getOwner()) System.out.println("Strange: renting out a house that belongs to a homeowner");		
+		if(Invariants.CHECKING && Model.houses.isOnRentalMarket(h)) System.out.println("Strange: got endOfLettingAgreement on house on rental market");
+		if(!Model.houses.isOnMarket(h)) Model.rentalMarket.offer(h, buyToLetRent(h));
 	}
 
 	/**********************************************************
@@ -274,24 +282,35 @@ public class Household implements IHouseOwner, Serializable {
 	 * inform landlord and delete rental agreement.
 	 **********************************************************/
 	public void endTenancy() {
-		home.owner.endOfLettingAgreement(home, housePayments.get(home));
-		housePayments.remove(home);
-		home.resident = null;
-		home = null;
+		PaymentAgreement rent = housePayments.remove(home);
+		Model.rentalMarket.cancelTenancy(rent);
+		Model.houses.getOwner(home).endOfLettingAgreement(home, rent);
+		Model.houses.setResident(home, null);
+		home = HouseTable.NONE;
 	//	endOfTenancyAgreement(home, housePayments.remove(home));
 	}
 	
 	/*** Landlord has told this household to get out: leave without informing landlord */
 	public void getEvicted() {
-		if(home == null) {
-			System.out.println("Strange: got evicted but I'm homeless");			
-		}
-		if(home.owner == this) {
-			System.out.println("Strange: got evicted from a home I own");
+		if(Invariants.CHECKING) {
+			if(home == HouseTable.NONE) {
+				System.out.println("Strange: got evicted but I'm homeless");
+			} else if(Model.houses.getOwner(home) == this) {
+				System.out.println("Strange: got evicted from a home I own");
+			}
 		}
-		housePayments.remove(home);
-		home.resident = null;
-		home = null;		
+		Model.rentalMarket.cancelTenancy(housePayments.remove(home));
+		Model.houses.setResident(home, null);
+		home = HouseTable.NONE;		
+	}
+
+	/***
+	 * The rental agreement on this household's home has come to an end: move
+	 * out and look for somewhere else to live.
+	 */
+	public void endOfTenancy() {
+		endTenancy();
+		bidForAHome();
 	}
 
 	
@@ -301,23 +320,26 @@ public class Household implements IHouseOwner, Serializable {
 	 * payment contract. At present we use a MortgageApproval).
 	 ********************************************************/
 	public void completeHouseRental(HouseSaleRecord sale) {
-		if(sale.house.owner != this) { // if renting own house, no need for contract
+		if(Model.houses.getOwner(sale.house) != this) { // if renting own house, no need for contract
 			RentalAgreement rent = new RentalAgreement();
 			rent.monthlyPayment = sale.getPrice();
 			rent.nPayments = data.HouseRentalMarket.AVERAGE_TENANCY_LENGTH + rand.nextInt(13) - 6;
 //			rent.principal = rent.monthlyPayment*rent.nPayments;
+			rent.tenant = this;
+			rent.expiry = Model.getTime() + Math.max(rent.nPayments, 1); // month of the last payment
 			housePayments.put(sale.house, rent);
+			Model.rentalMarket.startTenancy(rent);
 		}
-		if(home != null) System.out.println("Strange: I'm renting a house but not homeless");
+		if(Invariants.CHECKING && home != HouseTable.NONE) System.out.println("Strange: I'm renting a house but not homeless");
 		home = sale.house;
-		if(sale.house.resident != null) {
+		if(Invariants.CHECKING && Model.houses.getResident(sale.house) != null) {
 			System.out.println("Strange: tennant moving into an occupied house");
-			if(sale.house.resident == this) System.out.println("...It's me!");
-			if(sale.house.owner == this) System.out.println("...It's my house!");
-			if(sale.house.owner == sale.house.resident) System.out.println("...It's a homeowner!");
+			if(Model.houses.getResident(sale.house) == this) System.out.println("...It's me!");
+			if(Model.houses.getOwner(sale.house) == this) System.out.println("...It's my house!");
+			if(Model.houses.getOwner(sale.house) == Model.houses.getResident(sale.house)) System.out.println("...It's a homeowner!");
 		}
-		sale.house.resident = this;
-		desiredQuality = sale.house.getQuality();
+		Model.houses.setResident(sale.house, this);
+		desiredQuality = Model.houses.getQuality(sale.house);
 	}
 
 
@@ -345,7 +367,7 @@ public class Household implements IHouseOwner, Serializable {
 	/********************************************************
 	 * Decide whether to sell ones own house.
 	 ********************************************************/
-	private boolean decideToSellHouse(House h) {
+	private boolean decideToSellHouse(int h) {
 		if(h == home) {
 			return(behaviour.decideToSellHome(this));
 		}
@@ -361,15 +383,15 @@ public class Household implements IHouseOwner, Serializable {
 	 */
 	@Override
 	public void completeHouseLet(HouseSaleRecord sale) {
-		if(sale.house.isOnMarket()) {
-			Model.housingMarket.removeOffer(sale.house.getSaleRecord());
+		if(Model.houses.isOnMarket(sale.house)) {
+			Model.housingMarket.removeOffer(Model.houses.getSaleRecord(sale.house));
 		}
 		monthlyPropertyIncome += sale.getPrice();
 	}
 
-	public double buyToLetRent(House h) {
+	public double buyToLetRent(int h) {
 		return(behaviour.buyToLetRent(
-				Model.rentalMarket.getAverageSalePrice(h.getQuality()), 
+				Model.rentalMarket.getAverageSalePrice(Model.houses.getQuality(h)), 
 				Model.rentalMarket.averageDaysOnMarket,h));
 	}
 
@@ -385,36 +407,34 @@ public class Household implements IHouseOwner, Serializable {
 	 * @param beneficiary The household that will inherit the wealth
      */
 	public void transferAllWealthTo(Household beneficiary) {
-		if(beneficiary == this) System.out.println("Strange: I'm transfering all my wealth to myself");
+		if(Invariants.CHECKING && beneficiary == this) System.out.println("Strange: I'm transfering all my wealth to myself");
 		boolean isHome;
-		Iterator<Entry<House, PaymentAgreement>> paymentIt = housePayments.entrySet().iterator();
-		Entry<House, PaymentAgreement> entry;
-		House h;
+		int h;
 		PaymentAgreement payment;
-		while(paymentIt.hasNext()) {
-			entry = paymentIt.next();
-			h = entry.getKey();
-			payment = entry.getValue();
+		for(int i=0; i<housePayments.size(); ++i) {
+			h = housePayments.getHouse(i);
+			payment = housePayments.getPayment(i);
 			if(h == home) {
 				isHome = true;
-				h.resident = null;
-				home = null;
+				Model.houses.setResident(h, null);
+				home = HouseTable.NONE;
 			} else {
 				isHome = false;
 			}
-			if(h.owner == this) {
-				if(h.isOnRentalMarket()) Model.rentalMarket.removeOffer(h.getRentalRecord());
-				if(h.isOnMarket()) Model.housingMarket.removeOffer(h.getSaleRecord());
-				if(h.resident != null) h.resident.getEvicted();
+			if(Model.houses.getOwner(h) == this) {
+				if(Model.houses.isOnRentalMarket(h)) Model.rentalMarket.removeOffer(Model.houses.getRentalRecord(h));
+				if(Model.houses.isOnMarket(h)) Model.housingMarket.removeOffer(Model.houses.getSaleRecord(h));
+				if(Model.houses.getResident(h) != null) Model.houses.getResident(h).getEvicted();
 				beneficiary.inheritHouse(h, isHome);
 			} else {
-				h.owner.endOfLettingAgreement(h, housePayments.get(h));
+				Model.rentalMarket.cancelTenancy(payment);
+				Model.houses.getOwner(h).endOfLettingAgreement(h, payment);
 			}
 			if(payment instanceof MortgageAgreement) {
 				bankBalance -= ((MortgageAgreement) payment).payoff();
 			}
-			paymentIt.remove();
 		}
+		housePayments.clear();
 		beneficiary.bankBalance += Math.max(0.0, bankBalance);
 	}
 	
@@ -423,9 +443,9 @@ public class Household implements IHouseOwner, Serializable {
 	 *
 	 * Write off the mortgage for the house. Move into the house if renting or in social housing.
 	 * 
-	 * @param h House to inherit
+	 * @param h Handle of the house to inherit
 	 */
-	public void inheritHouse(House h, boolean wasHome) {
+	public void inheritHouse(int h, boolean wasHome) {
 		MortgageAgreement nullMortgage = new MortgageAgreement(this,false);
 		nullMortgage.nPayments = 0;
 		nullMortgage.downPayment = 0.0;
@@ -434,8 +454,8 @@ public class Household implements IHouseOwner, Serializable {
 		nullMortgage.principal = 0.0;
 		nullMortgage.purchasePrice = 0.0;
 		housePayments.put(h, nullMortgage);
-		h.owner = this;
-		if(h.resident != null) {
+		Model.houses.setOwner(h, this);
+		if(Invariants.CHECKING && Model.houses.getResident(h) != null) {
 			System.out.println("Strange: inheriting a house with a resident");
 		}
 		if(!isHomeowner()) {
@@ -444,19 +464,19 @@ public class Household implements IHouseOwner, Serializable {
 				endTenancy();				
 			}
 			home = h;
-			h.resident = this;
-			desiredQuality = h.getQuality();
+			Model.houses.setResident(h, this);
+			desiredQuality = Model.houses.getQuality(h);
 		} else if(behaviour.isPropertyInvestor()) {
 			if(BTL_ENABLED) {
 				if(decideToSellHouse(h)) {
 					putHouseForSale(h);
-				} else if(h.resident == null) {
+				} else if(Model.houses.getResident(h) == null) {
 					Model.rentalMarket.offer(h, buyToLetRent(h));
 				}
 			} else {
 				if(wasHome) {
 					putHouseForSale(h);
-				} else if(h.resident == null) {
+				} else if(Model.houses.getResident(h) == null) {
 					Model.rentalMarket.offer(h, buyToLetRent(h));
 				}
 			}
@@ -469,7 +489,7 @@ public class Household implements IHouseOwner, Serializable {
 					putHouseForSale(h);
 				} else {
 					behaviour.setPropertyInvestor(true);
-					if(h.resident == null) {
+					if(Model.houses.getResident(h) == null) {
 						Model.rentalMarket.offer(h, buyToLetRent(h));
 					}					
 				}
@@ -477,23 +497,73 @@ public class Household implements IHouseOwner, Serializable {
 		}
 	}
 	
+	/////////////////////////////////////////////////////////
+	// Initial state (see EquilibriumInitialiser)
+	/////////////////////////////////////////////////////////
+
+	/***
+	 * Take over a house bought before the simulation started, with its
+	 * mortgage, and move in if this household has no home yet.
+	 */
+	void loadOwnedHouse(int h, MortgageAgreement mortgage) {
+		housePayments.put(h, mortgage);
+		Model.houses.setOwner(h, this);
+		if(home == HouseTable.NONE) {
+			home = h;
+			Model.houses.setResident(h, this);
+			desiredQuality = Model.houses.getQuality(h);
+		}
+		isFirstTimeBuyer = false;
+	}
+
+	/***
+	 * Move in to a house under a tenancy that started before the simulation
+	 */
+	void loadTenancy(int h, RentalAgreement rent) {
+		if(home != HouseTable.NONE) System.out.println("Strange: loading a tenancy but I have a home");
+		rent.tenant = this;
+		housePayments.put(h, rent);
+		home = h;
+		Model.houses.setResident(h, this);
+		desiredQuality = Model.houses.getQuality(h);
+		((Household)Model.houses.getOwner(h)).monthlyPropertyIncome += rent.monthlyPayment;
+		Model.rentalMarket.startTenancy(rent);
+	}
+
 	/////////////////////////////////////////////////////////
 	// Helpers
 	/////////////////////////////////////////////////////////
 
 
 	public boolean isHomeowner() {
-		if(home == null) return(false);
-		return(home.owner == this);
+		if(home == HouseTable.NONE) return(false);
+		return(Model.houses.getOwner(home) == this);
 	}
 
 	public boolean isRenting() {
-		if(home == null) return(false);
-		return(home.owner != this);
+		if(home == HouseTable.NONE) return(false);
+		return(Model.houses.getOwner(home) != this);
 	}
 
 	public boolean isInSocialHousing() {
-		return(home == null);
+		return(home == HouseTable.NONE);
+	}
+
+	/***
+	 * @return true if this household is an owner-occupier who isn't an investor, owns
+	 * no other property and hasn't put its home on the market. The only decision such
+	 * a household makes in a month is whether to sell its home.
+	 */
+	public boolean isSettledOwnerOccupier() {
+		return(isHomeowner() && !behaviour.isPropertyInvestor() && housePayments.size() == 1 && !Model.houses.isOnMarket(home) && !Model.houses.isOnRentalMarket(home));
+	}
+
+	/***
+	 * @return true if this household rents its home and owns no property. Such a
+	 * household makes no decisions until its tenancy ends.
+	 */
+	public boolean isSettledRenter() {
+		return(isRenting() && housePayments.size() == 1);
 	}
 
 	public boolean isFirstTimeBuyer() {
@@ -505,8 +575,8 @@ public class Household implements IHouseOwner, Serializable {
 	 */
 	public int nPropertiesForSale() {
 		int n=0;
-		for(House h : housePayments.keySet()) {
-			if(h.isOnMarket()) ++n;
+		for(int i=0; i<housePayments.size(); ++i) {
+			if(Model.houses.isOnMarket(housePayments.getHouse(i))) ++n;
 		}
 		return(n);
 	}
@@ -540,10 +610,10 @@ public class Household implements IHouseOwner, Serializable {
 	 */
 	public double getHomeEquity() {
 		if(!isHomeowner()) return(0.0);
-		return(Model.housingMarket.getAverageSalePrice(home.getQuality()) - mortgageFor(home).principal);
+		return(Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(home)) - mortgageFor(home).getPrincipal());
 	}
 	
-	public MortgageAgreement mortgageFor(House h) {
+	public MortgageAgreement mortgageFor(int h) {
 		PaymentAgreement payment = housePayments.get(h);
 		if(payment instanceof MortgageAgreement) {
 			return((MortgageAgreement)payment);
@@ -551,13 +621,43 @@ public class Household implements IHouseOwner, Serializable {
 		return(null);
 	}
 
-	public double monthlyPaymentOn(House h) {
+	public double monthlyPaymentOn(int h) {
 		PaymentAgreement payment = housePayments.get(h);
 		if(payment != null) {
-			return(payment.monthlyPayment);
+			return(payment.getMonthlyPayment());
 		}
 		return(0.0);		
 	}
+
+	/***
+	 * Audit the links between this household and its houses (see Model.checkConsistency)
+	 * @return true if they are consistent
+	 */
+	public boolean checkConsistency() {
+		boolean ok = true;
+		if(home != HouseTable.NONE && Model.houses.getResident(home) != this) {
+			System.out.println("Strange: household "+id+" isn't the resident of its home");
+			ok = false;
+		}
+		for(int i=0; i<housePayments.size(); ++i) {
+			int h = housePayments.getHouse(i);
+			if(Model.houses.getOwner(h) == this) {
+				if(!(housePayments.getPayment(i) instanceof MortgageAgreement)) {
+					System.out.println("Strange: household "+id+" owns house "+Model.houses.getId(h)+" without a mortgage agreement");
+					ok = false;
+				}
+				Household tenant = Model.houses.getResident(h);
+				if(tenant != null && tenant != this && tenant.home != h) {
+					System.out.println("Strange: the resident of household "+id+"'s house "+Model.houses.getId(h)+" doesn't live there");
+					ok = false;
+				}
+			} else if(h != home || !(housePayments.getPayment(i) instanceof RentalAgreement)) {
+				System.out.println("Strange: household "+id+" pays for house "+Model.houses.getId(h)+" but neither owns nor rents it");
+				ok = false;
+			}
+		}
+		return(ok);
+	}
 	
 	///////////////////////////////////////////////
 	
@@ -569,13 +669,13 @@ public class Household implements IHouseOwner, Serializable {
 
 	public double	 	monthlyEmploymentIncome;
 	protected double 	bankBalance;
-	protected House		home; // current home
-	protected Map<House, PaymentAgreement> 		housePayments = new TreeMap<House, PaymentAgreement>(); // houses owned
+	protected int		home; // handle of current home (HouseTable.NONE if in social housing)
+	protected HousePayments	housePayments = new HousePayments(); // houses owned or rented
 	protected double	monthlyPropertyIncome;
 	private boolean		isFirstTimeBuyer;
 //	public	double		desiredPropertyInvestmentFraction;
 	public int		 	id;		// only to ensure deterministic execution
-	protected MersenneTwisterFast 	rand;
+	protected RandomEngine 	rand;
 	
 	public Lifecycle	lifecycle;	// lifecycle plugin
 	public HouseholdBehaviour behaviour;
@@ -584,6 +684,8 @@ public class Household implements IHouseOwner, Serializable {
 //	static Diagnostics	diagnostics = new Diagnostics(Model.households);
 	static int		 id_pool;
 	boolean bankrupt;
+	double			mortgagePayments; // this month's mortgage payments, collected by the bank's ledger
+	int				nextDecision = HouseholdScheduler.UNSCHEDULED; // month of next scheduled decision in event-driven mode
 
 	/*
 	 * Second step in a time-step. At this point, the
@@ -606,15 +708,15 @@ public class Household implements IHouseOwner, Serializable {
 		double newPrice;
 		
 		for(House h : housePayments.keySet()) {
-			if(h.owner == this) {
+			if(h.getOwner() == this) {
 				forSale = h.getSaleRecord();
 				if(forSale != null) { // reprice house for sale
 					newPrice = behaviour.rethinkHouseSalePrice(forSale);
-					if(newPrice > mortgageFor(h).principal) {
+					if(newPrice > mortgageFor(h).getPrincipal()) {
 						houseMarket.updateOffer(forSale, newPrice);						
 					} else {
 						houseMarket.removeOffer(forSale);
-						if(h != home && h.resident == null) {
+						if(h != home && h.getResident() == null) {
 							rentalMarket.offer(h, buyToLetRent(h));
 						}
 					}
@@ -641,9 +743,9 @@ public class Household implements IHouseOwner, Serializable {
 	public void endOfTenancyAgreement(House house, PaymentAgreement rentalContract) {
 		if(home == null) System.out.println("Strange: paying rent and homeless");
 		if(house != home) System.out.println("Strange: I seem to have been renting a house but not living in it");
-		if(home.resident != this) System.out.println("home/resident link is broken");
-		house.owner.endOfLettingAgreement(house, rentalContract);		
-		home.resident = null;
+		if(home.getResident() != this) System.out.println("home/resident link is broken");
+		house.getOwner().endOfLettingAgreement(house, rentalContract);		
+		home.setResident(null);
 		home = null;
 	}
 	*/
@@ -683,7 +785,7 @@ public class Household implements IHouseOwner, Serializable {
 	}
 	*/
 //	public boolean isCollectingRentFrom(House h) {
-//	return(h.owner == this && h != home && h.resident != null);
+//	return(h.getOwner() == this && h != home && h.getResident() != null);
 //}
 
 	//////////////////////////////////////////////////////////////////
@@ -702,7 +804,7 @@ public class Household implements IHouseOwner, Serializable {
 	public double getPropertyInvestmentValuation() {
 		double valuation = 0.0;
 		for(House h : housePayments.keySet()) {
-			if(h.owner == this && h != home && !h.isOnMarket()) {
+			if(h.getOwner() == this && h != home && !h.isOnMarket()) {
 				valuation += houseMarket.getAverageSalePrice(h.getQuality());
 			}
 		}
@@ -4,7 +4,8 @@ import java.io.Serializable;
 
 import org.apache.commons.math3.distribution.LogNormalDistribution;
 
-import ec.util.MersenneTwisterFast;
+import utilities.QuantileTableDistribution;
+import utilities.RandomEngine;
 
 /**
  * This class implements the behavioural decisions made by households
@@ -13,8 +14,8 @@ import ec.util.MersenneTwisterFast;
  */
 public class HouseholdBehaviour implements Serializable {// implements IHouseholdBehaviour {
 	private static final long serialVersionUID = -7785886649432814279L;
-	public static LogNormalDistribution FTB_DOWNPAYMENT = new LogNormalDistribution(null, 10.30, 0.9093);
-	public static LogNormalDistribution OO_DOWNPAYMENT = new LogNormalDistribution(null, 11.155, 0.7538);
+	public static QuantileTableDistribution FTB_DOWNPAYMENT = new QuantileTableDistribution(new LogNormalDistribution(null, 10.30, 0.9093));
+	public static QuantileTableDistribution OO_DOWNPAYMENT = new QuantileTableDistribution(new LogNormalDistribution(null, 11.155, 0.7538));
 
 
 	// Buy-To-Let parameters
@@ -60,6 +61,7 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	static public double RENT_M = 6.0; // equilibrium months on market
 	static public double RENT_ZETA = 1.0/31.0;
 	static public double RENT_EPSILON = 0.05; //0.05;	// SD of noise
+	static public double RENT_DECAY = 0.95; // monthly factor by which the rent demanded on a house that hasn't found a tenant is reduced
 
 
 //	public final double DOWNPAYMENT_FRACTION = 0.75 + 0.0025*Model.rand.nextGaussian(); // Fraction of bank-balance household would like to spend on mortgage downpayments
@@ -67,14 +69,16 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 
 
 
-	protected MersenneTwisterFast 	rand = Model.rand;
+	protected RandomEngine 	rand = Model.rand;
 	public boolean					BTLInvestor;
 	public double 					propensityToSave;
 	public double					desiredBalance;
 	public double 					BtLCapGainCoeff; // Sensitivity of BtL investors to capital gain, 0.0 cares only about rental yield, 1.0 cares only about cap gain
+	double							ftbDownPaymentFactor = Double.NaN; // FTB down-payment divided by HPI (depends only on income percentile), NaN until first used
+	double							ooDownPaymentFactor = Double.NaN;  // OO down-payment divided by HPI (depends only on income percentile), NaN until first used
 
 	public double sigma(double x) { // the Logistic function, sometimes called sigma function, 1/1+e^(-x)
-		return 1.0/(1.0+Math.exp(-1.0*x));
+		return(HouseholdBehaviourKernels.sigma(x));
 	}
 	/***************************************
 	 * Constructor: initialise the behavioural variables for a new household: propensity to save, and
@@ -116,7 +120,7 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	 * @return Non-essential consumption for the month
 	 ********************************/
 	public double desiredConsumptionB(Household me) {//double monthlyIncome, double bankBalance) {
-		return(CONSUMPTION_FRACTION*Math.max(me.bankBalance - desiredBankBalance(me),0.0));
+		return(HouseholdBehaviourKernels.desiredConsumptionB(me.bankBalance, desiredBankBalance(me)));
 	}
 
 	/********************************
@@ -140,10 +144,7 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	 * @return desired purchase price after having decided to buy a house
 	 ****************************/
 	public double desiredPurchasePrice(Household me, double monthlyIncome) {
-		final double beta = BUY_BETA;
-		final double EPSILON = BUY_EPSILON;
-		final double alpha = BUY_ALPHA;
-		return(alpha*12.0*monthlyIncome*Math.exp(EPSILON*Model.rand.nextGaussian())/(1.0 - beta*HPAExpectation()));
+		return(HouseholdBehaviourKernels.desiredPurchasePrice(monthlyIncome, Model.rand.nextGaussian(), HPAExpectation()));
 		
 //		PurchasePlan plan = findBestPurchase(me);
 //		double housePrice = Model.housingMarket.getAverageSalePrice(plan.quality);//behaviour.desiredPurchasePrice(getMonthlyPreTaxIncome(), houseMarket.housePriceAppreciation());
@@ -157,23 +158,25 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	 * @return initial sale price of a house 
 	 ********************************/
 	public double initialSalePrice(double pbar, double d, double principal) {
-		final double alpha = SALE_ALPHA;
-		final double beta = SALE_BETA;
-		final double epsilon = SALE_EPSILON;
-		final double zeta = SALE_ZETA;
-
-		double exponent = alpha + Math.log(pbar) - beta*Math.log(zeta*(d + 1.0)) + epsilon*Model.rand.nextGaussian();
-		return(Math.max(Math.exp(exponent), principal));
+		return(HouseholdBehaviourKernels.initialSalePrice(pbar, d, principal, Model.rand.nextGaussian()));
 	}
 	
 
+	/**
+	 * @return This month's probability that an owner-occupier decides to sell their home
+	 * (the same for all owner-occupiers)
+	 */
+	public static double probabilityToSellHome() {
+		return(P_SELL *(1.0 + 4.0*(0.05 - Model.housingMarket.getNOffers()*1.0/Model.households.size())) + 5.0*(0.03-Model.bank.getMortgageInterestRate()));
+	}
+
 	/**
 	 * @return Does an owner-occupier decide to sell house?
 	 */
 	public boolean decideToSellHome(Household me) {
 		// TODO: need to add expenditure
 		if(isPropertyInvestor()) return(false);
-		return(rand.nextDouble() < P_SELL *(1.0 + 4.0*(0.05 - Model.housingMarket.offersPQ.size()*1.0/Model.households.size())) + 5.0*(0.03-Model.bank.getMortgageInterestRate()));
+		return(rand.nextDouble() < probabilityToSellHome());
 
 		// reference 
 		//int potentialQualityChange = Model.housingMarket.maxQualityGivenPrice(Model.bank.getMaxMortgage(me,true))- me.home.getQuality();
@@ -184,8 +187,8 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 		// calc purchase price
 		PurchasePlan plan = findBestPurchase(me);
 		if(plan.quality < 0) return(false); // can't afford new home anyway
-		int currentQuality = me.home.getQuality();
-		double currentUtility;// = utilityOfHome(me,me.home.getQuality()) - me.mortgageFor(me.home).nextPayment()/me.getMonthlyPreTaxIncome();
+		int currentQuality = Model.houses.getQuality(me.home);
+		double currentUtility;// = utilityOfHome(me,Model.houses.getQuality(me.home)) - me.mortgageFor(me.home).nextPayment()/me.getMonthlyPreTaxIncome();
 //		currentUtility = utilityOfHome(me,currentQuality) +(Model.housingMarket.getAverageSalePrice(currentQuality)*HPAExpectation()/12.0 - me.mortgageFor(me.home).nextPayment())/me.getMonthlyPreTaxIncome();
 		double currentLeftForConsumption = 1.0 - (me.mortgageFor(me.home).nextPayment() - Model.housingMarket.getAverageSalePrice(currentQuality)*HPAExpectation()/12.0)/me.monthlyEmploymentIncome;
 //		currentUtility = (currentQuality-me.desiredQuality)/House.Config.N_QUALITY + qualityOfLiving(currentLeftForConsumption);
@@ -211,20 +214,35 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 		if(me.bankBalance > housePrice*BANK_BALANCE_FOR_CASH_DOWNPAYMENT) { // calibrated against mortgage approval/housing transaction ratio, core indicators average 1987-2006
 			return(housePrice);
 		}
-		double downpayment;
-		if(me.isFirstTimeBuyer()) {
-			downpayment = Model.housingMarket.housePriceIndex*FTB_DOWNPAYMENT.inverseCumulativeProbability(Math.max(0.0,(me.lifecycle.incomePercentile-0.3)/0.7));
-		} else if(isPropertyInvestor()) {
-			downpayment = housePrice*(Math.max(0.0, 0.3+0.1*rand.nextGaussian())); // calibrated...
-			//downpayment = housePrice*(Math.max(0.0, 0.26+0.08*rand.nextGaussian())); // calibrated...
-		} else {
-			downpayment = Model.housingMarket.housePriceIndex*OO_DOWNPAYMENT.inverseCumulativeProbability(Math.max(0.0, (me.lifecycle.incomePercentile-0.3)/0.7));
-		}
+		double downpayment = usualDownPayment(me, housePrice, me.isFirstTimeBuyer());
 		if(downpayment > me.bankBalance) downpayment = me.bankBalance;
 		return(downpayment);
 //		return(Model.housingMarket.housePriceIndex*OO_DOWNPAYMENT.inverseCumulativeProbability(me.lifecycle.incomePercentile));	
 	}
 
+	/**
+	 * @param me the household
+	 * @param housePrice the price of the house
+	 * @param firstTimeBuyer true if the household is buying its first home
+	 * @return the downpayment the household would make if it had the savings for it
+	 * (see downPayment), as a first-time buyer, an investor or a home mover
+	 */
+	public double usualDownPayment(Household me, double housePrice, boolean firstTimeBuyer) {
+		if(firstTimeBuyer) {
+			if(Double.isNaN(ftbDownPaymentFactor)) {
+				ftbDownPaymentFactor = FTB_DOWNPAYMENT.inverseCumulativeProbability(Math.max(0.0,(me.lifecycle.incomePercentile-0.3)/0.7));
+			}
+			return(Model.housingMarket.housePriceIndex*ftbDownPaymentFactor);
+		} else if(isPropertyInvestor()) {
+			return(housePrice*(Math.max(0.0, 0.3+0.1*rand.nextGaussian()))); // calibrated...
+			//downpayment = housePrice*(Math.max(0.0, 0.26+0.08*rand.nextGaussian())); // calibrated...
+		}
+		if(Double.isNaN(ooDownPaymentFactor)) {
+			ooDownPaymentFactor = OO_DOWNPAYMENT.inverseCumulativeProbability(Math.max(0.0, (me.lifecycle.incomePercentile-0.3)/0.7));
+		}
+		return(Model.housingMarket.housePriceIndex*ooDownPaymentFactor);
+	}
+
 	
 	/********************************************************
 	 * Decide how much to drop the list-price of a house if
@@ -324,34 +342,23 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	 * @param me The investor
 	 * @return Does an investor decide to sell a buy-to-let property (per month)
 	 */
-	public boolean decideToSellInvestmentProperty(House h, Household me) {
+	public boolean decideToSellInvestmentProperty(int h, Household me) {
 		if(me.nInvestmentProperties() < 2) return(false); // Always keep at least one property
-
-		final double INTENSITY = 50.0; // intensity of choice on effective yield
-		final double AGGREGATE_RATE = 1.0/12.0; // controls the average rate of sales
-		double effectiveYield;
 		
 		// sell if not selling on rental market at interest coverage ratio of 1.0 (?)
-		if(!h.isOnRentalMarket()) return(false); // don't sell while occupied by tenant
+		if(!Model.houses.isOnRentalMarket(h)) return(false); // don't sell while occupied by tenant
 		MortgageAgreement mortgage = me.mortgageFor(h);
 		//if(mortgage == null) {
-		if(h.owner!=me){
+		if(Model.houses.getOwner(h)!=me){
 			System.out.println("Strange: deciding to sell investment property that I don't own");
 			return(false);
 		}
 		// TODO: add transaction costs to expected capital gain
-//		double icr = (h.rentalRecord.getPrice()-mortgage.nextPayment())/h.rentalRecord.getPrice();
-		double marketPrice = Model.housingMarket.getAverageSalePrice(h.getQuality());
-		double equity = Math.max(0.01, marketPrice - mortgage.principal);
-		double leverage = marketPrice/equity;
-		double rentalYield = h.rentalRecord.getPrice()*12.0/marketPrice;
-		double mortgageRate = mortgage.nextPayment()*12.0/equity;
-		if(BTL_YIELD_SCALING) {
-			effectiveYield = leverage*((1.0-BtLCapGainCoeff)*rentalYield + BtLCapGainCoeff*(Model.rentalMarket.longTermAverageGrossYield + HPAExpectation())) - mortgageRate;
-		} else {
-			effectiveYield = leverage*(rentalYield + BtLCapGainCoeff*HPAExpectation()) - mortgageRate;
-		}
-		double pKeep = Math.pow(sigma(INTENSITY*effectiveYield),AGGREGATE_RATE);
+//		double icr = (h.getRentalRecord().getPrice()-mortgage.nextPayment())/h.getRentalRecord().getPrice();
+		double effectiveYield = HouseholdBehaviourKernels.sellInvestmentYield(Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(h)),
+				mortgage.getPrincipal(), Model.houses.getRentalRecord(h).getPrice(), mortgage.nextPayment(), BtLCapGainCoeff,
+				HPAExpectation(), Model.rentalMarket.longTermAverageGrossYield, BTL_YIELD_SCALING);
+		double pKeep = HouseholdBehaviourKernels.btlProbability(effectiveYield);
 		return(Model.rand.nextDouble() < (1.0-pKeep));
 	}
 	
@@ -362,7 +369,7 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 	 * @param d average days on market
 	 * @param h house being offered for rent
 	 */
-	public double buyToLetRent(double rbar, double d, House h) {
+	public double buyToLetRent(double rbar, double d, int h) {
 		final double alpha = RENT_ALPHA;
 		final double M = RENT_M;
 		final double beta = alpha/Math.log(M); // Size of Days-on-market effect
@@ -371,26 +378,21 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 
 		double exponent = alpha + Math.log(rbar) - beta*Math.log(zeta*(d + 1.0)) + epsilon*Model.rand.nextGaussian();
 		double result = Math.exp(exponent);
-		double minAcceptable = Model.housingMarket.getAverageSalePrice(h.getQuality())*0.048/12.0; // fudge to keep rental yield up
+		double minAcceptable = Model.housingMarket.getAverageSalePrice(Model.houses.getQuality(h))*0.048/12.0; // fudge to keep rental yield up
 		if(result < minAcceptable) result = minAcceptable;
 		return(result);
 
 	}
 
-	/**
-	 * Update the demanded rent for a property
-	 *
-	 * @param sale the HouseSaleRecord of the property for rent
-	 * @return the new rent
-     */
-	public double rethinkBuyToLetRent(HouseSaleRecord sale) {
-		return(0.95*sale.getPrice());
+	// Updating the demanded rent for a property on the rental market is done by the
+	// rental market itself, which reduces all rents by RENT_DECAY every month (see DecayingListings)
+//	public double rethinkBuyToLetRent(HouseSaleRecord sale) {
 //		if(rand.nextDouble() > 0.944) {
 //			double logReduction = Math.min(4.6, 1.603+(rand.nextGaussian()*0.6173));
 //			return(sale.getPrice() * (1.0-0.01*Math.exp(logReduction)));
 //		}
 //		return(sale.getPrice());
-	}
+//	}
 
 	/***
 	 * Monthly opportunity of buying a new BTL property.
@@ -406,10 +408,6 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 		if(me.nInvestmentProperties() < 1) { // If I don't have any BTL properties, I always decide to buy one!!
 			return(true);
 		}
-		final double INTENSITY = 50.0;
-		final double AGGREGATE_RATE = 1.0/12.0;
-		double effectiveYield;
-		
 		if(!isPropertyInvestor()) return false;
 		if(me.bankBalance < desiredBankBalance(me)*0.75) {
 			return(false);
@@ -420,17 +418,11 @@ public class HouseholdBehaviour implements Serializable {// implements IHousehol
 		
 		MortgageAgreement m = Model.bank.requestApproval(me, maxPrice, 0.0, false); // maximise leverage with min downpayment
 		
-		double leverage = m.purchasePrice/m.downPayment;
-		double rentalYield = Model.rentalMarket.averageSoldGrossYield;
-		double mortgageRate = m.monthlyPayment*12.0/m.downPayment;
-		if(BTL_YIELD_SCALING) {
-			effectiveYield = leverage*((1.0-BtLCapGainCoeff)*rentalYield + BtLCapGainCoeff*(Model.rentalMarket.longTermAverageGrossYield + HPAExpectation())) - mortgageRate;
-		} else {
-			effectiveYield = leverage*(rentalYield + BtLCapGainCoeff*HPAExpectation()) - mortgageRate;
-		}
+		double effectiveYield = HouseholdBehaviourKernels.buyToLetYield(m.purchasePrice, m.downPayment, m.monthlyPayment, BtLCapGainCoeff,
+				Model.rentalMarket.averageSoldGrossYield, HPAExpectation(), Model.rentalMarket.longTermAverageGrossYield, BTL_YIELD_SCALING);
 		//double pDontBuy = Math.pow(1.0/(1.0 + Math.exp(INTENSITY*effectiveYield)),AGGREGATE_RATE);
 		//return(Model.rand.nextDouble() < (1.0-pDontBuy));
-	    return (Model.rand.nextDouble() < Math.pow(sigma(INTENSITY*effectiveYield),AGGREGATE_RATE));
+	    return (Model.rand.nextDouble() < HouseholdBehaviourKernels.btlProbability(effectiveYield));
 	}
 	
 	public double btlPurchaseBid(Household me) {
@@ -0,0 +1,366 @@
+package housing;
+
+import java.util.Random;
+
+import utilities.Invariants;
+
+/**************************************************************************
+ * The arithmetic of the household behaviour rules (see HouseholdBehaviour),
+ * in two forms: static functions of the household fields and market values
+ * one household's rule uses, which HouseholdBehaviour calls after drawing
+ * the random numbers and reading the fields, and batch versions (see Batch)
+ * that apply the same functions to arrays of households, one array per
+ * field, as in MortgageLedger.
+ *
+ * The batch versions come in two implementations, chosen by batch():
+ * plain loops over the scalar functions (Loops), which give exactly the
+ * scalar results, and VectorBehaviourKernels, which uses the Java Vector
+ * API (jdk.incubator.vector). The Vector API needs Java 16 or later, so
+ * VectorBehaviourKernels is in its own source directory, vectorsrc, and is
+ * only used if Config.VECTOR_API is set and it can be loaded; otherwise
+ * batch() returns the loops.
+ *
+ * The vector versions evaluate each element in the same order as the scalar
+ * functions, so the only differences come from exp(), log() and pow(),
+ * which both Math and the Vector API compute to within 1 ulp (with AVX-512,
+ * the largest difference seen is 2 ulps). The results agree to within
+ * ULP_TOLERANCE ulps, except for initialSalePrice: its exponent is about
+ * 12 (the log of a price), so an ulp of error in the exponent is about 10
+ * ulps of the price, and there the tolerance is ULP_TOLERANCE ulps of the
+ * exponent. checkBatch() checks an implementation against these
+ * tolerances, and batch() runs it when invariant checking is on (see
+ * utilities.Invariants).
+ *************************************************************************/
+public class HouseholdBehaviourKernels {
+
+	static public class Config {
+		public static boolean VECTOR_API = false; // True to evaluate the batch rules with the Java Vector API (VectorBehaviourKernels, in vectorsrc) when it is available
+	}
+
+	public static final double BTL_INTENSITY = 50.0;			// intensity of choice on effective yield for BTL decisions
+	public static final double BTL_AGGREGATE_RATE = 1.0/12.0;	// controls the average rate of BTL purchases and sales
+
+	public static final int ULP_TOLERANCE = 4;	// agreement between the batch and scalar results (see class comment)
+
+	///////////////////////////////////////////////////////////////////////////
+	// Scalar rules
+	///////////////////////////////////////////////////////////////////////////
+
+	/*** the Logistic function, 1/(1+e^(-x)) */
+	public static double sigma(double x) {
+		return 1.0/(1.0+Math.exp(-1.0*x));
+	}
+
+	/***
+	 * @param gaussian standard normal noise
+	 * @param hpaExpectation expected house price appreciation (HouseholdBehaviour.HPAExpectation())
+	 * @return desired purchase price of a household with the given monthly income
+	 */
+	public static double desiredPurchasePrice(double monthlyIncome, double gaussian, double hpaExpectation) {
+		return(HouseholdBehaviour.BUY_ALPHA*12.0*monthlyIncome*Math.exp(HouseholdBehaviour.BUY_EPSILON*gaussian)/(1.0 - HouseholdBehaviour.BUY_BETA*hpaExpectation));
+	}
+
+	/***
+	 * @param pbar average sale price of houses of the same quality
+	 * @param d average number of days on the market before sale
+	 * @param principal amount of principal left on any mortgage on this house
+	 * @param gaussian standard normal noise
+	 * @return initial sale price of a house
+	 */
+	public static double initialSalePrice(double pbar, double d, double principal, double gaussian) {
+		double exponent = HouseholdBehaviour.SALE_ALPHA + Math.log(pbar) - HouseholdBehaviour.SALE_BETA*Math.log(HouseholdBehaviour.SALE_ZETA*(d + 1.0)) + HouseholdBehaviour.SALE_EPSILON*gaussian;
+		return(Math.max(Math.exp(exponent), principal));
+	}
+
+	/***
+	 * @return non-essential consumption for the month
+	 */
+	public static double desiredConsumptionB(double bankBalance, double desiredBankBalance) {
+		return(HouseholdBehaviour.CONSUMPTION_FRACTION*Math.max(bankBalance - desiredBankBalance,0.0));
+	}
+
+	/***
+	 * Effective yield of a buy-to-let property.
+	 *
+	 * @param leverage price of the property over the investor's equity in it
+	 * @param rentalYield annual rent over price
+	 * @param mortgageRate annual mortgage payments over equity
+	 * @param capGainCoeff the investor's BtLCapGainCoeff
+	 * @param yieldScaling HouseholdBehaviour.BTL_YIELD_SCALING
+	 */
+	public static double effectiveYield(double leverage, double rentalYield, double mortgageRate, double capGainCoeff,
+			double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling) {
+		if(yieldScaling) {
+			return(leverage*((1.0-capGainCoeff)*rentalYield + capGainCoeff*(longTermAverageGrossYield + hpaExpectation)) - mortgageRate);
+		}
+		return(leverage*(rentalYield + capGainCoeff*hpaExpectation) - mortgageRate);
+	}
+
+	/***
+	 * Effective yield of keeping an investment property
+	 * (see HouseholdBehaviour.decideToSellInvestmentProperty)
+	 *
+	 * @param marketPrice average sale price of houses of the property's quality
+	 * @param principal principal left on the property's mortgage
+	 * @param monthlyRent rent asked for the property
+	 * @param monthlyPayment monthly payment on the property's mortgage
+	 */
+	public static double sellInvestmentYield(double marketPrice, double principal, double monthlyRent, double monthlyPayment, double capGainCoeff,
+			double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling) {
+		double equity = Math.max(0.01, marketPrice - principal);
+		double leverage = marketPrice/equity;
+		double rentalYield = monthlyRent*12.0/marketPrice;
+		double mortgageRate = monthlyPayment*12.0/equity;
+		return(effectiveYield(leverage, rentalYield, mortgageRate, capGainCoeff, hpaExpectation, longTermAverageGrossYield, yieldScaling));
+	}
+
+	/***
+	 * Effective yield of buying a new investment property with the largest mortgage on offer
+	 * (see HouseholdBehaviour.decideToBuyBuyToLet)
+	 *
+	 * @param purchasePrice, downPayment, monthlyPayment terms of the mortgage
+	 * @param rentalYield average gross yield of rentals sold (HouseRentalMarket.averageSoldGrossYield)
+	 */
+	public static double buyToLetYield(double purchasePrice, double downPayment, double monthlyPayment, double capGainCoeff,
+			double rentalYield, double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling) {
+		double leverage = purchasePrice/downPayment;
+		double mortgageRate = monthlyPayment*12.0/downPayment;
+		return(effectiveYield(leverage, rentalYield, mortgageRate, capGainCoeff, hpaExpectation, longTermAverageGrossYield, yieldScaling));
+	}
+
+	/***
+	 * @return monthly probability of acting on an investment with the given effective yield
+	 * (of buying a new property, or of keeping an existing one)
+	 */
+	public static double btlProbability(double effectiveYield) {
+		return(Math.pow(sigma(BTL_INTENSITY*effectiveYield), BTL_AGGREGATE_RATE));
+	}
+
+	///////////////////////////////////////////////////////////////////////////
+	// Batch rules
+	///////////////////////////////////////////////////////////////////////////
+
+	/***
+	 * Batch versions of the rules: element i of out is the scalar rule applied
+	 * to element i of each array argument, for i < n. The other arguments are
+	 * market values shared by all the households. These are for evaluating a
+	 * rule for many households at once (the monthly step evaluates each
+	 * household's rules in turn, between its random draws and its trades).
+	 */
+	public interface Batch {
+		void sigma(double [] x, double [] out, int n);
+		void desiredPurchasePrice(double [] monthlyIncome, double [] gaussian, double hpaExpectation, double [] out, int n);
+		void initialSalePrice(double [] pbar, double [] d, double [] principal, double [] gaussian, double [] out, int n);
+		void desiredConsumptionB(double [] bankBalance, double [] desiredBankBalance, double [] out, int n);
+		void sellInvestmentYield(double [] marketPrice, double [] principal, double [] monthlyRent, double [] monthlyPayment, double [] capGainCoeff,
+				double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n);
+		void buyToLetYield(double [] purchasePrice, double [] downPayment, double [] monthlyPayment, double [] capGainCoeff,
+				double rentalYield, double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n);
+		void btlProbability(double [] effectiveYield, double [] out, int n);
+	}
+
+	/***
+	 * The batch rules as plain loops over the scalar rules, so the results are
+	 * exactly the scalar ones. Used when the Vector API isn't.
+	 */
+	public static class Loops implements Batch {
+		@Override
+		public void sigma(double [] x, double [] out, int n) {
+			for(int i=0; i<n; ++i) out[i] = HouseholdBehaviourKernels.sigma(x[i]);
+		}
+
+		@Override
+		public void desiredPurchasePrice(double [] monthlyIncome, double [] gaussian, double hpaExpectation, double [] out, int n) {
+			for(int i=0; i<n; ++i) out[i] = HouseholdBehaviourKernels.desiredPurchasePrice(monthlyIncome[i], gaussian[i], hpaExpectation);
+		}
+
+		@Override
+		public void initialSalePrice(double [] pbar, double [] d, double [] principal, double [] gaussian, double [] out, int n) {
+			for(int i=0; i<n; ++i) out[i] = HouseholdBehaviourKernels.initialSalePrice(pbar[i], d[i], principal[i], gaussian[i]);
+		}
+
+		@Override
+		public void desiredConsumptionB(double [] bankBalance, double [] desiredBankBalance, double [] out, int n) {
+			for(int i=0; i<n; ++i) out[i] = HouseholdBehaviourKernels.desiredConsumptionB(bankBalance[i], desiredBankBalance[i]);
+		}
+
+		@Override
+		public void sellInvestmentYield(double [] marketPrice, double [] principal, double [] monthlyRent, double [] monthlyPayment, double [] capGainCoeff,
+				double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n) {
+			for(int i=0; i<n; ++i) {
+				out[i] = HouseholdBehaviourKernels.sellInvestmentYield(marketPrice[i], principal[i], monthlyRent[i], monthlyPayment[i], capGainCoeff[i],
+						hpaExpectation, longTermAverageGrossYield, yieldScaling);
+			}
+		}
+
+		@Override
+		public void buyToLetYield(double [] purchasePrice, double [] downPayment, double [] monthlyPayment, double [] capGainCoeff,
+				double rentalYield, double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n) {
+			for(int i=0; i<n; ++i) {
+				out[i] = HouseholdBehaviourKernels.buyToLetYield(purchasePrice[i], downPayment[i], monthlyPayment[i], capGainCoeff[i],
+						rentalYield, hpaExpectation, longTermAverageGrossYield, yieldScaling);
+			}
+		}
+
+		@Override
+		public void btlProbability(double [] effectiveYield, double [] out, int n) {
+			for(int i=0; i<n; ++i) out[i] = HouseholdBehaviourKernels.btlProbability(effectiveYield[i]);
+		}
+	}
+
+	static final Batch	LOOPS = new Loops();
+	static Batch		vector;				// the Vector API implementation, once loaded
+	static boolean		vectorTried = false;	// true once we have tried to load it
+
+	/***
+	 * @return the Vector API implementation of the batch rules if Config.VECTOR_API
+	 * is set and it is available (Java 16 or later, with vectorsrc compiled and
+	 * jdk.incubator.vector added to the run), the plain loops otherwise
+	 */
+	public static synchronized Batch batch() {
+		if(!Config.VECTOR_API) return(LOOPS);
+		if(!vectorTried) {
+			vectorTried = true;
+			vector = loadVector();
+			if(vector != null && Invariants.CHECKING) checkBatch(vector);
+		}
+		return(vector == null ? LOOPS : vector);
+	}
+
+	/*** @return a new VectorBehaviourKernels (null if it can't be loaded) */
+	static Batch loadVector() {
+		if(javaVersion() < 16) {
+			System.out.println("The Vector API needs Java 16 or later: using plain loops for the batch behaviour rules");
+			return(null);
+		}
+		try {
+			return((Batch)Class.forName("housing.VectorBehaviourKernels").getDeclaredConstructor().newInstance());
+		} catch (ReflectiveOperationException | LinkageError e) {
+			System.out.println("Can't load VectorBehaviourKernels ("+e+"): using plain loops for the batch behaviour rules. "+
+					"Compile vectorsrc and run with --add-modules jdk.incubator.vector to use the Vector API.");
+			return(null);
+		}
+	}
+
+	/*** @return the major version of the running Java (8 for 1.8) */
+	static int javaVersion() {
+		String version = System.getProperty("java.specification.version", "1.8");
+		if(version.startsWith("1.")) version = version.substring(2);
+		try {
+			return(Integer.parseInt(version));
+		} catch(NumberFormatException e) {
+			return(8);
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////////////
+	// Checks
+	///////////////////////////////////////////////////////////////////////////
+
+	/***
+	 * Check a batch implementation against the scalar rules on random arguments
+	 * in the ranges the model sees, and print a Strange: message for each rule
+	 * that disagrees by more than the tolerance (see class comment). The random
+	 * numbers have their own generator, so the model's are left alone.
+	 *
+	 * @return the largest disagreement, in ulps (of the exponent, for initialSalePrice)
+	 */
+	public static long checkBatch(Batch batch) {
+		final int N = 1003; // not a multiple of a vector length, so the loop tails are checked too
+		Random rand = new Random(1);
+		double [] a = new double[N], b = new double[N], c = new double[N], d = new double[N], e = new double[N];
+		double [] out = new double[N];
+		double hpa = 0.03, longTermYield = 0.05, rentalYield = 0.045;
+		long worst = 0, err;
+		int i;
+
+		for(i=0; i<N; ++i) a[i] = 40.0*rand.nextDouble() - 20.0;
+		batch.sigma(a, out, N);
+		for(i=0, err=0; i<N; ++i) err = Math.max(err, ulpDistance(out[i], sigma(a[i])));
+		worst = Math.max(worst, report("sigma", err, ULP_TOLERANCE));
+
+		for(i=0; i<N; ++i) {
+			a[i] = 500.0 + 20000.0*rand.nextDouble();
+			b[i] = rand.nextGaussian();
+		}
+		batch.desiredPurchasePrice(a, b, hpa, out, N);
+		for(i=0, err=0; i<N; ++i) err = Math.max(err, ulpDistance(out[i], desiredPurchasePrice(a[i], b[i], hpa)));
+		worst = Math.max(worst, report("desiredPurchasePrice", err, ULP_TOLERANCE));
+
+		for(i=0; i<N; ++i) {
+			a[i] = 5.0e4 + 2.0e6*rand.nextDouble();
+			b[i] = 200.0*rand.nextDouble();
+			c[i] = (rand.nextBoolean() ? 0.0 : 1.2*a[i]*rand.nextDouble()); // sometimes more than the price
+			d[i] = rand.nextGaussian();
+		}
+		batch.initialSalePrice(a, b, c, d, out, N);
+		for(i=0, err=0; i<N; ++i) {
+			double expected = initialSalePrice(a[i], b[i], c[i], d[i]);
+			if(out[i] == expected) continue;
+			if(expected == c[i] || out[i] == c[i]) { // only one of them is the principal
+				err = Math.max(err, ulpDistance(out[i], expected));
+			} else { // compare the exponents
+				err = Math.max(err, (long)Math.ceil(Math.abs(Math.log(out[i]) - Math.log(expected))/Math.ulp(Math.log(expected))));
+			}
+		}
+		worst = Math.max(worst, report("initialSalePrice", err, ULP_TOLERANCE));
+
+		for(i=0; i<N; ++i) {
+			a[i] = 1.0e5*rand.nextDouble();
+			b[i] = 1.0e5*rand.nextDouble();
+		}
+		batch.desiredConsumptionB(a, b, out, N);
+		for(i=0, err=0; i<N; ++i) err = Math.max(err, ulpDistance(out[i], desiredConsumptionB(a[i], b[i])));
+		worst = Math.max(worst, report("desiredConsumptionB", err, ULP_TOLERANCE));
+
+		for(boolean yieldScaling : new boolean[] {false, true}) {
+			for(i=0; i<N; ++i) {
+				a[i] = 5.0e4 + 2.0e6*rand.nextDouble();
+				b[i] = 1.1*a[i]*rand.nextDouble();
+				c[i] = a[i]*(0.002 + 0.004*rand.nextDouble());
+				d[i] = b[i]*(0.003 + 0.005*rand.nextDouble());
+				e[i] = rand.nextDouble();
+			}
+			batch.sellInvestmentYield(a, b, c, d, e, hpa, longTermYield, yieldScaling, out, N);
+			for(i=0, err=0; i<N; ++i) {
+				err = Math.max(err, ulpDistance(out[i], sellInvestmentYield(a[i], b[i], c[i], d[i], e[i], hpa, longTermYield, yieldScaling)));
+			}
+			worst = Math.max(worst, report("sellInvestmentYield", err, ULP_TOLERANCE));
+
+			for(i=0; i<N; ++i) {
+				b[i] = a[i]*(0.05 + 0.5*rand.nextDouble());
+				c[i] = (a[i] - b[i])*(0.003 + 0.005*rand.nextDouble());
+			}
+			batch.buyToLetYield(a, b, c, e, rentalYield, hpa, longTermYield, yieldScaling, out, N);
+			for(i=0, err=0; i<N; ++i) {
+				err = Math.max(err, ulpDistance(out[i], buyToLetYield(a[i], b[i], c[i], e[i], rentalYield, hpa, longTermYield, yieldScaling)));
+			}
+			worst = Math.max(worst, report("buyToLetYield", err, ULP_TOLERANCE));
+		}
+
+		for(i=0; i<N; ++i) a[i] = rand.nextDouble() - 0.5;
+		batch.btlProbability(a, out, N);
+		for(i=0, err=0; i<N; ++i) err = Math.max(err, ulpDistance(out[i], btlProbability(a[i])));
+		worst = Math.max(worst, report("btlProbability", err, ULP_TOLERANCE));
+
+		return(worst);
+	}
+
+	static long report(String rule, long err, int tolerance) {
+		if(err > tolerance) System.out.println("Strange: batch "+rule+" differs from the scalar rule by "+err+" ulps (tolerance "+tolerance+")");
+		return(err);
+	}
+
+	/***
+	 * @return the distance between two doubles in units in the last place (0 if
+	 * both are NaN, Long.MAX_VALUE if only one is)
+	 */
+	public static long ulpDistance(double a, double b) {
+		if(Double.isNaN(a) || Double.isNaN(b)) return(Double.isNaN(a) && Double.isNaN(b) ? 0 : Long.MAX_VALUE);
+		long x = Double.doubleToLongBits(a);
+		long y = Double.doubleToLongBits(b);
+		if(x < 0) x = Long.MIN_VALUE - x; // map to a monotonic integer scale
+		if(y < 0) y = Long.MIN_VALUE - y;
+		return(Math.abs(x - y));
+	}
+}
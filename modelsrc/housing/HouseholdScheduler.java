@@ -0,0 +1,179 @@
+package housing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**************************************************************************
+ * Event-driven stepping of households (used when Model.EVENT_DRIVEN is true).
+ *
+ * Every household still gets its finances stepped every month, but only
+ * households that have something to decide get their decisions stepped.
+ * Households that can act in any month (in social housing, investors,
+ * households with a house on the market) are stepped every month as before.
+ * Renters that own no property have nothing to decide until their tenancy
+ * ends, which is handled by the rental market's TenancyWheel, so they aren't
+ * stepped at all.
+ *
+ * A settled owner-occupier's only decision is whether to sell its home, which
+ * happens each month with a probability p(t) that is the same for all
+ * owner-occupiers (HouseholdBehaviour.probabilityToSellHome()). Rather than
+ * drawing a random number for each one every month, each settled owner-occupier
+ * is given its next candidate month by a geometric waiting time with success
+ * probability 'bound' >= p(t), and sits in a calendar queue until then. In its
+ * candidate month, it sells with probability p(t)/bound (thinning). This gives
+ * exactly the same distribution of decisions as a monthly Bernoulli(p(t)) draw
+ * as long as p(t) <= bound. If p(t) rises above the bound (or falls far below it),
+ * the bound is reset and all candidate months are re-drawn, which is also exact
+ * because the geometric distribution is memoryless.
+ *
+ * Queued households are cancelled lazily: a household's nextDecision field
+ * holds its current candidate month, and queue entries that don't match it are
+ * ignored. A household that stops being a settled owner-occupier (or dies)
+ * just has its nextDecision reset.
+ *
+ * This doesn't make runs faster. Every household's finances are still stepped
+ * every month, at about 300ns a household, while a settled household's
+ * decisions only cost about 20ns, about as much as telling whether it is
+ * settled. From an equilibrium start, 400 months over seeds 1 to 6 took 4%
+ * more CPU time in total than with every household stepped in full in one set
+ * of runs, and 4% less in another. Single runs took anything from a third
+ * less to a third more, as the two modes draw different random numbers and
+ * so follow different paths, so comparing the two on single runs can show
+ * either mode 10-40% slower.
+ *************************************************************************/
+public class HouseholdScheduler implements Serializable {
+	private static final long serialVersionUID = 3061418239541771296L;
+
+	public static final int		UNSCHEDULED = -1;
+	public static double		BOUND_MARGIN = 1.5;	// bound on p(t) is set to this multiple of the current p(t)
+	public static double		MIN_BOUND = 1e-4;	// lowest bound on p(t)
+	static final int			N_BUCKETS = 256;	// number of months in one cycle of the calendar queue (power of 2)
+
+	public HouseholdScheduler() {
+		@SuppressWarnings("unchecked") // an array of a generic type can't be created directly
+		ArrayList<Household> [] calendar = (ArrayList<Household> [])new ArrayList<?>[N_BUCKETS];
+		buckets = calendar;
+		for(int i=0; i<N_BUCKETS; ++i) {
+			buckets[i] = new ArrayList<Household>();
+		}
+		spare = new ArrayList<Household>();
+		init();
+	}
+
+	public void init() {
+		for(ArrayList<Household> bucket : buckets) bucket.clear();
+		bound = 0.0;
+		nScheduled = 0;
+		nDue = 0;
+		nStepped = 0;
+	}
+
+	/***
+	 * Step all households for this month
+	 */
+	public void step() {
+		int t = Model.getTime();
+		double p = HouseholdBehaviour.probabilityToSellHome();
+		boolean redraw = false;
+		nStepped = 0;
+		nDue = 0;
+		nScheduled = 0;
+
+		// --- check the thinning bound (and lower it if it has become much too loose)
+		if(p > bound || p*BOUND_MARGIN*BOUND_MARGIN < bound) {
+			bound = Math.min(1.0, Math.max(BOUND_MARGIN*p, MIN_BOUND));
+			redraw = true;
+			for(ArrayList<Household> bucket : buckets) bucket.clear();
+		}
+
+		// --- bulk pass: finances for everyone, decisions for active households (renters are tested first,
+		// as that test is the cheaper one)
+		for(Household h : Model.households) {
+			h.stepFinances();
+			if(h.isSettledRenter()) {
+				h.nextDecision = UNSCHEDULED;
+			} else if(h.isSettledOwnerOccupier()) {
+				if(redraw || h.nextDecision < t) {
+					schedule(h, t + waitingTime());
+				}
+				++nScheduled;
+			} else {
+				h.nextDecision = UNSCHEDULED;
+				h.stepDecisions();
+				++nStepped;
+			}
+		}
+
+		// --- owner-occupiers whose candidate month is now
+		ArrayList<Household> due = buckets[t & (N_BUCKETS-1)];
+		buckets[t & (N_BUCKETS-1)] = spare; // households rescheduled for this bucket go in the spare list
+		for(Household h : due) {
+			if(h.nextDecision != t) {
+				if(h.nextDecision > t && ((h.nextDecision - t) & (N_BUCKETS-1)) == 0) {
+					spare.add(h); // candidate month is one or more cycles ahead
+				}
+				continue; // otherwise cancelled
+			}
+			++nDue;
+			if(!h.isSettledOwnerOccupier()) { // has changed this month
+				h.nextDecision = UNSCHEDULED;
+				--nScheduled;
+				continue;
+			}
+			if(h.rand.nextDouble()*bound < HouseholdBehaviour.probabilityToSellHome()) {
+				h.nextDecision = UNSCHEDULED;
+				--nScheduled;
+				h.putHouseForSale(h.home);
+			} else {
+				schedule(h, t + 1 + waitingTime());
+			}
+		}
+		due.clear();
+		spare = due;
+	}
+
+	/***
+	 * Remove a household from the schedule (e.g. on death)
+	 */
+	public void cancel(Household h) {
+		h.nextDecision = UNSCHEDULED;
+	}
+
+	void schedule(Household h, int month) {
+		h.nextDecision = month;
+		buckets[month & (N_BUCKETS-1)].add(h);
+	}
+
+	/***
+	 * @return number of months to wait until the next candidate month, starting
+	 * from this month, drawn from a geometric distribution with success probability
+	 * 'bound'.
+	 */
+	int waitingTime() {
+		if(bound >= 1.0) return(0);
+		double wait = Math.floor(Math.log(1.0 - Model.rand.nextDouble())/Math.log(1.0 - bound));
+		return((int)Math.min(wait, Integer.MAX_VALUE/2));
+	}
+
+	/*** @return the number of households whose decisions were stepped in full this month */
+	public int getNStepped() {
+		return(nStepped);
+	}
+
+	/*** @return the number of owner-occupiers that had a candidate sell decision this month */
+	public int getNDue() {
+		return(nDue);
+	}
+
+	/*** @return the number of owner-occupiers waiting in the calendar queue */
+	public int getNScheduled() {
+		return(nScheduled);
+	}
+
+	ArrayList<Household> []	buckets;	// calendar queue: buckets[t % N_BUCKETS] holds households whose candidate month is t
+	ArrayList<Household>		spare;		// empty list that replaces the bucket being processed
+	double						bound;		// upper bound on the monthly probability of selling a home
+	int							nScheduled;	// number of households in the queue
+	int							nDue;		// number of candidate decisions this month
+	int							nStepped;	// number of households stepped in full this month
+}
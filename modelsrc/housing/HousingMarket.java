@@ -2,6 +2,7 @@ package housing;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -16,6 +17,8 @@ import org.apache.commons.math3.distribution.PoissonDistribution;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
 
+import utilities.Invariants;
+import utilities.ObjectPool;
 import utilities.PriorityQueue2D;
 
 /**********************************************************
@@ -24,6 +27,12 @@ import utilities.PriorityQueue2D;
  * 
  * See model description for details.
  * 
+ * If Model.POOL_RECORDS is set, bids and offers are re-used rather than
+ * allocated afresh: bids are released at the end of clearMarket() and
+ * offers when they are sold or taken off the market. Re-used records are
+ * given new ids in the same order as new ones would be, so the model
+ * behaves exactly as it does without pooling.
+ * 
  * @author daniel
  *
  *********************************************************/
@@ -42,9 +51,11 @@ public abstract class HousingMarket implements Serializable {
 		public static final int HPI_LENGTH = 15; // Number of months to record HPI //F = Math.exp(-1.0/4.0); // House Price Index appreciation decay const (in market clearings)
 		public static final double E = Math.exp(-1.0/T); // decay const for averaging days on market (in transactions)
 		public static final double G = Math.exp(-House.Config.N_QUALITY/T); // Decay const for averageListPrice averaging (in transactions)
+		public static final int MAX_POOLED = Demographics.TARGET_POPULATION/4; // maximum number of released records of each kind kept for re-use
 	}
 	
-	static public class Authority {
+	static public class Authority implements Serializable { // serializable so that DecayingListings can hold it in checkpoints
+		private static final long serialVersionUID = 2470133405462911745L;
 		private Authority() {}
 	}
 
@@ -55,8 +66,28 @@ public abstract class HousingMarket implements Serializable {
 		HPIRecord = new DescriptiveStatistics(Config.HPI_LENGTH);
 		quarterlyHPI.addValue(1.0);
 		quarterlyHPI.addValue(1.0);		
+		decayingOffers = newDecayingListings(authority);
+		probe = new HouseBuyerRecord(null, 0.0);
+		bidPrices = new double[Demographics.TARGET_POPULATION/16];
+		recordedBidPrices = new double[bidPrices.length];
+		monthBids = new ArrayList<>();
+		releasedOffers = new ArrayList<>();
+		offerPool = new ObjectPool<>(Config.MAX_POOLED);
+		bidPool = new ObjectPool<>(Config.MAX_POOLED);
+		btlBidPool = new ObjectPool<>(Config.MAX_POOLED);
 		init();
 	}
+
+	/***
+	 * @return the group of offers on this market whose prices fall by a fixed
+	 * factor every month
+	 */
+	protected abstract DecayingListings newDecayingListings(Authority auth);
+
+	/***
+	 * @return the house's offer on this market (null if it isn't on this market)
+	 */
+	protected abstract HouseSaleRecord getListing(int house);
 	
 	public void init() {
 		int i;
@@ -67,17 +98,58 @@ public abstract class HousingMarket implements Serializable {
 		averageDaysOnMarket = 30;
 		for(i=0; i<Config.HPI_LENGTH; ++i) HPIRecord.addValue(1.0);
 		offersPQ.clear();
+		decayingOffers.clear();
+		offerPriceSum = 0.0;
+		nNewBuildOffers = 0;
+		nEmptyOffers = 0;
+		bidPriceSum = 0.0;
+		nBidPrices = 0;
+		nRecordedBidPrices = 0;
 //		matches.clear();
 	}
 	
+	/***
+	 * Set the price statistics as if every house had been selling at 'index'
+	 * times its reference price for some time, with no appreciation (used to
+	 * start from a synthetic state, see EquilibriumInitialiser).
+	 */
+	public void setPriceLevel(double index) {
+		for(int i = 0; i<House.Config.N_QUALITY; ++i) {
+			averageSalePrice[i] = index*referencePrice(i);
+		}
+		housePriceIndex = index;
+		for(int i=0; i<Config.HPI_LENGTH; ++i) HPIRecord.addValue(index);
+	}
+
 	/******************************************
 	 * Put a new offer on the market.
-	 * @param house House to put on the market
+	 * @param house Handle of the house to put on the market
 	 * @param price List price for the house.
 	 ******************************************/
-	public HouseSaleRecord offer(House house, double price) {
-		HouseSaleRecord hsr = new HouseSaleRecord(house, price);
-		offersPQ.add(hsr);
+	public HouseSaleRecord offer(int house, double price) {
+		return(offer(house, price, false));
+	}
+
+	/******************************************
+	 * Put a new offer on the market.
+	 * @param house Handle of the house to put on the market
+	 * @param price List price for the house.
+	 * @param decaying true if the price is to fall by the market's fixed
+	 * factor every month (see DecayingListings)
+	 ******************************************/
+	public HouseSaleRecord offer(int house, double price, boolean decaying) {
+		HouseSaleRecord hsr = Model.POOL_RECORDS ? offerPool.acquire() : null;
+		if(hsr == null) {
+			hsr = new HouseSaleRecord(house, price);
+		} else {
+			hsr.reset(house, price);
+		}
+		if(decaying) {
+			decayingOffers.add(hsr);
+		} else {
+			offersPQ.add(hsr);
+		}
+		listed(hsr);
 		return(hsr);
 	}
 	
@@ -89,9 +161,17 @@ public abstract class HousingMarket implements Serializable {
 	 * @param newPrice The new price of the house.
 	 ******************************************/
 	public void updateOffer(HouseSaleRecord hsr, double newPrice) {
-		offersPQ.remove(hsr);
-		hsr.setPrice(newPrice, authority);
-		offersPQ.add(hsr);
+		if(hsr.isDecaying()) {
+			decayingOffers.remove(hsr);
+			hsr.setPrice(newPrice, authority);
+			decayingOffers.add(hsr);
+		} else {
+			offersPQ.remove(hsr);
+			offerPriceSum -= hsr.getPrice();
+			hsr.setPrice(newPrice, authority);
+			offerPriceSum += hsr.getPrice();
+			offersPQ.add(hsr);
+		}
 	}
 	
 	/*******************************************
@@ -100,7 +180,146 @@ public abstract class HousingMarket implements Serializable {
 	 * @param hsr The HouseSaleRecord to take off the market.
 	 *******************************************/
 	public void removeOffer(HouseSaleRecord hsr) {
-		offersPQ.remove(hsr);
+		if(Invariants.CHECKING && getListing(hsr.house) != hsr) {
+			System.out.println("Strange: removing an offer for house "+Model.houses.getId(hsr.house)+" that isn't its listing on this market");
+		}
+		delisted(hsr);
+		if(hsr.isDecaying()) {
+			decayingOffers.remove(hsr);
+		} else {
+			offersPQ.remove(hsr);
+		}
+		releaseOffer(hsr);
+	}
+
+	/*******************************************
+	 * Reduce the price of all decaying offers by one month's
+	 * worth.
+	 *******************************************/
+	public void decayOffers() {
+		decayingOffers.step();
+	}
+
+	/*** @return the number of offers on the market */
+	public int getNOffers() {
+		return(offersPQ.size() + decayingOffers.size());
+	}
+
+	/*******************************************
+	 * Update the running totals of the offers on the market
+	 * when an offer is listed or taken off (for any reason).
+	 * Call delisted() before the offer's price changes.
+	 *******************************************/
+	private void listed(HouseSaleRecord hsr) {
+		if(!hsr.isDecaying()) offerPriceSum += hsr.getPrice();
+		if(Model.houses.getOwner(hsr.house) == Model.construction) ++nNewBuildOffers;
+		if(Model.houses.getResident(hsr.house) == null) ++nEmptyOffers;
+	}
+
+	private void delisted(HouseSaleRecord hsr) {
+		if(!hsr.isDecaying()) {
+			offerPriceSum -= hsr.getPrice();
+			if(offersPQ.size() <= 1) offerPriceSum = 0.0; // don't let rounding errors accumulate
+		}
+		if(Model.houses.getOwner(hsr.house) == Model.construction) --nNewBuildOffers;
+		if(Model.houses.getResident(hsr.house) == null) --nEmptyOffers;
+	}
+
+	/*******************************************
+	 * Called by HouseTable.setResident() when a house that is on this
+	 * market becomes empty or occupied.
+	 *
+	 * @param isEmpty true if the house has just become empty
+	 *******************************************/
+	public void occupancyChanged(boolean isEmpty) {
+		if(isEmpty) ++nEmptyOffers; else --nEmptyOffers;
+	}
+
+	/*******************************************
+	 * Called by HouseTable.setOwner() when a house that is on this
+	 * market passes to or from the developer.
+	 *
+	 * @param isNewBuild true if the house now belongs to the developer
+	 *******************************************/
+	public void newBuildChanged(boolean isNewBuild) {
+		if(isNewBuild) ++nNewBuildOffers; else --nNewBuildOffers;
+	}
+
+	/*******************************************
+	 * Audit the market (see Model.checkConsistency): the queues of offers
+	 * are consistent, each offer's house points back to it, and the running
+	 * counts of new builds and empty houses on offer are right.
+	 *
+	 * @return true if the market is consistent
+	 *******************************************/
+	public boolean checkConsistency() {
+		boolean ok = offersPQ.checkConsistency() & decayingOffers.checkConsistency();
+		int newBuilds = 0;
+		int empty = 0;
+		ArrayList<HousingMarketRecord> offers = new ArrayList<>(getNOffers());
+		for(HousingMarketRecord offer : offersPQ) offers.add(offer);
+		Iterator<HousingMarketRecord> it = decayingOffers.iterator();
+		while(it.hasNext()) offers.add(it.next());
+		for(HousingMarketRecord offer : offers) {
+			int house = ((HouseSaleRecord)offer).house;
+			if(getListing(house) != offer) {
+				System.out.println("Strange: house "+Model.houses.getId(house)+" doesn't know about its offer");
+				ok = false;
+			}
+			if(Model.houses.getOwner(house) == Model.construction) ++newBuilds;
+			if(Model.houses.getResident(house) == null) ++empty;
+		}
+		if(newBuilds != nNewBuildOffers || empty != nEmptyOffers) {
+			System.out.println("Strange: market counts "+nNewBuildOffers+" new builds and "+nEmptyOffers+" empty houses on offer, but there are "+newBuilds+" and "+empty);
+			ok = false;
+		}
+		return(ok);
+	}
+
+	/*** @return the average list price of the offers on the market (0 if there are none) */
+	public double getAverageOfferPrice() {
+		int n = getNOffers();
+		if(n == 0) return(0.0);
+		return((offerPriceSum + decayingOffers.getTotalPrice())/n);
+	}
+
+	/*** @return the number of offers on the market by the developer */
+	public int getNNewBuildOffers() {
+		return(nNewBuildOffers);
+	}
+
+	/*** @return the number of offers on the market of houses with no resident */
+	public int getNEmptyOffers() {
+		return(nEmptyOffers);
+	}
+
+	/*** @return the average price of the bids made since the market was last cleared (0 if there are none) */
+	public double getAverageBidPrice() {
+		if(nBidPrices == 0) return(0.0);
+		return(bidPriceSum/nBidPrices);
+	}
+
+	/***
+	 * @param buffer array to fill, if it is the right length (may be null)
+	 * @return the list prices of all offers currently on the market, in order of quality
+	 */
+	public double [] getOfferPrices(double [] buffer) {
+		int n = getNOffers();
+		if(buffer == null || buffer.length != n) buffer = new double[n];
+		Iterator<HousingMarketRecord> it = offersIterator();
+		int i = 0;
+		while(it.hasNext()) buffer[i++] = it.next().getPrice();
+		return(buffer);
+	}
+
+	/***
+	 * @param buffer array to fill, if it is the right length (may be null)
+	 * @return the prices of the bids that were made for the last clearing of the market
+	 */
+	public double [] getBidPrices(double [] buffer) {
+		if(buffer == null || buffer.length != nRecordedBidPrices) buffer = new double[nRecordedBidPrices];
+		System.arraycopy(recordedBidPrices, 0, buffer, 0, nRecordedBidPrices);
+		return(buffer);
 	}
 
 	/*******************************************
@@ -111,10 +330,60 @@ public abstract class HousingMarket implements Serializable {
 	 * @param price The price that the household is willing to pay.
 	 ******************************************/
 	public void bid(Household buyer, double price) {
-		bids.add(new HouseBuyerRecord(buyer, price));
+		HouseBuyerRecord bid = Model.POOL_RECORDS ? bidPool.acquire() : null;
+		if(bid == null) {
+			bid = new HouseBuyerRecord(buyer, price);
+		} else {
+			bid.reset(buyer, price);
+		}
+		addBid(bid);
 		// match bid with current offers
 	}
 
+	/*******************************************
+	 * Add a new bid to the market, and to the running total
+	 * and log of this month's bid prices.
+	 ******************************************/
+	protected void addBid(HouseBuyerRecord bid) {
+		bids.add(bid);
+		bidPriceSum += bid.getPrice();
+		if(nBidPrices == bidPrices.length) bidPrices = Arrays.copyOf(bidPrices, 2*nBidPrices + 1);
+		bidPrices[nBidPrices++] = bid.getPrice();
+		if(Model.POOL_RECORDS) monthBids.add(bid);
+	}
+
+	/*******************************************
+	 * Release an offer that has been sold or taken off the market
+	 * for re-use (if pooling). Offers taken off the market while it
+	 * is being cleared are held back until clearing has finished,
+	 * in case the clearing still has hold of them.
+	 ******************************************/
+	protected void releaseOffer(HouseSaleRecord hsr) {
+		if(!Model.POOL_RECORDS) return;
+		if(clearing) {
+			releasedOffers.add(hsr);
+		} else {
+			hsr.matchedBids.clear();
+			offerPool.release(hsr);
+		}
+	}
+
+	/*******************************************
+	 * Release all bids made since the last clearing of the
+	 * market for re-use (if pooling).
+	 ******************************************/
+	protected void releaseBids() {
+		for(HouseBuyerRecord bid : monthBids) {
+			bid.buyer = null;
+			if(bid instanceof BtLBuyerRecord) {
+				btlBidPool.release((BtLBuyerRecord)bid);
+			} else {
+				bidPool.release(bid);
+			}
+		}
+		monthBids.clear();
+	}
+
 
 	/***************************
 	 * Get the highest quality offer for a price up to that of the bid
@@ -123,11 +392,60 @@ public abstract class HousingMarket implements Serializable {
 	 * @return the highest quality house being offered for a price <= bid
      */
 	protected HouseSaleRecord getBestOffer(HouseBuyerRecord bid) {
-		return (HouseSaleRecord)offersPQ.peek(bid);
+		HouseSaleRecord best = (HouseSaleRecord)offersPQ.peek(bid);
+		if(decayingOffers.size() > 0) {
+			probe.setPrice(bid.getPrice()/decayingOffers.getFactor(), authority);
+			HouseSaleRecord decaying = decayingOffers.peek(probe);
+			if(decaying != null && (best == null || offersPQ.getComparator().YCompare(decaying, best) == 1)) {
+				best = decaying;
+			}
+		}
+		return(best);
 	}
 	
+	/***
+	 * @return iterator over all offers (decaying or not) in order of quality. Removing
+	 * an offer through the iterator takes it off the market.
+	 */
 	public Iterator<HousingMarketRecord> offersIterator() {
-		return(offersPQ.iterator());
+		final Iterator<HousingMarketRecord> fixed = offersPQ.iterator();
+		final Iterator<HousingMarketRecord> decaying = decayingOffers.iterator();
+		return(new Iterator<HousingMarketRecord>() {
+			@Override
+			public boolean hasNext() {
+				return(nextFixed != null || nextDecaying != null || fixed.hasNext() || decaying.hasNext());
+			}
+			@Override
+			public HousingMarketRecord next() {
+				if(nextFixed == null && fixed.hasNext()) nextFixed = fixed.next();
+				if(nextDecaying == null && decaying.hasNext()) nextDecaying = decaying.next();
+				HousingMarketRecord result;
+				if(nextDecaying == null || (nextFixed != null && offersPQ.getComparator().YCompare(nextFixed, nextDecaying) == -1)) {
+					result = nextFixed;
+					nextFixed = null;
+					lastIsDecaying = false;
+				} else {
+					result = nextDecaying;
+					nextDecaying = null;
+					lastIsDecaying = true;
+				}
+				last = result;
+				return(result);
+			}
+			@Override
+			public void remove() {
+				delisted((HouseSaleRecord)last);
+				if(lastIsDecaying) {
+					decaying.remove();
+				} else {
+					fixed.remove();
+				}
+			}
+			HousingMarketRecord nextFixed = null;
+			HousingMarketRecord nextDecaying = null;
+			HousingMarketRecord last;
+			boolean lastIsDecaying;
+		});
 	}
 
 	/**********************************
@@ -142,7 +460,7 @@ public abstract class HousingMarket implements Serializable {
 		HouseSaleRecord offer;
 		for(HouseBuyerRecord bid : bids) {
 			offer = getBestOffer(bid);
-			if(offer != null && (offer.house.owner != bid.buyer)) {
+			if(offer != null && (Model.houses.getOwner(offer.house) != bid.buyer)) {
 				offer.matchWith(bid);
 			}
 		}
@@ -201,6 +519,7 @@ public abstract class HousingMarket implements Serializable {
 				// put failed bids back on array
 				bids.addAll(offer.matchedBids.subList(0, winningBid));
 				bids.addAll(offer.matchedBids.subList(winningBid+1, offer.matchedBids.size()));			
+				releaseOffer(offer);
 			}
 		}		
 	}
@@ -218,12 +537,26 @@ public abstract class HousingMarket implements Serializable {
 		// bids contains bids (HouseBuyerRecords) in an array
 		
 		recordMarketStats();
-		int rounds = Math.min(Demographics.TARGET_POPULATION/1000,1 + (offersPQ.size()+bids.size())/500);
+		int rounds = Math.min(Demographics.TARGET_POPULATION/1000,1 + (getNOffers()+bids.size())/500);
+		clearing = true;
 		for(int i=0; i<rounds; ++i) {
 			matchBidsWithOffers(); // Step 1: iterate through bids
 			clearMatches(); // Step 2: iterate through offers
 		}
+		clearing = false;
 		bids.clear();
+		if(Model.POOL_RECORDS) {
+			for(HouseSaleRecord hsr : releasedOffers) releaseOffer(hsr);
+			releasedOffers.clear();
+			releaseBids();
+		}
+		// keep this month's bid prices for inspection, and start a new month
+		double [] tmp = recordedBidPrices;
+		recordedBidPrices = bidPrices;
+		nRecordedBidPrices = nBidPrices;
+		bidPrices = tmp;
+		nBidPrices = 0;
+		bidPriceSum = 0.0;
 		/*
 		// --- create matches
 		HouseSaleRecord offer;
@@ -233,7 +566,7 @@ public abstract class HousingMarket implements Serializable {
 			} else { // BTL buyer (yield driven)
 				offer = (HouseSaleRecord)offersPY.peek(bid);
 			}
-			if(offer != null && (offer.house.owner != bid.buyer)) {
+			if(offer != null && (Model.houses.getOwner(offer.house) != bid.buyer)) {
 				offer.matchWith(bid);
 			}
 		}
@@ -398,10 +731,30 @@ public abstract class HousingMarket implements Serializable {
 	//protected Map<House, HouseSaleRecord> 	onMarket = new TreeMap<House, HouseSaleRecord>();
 
 	protected PriorityQueue2D<HousingMarketRecord>	offersPQ;
+	protected DecayingListings	decayingOffers;	// offers whose prices fall by a fixed factor every month
+	private HouseBuyerRecord	probe;			// bid scaled to the keys of decayingOffers
 //	protected HashMap<HouseSaleRecord, ArrayList<HouseBuyerRecord> > matches;
 	protected ArrayList<HouseBuyerRecord> bids;
 	private static Authority authority = new Authority();
 
+	// ---- running totals, kept up to date as offers and bids come and go (see HousingMarketStats)
+	double		offerPriceSum;			// sum of the prices of the offers in offersPQ
+	int			nNewBuildOffers;		// number of offers by the developer
+	int			nEmptyOffers;			// number of offers of houses with no resident
+	double		bidPriceSum;			// sum of the prices of the bids made this month
+	double []	bidPrices;				// prices of the bids made this month
+	int			nBidPrices;
+	double []	recordedBidPrices;		// prices of the bids made for the last clearing
+	int			nRecordedBidPrices;
+
+	// ---- re-usable records (see Model.POOL_RECORDS)
+	ArrayList<HouseBuyerRecord>		monthBids;		// all bids made since the last clearing
+	ArrayList<HouseSaleRecord>		releasedOffers;	// offers taken off the market during clearing
+	boolean							clearing;		// true while clearMarket() is matching bids with offers
+	ObjectPool<HouseSaleRecord>		offerPool;
+	ObjectPool<HouseBuyerRecord>	bidPool;
+	ObjectPool<BtLBuyerRecord>		btlBidPool;
+
 //	protected PriorityQueue<HouseBuyerRecord> buyers = new PriorityQueue<HouseBuyerRecord>();
 	
 	// ---- statistics
@@ -2,6 +2,7 @@ package housing;
 
 import java.io.Serializable;
 
+import utilities.Invariants;
 import utilities.PriorityQueue2D;
 
 public abstract class HousingMarketRecord implements Serializable {
@@ -14,6 +15,12 @@ public abstract class HousingMarketRecord implements Serializable {
 		this.price = price;
 		id = id_pool++;
 	}
+
+	/*** Re-initialise a pooled record with a new price and a new id (see HousingMarket) */
+	protected void reset(double price) {
+		this.price = price;
+		id = id_pool++;
+	}
 	
 	public abstract int getQuality();
 	//{
@@ -31,6 +38,11 @@ public abstract class HousingMarketRecord implements Serializable {
 	public double getPrice() {
 		return price;
 	}
+
+	/*** @return the price as stored, which for an offer in DecayingListings is its key */
+	double getStoredPrice() {
+		return price;
+	}
 	
 	/*** only the housing market has the authority to change the price of a market record */
 	public void setPrice(double newPrice, HousingMarket.Authority auth) {
@@ -68,7 +80,7 @@ public abstract class HousingMarketRecord implements Serializable {
 		@Override
 		public int XCompare(HousingMarketRecord arg0, HousingMarketRecord arg1) {
 			double diff = arg0.price - arg1.price;
-			if(Double.isNaN(diff)) {
+			if(Invariants.CHECKING && Double.isNaN(diff)) {
 				System.out.println("Got price NaN in PYComparator");
 			}
 			if(diff == 0.0) {
@@ -80,7 +92,7 @@ public abstract class HousingMarketRecord implements Serializable {
 		@Override
 		public int YCompare(HousingMarketRecord arg0, HousingMarketRecord arg1) {
 			double diff = arg0.getYield() - arg1.getYield();
-			if(Double.isNaN(diff)) {
+			if(Invariants.CHECKING && Double.isNaN(diff)) {
 				System.out.println("Got yield NaN in PYComparator");
 			}
 			if(diff == 0.0) {
@@ -14,7 +14,7 @@ public interface IHouseOwner {
 	public void completeHouseSale(HouseSaleRecord saleRecord);
 	
 	/** Called when a tenant moves out of a house that the agent owns **/
-	public void endOfLettingAgreement(House house, PaymentAgreement contract);
+	public void endOfLettingAgreement(int house, PaymentAgreement contract);
 
 	public void completeHouseLet(HouseSaleRecord saleRecord);
 	
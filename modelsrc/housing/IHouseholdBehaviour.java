@@ -44,20 +44,12 @@ public interface IHouseholdBehaviour {
 	 */
 	double buyToLetRent(double pbar, double d, double mortgagePayment);
 
-	/***
-	 * Decide how to reduce offered monthly rent when a house is
-	 * on the rental market and does not get matched to a tennant.
-	 * (The figures used here are copied from the behaviour on the
-	 * house-sale market, calibrated against sales on the zoopla dataset)
-	 */
-	double rethinkBuyToLetRent(HouseSaleRecord sale);
-
 	/**
 	 * @param h The house in question
 	 * @param me The investor
 	 * @return Does an investor decide to sell a buy-to-let property
 	 */
-	boolean decideToSellInvestmentProperty(House h, Household me);
+	boolean decideToSellInvestmentProperty(int h, Household me);
 	
 	/***
 	 * Decide whether to buy a house as a buy-to-let investment.
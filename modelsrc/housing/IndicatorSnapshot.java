@@ -0,0 +1,66 @@
+package housing;
+
+/**************************************************************************
+ * An immutable record of the model's headline indicators at the end of a
+ * month, published by the simulation for the GUI to draw (see ModelGUI).
+ * Taking a snapshot only reads a handful of fields, so it costs the
+ * simulation next to nothing.
+ *
+ * The snapshots published to subscribers of Model.getIndicators() also
+ * carry every indicator the Recorder writes (core indicators, market, bank
+ * and household statistics), named by Recorder.INDICATORS.
+ *************************************************************************/
+public class IndicatorSnapshot {
+
+	/***
+	 * Record the current values of the headline indicators.
+	 */
+	public IndicatorSnapshot() {
+		this(false);
+	}
+
+	/***
+	 * Record the current values of the indicators.
+	 * @param sampleAll true to also record all of Recorder.INDICATORS (the collectors must be active)
+	 */
+	public IndicatorSnapshot(boolean sampleAll) {
+		time = Model.getTime();
+		run = Model.nSimulation;
+		housePriceIndex = Model.housingMarket.housePriceIndex;
+		averageDaysOnMarket = Model.housingMarket.averageDaysOnMarket;
+		rentalPriceIndex = Model.rentalMarket.housePriceIndex;
+		mortgageInterestRate = Model.bank.getMortgageInterestRate();
+		nHouseholds = Model.households.size();
+		nSaleOffers = Model.housingMarket.getNOffers();
+		nRentalOffers = Model.rentalMarket.getNOffers();
+		if(sampleAll) {
+			indicators = new double[Recorder.INDICATORS.length];
+			Recorder.sample(indicators);
+		} else {
+			indicators = null;
+		}
+	}
+
+	/***
+	 * @param name one of Recorder.INDICATORS
+	 * @return the value of the indicator (NaN if it wasn't recorded)
+	 */
+	public double getIndicator(String name) {
+		if(indicators == null) return(Double.NaN);
+		for(int i=0; i<indicators.length; ++i) {
+			if(Recorder.INDICATORS[i].equals(name)) return(indicators[i]);
+		}
+		throw(new IllegalArgumentException("no indicator "+name));
+	}
+
+	public final int	time;
+	public final int	run;				// Monte-Carlo run (Model.nSimulation)
+	public final double	housePriceIndex;
+	public final double	averageDaysOnMarket;
+	public final double	rentalPriceIndex;
+	public final double	mortgageInterestRate;
+	public final int	nHouseholds;
+	public final int	nSaleOffers;
+	public final int	nRentalOffers;
+	final double []		indicators;			// values of Recorder.INDICATORS (or null)
+}
@@ -10,12 +10,17 @@ import java.util.ArrayList;
 import java.util.UUID;
 
 import org.apache.commons.math3.distribution.LogNormalDistribution;
-import org.apache.commons.math3.random.RandomGenerator;
 
 import ec.util.MersenneTwisterFast;
 import sim.engine.SimState;
 import sim.engine.Steppable;
 import sim.engine.Stoppable;
+import utilities.Flow;
+import utilities.Invariants;
+import utilities.Philox4x32;
+import utilities.RandomEngine;
+import utilities.SnapshotPublisher;
+import utilities.Xoshiro256PlusPlus;
 
 /**
  * This is the root object of the simulation. Upon creation it creates
@@ -32,9 +37,23 @@ public class Model extends SimState implements Steppable {
 	public static int N_STEPS = 1000; // Simulation duration in timesteps
 	public static int TIME_TO_START_RECORDING = 500; // Timesteps to wait before recording statistics (initialisation time)
 	public static int N_SIMS = 1; // Number of simulations to run (monte-carlo)
-
-	public boolean recordCoreIndicators = true; // True to write time series for each core indicator
-	public boolean recordMicroData = false; // True to write micro data for each transaction made
+	public static boolean RECORD_CORE_INDICATORS = true; // Default value of recordCoreIndicators for new models
+	public static boolean RECORD_MICRO_DATA = false; // Default value of recordMicroData for new models
+	public static boolean MICRO_DATA_ARCHIVE = false; // Write micro data as a compressed, month-indexed transactions-N.htx (see TransactionArchive) rather than transactions-N.csv
+	public static boolean RECORD_RUN_FILES = true; // Write output-N.csv and coreIndicator-*.csv for each run when recording core indicators (see Recorder)
+	public static String OUTPUT_DIRECTORY = ""; // Prefix (directory ending in a separator, or empty) for all output files
+	public static String RANDOM_ENGINE = "MersenneTwister"; // Random number generator: MersenneTwister, Xoshiro256PlusPlus or Philox4x32
+	public static boolean EVENT_DRIVEN = false; // True to only step the decisions of households that have something to decide (see HouseholdScheduler). Not faster: runs take as long, give or take the spread between runs
+	public static boolean POOL_RECORDS = false; // True to re-use bids, offers and mortgage approvals rather than allocate new ones (see HousingMarket)
+	public static boolean EQUILIBRIUM_START = false; // True to start each run from a synthetic equilibrium state rather than an empty model (see EquilibriumInitialiser), so TIME_TO_START_RECORDING can be a short settling period
+	public static boolean AUTO_START_RECORDING = false; // True to start recording when the run reaches a steady state (see SteadyStateDetector), but no earlier than TIME_TO_START_RECORDING
+	public static long CHECKPOINT_STACK_SIZE = 256L*1024*1024; // Stack size of the thread that writes checkpoints (see writeCheckpoint)
+	public static int AUDIT_INTERVAL = 12; // Months between whole-model audits (see checkConsistency) when invariant checking is on (see utilities.Invariants)
+	public static int SNAPSHOT_BUFFER = 1200; // Months of indicators held for a slow subscriber to getIndicators() before its oldest are dropped
+	public static double SNAPSHOT_CLOSE_TIMEOUT = 60.0; // Seconds that finish() waits for subscribers to getIndicators() to take their buffered snapshots
+
+	public boolean recordCoreIndicators = RECORD_CORE_INDICATORS; // True to write time series for each core indicator
+	public boolean recordMicroData = RECORD_MICRO_DATA; // True to write micro data for each transaction made
 
 	////////////////////////////////////////////////////////////////////////
 
@@ -45,12 +64,23 @@ public class Model extends SimState implements Steppable {
 	}
 
 	public Model(long seed) {
+		this(seed, true);
+	}
+
+	/***
+	 * @param initialise false to create the model's agents without initialising
+	 * the model or starting its recorders, so that parameters can be set on its
+	 * Bank, CentralBank and Construction first (see ModelNoGUI): call
+	 * initialise() before starting it
+	 */
+	protected Model(long seed, boolean initialise) {
 		super(seed);
 		government = new Government();
 		demographics = new Demographics();
 		recorder = new Recorder();
+		steadyState = new SteadyStateDetector();
 		transactionRecorder = new MicroDataRecorder();
-		rand = new MersenneTwister(seed);
+		rand = newRandomEngine(seed);
 
 		centralBank = new CentralBank();
 		mBank = new Bank();
@@ -59,8 +89,14 @@ public class Model extends SimState implements Steppable {
 		housingMarket = mHousingMarket = new HouseSaleMarket();
 		rentalMarket = mRentalMarket = new HouseRentalMarket();
 		mCollectors = new Collectors();
+		mHouseholdScheduler = new HouseholdScheduler();
 		nSimulation = 0;
 
+		if(initialise) initialise();
+	}
+
+	/*** Set up the statics and recorders and initialise the first run */
+	public void initialise() {
 		setupStatics();
 		init();
 	}
@@ -75,10 +111,12 @@ public class Model extends SimState implements Steppable {
 //		centralBank = mCentralBank;
 		bank = mBank;
 		construction = mConstruction;
+		houses = construction.houses;
 		households = mHouseholds;
 		housingMarket = mHousingMarket;
 		rentalMarket = mRentalMarket;
 		collectors = mCollectors;
+		householdScheduler = mHouseholdScheduler;
 		root = this;
 		setRecordCoreIndicators(recordCoreIndicators);
 		setRecordMicroData(recordMicroData);
@@ -91,8 +129,11 @@ public class Model extends SimState implements Steppable {
 		rentalMarket.init();
 		bank.init();
 		households.clear();
+		householdScheduler.init();
 		collectors.init();
+		steadyState.init();
 		t = 0;
+		if(EQUILIBRIUM_START) new EquilibriumInitialiser().populate();
 		if(!monteCarloCheckpoint.equals("")) {//changed this from != ""
 			File f = new File(monteCarloCheckpoint);
 			readFromCheckpoint(f);
@@ -141,18 +182,125 @@ public class Model extends SimState implements Steppable {
 
 		modelStep();
 
-		if (t>=TIME_TO_START_RECORDING) {
+		if(AUTO_START_RECORDING) findSteadyState();
+		if (t>=TIME_TO_START_RECORDING && (!AUTO_START_RECORDING || steadyState.hasConverged() || steadyState.isFlagged())) {
 			if(recordCoreIndicators) recorder.step();
 		}
+		if(indicators != null && indicators.hasSubscribers()) publishIndicators();
 
 		collectors.step();
+		if(Invariants.CHECKING && t % AUDIT_INTERVAL == 0) checkConsistency();
+	}
+
+	/***
+	 * Audit the bookkeeping of the whole model: the markets' queues and
+	 * counts, the bank's ledger and the links between households and their
+	 * houses. This is expensive, so it is only run every AUDIT_INTERVAL
+	 * months, when invariant checking is on (see utilities.Invariants).
+	 *
+	 * @return true if the model is consistent
+	 */
+	public boolean checkConsistency() {
+		boolean ok = housingMarket.checkConsistency() & rentalMarket.checkConsistency() & bank.mortgages.checkConsistency();
+		for(Household h : households) {
+			if(!h.checkConsistency()) ok = false;
+		}
+		if(construction.houses.size() != construction.housingStock) {
+			System.out.println("Strange: "+construction.houses.size()+" houses have been built, but the housing stock is "+construction.housingStock);
+			ok = false;
+		}
+		if(!ok) System.out.println("Strange: model failed its audit at month "+t);
+		return(ok);
+	}
+
+	/***
+	 * Look for the steady state of the run (see SteadyStateDetector), writing
+	 * a checkpoint when it is found if SteadyStateDetector.Config.CHECKPOINT is
+	 * set, and flagging the run if it isn't found in MAX_BURN_IN months (or by
+	 * the end of the run, if sooner).
+	 */
+	protected void findSteadyState() {
+		if(!collectors.householdStats.isActive() || !collectors.creditSupply.isActive() || !collectors.coreIndicators.isActive()) {
+			System.out.println("Steady state detection needs the collectors: switching them on");
+			collectors.householdStats.setActive(true);
+			collectors.creditSupply.setActive(true);
+			collectors.coreIndicators.setActive(true);
+		}
+		if(steadyState.step()) {
+			System.out.println("Run "+nSimulation+" reached a steady state at month "+t);
+			if(SteadyStateDetector.Config.CHECKPOINT) {
+				File f = new File(OUTPUT_DIRECTORY+"steadyState-"+nSimulation+".checkpoint");
+				if(!writeCheckpoint(f)) System.out.println("Failed to write checkpoint to "+f.getPath());
+			}
+		} else if(!steadyState.hasConverged() && !steadyState.isFlagged() && t >= Math.min(SteadyStateDetector.Config.MAX_BURN_IN, N_STEPS)) {
+			steadyState.flag();
+			System.out.println("Strange: run "+nSimulation+" has not reached a steady state after "+t+" months");
+		}
+	}
+
+	/***
+	 * Write a checkpoint of the model. Serialization follows references depth
+	 * first (household to house to tenant to landlord...), so a populated model
+	 * overflows the default stack: the checkpoint is written on a thread with a
+	 * stack of CHECKPOINT_STACK_SIZE bytes, and this waits for it to finish.
+	 *
+	 * @return true if the checkpoint was written
+	 */
+	public boolean writeCheckpoint(final File f) {
+		final boolean [] written = new boolean[1];
+		Thread writer = new Thread(null, new Runnable() {
+			public void run() {
+				written[0] = (writeToCheckpoint(f) != null);
+			}
+		}, "Checkpoint", CHECKPOINT_STACK_SIZE);
+		writer.start();
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return(false);
+		}
+		return(written[0]);
+	}
+
+	/***
+	 * Monthly snapshots of all the indicators the Recorder writes (see
+	 * IndicatorSnapshot), for recorders, dashboards and aggregators to subscribe
+	 * to. Snapshots are delivered on the subscribers' own threads, with up to
+	 * SNAPSHOT_BUFFER months buffered for each, so a slow subscriber never holds
+	 * up the simulation (see SnapshotPublisher). Snapshots are only taken while
+	 * there are subscribers, and carry the number of the Monte-Carlo run.
+	 *
+	 * When the model finishes, subscribers are sent onComplete once they have
+	 * had their buffered snapshots (see closeIndicators()). The next model
+	 * publishes to a new publisher, so subscribe again to follow it.
+	 */
+	public static synchronized Flow.Publisher<IndicatorSnapshot> getIndicators() {
+		if(indicators == null) indicators = new SnapshotPublisher<IndicatorSnapshot>(SNAPSHOT_BUFFER);
+		return(indicators);
+	}
+
+	protected void publishIndicators() {
+		if(!collectors.coreIndicators.isActive() || !collectors.rentalMarketStats.isActive()) {
+			System.out.println("Indicator subscribers need the collectors: switching them on");
+			collectors.coreIndicators.setActive(true);
+			collectors.rentalMarketStats.setActive(true);
+		}
+		indicators.submit(new IndicatorSnapshot(true));
 	}
 
 	public void modelStep() {
 		demographics.step();
 		construction.step();
+		rentalMarket.decayOffers();
+		bank.collectMortgagePayments();
 		
-		for(Household h : households) h.step();
+		if(EVENT_DRIVEN) {
+			householdScheduler.step();
+		} else {
+			for(Household h : households) h.step();
+		}
+		rentalMarket.endExpiredTenancies();
 		collectors.housingMarketStats.record();
 		housingMarket.clearMarket();
 		collectors.rentalMarketStats.record();
@@ -170,6 +318,26 @@ public class Model extends SimState implements Steppable {
 		super.finish();
 		if(recordCoreIndicators) recorder.finish();
 		if(recordMicroData) transactionRecorder.finish();
+		closeIndicators();
+	}
+
+	/***
+	 * Complete the subscribers to getIndicators(), waiting up to
+	 * SNAPSHOT_CLOSE_TIMEOUT seconds for them to take their buffered
+	 * snapshots (they are delivered on daemon threads, so any left when the
+	 * JVM exits are lost).
+	 */
+	public static synchronized void closeIndicators() {
+		if(indicators == null) return;
+		indicators.close();
+		try {
+			if(!indicators.awaitFinished((long)(SNAPSHOT_CLOSE_TIMEOUT*1000.0))) {
+				System.out.println("Indicator subscribers didn't take their snapshots within "+SNAPSHOT_CLOSE_TIMEOUT+"s: the rest are dropped");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		indicators = null;
 	}
 	
 	/*** @return simulated time in months */
@@ -191,32 +359,87 @@ public class Model extends SimState implements Steppable {
 	public HouseSaleMarket			mHousingMarket;
 	public HouseRentalMarket		mRentalMarket;
 	public Collectors				mCollectors;
+	public HouseholdScheduler		mHouseholdScheduler;
 	
 	public static CentralBank		centralBank;
 	public static Bank 				bank;
 	public static Government		government;
 	public static Construction		construction;
+	public static HouseTable		houses; // the housing stock, construction.houses
 	public static HouseSaleMarket 	housingMarket;
 	public static HouseRentalMarket	rentalMarket;
 	public static ArrayList<Household>	households;
 	public static Demographics		demographics;
-	public static MersenneTwister	rand;
+	public static HouseholdScheduler	householdScheduler;
+	public static RandomEngine		rand;
 	public static Model				root;
 	
 	public static Collectors		collectors;// = new Collectors();
 	public static Recorder			recorder; // records info to file
+	public static SteadyStateDetector	steadyState; // decides when to start recording if AUTO_START_RECORDING
 	public static MicroDataRecorder transactionRecorder;
+	static SnapshotPublisher<IndicatorSnapshot>	indicators; // see getIndicators()
 
 	public static int	nSimulation; // number of simulations run
 	public int	t; // time (months)
 //	public static LogNormalDistribution grossFinancialWealth;		// household wealth in bank balances and investments
 
+	/***
+	 * @return a new random engine of the type given by RANDOM_ENGINE. If invariant
+	 * checking is on, the engine's type is first checked against its known answers.
+	 */
+	public static RandomEngine newRandomEngine(long seed) {
+		if(RANDOM_ENGINE.equals("Xoshiro256PlusPlus")) {
+			if(Invariants.CHECKING) Xoshiro256PlusPlus.checkKnownAnswers();
+			return(new Xoshiro256PlusPlus(seed));
+		}
+		if(RANDOM_ENGINE.equals("Philox4x32")) {
+			if(Invariants.CHECKING) Philox4x32.checkKnownAnswers();
+			return(new Philox4x32(seed));
+		}
+		if(!RANDOM_ENGINE.equals("MersenneTwister")) {
+			System.out.println("Unknown random engine "+RANDOM_ENGINE+": using MersenneTwister");
+		}
+		if(Invariants.CHECKING) MersenneTwister.checkKnownAnswers();
+		return(new MersenneTwister(seed));
+	}
+
 	/*** proxy class to allow us to work with apache.commons distributions */
-	public static class MersenneTwister extends MersenneTwisterFast implements RandomGenerator {
+	public static class MersenneTwister extends MersenneTwisterFast implements RandomEngine {
+		private static final long serialVersionUID = -1795356454546485427L;
 		public MersenneTwister(long seed) {super(seed);}
 		public void setSeed(int arg0) {
 			super.setSeed((long)arg0);
-		}		
+		}
+		public void nextDoubles(double [] out) {
+			for(int i=0; i<out.length; ++i) out[i] = nextDouble();
+		}
+		public void nextGaussians(double [] out) {
+			for(int i=0; i<out.length; ++i) out[i] = nextGaussian();
+		}
+
+		/***
+		 * Check the generator against the first outputs of the reference
+		 * implementation, mt19937ar.c, seeded by init_by_array({0x123, 0x234,
+		 * 0x345, 0x456}) (see mt19937ar.out).
+		 *
+		 * @return true if every output is as expected
+		 */
+		public static boolean checkKnownAnswers() {
+			MersenneTwister mt = new MersenneTwister(0);
+			mt.setSeed(new int[] {0x123, 0x234, 0x345, 0x456});
+			boolean ok = true;
+			for(long expected : KAT) {
+				long value = mt.nextInt() & 0xFFFFFFFFL;
+				if(value != expected) {
+					System.out.println("Strange: MersenneTwister gave "+value+", expected "+expected);
+					ok = false;
+				}
+			}
+			return(ok);
+		}
+
+		static final long [] KAT = {1067595299L, 955945823L, 477289528L, 4107218783L, 4228976476L};
 	}
 
 	////////////////////////////////////////////////////////////////////////
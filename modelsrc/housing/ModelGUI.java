@@ -1,5 +1,11 @@
 package housing;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
+
 import sim.display.ChartUtilities;
 import sim.display.ChartUtilities.ProvidesDoubleDoubles;
 import sim.display.Console;
@@ -11,11 +17,21 @@ import sim.util.media.chart.ScatterPlotGenerator;
 import sim.util.media.chart.ScatterPlotSeriesAttributes;
 import sim.util.media.chart.TimeSeriesAttributes;
 import sim.util.media.chart.TimeSeriesChartGenerator;
+import utilities.SnapshotDoubleBuffer;
 
+/**
+ * The simulation publishes an IndicatorSnapshot at the end of every month
+ * (see step()) and carries on. The charts are drawn on the Swing thread by a
+ * timer, at most FRAME_RATE times a second, from all the snapshots published
+ * since the last frame, so the simulation never waits on Swing.
+ */
 public class ModelGUI extends GUIState implements Steppable {
 
 	private static final long serialVersionUID = -7604303608565084623L;
 
+	public static int FRAME_RATE = 10;			// maximum number of times per second the charts are redrawn
+	public static int MAX_SNAPSHOTS = 4096;	// maximum number of months to hold between frames
+
 	// Chart generators
   
 //	public ScatterPlotGenerator
@@ -78,12 +94,14 @@ public class ModelGUI extends GUIState implements Steppable {
     }
     
     void scheduleSeries() {
-        ChartUtilities.scheduleSeries(this, hpi, new sim.util.Valuable() {
-        	public double doubleValue() {return Model.housingMarket.housePriceIndex; }
-        });
-        ChartUtilities.scheduleSeries(this, daysOnMarket, new sim.util.Valuable() {
-        	public double doubleValue() {return Model.housingMarket.averageDaysOnMarket/365.0; }
-        });
+    	snapshots.clear();
+    	scheduleRepeatingImmediatelyAfter(this);
+    	if(renderTimer == null) {
+    		renderTimer = new Timer(1000/FRAME_RATE, new ActionListener() {
+    			public void actionPerformed(ActionEvent e) {render();}
+    		});
+    		renderTimer.start();
+    	}
 
 //        ChartUtilities.scheduleSeries(this, housePrices, new ProvidesDoubleDoubles() {
 //			public double[][] provide() {return Model.collectors.housingMarketStats.priceData();
@@ -91,17 +109,38 @@ public class ModelGUI extends GUIState implements Steppable {
     }
 
     
-    /** Called after each simulation step. */
+    /** Called after each simulation step: publish this month's indicators. */
     @Override
     public void step(SimState state) {
+    	snapshots.publish(new IndicatorSnapshot());
+    }
+
+    /** Called by the render timer on the Swing thread: draw all months published since the last frame. */
+    void render() {
+    	ArrayList<IndicatorSnapshot> frame = snapshots.take();
+    	if(frame.isEmpty()) return;
+    	for(IndicatorSnapshot s : frame) {
+    		hpi.getSeries().add(s.time, s.housePriceIndex, false);
+    		daysOnMarket.getSeries().add(s.time, s.averageDaysOnMarket/365.0, false);
+    	}
+    	hpi.getSeries().fireSeriesChanged();
+    	daysOnMarket.getSeries().fireSeriesChanged();
+    	hpi.possiblyCull();
+    	daysOnMarket.possiblyCull();
+    	marketStats.update(frame.get(frame.size()-1).time, true);
     }
 
     /** Called once, when the console quits. */
     @Override
    public void quit() {
         super.quit();
+        if(renderTimer != null) renderTimer.stop();
+        renderTimer = null;
     }
 
+    SnapshotDoubleBuffer<IndicatorSnapshot>	snapshots = new SnapshotDoubleBuffer<IndicatorSnapshot>(MAX_SNAPSHOTS);
+    Timer										renderTimer;
+
     /** Mason puts this in the "Console" tab */
 	@Override
 	public Object getSimulationInspectedObject() {
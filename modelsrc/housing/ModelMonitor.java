@@ -0,0 +1,301 @@
+package housing;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/***************************************************
+ * JMX monitor of a running model (see ModelMonitorMXBean), registered
+ * by ModelNoGUI for each run as "housing:type=ModelMonitor,seed=N".
+ *
+ * The simulation thread calls endOfMonth() after each step. That is where
+ * the values shown over JMX are sampled (so the JMX threads never look
+ * inside the model's collections while it is being stepped), and where the
+ * run waits while paused and writes any checkpoints that have been asked
+ * for. Scalars are sampled every month; the core indicators and heap
+ * estimates, which take a little longer to compute, at most every
+ * SAMPLE_INTERVAL seconds.
+ **************************************************/
+public class ModelMonitor implements ModelMonitorMXBean {
+
+	static public class Config {
+		public static double SAMPLE_INTERVAL = 1.0;		// seconds between samples of the core indicators and heap
+		public static double CHECKPOINT_TIMEOUT = 300.0; // seconds to wait for a checkpoint to be written
+		// rough shallow sizes of the model's objects (64-bit JVM, compressed pointers), for getEstimatedHeapBytes()
+		public static long HOUSEHOLD_BYTES = 380;		// household, behaviour, lifecycle and HousePayments
+		public static long HOUSE_ROW_BYTES = 20;		// one row of each HouseTable column (houses have no objects of their own)
+		public static long OFFER_BYTES = 250;			// sale record, matched-bids list and queue entries
+		public static long BID_BYTES = 40;
+		public static long MORTGAGE_BYTES = 80;			// MortgageAgreement (its ledger row is counted exactly)
+		public static long LEDGER_ROW_BYTES = 37;		// one row of each MortgageLedger column
+	}
+
+	public ModelMonitor(Model model, long seed) {
+		this.model = model;
+		this.seed = seed;
+		coreIndicators = Collections.emptyMap();
+		heapBytes = Collections.emptyMap();
+		lastMonthTime = System.nanoTime();
+		rateTime = lastMonthTime;
+		sampleTime = lastMonthTime - (long)(Config.SAMPLE_INTERVAL*1e9);
+	}
+
+	/***
+	 * Register this monitor with the platform MBean server
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			name = new ObjectName("housing:type=ModelMonitor,seed="+seed);
+			if(server.isRegistered(name)) server.unregisterMBean(name);
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			System.out.println("Couldn't register model monitor: "+e.getMessage());
+			name = null;
+		}
+	}
+
+	public void unregister() {
+		if(name == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			System.out.println("Couldn't unregister model monitor: "+e.getMessage());
+		}
+		name = null;
+	}
+
+	/***
+	 * Called by the simulation thread at the end of each month.
+	 * @param month number of months simulated so far
+	 */
+	public void endOfMonth(long month) {
+		long now = System.nanoTime();
+		this.month = month;
+		lastMonthTime = now;
+		nHouseholds = Model.households.size();
+		nSaleOffers = Model.housingMarket.getNOffers();
+		nSaleBids = Model.housingMarket.nRecordedBidPrices;
+		nRentalOffers = Model.rentalMarket.getNOffers();
+		nRentalBids = Model.rentalMarket.nRecordedBidPrices;
+		mortgageInterestRate = Model.bank.getMortgageInterestRate();
+		nMortgages = Model.bank.mortgages.size();
+		steadyStateMonth = Model.steadyState.getSteadyStateMonth();
+		if(now - sampleTime >= Config.SAMPLE_INTERVAL*1e9) {
+			monthsPerSecond = (month - rateMonth)*1e9/(now - rateTime);
+			rateMonth = month;
+			rateTime = now;
+			if(Model.collectors.coreIndicators.isActive()) coreIndicators = sampleCoreIndicators();
+			heapBytes = estimateHeapBytes();
+			sampleTime = now;
+		}
+		synchronized(this) {
+			while(true) {
+				if(checkpointFile != null) writeCheckpoint();
+				if(!paused) break;
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					paused = false;
+				}
+			}
+		}
+	}
+
+	protected Map<String, Double> sampleCoreIndicators() {
+		CoreIndicators core = Model.collectors.coreIndicators;
+		Map<String, Double> result = new LinkedHashMap<>();
+		result.put("ooLTI", core.getOwnerOccupierLTIMeanAboveMedian());
+		result.put("btlLTV", core.getBuyToLetLTVMean());
+		result.put("creditGrowth", core.getHouseholdCreditGrowth());
+		result.put("debtToIncome", core.getDebtToIncome());
+		result.put("ooDebtToIncome", core.getOODebtToIncome());
+		result.put("mortgageApprovals", (double)core.getMortgageApprovals());
+		result.put("housingTransactions", (double)core.getHousingTransactions());
+		result.put("advancesToFTB", (double)core.getAdvancesToFTBs());
+		result.put("advancesToBTL", (double)core.getAdvancesToBTL());
+		result.put("advancesToMovers", (double)core.getAdvancesToHomeMovers());
+		result.put("priceToIncome", core.getPriceToIncome());
+		result.put("rentalYield", core.getRentalYield());
+		result.put("housePriceGrowth", core.getHousePriceGrowth());
+		result.put("interestRateSpread", core.getInterestRateSpread());
+		return(Collections.unmodifiableMap(result));
+	}
+
+	/***
+	 * Rough estimate of the heap used by each part of the model, from the
+	 * number of objects of each kind and their approximate sizes (see Config).
+	 * Primitive arrays are counted exactly.
+	 */
+	protected Map<String, Long> estimateHeapBytes() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		result.put("households", Model.households.size()*Config.HOUSEHOLD_BYTES);
+		result.put("houses", Model.houses.quality.length*Config.HOUSE_ROW_BYTES);
+		result.put("saleMarket", Model.housingMarket.getNOffers()*Config.OFFER_BYTES + Model.housingMarket.bids.size()*Config.BID_BYTES
+				+ 8L*(Model.housingMarket.bidPrices.length + Model.housingMarket.recordedBidPrices.length));
+		result.put("rentalMarket", Model.rentalMarket.getNOffers()*Config.OFFER_BYTES + Model.rentalMarket.bids.size()*Config.BID_BYTES
+				+ 8L*(Model.rentalMarket.bidPrices.length + Model.rentalMarket.recordedBidPrices.length));
+		result.put("mortgages", Model.bank.mortgages.size()*Config.MORTGAGE_BYTES + Model.bank.mortgages.principal.length*Config.LEDGER_ROW_BYTES);
+		return(Collections.unmodifiableMap(result));
+	}
+
+	/***
+	 * Write the checkpoint that has been asked for (simulation thread, holding the lock)
+	 */
+	private void writeCheckpoint() {
+		File f = new File(checkpointFile);
+		checkpointFile = null;
+		if(model.writeCheckpoint(f)) {
+			checkpointResult = "Wrote checkpoint at month "+month+" to "+f.getPath();
+		} else {
+			checkpointResult = "Failed to write checkpoint to "+f.getPath();
+		}
+		notifyAll();
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// ModelMonitorMXBean
+	/////////////////////////////////////////////////////////////////////
+
+	@Override
+	public long getSeed() {
+		return(seed);
+	}
+
+	@Override
+	public long getMonth() {
+		return(month);
+	}
+
+	@Override
+	public double getMonthsPerSecond() {
+		return(monthsPerSecond);
+	}
+
+	@Override
+	public double getSecondsSinceLastMonth() {
+		return((System.nanoTime() - lastMonthTime)*1e-9);
+	}
+
+	@Override
+	public int getNHouseholds() {
+		return(nHouseholds);
+	}
+
+	@Override
+	public int getNSaleOffers() {
+		return(nSaleOffers);
+	}
+
+	@Override
+	public int getNSaleBids() {
+		return(nSaleBids);
+	}
+
+	@Override
+	public int getNRentalOffers() {
+		return(nRentalOffers);
+	}
+
+	@Override
+	public int getNRentalBids() {
+		return(nRentalBids);
+	}
+
+	@Override
+	public double getMortgageInterestRate() {
+		return(mortgageInterestRate);
+	}
+
+	@Override
+	public int getNMortgages() {
+		return(nMortgages);
+	}
+
+	public int getSteadyStateMonth() {
+		return(steadyStateMonth);
+	}
+
+	@Override
+	public Map<String, Double> getCoreIndicators() {
+		return(coreIndicators);
+	}
+
+	@Override
+	public Map<String, Long> getEstimatedHeapBytes() {
+		return(heapBytes);
+	}
+
+	@Override
+	public long getHeapUsed() {
+		return(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+	}
+
+	@Override
+	public synchronized boolean isPaused() {
+		return(paused);
+	}
+
+	@Override
+	public synchronized void pause() {
+		paused = true;
+	}
+
+	@Override
+	public synchronized void resume() {
+		paused = false;
+		notifyAll();
+	}
+
+	@Override
+	public synchronized String checkpoint(String filename) {
+		if(name == null) return("Run has finished");
+		checkpointFile = filename;
+		checkpointResult = null;
+		notifyAll(); // wakes the simulation thread if it's paused
+		long deadline = System.nanoTime() + (long)(Config.CHECKPOINT_TIMEOUT*1e9);
+		while(checkpointResult == null) {
+			long wait = (deadline - System.nanoTime())/1000000;
+			if(wait <= 0) return("Timed out waiting for the end of the month: checkpoint will be written when it comes");
+			try {
+				wait(wait);
+			} catch (InterruptedException e) {
+				return("Interrupted: checkpoint will be written at the end of the month");
+			}
+		}
+		return(checkpointResult);
+	}
+
+	Model				model;
+	long				seed;
+	ObjectName			name;				// name we're registered under (null if not registered)
+
+	// --- sampled by the simulation thread
+	volatile long		month;
+	volatile long		lastMonthTime;		// System.nanoTime() at the end of the last month
+	volatile double		monthsPerSecond;
+	volatile int		nHouseholds;
+	volatile int		nSaleOffers;
+	volatile int		nSaleBids;
+	volatile int		nRentalOffers;
+	volatile int		nRentalBids;
+	volatile double		mortgageInterestRate;
+	volatile int		nMortgages;
+	volatile int		steadyStateMonth;
+	volatile Map<String, Double>	coreIndicators;
+	volatile Map<String, Long>		heapBytes;
+	long				sampleTime;			// time of the last sample of the core indicators
+	long				rateTime;			// time and month at the start of the current throughput measurement
+	long				rateMonth;
+
+	// --- control (guarded by this)
+	boolean				paused;
+	String				checkpointFile;		// checkpoint asked for, but not written yet
+	String				checkpointResult;
+}
@@ -0,0 +1,50 @@
+package housing;
+
+import java.util.Map;
+
+/***************************************************
+ * Management interface of a running model, for monitoring headless
+ * runs over JMX (e.g. with jconsole or the batch nodes' ops tooling).
+ * See ModelMonitor.
+ **************************************************/
+public interface ModelMonitorMXBean {
+	/*** @return the seed of the run being monitored */
+	long getSeed();
+	/*** @return the number of months simulated so far (over all Monte-Carlo runs) */
+	long getMonth();
+	/*** @return months simulated per second, averaged over the last few seconds */
+	double getMonthsPerSecond();
+	/*** @return seconds since the last month was completed */
+	double getSecondsSinceLastMonth();
+
+	int getNHouseholds();
+	int getNSaleOffers();
+	/*** @return the number of bids made for the last clearing of the sale market */
+	int getNSaleBids();
+	int getNRentalOffers();
+	/*** @return the number of bids made for the last clearing of the rental market */
+	int getNRentalBids();
+	double getMortgageInterestRate();
+	int getNMortgages();
+	/*** @return month at which the current run reached a steady state (-1 if it hasn't, see Model.AUTO_START_RECORDING) */
+	int getSteadyStateMonth();
+
+	/*** @return the core indicators, as last sampled */
+	Map<String, Double> getCoreIndicators();
+	/*** @return rough estimate of the heap used by each part of the model, in bytes */
+	Map<String, Long> getEstimatedHeapBytes();
+	/*** @return heap used by the whole JVM, in bytes */
+	long getHeapUsed();
+
+	boolean isPaused();
+	/*** Pause the run at the end of the current month */
+	void pause();
+	void resume();
+	/***
+	 * Write a checkpoint of the model at the end of the current month
+	 * (or now, if paused), waiting for it to be written.
+	 * @param filename file to write the checkpoint to
+	 * @return a message saying whether the checkpoint was written
+	 */
+	String checkpoint(String filename);
+}
@@ -0,0 +1,292 @@
+package housing;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/***************************************************
+ * Headless, command-line entry point for batch runs.
+ *
+ * Runs the model from a configuration file without loading any
+ * Swing, AWT or MASON display classes, and reports progress
+ * and throughput (months per second) on the console.
+ *
+ * Usage: java housing.ModelNoGUI config.properties
+ *
+ * The configuration file is a Java properties file. Keys without a dot
+ * configure the runner itself:
+ *
+ *  seeds				comma separated list of seeds, one run per seed (default 1)
+ *  outputDirectory		directory where output files are written (default: working directory).
+ *  					If there is more than one seed, each run writes to a sub-directory
+ *  					"seed-N" of this directory
+ *  collectors			comma separated list of recorders to enable: any of
+ *  					"coreIndicators", "microData" and "ensemble" (default: coreIndicators).
+ *  					"ensemble" summarises the indicators of all runs (all seeds, and all
+ *  					Model.N_SIMS runs of each) in ensemble-summary.csv in the output directory
+ *  					(see EnsembleAggregator). Set Model.RECORD_RUN_FILES = false to write only
+ *  					the summary, and not the files of each run. Set Model.MICRO_DATA_ARCHIVE = true
+ *  					to write "microData" as compressed transactions-N.htx archives (see TransactionArchive)
+ *  progressInterval	number of months between progress reports (0 for no reports, default 100)
+ *  monitor				true to register a JMX monitor for each run, so it can be watched, paused
+ *  					and checkpointed with JMX tools (see ModelMonitor; default true)
+ *
+ * Keys of the form "ClassName.FIELD" set model parameters, e.g. "Model.N_STEPS"
+ * or "HouseholdBehaviour.P_INVESTOR". Static fields are set before the model is
+ * created; instance fields are set on the model's Bank, CentralBank, Construction
+ * or the Model itself after they are created, but before the model is initialised
+ * and starts recording. Class names are looked up in the housing and data packages
+ * (nested classes can be given as, e.g., "House.Config.N_QUALITY").
+ **************************************************/
+public class ModelNoGUI {
+
+	public static void main(String[] args) {
+		if(args.length != 1) {
+			System.out.println("Usage: java housing.ModelNoGUI <config file>");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+		ModelNoGUI runner = new ModelNoGUI();
+		try {
+			runner.loadConfig(args[0]);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Problem loading configuration file "+args[0]+": "+e.getMessage());
+			System.exit(1);
+		}
+		runner.run();
+		System.exit(0);
+	}
+
+	/***
+	 * Read a configuration file and set the static model parameters it contains.
+	 *
+	 * @param filename name of the properties file
+	 */
+	public void loadConfig(String filename) throws IOException {
+		Properties config = new Properties();
+		Reader in = new FileReader(filename);
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		for(String key : config.stringPropertyNames()) {
+			String value = config.getProperty(key).trim();
+			if(key.indexOf('.') < 0) {
+				setRunnerOption(key, value);
+			} else {
+				parameters.put(key, value);
+			}
+		}
+		for(Map.Entry<String, String> param : parameters.entrySet()) {
+			setParameter(param.getKey(), param.getValue(), null);
+		}
+	}
+
+	/***
+	 * Run the model once for each seed.
+	 */
+	public void run() {
+		if(recordEnsemble) Recorder.ensemble = new EnsembleAggregator(Recorder.INDICATORS);
+		for(long seed : seeds) {
+			if(seeds.size() > 1 && (Model.RECORD_RUN_FILES || Model.RECORD_MICRO_DATA)) {
+				Model.OUTPUT_DIRECTORY = outputDirectory(new File(outputDirectory, "seed-"+seed));
+			} else {
+				Model.OUTPUT_DIRECTORY = outputDirectory(new File(outputDirectory));
+			}
+			runOnce(seed);
+		}
+		if(recordEnsemble) {
+			String filename = outputDirectory(new File(outputDirectory)) + "ensemble-summary.csv";
+			try {
+				Recorder.ensemble.write(filename);
+				System.out.println("Wrote summary of "+Recorder.ensemble.getNRuns()+" runs to "+filename);
+			} catch (IOException e) {
+				System.out.println("Couldn't write ensemble summary "+filename+": "+e.getMessage());
+			}
+			Recorder.ensemble = null;
+		}
+	}
+
+	/***
+	 * Run the model to completion with the given seed.
+	 */
+	protected void runOnce(long seed) {
+		Model model = new Model(seed, false);
+		for(Map.Entry<String, String> param : parameters.entrySet()) {
+			setParameter(param.getKey(), param.getValue(), model);
+		}
+		model.initialise();
+		model.start();
+		ModelMonitor monitor = null;
+		if(monitorRuns) {
+			monitor = new ModelMonitor(model, seed);
+			monitor.register();
+		}
+
+		long totalMonths = (long)Model.N_STEPS*Model.N_SIMS;
+		long startTime = System.nanoTime();
+		long reportTime = startTime;
+		long reportMonths = 0;
+		long months;
+		System.out.println("Seed "+seed+": running "+totalMonths+" months, output to "+
+				(Model.OUTPUT_DIRECTORY.equals("") ? "working directory" : Model.OUTPUT_DIRECTORY));
+		while(model.schedule.step(model)) {
+			months = monthsSimulated(model);
+			if(monitor != null) monitor.endOfMonth(months);
+			if(progressInterval > 0 && months - reportMonths >= progressInterval) {
+				long now = System.nanoTime();
+				System.out.println("Seed "+seed+": month "+months+"/"+totalMonths+
+						" ("+String.format("%.1f", monthsPerSecond(months - reportMonths, now - reportTime))+" months/s)");
+				reportTime = now;
+				reportMonths = months;
+			}
+		}
+		model.finish();
+		if(monitor != null) monitor.unregister();
+		long elapsed = System.nanoTime() - startTime;
+		months = monthsSimulated(model);
+		System.out.println("Seed "+seed+": finished "+months+" months in "+
+				String.format("%.2f", elapsed*1e-9)+"s ("+String.format("%.1f", monthsPerSecond(months, elapsed))+" months/s)");
+	}
+
+	protected long monthsSimulated(Model model) {
+		// on the final step nSimulation reaches N_SIMS while t is still N_STEPS
+		return(Math.min((long)Model.nSimulation*Model.N_STEPS + model.t, (long)Model.N_STEPS*Model.N_SIMS));
+	}
+
+	protected static double monthsPerSecond(long months, long nanos) {
+		if(nanos <= 0) return(0.0);
+		return(months*1e9/nanos);
+	}
+
+	protected void setRunnerOption(String key, String value) {
+		if(key.equals("seeds")) {
+			seeds.clear();
+			for(String seed : value.split(",")) {
+				seeds.add(Long.valueOf(seed.trim()));
+			}
+		} else if(key.equals("outputDirectory")) {
+			outputDirectory = value;
+		} else if(key.equals("collectors")) {
+			Model.RECORD_CORE_INDICATORS = false;
+			Model.RECORD_MICRO_DATA = false;
+			recordEnsemble = false;
+			for(String collector : value.split(",")) {
+				collector = collector.trim();
+				if(collector.equals("coreIndicators")) {
+					Model.RECORD_CORE_INDICATORS = true;
+				} else if(collector.equals("microData")) {
+					Model.RECORD_MICRO_DATA = true;
+				} else if(collector.equals("ensemble")) {
+					Model.RECORD_CORE_INDICATORS = true; // the ensemble is fed by the core indicators' recorder
+					recordEnsemble = true;
+				} else if(!collector.equals("")) {
+					throw(new IllegalArgumentException("unknown collector "+collector));
+				}
+			}
+		} else if(key.equals("progressInterval")) {
+			progressInterval = Integer.valueOf(value);
+		} else if(key.equals("monitor")) {
+			monitorRuns = Boolean.valueOf(value);
+		} else {
+			throw(new IllegalArgumentException("unknown option "+key));
+		}
+	}
+
+	/***
+	 * Set a parameter given as "ClassName.FIELD = value". If model is null, only
+	 * static fields are set, otherwise only instance fields are set on the object
+	 * of the given class that belongs to the model.
+	 */
+	protected void setParameter(String key, String value, Model model) {
+		int dot = key.lastIndexOf('.');
+		Class<?> c = findClass(key.substring(0, dot));
+		if(c == null) throw(new IllegalArgumentException("can't find class for parameter "+key));
+		try {
+			Field field = c.getField(key.substring(dot+1));
+			boolean isStatic = Modifier.isStatic(field.getModifiers());
+			if(Modifier.isFinal(field.getModifiers())) {
+				throw(new IllegalArgumentException("parameter "+key+" is final"));
+			}
+			if(model == null && isStatic) {
+				setField(field, null, value);
+			} else if(model != null && !isStatic) {
+				Object target = parameterOwner(c, model);
+				if(target == null) throw(new IllegalArgumentException("can't set instance parameter "+key));
+				setField(field, target, value);
+			}
+		} catch (NoSuchFieldException e) {
+			throw(new IllegalArgumentException("no public field for parameter "+key));
+		} catch (IllegalAccessException e) {
+			throw(new IllegalArgumentException("can't access parameter "+key));
+		}
+	}
+
+	protected Object parameterOwner(Class<?> c, Model model) {
+		if(c == Model.class) return(model);
+		if(c == Bank.class) return(model.mBank);
+		if(c == Construction.class) return(model.mConstruction);
+		if(c == CentralBank.class) return(Model.centralBank);
+		return(null);
+	}
+
+	protected static void setField(Field field, Object target, String value) throws IllegalAccessException {
+		Class<?> type = field.getType();
+		if(type == int.class) {
+			field.setInt(target, Integer.valueOf(value));
+		} else if(type == long.class) {
+			field.setLong(target, Long.valueOf(value));
+		} else if(type == double.class) {
+			field.setDouble(target, Double.valueOf(value));
+		} else if(type == boolean.class) {
+			field.setBoolean(target, Boolean.valueOf(value));
+		} else if(type == String.class) {
+			field.set(target, value);
+		} else {
+			throw(new IllegalArgumentException("can't set parameter "+field.getName()+" of type "+type.getSimpleName()));
+		}
+	}
+
+	/***
+	 * Find a class given a (possibly nested) name relative to the housing or data package.
+	 */
+	protected static Class<?> findClass(String name) {
+		for(String pkg : new String[] {"housing.", "data.", ""}) {
+			String binaryName = pkg + name;
+			while(true) {
+				try {
+					return(Class.forName(binaryName));
+				} catch (ClassNotFoundException e) {
+					int dot = binaryName.lastIndexOf('.');
+					if(dot <= pkg.length()-1) break;
+					binaryName = binaryName.substring(0, dot) + "$" + binaryName.substring(dot+1);
+				}
+			}
+		}
+		return(null);
+	}
+
+	protected static String outputDirectory(File dir) {
+		if(dir.getPath().equals("")) return("");
+		if(!dir.isDirectory() && !dir.mkdirs()) {
+			System.out.println("Can't create output directory "+dir.getPath()+": using working directory");
+			return("");
+		}
+		return(dir.getPath() + File.separator);
+	}
+
+	ArrayList<Long>		seeds = new ArrayList<>(java.util.Collections.singletonList(1L));
+	String				outputDirectory = "";
+	int					progressInterval = 100;
+	boolean				monitorRuns = true;
+	boolean				recordEnsemble = false;	// summarise all runs with an EnsembleAggregator
+	TreeMap<String, String>	parameters = new TreeMap<>(); // ClassName.FIELD -> value
+}
@@ -2,59 +2,105 @@ package housing;
 
 import java.io.Serializable;
 
+/****************************************************
+ * A mortgage. While it is being approved, its terms are held in its own
+ * fields. Once signed, it is put on the bank's MortgageLedger and becomes
+ * a view of its row there: use getPrincipal(), getMonthlyPayment() and
+ * getNPayments() to read its current state.
+ ***************************************************/
 public class MortgageAgreement extends PaymentAgreement {
 	private static final long serialVersionUID = -1610029355056926296L;
+	public static final int	NOT_ON_LEDGER = -1;
 	public double	downPayment;
 	public double	purchasePrice;
-	public final boolean	isBuyToLet;
-	public final boolean	isFirstTimeBuyer;
-	public double	principal;			// remaining principal to be paid off
+	public boolean	isBuyToLet;
+	public boolean	isFirstTimeBuyer;
+	public double	principal;			// remaining principal to be paid off (when not on the ledger)
 	public double 	monthlyInterestRate;
+	int				ledgerRow = NOT_ON_LEDGER;	// row on the bank's ledger
 
 	public MortgageAgreement(Household borrower, boolean isBuyToLet) {
+		reset(borrower, isBuyToLet);
+	}
+
+	/***
+	 * Re-initialise as a new, unsigned agreement with a (possibly different)
+	 * borrower, so that the bank can re-use one agreement for its approvals.
+	 */
+	void reset(Household borrower, boolean isBuyToLet) {
 		this.isBuyToLet = isBuyToLet;
 		if(!isBuyToLet && borrower.isFirstTimeBuyer()) {
 			this.isFirstTimeBuyer = true;
 		} else {
 			this.isFirstTimeBuyer = false;
 		}
+		ledgerRow = NOT_ON_LEDGER;
 	}
 
 	/********************************************
 	 * Updates internal variables to simulate a payment
 	 * being made (Does not move any assets from payer to payee).
-	 * 
+	 * Mortgages on the ledger are normally paid in bulk by
+	 * MortgageLedger.makeMonthlyPayments().
+	 *
 	 * @return The amount of the payment
 	 ********************************************/
 	public double makeMonthlyPayment() {
+		if(isOnLedger()) return(Model.bank.mortgages.makeMonthlyPayment(ledgerRow));
 		double payment = super.makeMonthlyPayment();
 		principal = principal*(1.0 + monthlyInterestRate) - payment;
-		if(nPayments == 0) Model.bank.endMortgageContract(this);
 		return(payment);
 	}
 
 	/*******************************************
 	 * Use this to pay off the mortgage early or make
 	 * a one-off payment.
-	 * 
+	 *
 	 * @param amount Desired amount to pay off
 	 * @return Amount that was actually payed off.
 	 *******************************************/
 	public double payoff(double amount) {
-		if(amount >= principal) {
+		if(amount >= getPrincipal()) {
+			Model.bank.endMortgageContract(this);
 			principal = 0.0;
 			monthlyPayment = 0.0;
 			nPayments = 0;
-			Model.bank.endMortgageContract(this);
 			return(principal);
 		}
-		monthlyPayment *= (principal-amount)/principal;
-		principal -= amount;
+		if(isOnLedger()) {
+			Model.bank.mortgages.repay(ledgerRow, amount);
+		} else {
+			monthlyPayment *= (principal-amount)/principal;
+			principal -= amount;
+		}
 		return(amount);
 	}
 
 	public double payoff() {
-		return(payoff(principal));
+		return(payoff(getPrincipal()));
+	}
+
+	public boolean isOnLedger() {
+		return(ledgerRow != NOT_ON_LEDGER);
 	}
 
+	public double getPrincipal() {
+		if(isOnLedger()) return(Model.bank.mortgages.principal[ledgerRow]);
+		return(principal);
+	}
+
+	public double getMonthlyPayment() {
+		if(isOnLedger()) return(Model.bank.mortgages.monthlyPayment[ledgerRow]);
+		return(monthlyPayment);
+	}
+
+	public int getNPayments() {
+		if(isOnLedger()) return(Model.bank.mortgages.nPayments[ledgerRow]);
+		return(nPayments);
+	}
+
+	public double nextPayment() {
+		if(getNPayments() == 0) return(0.0);
+		return(getMonthlyPayment());
+	}
 }
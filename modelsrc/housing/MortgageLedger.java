@@ -0,0 +1,200 @@
+package housing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**************************************************************************
+ * The bank's book of signed mortgages, stored column by column so that all
+ * monthly payments can be made in one tight loop over primitive arrays.
+ *
+ * Each mortgage occupies one row. A MortgageAgreement that has been signed is
+ * a view of its row (it knows its row index), so payoff and early repayment
+ * only touch that row, and removing a mortgage moves the last row into the
+ * gap (swap-remove), which is O(1). When a mortgage leaves the ledger, its
+ * final state is copied back into the MortgageAgreement.
+ *
+ * A mortgage that has made its last payment stays on the ledger (its
+ * principal still accrues interest, as before) until its borrower pays it off
+ * or lets it go, but no longer counts as outstanding.
+ *************************************************************************/
+public class MortgageLedger implements Serializable {
+	private static final long serialVersionUID = 5183094761207739410L;
+
+	static final int INITIAL_CAPACITY = 1024;
+
+	public MortgageLedger() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+		nOutstanding = 0;
+	}
+
+	public void clear() {
+		for(int i=0; i<size; ++i) {
+			agreement[i].ledgerRow = MortgageAgreement.NOT_ON_LEDGER;
+			agreement[i] = null;
+			borrower[i] = null;
+		}
+		size = 0;
+		nOutstanding = 0;
+	}
+
+	/***
+	 * Put a newly signed mortgage on the ledger
+	 */
+	public void add(MortgageAgreement m, Household h) {
+		if(m.ledgerRow != MortgageAgreement.NOT_ON_LEDGER) {
+			System.out.println("Strange: adding a mortgage that is already on the ledger");
+			return;
+		}
+		if(size == principal.length) allocate(2*size);
+		principal[size] = m.principal;
+		monthlyInterestRate[size] = m.monthlyInterestRate;
+		monthlyPayment[size] = m.monthlyPayment;
+		nPayments[size] = m.nPayments;
+		isBuyToLet[size] = m.isBuyToLet;
+		borrower[size] = h;
+		agreement[size] = m;
+		m.ledgerRow = size;
+		if(m.nPayments > 0) ++nOutstanding;
+		++size;
+	}
+
+	/***
+	 * Take a mortgage off the ledger, copying its state back into the agreement
+	 */
+	public void remove(MortgageAgreement m) {
+		int row = m.ledgerRow;
+		if(row == MortgageAgreement.NOT_ON_LEDGER) return;
+		m.principal = principal[row];
+		m.monthlyPayment = monthlyPayment[row];
+		m.nPayments = nPayments[row];
+		m.ledgerRow = MortgageAgreement.NOT_ON_LEDGER;
+		if(nPayments[row] > 0) --nOutstanding;
+		int last = --size;
+		if(row != last) {
+			principal[row] = principal[last];
+			monthlyInterestRate[row] = monthlyInterestRate[last];
+			monthlyPayment[row] = monthlyPayment[last];
+			nPayments[row] = nPayments[last];
+			isBuyToLet[row] = isBuyToLet[last];
+			borrower[row] = borrower[last];
+			agreement[row] = agreement[last];
+			agreement[row].ledgerRow = row;
+		}
+		borrower[last] = null;
+		agreement[last] = null;
+	}
+
+	/***
+	 * Make this month's payment on every mortgage on the ledger, and add each
+	 * payment to its borrower's mortgagePayments.
+	 */
+	public void makeMonthlyPayments() {
+		double payment;
+		for(int i=0; i<size; ++i) {
+			if(nPayments[i] > 0) {
+				payment = monthlyPayment[i];
+				if(--nPayments[i] == 0) --nOutstanding;
+			} else {
+				payment = 0.0;
+			}
+			principal[i] = principal[i]*(1.0 + monthlyInterestRate[i]) - payment;
+			borrower[i].mortgagePayments += payment;
+		}
+	}
+
+	/***
+	 * Make this month's payment on a single mortgage
+	 * @return the amount of the payment
+	 */
+	public double makeMonthlyPayment(int row) {
+		double payment = 0.0;
+		if(nPayments[row] > 0) {
+			payment = monthlyPayment[row];
+			if(--nPayments[row] == 0) --nOutstanding;
+		}
+		principal[row] = principal[row]*(1.0 + monthlyInterestRate[row]) - payment;
+		return(payment);
+	}
+
+	/***
+	 * Pay off part of the principal of a mortgage, reducing the monthly
+	 * payment in proportion. The caller deals with full payoff.
+	 */
+	public void repay(int row, double amount) {
+		monthlyPayment[row] *= (principal[row]-amount)/principal[row];
+		principal[row] -= amount;
+	}
+
+	/***
+	 * @param buyToLet whether to sum buy-to-let or owner-occupier mortgages
+	 * @return total principal on mortgages that still have payments to make
+	 */
+	public double getOutstandingPrincipal(boolean buyToLet) {
+		double total = 0.0;
+		for(int i=0; i<size; ++i) {
+			if(nPayments[i] > 0 && isBuyToLet[i] == buyToLet) total += principal[i];
+		}
+		return(total);
+	}
+
+	/*** @return the number of mortgages that still have payments to make */
+	public int getNOutstanding() {
+		return(nOutstanding);
+	}
+
+	/*** @return the number of mortgages on the ledger, including those that have made their last payment */
+	public int size() {
+		return(size);
+	}
+
+	/***
+	 * Audit the ledger (see Model.checkConsistency)
+	 * @return true if every row is viewed by its agreement and the count of outstanding mortgages is right
+	 */
+	public boolean checkConsistency() {
+		int n = 0;
+		for(int i=0; i<size; ++i) {
+			if(agreement[i].ledgerRow != i || borrower[i] == null) {
+				System.out.println("Strange: mortgage ledger row "+i+" is not linked to its agreement and borrower");
+				return(false);
+			}
+			if(nPayments[i] > 0) ++n;
+		}
+		if(n != nOutstanding) {
+			System.out.println("Strange: mortgage ledger counts "+nOutstanding+" outstanding mortgages, but there are "+n);
+			return(false);
+		}
+		return(true);
+	}
+
+	private void allocate(int capacity) {
+		if(principal == null) {
+			principal = new double[capacity];
+			monthlyInterestRate = new double[capacity];
+			monthlyPayment = new double[capacity];
+			nPayments = new int[capacity];
+			isBuyToLet = new boolean[capacity];
+			borrower = new Household[capacity];
+			agreement = new MortgageAgreement[capacity];
+		} else {
+			principal = Arrays.copyOf(principal, capacity);
+			monthlyInterestRate = Arrays.copyOf(monthlyInterestRate, capacity);
+			monthlyPayment = Arrays.copyOf(monthlyPayment, capacity);
+			nPayments = Arrays.copyOf(nPayments, capacity);
+			isBuyToLet = Arrays.copyOf(isBuyToLet, capacity);
+			borrower = Arrays.copyOf(borrower, capacity);
+			agreement = Arrays.copyOf(agreement, capacity);
+		}
+	}
+
+	double []				principal;				// remaining principal
+	double []				monthlyInterestRate;
+	double []				monthlyPayment;
+	int []					nPayments;				// number of payments left to make
+	boolean []				isBuyToLet;
+	Household []			borrower;
+	MortgageAgreement []	agreement;				// the agreement that views each row
+	int						size;					// number of rows in use
+	int						nOutstanding;			// number of rows with nPayments > 0
+}
@@ -29,6 +29,10 @@ public class PaymentAgreement implements Serializable {
 		if(nPayments == 0) return(0.0);
 		return(monthlyPayment);
 	}
+
+	public double getMonthlyPayment() {
+		return(monthlyPayment);
+	}
 	
 	public int 		nPayments;
 	public double 	monthlyPayment;
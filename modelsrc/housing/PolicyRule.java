@@ -0,0 +1,20 @@
+package housing;
+
+/***************************************************
+ * A macroprudential policy of the central bank. Once a month, after the
+ * markets have cleared, the rule may change the central bank's limits
+ * (LTV, LTI, ICR...) and the bank's rates in response to the current
+ * value of the core indicators.
+ *
+ * Rules are either Java classes that implement this interface, or are
+ * written in the small language of PolicyScript. See CentralBank.Config
+ * for how to choose the rule for a run.
+ **************************************************/
+public interface PolicyRule {
+	/***
+	 * @param centralBank the central bank whose limits the rule sets
+	 * @param bank the bank whose rates the rule may set
+	 * @param coreIndicators the current value of the core indicators
+	 */
+	void apply(CentralBank centralBank, Bank bank, CoreIndicators coreIndicators);
+}
@@ -0,0 +1,445 @@
+package housing;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+/***************************************************
+ * A policy rule written in a small expression language, e.g.
+ *
+ *   # tighten FTB LTV when house prices are rising fast
+ *   firstTimeBuyerLTVLimit = housePriceGrowth > 1.0 ? 0.75 : 0.95
+ *   bank.baseRate = max(0.005, min(0.1, bank.baseRate + 0.0025*(creditGrowth - 4.0)))
+ *
+ * A script is a list of assignments, separated by new lines or ';', that are
+ * carried out in order once a month. Lines starting with '#' are comments.
+ *
+ * The left hand side of an assignment is a (double) field of the central
+ * bank, e.g. firstTimeBuyerLTVLimit, or of the bank if prefixed with "bank.",
+ * e.g. bank.baseRate. Expressions can use the same fields, the core indicators
+ * (ooLTI, ooLTV, btlLTV, creditGrowth, debtToIncome, ooDebtToIncome,
+ * mortgageApprovals, housingTransactions, advancesToFTB, advancesToBTL,
+ * advancesToMovers, priceToIncome, rentalYield, housePriceGrowth,
+ * interestRateSpread), time (in months), numbers, + - * /, comparisons
+ * (< <= > >= == !=), && || !, c ? a : b and the functions min, max and abs.
+ * Booleans are 1.0 (true) or 0.0 (false).
+ *
+ * The script is parsed once, when it is compiled, into a tree of expression
+ * objects that are bound directly to the indicators and fields they use, so
+ * applying it each month costs no more than a few method calls.
+ **************************************************/
+public class PolicyScript implements PolicyRule {
+
+	/***
+	 * Compile a script.
+	 * @param source the text of the script
+	 * @throws IllegalArgumentException if the script isn't valid
+	 */
+	public static PolicyScript compile(String source) {
+		return(new PolicyScript(source));
+	}
+
+	protected PolicyScript(String source) {
+		this.source = source;
+		assignments = new ArrayList<>();
+		tokenise(source);
+		pos = 0;
+		while(!peek(END)) {
+			if(peek(SEPARATOR)) {
+				++pos;
+			} else {
+				assignments.add(assignment());
+				if(!peek(END)) expect(SEPARATOR);
+			}
+		}
+		tokens = null;
+	}
+
+	@Override
+	public void apply(CentralBank centralBank, Bank bank, CoreIndicators coreIndicators) {
+		for(Assignment a : assignments) {
+			a.apply(centralBank, bank, coreIndicators);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return(source);
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// Expression tree
+	/////////////////////////////////////////////////////////////////////
+
+	static abstract class Expression {
+		abstract double eval(CentralBank cb, Bank bank, CoreIndicators ci);
+	}
+
+	static class Constant extends Expression {
+		Constant(double value) {this.value = value;}
+		double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(value);}
+		double value;
+	}
+
+	/*** a double field of the central bank or the bank */
+	static class FieldValue extends Expression {
+		FieldValue(Field field, boolean ofBank) {
+			this.field = field;
+			this.ofBank = ofBank;
+		}
+		double eval(CentralBank cb, Bank bank, CoreIndicators ci) {
+			try {
+				return(field.getDouble(ofBank ? bank : cb));
+			} catch (IllegalAccessException e) {
+				throw(new IllegalStateException(e));
+			}
+		}
+		void set(CentralBank cb, Bank bank, double value) {
+			try {
+				field.setDouble(ofBank ? bank : cb, value);
+			} catch (IllegalAccessException e) {
+				throw(new IllegalStateException(e));
+			}
+		}
+		Field	field;
+		boolean	ofBank;
+	}
+
+	static class Assignment {
+		Assignment(FieldValue target, Expression value) {
+			this.target = target;
+			this.value = value;
+		}
+		void apply(CentralBank cb, Bank bank, CoreIndicators ci) {
+			target.set(cb, bank, value.eval(cb, bank, ci));
+		}
+		FieldValue	target;
+		Expression	value;
+	}
+
+	static class Unary extends Expression {
+		Unary(char op, Expression arg) {
+			this.op = op;
+			this.arg = arg;
+		}
+		double eval(CentralBank cb, Bank bank, CoreIndicators ci) {
+			double x = arg.eval(cb, bank, ci);
+			switch(op) {
+			case '-': return(-x);
+			case '!': return(x != 0.0 ? 0.0 : 1.0);
+			default : return(Math.abs(x)); // abs()
+			}
+		}
+		char		op;
+		Expression	arg;
+	}
+
+	static class Binary extends Expression {
+		Binary(String op, Expression left, Expression right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		double eval(CentralBank cb, Bank bank, CoreIndicators ci) {
+			double a = left.eval(cb, bank, ci);
+			if(op.equals("&&")) return(a != 0.0 && right.eval(cb, bank, ci) != 0.0 ? 1.0 : 0.0);
+			if(op.equals("||")) return(a != 0.0 || right.eval(cb, bank, ci) != 0.0 ? 1.0 : 0.0);
+			double b = right.eval(cb, bank, ci);
+			switch(op) {
+			case "+": return(a + b);
+			case "-": return(a - b);
+			case "*": return(a * b);
+			case "/": return(a / b);
+			case "<": return(a < b ? 1.0 : 0.0);
+			case "<=": return(a <= b ? 1.0 : 0.0);
+			case ">": return(a > b ? 1.0 : 0.0);
+			case ">=": return(a >= b ? 1.0 : 0.0);
+			case "==": return(a == b ? 1.0 : 0.0);
+			case "!=": return(a != b ? 1.0 : 0.0);
+			case "min": return(Math.min(a, b));
+			default: return(Math.max(a, b)); // max()
+			}
+		}
+		String		op;
+		Expression	left;
+		Expression	right;
+	}
+
+	static class Conditional extends Expression {
+		Conditional(Expression condition, Expression ifTrue, Expression ifFalse) {
+			this.condition = condition;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+		double eval(CentralBank cb, Bank bank, CoreIndicators ci) {
+			if(condition.eval(cb, bank, ci) != 0.0) return(ifTrue.eval(cb, bank, ci));
+			return(ifFalse.eval(cb, bank, ci));
+		}
+		Expression	condition;
+		Expression	ifTrue;
+		Expression	ifFalse;
+	}
+
+	/***
+	 * @return the expression for a named value, or null if there isn't one
+	 */
+	static Expression variable(String name) {
+		switch(name) {
+		case "ooLTI": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getOwnerOccupierLTIMeanAboveMedian());}});
+		case "ooLTV": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getOwnerOccupierLTVMeanAboveMedian());}});
+		case "btlLTV": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getBuyToLetLTVMean());}});
+		case "creditGrowth": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getHouseholdCreditGrowth());}});
+		case "debtToIncome": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getDebtToIncome());}});
+		case "ooDebtToIncome": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getOODebtToIncome());}});
+		case "mortgageApprovals": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getMortgageApprovals());}});
+		case "housingTransactions": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getHousingTransactions());}});
+		case "advancesToFTB": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getAdvancesToFTBs());}});
+		case "advancesToBTL": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getAdvancesToBTL());}});
+		case "advancesToMovers": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getAdvancesToHomeMovers());}});
+		case "priceToIncome": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getPriceToIncome());}});
+		case "rentalYield": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getRentalYield());}});
+		case "housePriceGrowth": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getHousePriceGrowth());}});
+		case "interestRateSpread": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(ci.getInterestRateSpread());}});
+		case "time": return(new Expression() {
+			double eval(CentralBank cb, Bank bank, CoreIndicators ci) {return(Model.getTime());}});
+		default: return(field(name));
+		}
+	}
+
+	/***
+	 * @return the public double field of the central bank (or of the bank,
+	 * if name starts with "bank.") with the given name, or null if there isn't one
+	 */
+	static FieldValue field(String name) {
+		boolean ofBank = name.startsWith("bank.");
+		Class<?> owner = ofBank ? Bank.class : CentralBank.class;
+		try {
+			Field f = owner.getField(ofBank ? name.substring(5) : name);
+			if(f.getType() != double.class || Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers())) return(null);
+			return(new FieldValue(f, ofBank));
+		} catch (NoSuchFieldException e) {
+			return(null);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// Parser
+	/////////////////////////////////////////////////////////////////////
+
+	static final String END = "";
+	static final String SEPARATOR = ";";
+
+	/*** split the source into tokens (new lines become separators) */
+	private void tokenise(String source) {
+		tokens = new ArrayList<>();
+		tokenLines = new ArrayList<>();
+		int line = 1;
+		int i = 0;
+		while(i < source.length()) {
+			char c = source.charAt(i);
+			int start = i;
+			if(c == '\n' || c == ';') {
+				add(SEPARATOR, line);
+				if(c == '\n') ++line;
+				++i;
+			} else if(Character.isWhitespace(c)) {
+				++i;
+			} else if(c == '#') {
+				while(i < source.length() && source.charAt(i) != '\n') ++i;
+			} else if(Character.isDigit(c) || (c == '.' && i+1 < source.length() && Character.isDigit(source.charAt(i+1)))) {
+				while(i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) ++i;
+				if(i < source.length() && (source.charAt(i) == 'e' || source.charAt(i) == 'E')) {
+					++i;
+					if(i < source.length() && (source.charAt(i) == '+' || source.charAt(i) == '-')) ++i;
+					while(i < source.length() && Character.isDigit(source.charAt(i))) ++i;
+				}
+				add(source.substring(start, i), line);
+			} else if(Character.isJavaIdentifierStart(c)) {
+				while(i < source.length() && (Character.isJavaIdentifierPart(source.charAt(i)) || source.charAt(i) == '.')) ++i;
+				add(source.substring(start, i), line);
+			} else if(i+1 < source.length() && OPERATORS2.indexOf(source.substring(i, i+2)+" ") >= 0) {
+				add(source.substring(i, i+2), line);
+				i += 2;
+			} else if(OPERATORS1.indexOf(c) >= 0) {
+				add(String.valueOf(c), line);
+				++i;
+			} else {
+				throw(error("unexpected character '"+c+"'", line));
+			}
+		}
+		add(END, line);
+	}
+
+	static final String OPERATORS1 = "+-*/<>=!?:(),";
+	static final String OPERATORS2 = "<= >= == != && || ";
+
+	private void add(String token, int line) {
+		tokens.add(token);
+		tokenLines.add(line);
+	}
+
+	private boolean peek(String token) {
+		return(tokens.get(pos).equals(token));
+	}
+
+	private String next() {
+		String token = tokens.get(pos);
+		if(!token.equals(END)) ++pos;
+		return(token);
+	}
+
+	private void expect(String token) {
+		if(!peek(token)) throw(error("expected "+describe(token)+" but found "+describe(tokens.get(pos))));
+		++pos;
+	}
+
+	private String describe(String token) {
+		if(token.equals(END)) return("end of script");
+		if(token.equals(SEPARATOR)) return("end of line");
+		return("'"+token+"'");
+	}
+
+	private IllegalArgumentException error(String message) {
+		return(error(message, tokenLines.get(pos)));
+	}
+
+	private IllegalArgumentException error(String message, int line) {
+		return(new IllegalArgumentException("Policy script line "+line+": "+message));
+	}
+
+	private Assignment assignment() {
+		String name = next();
+		FieldValue target = field(name);
+		if(target == null) {
+			--pos;
+			throw(error("can't assign to "+describe(name)));
+		}
+		expect("=");
+		return(new Assignment(target, expression()));
+	}
+
+	private Expression expression() {
+		Expression condition = or();
+		if(!peek("?")) return(condition);
+		++pos;
+		Expression ifTrue = expression();
+		expect(":");
+		return(new Conditional(condition, ifTrue, expression()));
+	}
+
+	private Expression or() {
+		Expression e = and();
+		while(peek("||")) {
+			++pos;
+			e = new Binary("||", e, and());
+		}
+		return(e);
+	}
+
+	private Expression and() {
+		Expression e = comparison();
+		while(peek("&&")) {
+			++pos;
+			e = new Binary("&&", e, comparison());
+		}
+		return(e);
+	}
+
+	private Expression comparison() {
+		Expression e = sum();
+		String op = tokens.get(pos);
+		if(op.equals("<") || op.equals("<=") || op.equals(">") || op.equals(">=") || op.equals("==") || op.equals("!=")) {
+			++pos;
+			e = new Binary(op, e, sum());
+		}
+		return(e);
+	}
+
+	private Expression sum() {
+		Expression e = product();
+		while(peek("+") || peek("-")) {
+			String op = next();
+			e = new Binary(op, e, product());
+		}
+		return(e);
+	}
+
+	private Expression product() {
+		Expression e = unary();
+		while(peek("*") || peek("/")) {
+			String op = next();
+			e = new Binary(op, e, unary());
+		}
+		return(e);
+	}
+
+	private Expression unary() {
+		if(peek("-") || peek("!")) {
+			char op = next().charAt(0);
+			return(new Unary(op, unary()));
+		}
+		return(primary());
+	}
+
+	private Expression primary() {
+		String token = tokens.get(pos);
+		if(token.equals("(")) {
+			++pos;
+			Expression e = expression();
+			expect(")");
+			return(e);
+		}
+		if(token.length() > 0 && (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.')) {
+			++pos;
+			try {
+				return(new Constant(Double.parseDouble(token)));
+			} catch (NumberFormatException e) {
+				--pos;
+				throw(error("bad number "+describe(token)));
+			}
+		}
+		if(token.equals("min") || token.equals("max") || token.equals("abs")) {
+			++pos;
+			expect("(");
+			Expression arg = expression();
+			Expression result;
+			if(token.equals("abs")) {
+				result = new Unary('a', arg);
+			} else {
+				expect(",");
+				result = new Binary(token, arg, expression());
+			}
+			expect(")");
+			return(result);
+		}
+		if(token.length() > 0 && Character.isJavaIdentifierStart(token.charAt(0))) {
+			Expression e = variable(token);
+			if(e == null) throw(error("unknown value "+describe(token)));
+			++pos;
+			return(e);
+		}
+		throw(error("unexpected "+describe(token)));
+	}
+
+	String					source;
+	ArrayList<Assignment>	assignments;
+	// --- parser state (only while compiling)
+	private ArrayList<String>	tokens;
+	private ArrayList<Integer>	tokenLines;
+	private int					pos;
+}
@@ -2,4 +2,9 @@ package housing;
 
 public class RentalAgreement extends PaymentAgreement {
 	private static final long serialVersionUID = 973623049277552232L;
+
+	public Household	tenant;
+	public int			expiry;		// month in which the tenancy ends
+	RentalAgreement		wheelPrev;	// links in the rental market's TenancyWheel (null when not on it)
+	RentalAgreement		wheelNext;
 }
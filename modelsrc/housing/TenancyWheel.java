@@ -0,0 +1,131 @@
+package housing;
+
+import java.io.Serializable;
+
+/**************************************************************************
+ * Hierarchical timing wheel of rental agreements, keyed by the month in which
+ * each tenancy ends, so that the end of a tenancy is an event rather than
+ * something every renter has to check for each month.
+ *
+ * Level 0 has one slot per month for the next SLOTS months. Each slot of level
+ * k covers SLOTS^k months; when month t reaches the start of the span of a slot
+ * of a higher level, that slot's agreements are cascaded down into the lower
+ * levels. Slots are doubly linked lists through the agreements themselves, so
+ * adding and cancelling an agreement are O(1).
+ *************************************************************************/
+public class TenancyWheel implements Serializable {
+	private static final long serialVersionUID = -7125309851627290845L;
+
+	static final int	BITS = 6;
+	static final int	SLOTS = 1<<BITS;	// number of slots in each level
+	static final int	LEVELS = 3;			// the wheel spans SLOTS^LEVELS months
+
+	public TenancyWheel() {
+		slot = new RentalAgreement[LEVELS][SLOTS];
+		for(int level=0; level<LEVELS; ++level) {
+			for(int i=0; i<SLOTS; ++i) {
+				slot[level][i] = new RentalAgreement();
+				slot[level][i].wheelNext = slot[level][i];
+				slot[level][i].wheelPrev = slot[level][i];
+			}
+		}
+		init();
+	}
+
+	public void init() {
+		for(RentalAgreement [] level : slot) {
+			for(RentalAgreement head : level) {
+				while(head.wheelNext != head) cancel(head.wheelNext);
+			}
+		}
+		now = -1;
+		size = 0;
+	}
+
+	/***
+	 * Add a tenancy that ends in month rent.expiry (or next month if that has passed)
+	 */
+	public void add(RentalAgreement rent) {
+		if(rent.wheelNext != null) {
+			System.out.println("Strange: adding a tenancy that is already on the timing wheel");
+			return;
+		}
+		insert(rent, now+1);
+		++size;
+	}
+
+	/***
+	 * Remove a tenancy from the wheel (if it's on it)
+	 */
+	public void cancel(RentalAgreement rent) {
+		if(rent.wheelNext == null) return;
+		unlink(rent);
+		--size;
+	}
+
+	/***
+	 * Move on to month t, ending all tenancies whose expiry month is t or earlier.
+	 */
+	public void advance(int t) {
+		RentalAgreement head, rent;
+		while(now < t) {
+			++now;
+			cascade(1);
+			head = slot[0][now & (SLOTS-1)];
+			while(head.wheelNext != head) {
+				rent = head.wheelNext;
+				cancel(rent);
+				rent.tenant.endOfTenancy();
+			}
+		}
+	}
+
+	/*** @return number of tenancies on the wheel */
+	public int size() {
+		return(size);
+	}
+
+	/***
+	 * If 'now' is at the start of the span of a slot on the given level,
+	 * move the agreements in that slot down to the lower levels.
+	 */
+	private void cascade(int level) {
+		if(level >= LEVELS || (now & ((1<<(BITS*level))-1)) != 0) return;
+		cascade(level+1); // higher levels first, so their agreements are cascaded all the way down
+		RentalAgreement head = slot[level][(now >> (BITS*level)) & (SLOTS-1)];
+		RentalAgreement rent;
+		while(head.wheelNext != head) {
+			rent = head.wheelNext;
+			unlink(rent);
+			insert(rent, now);
+		}
+	}
+
+	/***
+	 * Put an agreement in the slot for its expiry month, relative to the current month
+	 * @param earliest the first month that hasn't been processed yet
+	 */
+	private void insert(RentalAgreement rent, int earliest) {
+		int expiry = Math.max(rent.expiry, earliest);
+		long delta = (long)expiry - now;
+		int level = 0;
+		while(level < LEVELS-1 && delta >= (1L << (BITS*(level+1)))) ++level;
+		if(delta >= (1L << (BITS*LEVELS))) expiry = now + (1 << (BITS*LEVELS)) - 1; // beyond the wheel: park in the furthest slot
+		RentalAgreement head = slot[level][(expiry >> (BITS*level)) & (SLOTS-1)];
+		rent.wheelPrev = head.wheelPrev;
+		rent.wheelNext = head;
+		head.wheelPrev.wheelNext = rent;
+		head.wheelPrev = rent;
+	}
+
+	private void unlink(RentalAgreement rent) {
+		rent.wheelPrev.wheelNext = rent.wheelNext;
+		rent.wheelNext.wheelPrev = rent.wheelPrev;
+		rent.wheelNext = null;
+		rent.wheelPrev = null;
+	}
+
+	RentalAgreement [][]	slot;	// slot[level][i] is the sentinel head of a list of agreements
+	int						now;	// last month processed
+	int						size;	// number of agreements on the wheel
+}
@@ -0,0 +1,131 @@
+package utilities;
+
+/***
+ * Base class for random engines that produce 64 random bits at a time.
+ * Subclasses only need to implement nextLong() and setSeed(long); everything
+ * else is derived from that. Gaussians use the ziggurat method (the ZIGNOR
+ * variant of Doornik, 2005, with 128 layers), which needs a single 64-bit
+ * draw in about 98.8% of cases.
+ */
+public abstract class AbstractRandomEngine implements RandomEngine {
+	private static final long serialVersionUID = 6106624768891553374L;
+
+	public abstract long nextLong();
+
+	public abstract void setSeed(long seed);
+
+	public void setSeed(int seed) {
+		setSeed((long)seed);
+	}
+
+	public void setSeed(int[] seed) {
+		long s = 0;
+		for(int i : seed) s = s*0x9E3779B97F4A7C15L + i;
+		setSeed(s);
+	}
+
+	public int nextInt() {
+		return((int)(nextLong() >>> 32));
+	}
+
+	/***
+	 * Unbiased integer in [0,n) by rejection on the top 31 bits.
+	 */
+	public int nextInt(int n) {
+		if(n <= 0) throw(new IllegalArgumentException("n must be positive"));
+		int bits, val;
+		do {
+			bits = (int)(nextLong() >>> 33);
+			val = bits % n;
+		} while(bits - val + (n-1) < 0);
+		return(val);
+	}
+
+	public boolean nextBoolean() {
+		return(nextLong() < 0);
+	}
+
+	public float nextFloat() {
+		return((nextLong() >>> 40)*0x1.0p-24f);
+	}
+
+	public double nextDouble() {
+		return((nextLong() >>> 11)*0x1.0p-53);
+	}
+
+	public void nextBytes(byte[] bytes) {
+		int i = 0;
+		long bits;
+		while(i < bytes.length) {
+			bits = nextLong();
+			for(int j=0; j<8 && i<bytes.length; ++j) {
+				bytes[i++] = (byte)bits;
+				bits >>>= 8;
+			}
+		}
+	}
+
+	public void nextDoubles(double [] out) {
+		for(int i=0; i<out.length; ++i) {
+			out[i] = (nextLong() >>> 11)*0x1.0p-53;
+		}
+	}
+
+	public void nextGaussians(double [] out) {
+		for(int i=0; i<out.length; ++i) {
+			out[i] = nextGaussian();
+		}
+	}
+
+	/***
+	 * Ziggurat sampler. The top 53 bits of a draw give a uniform on (-1,1),
+	 * the bottom 7 bits choose the layer.
+	 */
+	public double nextGaussian() {
+		long bits;
+		int i;
+		double u, x, f0, f1;
+		while(true) {
+			bits = nextLong();
+			u = (bits >>> 11)*0x1.0p-52 - 1.0;
+			i = (int)(bits & 0x7F);
+			if(Math.abs(u) < ZIG_RATIO[i]) return(u*ZIG_X[i]);
+			if(i == 0) return(normalTail(u < 0.0));
+			x = u*ZIG_X[i];
+			f0 = Math.exp(-0.5*(ZIG_X[i]*ZIG_X[i] - x*x));
+			f1 = Math.exp(-0.5*(ZIG_X[i+1]*ZIG_X[i+1] - x*x));
+			if(f1 + nextDouble()*(f0 - f1) < 1.0) return(x);
+		}
+	}
+
+	/***
+	 * Sample from the tail of the normal beyond ZIG_R (Marsaglia, 1964)
+	 */
+	private double normalTail(boolean negative) {
+		double x, y;
+		do {
+			x = Math.log(1.0 - nextDouble())/ZIG_R;
+			y = Math.log(1.0 - nextDouble());
+		} while(-2.0*y < x*x);
+		return(negative ? x - ZIG_R : ZIG_R - x);
+	}
+
+	static final int		ZIG_LAYERS = 128;
+	static final double		ZIG_R = 3.442619855899;			// start of the tail
+	static final double		ZIG_V = 9.91256303526217e-3;	// area of each layer
+	static final double []	ZIG_X = new double[ZIG_LAYERS + 1];	// right-hand edge of each layer
+	static final double []	ZIG_RATIO = new double[ZIG_LAYERS];	// ZIG_X[i+1]/ZIG_X[i]
+	static {
+		double f = Math.exp(-0.5*ZIG_R*ZIG_R);
+		ZIG_X[0] = ZIG_V/f;
+		ZIG_X[1] = ZIG_R;
+		ZIG_X[ZIG_LAYERS] = 0.0;
+		for(int i=2; i<ZIG_LAYERS; ++i) {
+			ZIG_X[i] = Math.sqrt(-2.0*Math.log(ZIG_V/ZIG_X[i-1] + f));
+			f = Math.exp(-0.5*ZIG_X[i]*ZIG_X[i]);
+		}
+		for(int i=0; i<ZIG_LAYERS; ++i) {
+			ZIG_RATIO[i] = ZIG_X[i+1]/ZIG_X[i];
+		}
+	}
+}
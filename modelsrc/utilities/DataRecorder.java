@@ -1,5 +1,8 @@
 package utilities;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
 import org.jfree.data.xy.XYSeries;
@@ -9,6 +12,11 @@ import org.jfree.data.xy.XYSeries;
  * Use this to record a value that you later want to plot a
  * timeseries of.
  * 
+ * The variable is read through a method handle that is looked up once,
+ * when the recorder is constructed, rather than by reflection on every
+ * sample. sample() can be called on the simulation thread and the value
+ * added to the series later on the Swing thread (see TimeSeriesPlot).
+ * 
  * @author daniel
  *
  */
@@ -48,12 +56,15 @@ public class DataRecorder extends XYSeries {
 		description = title;
 		try {
 			field = obj.getClass().getField(varName);
+			getter = MethodHandles.publicLookup().unreflectGetter(field).asType(MethodType.methodType(double.class, Object.class));
 		} catch (SecurityException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		} catch (NoSuchFieldException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -62,24 +73,38 @@ public class DataRecorder extends XYSeries {
 	 * @param timestamp the timestamp to associate with this sample.
 	 */
 	public void record(double timestamp) {		
+		add(timestamp, sample(), true);
+		if(getItemCount() > MAX_DATA_LEN) delete(0,CHUNK_SIZE);
+	}
+
+	/**
+	 * @return the current (transformed) value of the variable, without
+	 * adding it to the series.
+	 */
+	public double sample() {
+		double x;
 		try {
-			if(transform == null) {
-				add(timestamp, field.getDouble(obj) , true);
-			} else {
-				add(timestamp, transform.exec(field.getDouble(obj)) , true);				
-			}
-			if(getItemCount() > MAX_DATA_LEN) delete(0,CHUNK_SIZE);
-		} catch (IllegalArgumentException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			// TODO Auto-generated catch block
+			x = (double)getter.invokeExact(obj);
+		} catch (Throwable e) {
 			e.printStackTrace();
+			return(Double.NaN);
 		}
+		if(transform != null) x = transform.exec(x);
+		return(x);
+	}
+
+	/**
+	 * Add a value taken earlier by sample() to the series.
+	 * @param notify whether to tell the chart that the series has changed
+	 */
+	public void addSample(double timestamp, double value, boolean notify) {
+		add(timestamp, value, notify);
+		if(getItemCount() > MAX_DATA_LEN) delete(0,CHUNK_SIZE);
 	}
 
 	Object 		obj;
 	Field		field;
+	MethodHandle getter;	// (Object)double accessor for field
 	String 		description;
 	Transform	transform;
 }
@@ -0,0 +1,82 @@
+package utilities;
+
+/****
+ * Need to include this for compatibility with Java 8: the interfaces of
+ * java.util.concurrent.Flow (Java 9), with the same names and methods, so
+ * that code written against them only needs its import changing to move to
+ * the JDK's version.
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166 Expert
+ * Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+public final class Flow {
+
+	private Flow() {}
+
+	/**
+	 * A producer of items (and related control messages) received by
+	 * Subscribers. Each current Subscriber receives the same items (via
+	 * method onNext) in the same order, unless drops or errors are
+	 * encountered.
+	 */
+	public static interface Publisher<T> {
+		/**
+		 * Adds the given Subscriber if possible. If already subscribed, or the
+		 * attempt to subscribe fails, the Subscriber's onError method is
+		 * invoked. Otherwise, its onSubscribe method is invoked with a new
+		 * Subscription.
+		 */
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of messages. The methods of a Subscriber are invoked in
+	 * strict sequential order for each Subscription.
+	 */
+	public static interface Subscriber<T> {
+		/** Invoked prior to invoking any other Subscriber methods for the given Subscription. */
+		public void onSubscribe(Subscription subscription);
+
+		/** Invoked with a Subscription's next item. */
+		public void onNext(T item);
+
+		/** Invoked upon an unrecoverable error, after which no other methods are invoked. */
+		public void onError(Throwable throwable);
+
+		/** Invoked when no more items will be sent, after which no other methods are invoked. */
+		public void onComplete();
+	}
+
+	/**
+	 * Message control linking a Publisher and Subscriber. Subscribers receive
+	 * items only when requested, and may cancel at any time.
+	 */
+	public static interface Subscription {
+		/**
+		 * Adds the given number n of items to the current unfulfilled demand
+		 * for this subscription. If n is less than or equal to zero, the
+		 * Subscriber will receive an onError signal with an
+		 * IllegalArgumentException.
+		 */
+		public void request(long n);
+
+		/** Causes the Subscriber to (eventually) stop receiving messages. */
+		public void cancel();
+	}
+
+	/**
+	 * A component that acts as both a Subscriber and Publisher.
+	 */
+	public static interface Processor<T,R> extends Subscriber<T>, Publisher<R> {
+	}
+
+	static final int DEFAULT_BUFFER_SIZE = 256;
+
+	/**
+	 * @return a default value for Publisher or Subscriber buffering
+	 */
+	public static int defaultBufferSize() {
+		return DEFAULT_BUFFER_SIZE;
+	}
+}
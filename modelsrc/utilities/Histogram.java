@@ -0,0 +1,126 @@
+package utilities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/****
+ * A histogram with a fixed number of equal-width bins, on either a linear or
+ * a logarithmic scale. Values below the first bin are counted in the first bin
+ * and values above the last bin in the last bin, so that every value added is
+ * counted. Bin counts are primitive, so adding, removing and clearing values
+ * never allocates.
+ */
+public class Histogram implements Serializable {
+	private static final long serialVersionUID = -4128675370591626431L;
+
+	/***
+	 * Histogram with linear bins
+	 * @param min lower bound of the first bin
+	 * @param max upper bound of the last bin
+	 * @param nBins number of bins
+	 */
+	public Histogram(double min, double max, int nBins) {
+		this(min, max, nBins, false);
+	}
+
+	/***
+	 * @param min lower bound of the first bin (must be > 0 if logBins is true)
+	 * @param max upper bound of the last bin
+	 * @param nBins number of bins
+	 * @param logBins if true, bins are of equal width in log(value)
+	 */
+	public Histogram(double min, double max, int nBins, boolean logBins) {
+		if(nBins < 1 || max <= min || (logBins && min <= 0.0)) {
+			throw new IllegalArgumentException("Bad histogram range ["+min+","+max+"] with "+nBins+" bins");
+		}
+		this.logBins = logBins;
+		this.lower = scale(min);
+		this.binWidth = (scale(max) - lower)/nBins;
+		counts = new long[nBins];
+		total = 0;
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		total = 0;
+	}
+
+	public void add(double value) {
+		++counts[binOf(value)];
+		++total;
+	}
+
+	/***
+	 * Remove a value that was previously added (for histograms
+	 * that are kept up to date incrementally)
+	 */
+	public void remove(double value) {
+		--counts[binOf(value)];
+		--total;
+	}
+
+	/***
+	 * @return index of the bin that a value falls in (NaNs and values
+	 * not above zero on a log scale fall in the first bin)
+	 */
+	public int binOf(double value) {
+		double x = (scale(value) - lower)/binWidth;
+		if(!(x >= 0.0)) return(0); // also catches NaN
+		if(x >= counts.length) return(counts.length-1);
+		return((int)x);
+	}
+
+	public int getNBins() {
+		return(counts.length);
+	}
+
+	public long getCount(int bin) {
+		return(counts[bin]);
+	}
+
+	/*** @return number of values in the histogram */
+	public long getTotal() {
+		return(total);
+	}
+
+	public double getBinMin(int bin) {
+		return(unscale(lower + bin*binWidth));
+	}
+
+	public double getBinMax(int bin) {
+		return(unscale(lower + (bin+1)*binWidth));
+	}
+
+	/*** @return the centre of a bin on the histogram's scale (geometric centre for log bins) */
+	public double getBinCentre(int bin) {
+		return(unscale(lower + (bin+0.5)*binWidth));
+	}
+
+	public double getSupportLowerBound() {
+		return(getBinMin(0));
+	}
+
+	public double getSupportUpperBound() {
+		return(getBinMax(counts.length-1));
+	}
+
+	public boolean isLogBinned() {
+		return(logBins);
+	}
+
+	private double scale(double value) {
+		if(logBins) return(Math.log(value));
+		return(value);
+	}
+
+	private double unscale(double x) {
+		if(logBins) return(Math.exp(x));
+		return(x);
+	}
+
+	long []		counts;
+	long		total;		// sum of counts
+	double		lower;		// lower bound of the first bin, on the binning scale
+	double		binWidth;	// width of each bin, on the binning scale
+	boolean		logBins;	// bin on log(value) rather than value
+}
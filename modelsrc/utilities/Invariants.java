@@ -0,0 +1,21 @@
+package utilities;
+
+/***
+ * Switch for the model's consistency checks.
+ *
+ * Checks of invariants on hot paths are written as
+ *
+ *     if(Invariants.CHECKING && ...) System.out.println("Strange: ...");
+ *
+ * CHECKING is a static final, read once from the system property
+ * "housing.checkInvariants" when this class is loaded, so the JIT treats it
+ * as a constant: in production runs the checks are compiled away entirely,
+ * and cost nothing. Run with -Dhousing.checkInvariants=true to switch them
+ * on, along with the periodic whole-model audits (see
+ * Model.checkConsistency and Model.AUDIT_INTERVAL).
+ */
+public class Invariants {
+	public static final boolean CHECKING = Boolean.getBoolean("housing.checkInvariants");
+
+	private Invariants() {}
+}
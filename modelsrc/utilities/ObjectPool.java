@@ -0,0 +1,47 @@
+package utilities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/****
+ * A pool of objects that can be re-used instead of being allocated afresh.
+ *
+ * acquire() returns a released object, or null if there are none, in which
+ * case the caller constructs a new one as usual. The caller is responsible for
+ * re-initialising acquired objects, and for only releasing objects that nothing
+ * refers to any more. The pool holds at most maxSize free objects; any others
+ * released are left to the garbage collector.
+ * @param <T> type of pooled object
+ */
+public class ObjectPool<T> implements Serializable {
+	private static final long serialVersionUID = -2913802530164372208L;
+
+	public ObjectPool(int maxSize) {
+		this.maxSize = maxSize;
+		free = new ArrayList<T>(Math.min(maxSize, 1024));
+	}
+
+	/***
+	 * @return a released object to re-use, or null if there are none
+	 */
+	public T acquire() {
+		if(free.isEmpty()) return(null);
+		return(free.remove(free.size()-1));
+	}
+
+	public void release(T object) {
+		if(free.size() < maxSize) free.add(object);
+	}
+
+	/*** @return number of objects waiting to be re-used */
+	public int size() {
+		return(free.size());
+	}
+
+	public void clear() {
+		free.clear();
+	}
+
+	ArrayList<T>	free;
+	int				maxSize;
+}
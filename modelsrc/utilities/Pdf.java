@@ -41,6 +41,20 @@ public class Pdf implements Serializable {
 		setPdf(data);
 	}
 	
+	/***
+	 * Create a Pdf from binned data and a pre-computed inverse CDF table
+	 * (as returned by getInverseCDF()), without integrating the density.
+	 * Used to load Pdfs from a data bundle.
+	 */
+	public Pdf(final BinnedDataDouble data, double [] iinverseCDF) {
+		pdf = binnedDensity(data);
+		start = data.getSupportLowerBound();
+		end = data.getSupportUpperBound();
+		nSamples = iinverseCDF.length;
+		inverseCDF = iinverseCDF;
+		initSlope();
+	}
+	
 	/**
 	 * @param ipdf functional class whose apply function returns the probability density at that point
 	 * (should be defined on the interval [istart,iend) )
@@ -66,16 +80,20 @@ public class Pdf implements Serializable {
 	}
 	
 	public void setPdf(final BinnedDataDouble data) {
-		pdf = new DoubleUnaryOperator() {
-			public double applyAsDouble(double operand) {
-				return data.getBinAt(operand)/data.getBinWidth();
-			}};
+		pdf = binnedDensity(data);
 		start = data.getSupportLowerBound();
 		end = data.getSupportUpperBound();
 		nSamples = DEFAULT_CDF_SAMPLES;
 		initInverseCDF();		
 	}
 	
+	static DoubleUnaryOperator binnedDensity(final BinnedDataDouble data) {
+		return(new DoubleUnaryOperator() {
+			public double applyAsDouble(double operand) {
+				return data.getBinAt(operand)/data.getBinWidth();
+			}});
+	}
+	
 	public double getSupportLowerBound() {
 		return start;
 	}
@@ -96,47 +114,92 @@ public class Pdf implements Serializable {
 	
 	public double inverseCumulativeProbability(double p) {
 		if(p < 0.0 || p>=1.0) throw(new IllegalArgumentException("p must be in the interval [0,1)"));
-		int i = (int)(p*(nSamples-1));
-		double remainder = p*(nSamples-1) - i;
-		return((1.0-remainder)*inverseCDF[i] + remainder*inverseCDF[i+1]);
+		double u = p*(nSamples-1);
+		int i = (int)u;
+		return(inverseCDF[i] + (u-i)*slope[i]);
 	}
 	
+	/***
+	 * Batch version of inverseCumulativeProbability: out[j] = inverseCumulativeProbability(p[j]).
+	 * The lookup loop has no branches so it can be unrolled/vectorised by the JIT.
+	 * p and out may be the same array.
+	 */
+	public void inverseCumulativeProbability(double [] p, double [] out) {
+		int j;
+		for(j=0; j<p.length; ++j) {
+			if(p[j] < 0.0 || p[j]>=1.0) throw(new IllegalArgumentException("p must be in the interval [0,1)"));
+		}
+		final double [] x = inverseCDF;
+		final double [] dxdp = slope;
+		final double scale = nSamples-1;
+		double u;
+		int i;
+		for(j=0; j<p.length; ++j) {
+			u = p[j]*scale;
+			i = (int)u;
+			out[j] = x[i] + (u-i)*dxdp[i];
+		}
+	}
 	
 	/***
-	 * integrates "pdf" over "INTEGRATION_STEPS" steps, starting at
-	 * start + dx/2 and going up to end - dx/2, recording the values
-	 * of x at which the cumulative probability hits quantiles.
+	 * Integrates "pdf" over "INTEGRATION_STEPS" cells of width dx using the
+	 * midpoint rule, normalises the result so that the CDF is exactly 1 at
+	 * "end", then records the values of x at which the cumulative probability
+	 * hits equi-spaced quantiles. The density is taken to be constant within
+	 * each cell, so the CDF is linear within a cell and is inverted exactly there.
 	 */
 	private void initInverseCDF() {
-		double cp;		// cumulative proability
+		int INTEGRATION_STEPS = Math.max(MIN_INTEGRATION_STEPS, 8*(nSamples-1));
+		double [] cdf = new double[INTEGRATION_STEPS+1]; // cdf[k] = cumulative probability at start + k*dx
 		double targetcp;// target cumulative probability
-		double x;		// x in P(x)
-		int INTEGRATION_STEPS = 2048;
-		double dcp_dx;
-		int i;
+		double cellcp;	// probability mass in the current cell
+		int i,k;
 
-		inverseCDF = new double[nSamples];
 		dx = (end-start)/INTEGRATION_STEPS;
-		x = start + dx/2.0;
-		cp = 0.0;
-		dcp_dx = 0.0;
+		cdf[0] = 0.0;
+		for(k=0; k<INTEGRATION_STEPS; ++k) {
+			cdf[k+1] = cdf[k] + density(start + (k+0.5)*dx)*dx;
+		}
+		if(!(cdf[INTEGRATION_STEPS] > 0.0)) {
+			System.out.println("Strange: Pdf has no probability mass on ["+start+","+end+"), using uniform distribution");
+			for(k=0; k<=INTEGRATION_STEPS; ++k) cdf[k] = k;
+		}
+		for(k=1; k<INTEGRATION_STEPS; ++k) {
+			cdf[k] /= cdf[INTEGRATION_STEPS];
+		}
+		cdf[INTEGRATION_STEPS] = 1.0;
+
+		inverseCDF = new double[nSamples];
 		inverseCDF[0] = start;
 		inverseCDF[nSamples-1] = end;
+		k = 0;
 		for(i=1; i<(nSamples-1); ++i) {
 			targetcp = i/(nSamples-1.0);
-			while(cp < targetcp && x < end) {
-				dcp_dx = density(x);
-				cp += dcp_dx*dx;
-				x += dx;
-			}
-			if(x < end) {
-				x += (targetcp - cp)/dcp_dx;
-				cp = targetcp;
+			while(k < INTEGRATION_STEPS-1 && cdf[k+1] < targetcp) ++k;
+			cellcp = cdf[k+1] - cdf[k];
+			if(cellcp > 0.0) {
+				inverseCDF[i] = start + (k + (targetcp - cdf[k])/cellcp)*dx;
 			} else {
-				x = end;
+				inverseCDF[i] = start + k*dx;
 			}
-			inverseCDF[i] = x;
 		}
+		initSlope();
+	}
+	
+	private void initSlope() {
+		slope = new double[nSamples];
+		for(int i=0; i<(nSamples-1); ++i) {
+			slope[i] = inverseCDF[i+1] - inverseCDF[i];
+		}
+		slope[nSamples-1] = 0.0;
+	}
+	
+	/***
+	 * @return the pre-computed equi-spaced points on the inverse CDF, including
+	 * the support bounds at p=0 and p=1
+	 */
+	public double [] getInverseCDF() {
+		return(inverseCDF);
 	}
 	
 	/***
@@ -145,10 +208,18 @@ public class Pdf implements Serializable {
 	 */
 	public double nextDouble() {
 		return(inverseCumulativeProbability(Model.rand.nextDouble()));
-//		double uniform = Model.rand.nextDouble(); // uniform random sample on [0:1)
-//		int i = (int)(uniform*(nSamples-1));
-//		double remainder = uniform*(nSamples-1.0) - i;
-//		return((1.0-remainder)*inverseCDF[i] + remainder*inverseCDF[i+1]);
+	}
+	
+	/***
+	 * Fill an array with independent samples from the PDF. Consumes the same
+	 * random numbers, in the same order, as out.length calls to nextDouble().
+	 * @param out array to fill
+	 */
+	public void nextDoubles(double [] out) {
+		for(int j=0; j<out.length; ++j) {
+			out[j] = Model.rand.nextDouble();
+		}
+		inverseCumulativeProbability(out, out);
 	}
 	
 //	RandomGenerator		rand;				// supplied random number generator
@@ -156,7 +227,9 @@ public class Pdf implements Serializable {
 	public double		start;				// lowest value of x that has a non-zero probability
 	public double		end;				// highest value of x that has a non-zero probability
 	double []			inverseCDF;			// pre-computed equi-spaced points on the inverse CDF including 0 and 1
+	double []			slope;				// slope[i] = inverseCDF[i+1] - inverseCDF[i] (0 for the last point)
 	double 				dx;					// dx between samples
 	int					nSamples;			// number of sample	points on the CDF
-	static final int	DEFAULT_CDF_SAMPLES = 100;
+	public static final int	DEFAULT_CDF_SAMPLES = 1025;
+	static final int	MIN_INTEGRATION_STEPS = 8192;
 }
@@ -0,0 +1,150 @@
+package utilities;
+
+/***
+ * Philox4x32-10 counter-based generator (Salmon et al., 2011). Each output block
+ * of 128 bits is a keyed bijection of a 128 bit counter, so the n'th number of a
+ * stream can be computed directly: the key is derived from the seed, the upper
+ * 64 bits of the counter select the stream and the lower 64 bits count blocks
+ * within the stream. Different streams of the same seed are independent, which
+ * makes this suitable for giving each agent or each run its own stream.
+ */
+public class Philox4x32 extends AbstractRandomEngine {
+	private static final long serialVersionUID = 8523371839027460512L;
+
+	public Philox4x32(long seed) {
+		this(seed, 0);
+	}
+
+	/***
+	 * @param seed key of the generator
+	 * @param stream index of the stream to draw from
+	 */
+	public Philox4x32(long seed, long stream) {
+		setSeed(seed);
+		this.stream = stream;
+	}
+
+	/***
+	 * Set the key and go back to the start of the current stream
+	 */
+	public void setSeed(long seed) {
+		key0 = (int)seed;
+		key1 = (int)(seed >>> 32);
+		position = 0;
+		available = 0;
+	}
+
+	/***
+	 * Move to the start of another stream
+	 */
+	public void setStream(long stream) {
+		this.stream = stream;
+		position = 0;
+		available = 0;
+	}
+
+	public long getStream() {
+		return(stream);
+	}
+
+	/***
+	 * Move to the given 64-bit draw in the current stream
+	 */
+	public void setPosition(long draw) {
+		position = draw >>> 1;
+		available = 0;
+		if((draw & 1) != 0) nextLong();
+	}
+
+	public long nextLong() {
+		if(available == 0) {
+			generateBlock(position++);
+			available = 2;
+			return(block0);
+		}
+		available = 0;
+		return(block1);
+	}
+
+	/***
+	 * Compute the output block for counter (stream, blockIndex) into block0, block1
+	 */
+	private void generateBlock(long blockIndex) {
+		int c0 = (int)blockIndex;
+		int c1 = (int)(blockIndex >>> 32);
+		int c2 = (int)stream;
+		int c3 = (int)(stream >>> 32);
+		int k0 = key0;
+		int k1 = key1;
+		long p0, p1;
+		for(int round=0; round<10; ++round) {
+			if(round > 0) {
+				k0 += W0;
+				k1 += W1;
+			}
+			p0 = (M0 & 0xFFFFFFFFL) * (c0 & 0xFFFFFFFFL);
+			p1 = (M1 & 0xFFFFFFFFL) * (c2 & 0xFFFFFFFFL);
+			c0 = (int)(p1 >>> 32) ^ c1 ^ k0;
+			c2 = (int)(p0 >>> 32) ^ c3 ^ k1;
+			c1 = (int)p1;
+			c3 = (int)p0;
+		}
+		block0 = ((long)c1 << 32) | (c0 & 0xFFFFFFFFL);
+		block1 = ((long)c3 << 32) | (c2 & 0xFFFFFFFFL);
+	}
+
+	/***
+	 * @return the four 32 bit words of the output for the given counter (see
+	 * checkKnownAnswers)
+	 */
+	public int [] block(long blockIndex) {
+		generateBlock(blockIndex);
+		available = 0;
+		return(new int[] {(int)block0, (int)(block0 >>> 32), (int)block1, (int)(block1 >>> 32)});
+	}
+
+	/***
+	 * Check the generator against the known-answer tests for Philox4x32-10
+	 * published with the Random123 library (kat_vectors): the counter is
+	 * given as four 32 bit words, lowest first, and the key as two. Run when
+	 * the random engine is created if invariant checking is on (see
+	 * Model.newRandomEngine).
+	 *
+	 * @return true if every output is as expected
+	 */
+	public static boolean checkKnownAnswers() {
+		boolean ok = true;
+		for(int [] kat : KAT) {
+			long blockIndex = ((long)kat[1] << 32) | (kat[0] & 0xFFFFFFFFL);
+			long stream = ((long)kat[3] << 32) | (kat[2] & 0xFFFFFFFFL);
+			long seed = ((long)kat[5] << 32) | (kat[4] & 0xFFFFFFFFL);
+			int [] output = new Philox4x32(seed, stream).block(blockIndex);
+			for(int i=0; i<4; ++i) {
+				if(output[i] != kat[6+i]) {
+					System.out.println("Strange: Philox4x32 gave "+Integer.toHexString(output[i])+" in word "+i+" of counter "+
+							Long.toHexString(stream)+":"+Long.toHexString(blockIndex)+", expected "+Integer.toHexString(kat[6+i]));
+					ok = false;
+				}
+			}
+		}
+		return(ok);
+	}
+
+	// Random123 known answers: counter words 0-3, key words 0-1, output words 0-3
+	static final int [][] KAT = {
+		{0x00000000, 0x00000000, 0x00000000, 0x00000000, 0x00000000, 0x00000000, 0x6627E8D5, 0xE169C58D, 0xBC57AC4C, 0x9B00DBD8},
+		{0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0x408F276D, 0x41C83B0E, 0xA20BC7C6, 0x6D5451FD},
+		{0x243F6A88, 0x85A308D3, 0x13198A2E, 0x03707344, 0xA4093822, 0x299F31D0, 0xD16CFE09, 0x94FDCCEB, 0x5001E420, 0x24126EA1}
+	};
+
+	static final int	M0 = 0xD2511F53;
+	static final int	M1 = 0xCD9E8D57;
+	static final int	W0 = 0x9E3779B9;
+	static final int	W1 = 0xBB67AE85;
+
+	int		key0, key1;			// key, from the seed
+	long	stream;				// upper 64 bits of the counter
+	long	position;			// lower 64 bits of the counter: next block to generate
+	long	block0, block1;		// current output block
+	int		available;			// number of unused longs in the current block
+}
@@ -1,6 +1,7 @@
 package utilities;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.TreeSet;
@@ -13,6 +14,7 @@ import java.util.TreeSet;
  * 
  * Extraction has amortised complexity of O(sqrt(N))
  * Insertion has complexity O(log(N))
+ * Re-sorting after the X or Y values have changed (rebuild) has complexity O(N log(N))
  *  
  *  Objects inserted into PriorityQueue2D must implement the interface
  *  PriorityQueue2D::Comparable
@@ -157,7 +159,7 @@ public class PriorityQueue2D<E> implements Iterable<E>, Serializable {
 			uncoveredElements.add(nextxHigher);
 //			System.out.println("Is highest");
 		}
-		if(comparator.YCompare(nextxLower, element) == 1) {
+		if(Invariants.CHECKING && comparator.YCompare(nextxLower, element) == 1) {
 			System.out.println("From = "+nextxLower+" to = "+element+" compare = "+comparator.YCompare(nextxLower, element));
 		}
 		for(E e : ySortedElements.subSet(nextxLower, inclusive, element, true).descendingSet()) {
@@ -170,7 +172,33 @@ public class PriorityQueue2D<E> implements Iterable<E>, Serializable {
 //		System.out.println("done");
 	}
 	
-	/*** testing only */
+	/***
+	 * Re-sort the queue after the X and/or Y values of its elements have
+	 * changed in place. This sorts everything once, rather than removing
+	 * and re-adding each element (which wouldn't work anyway, since
+	 * elements can't be found by their old values once they've changed).
+	 * 
+	 * The uncovered elements are found with a single sweep in X order: an
+	 * element is uncovered iff it is Y-greater than every element that is
+	 * X-less than it.
+	 */
+	@SuppressWarnings("unchecked")
+	public void rebuild() {
+		E [] elements = (E[])ySortedElements.toArray(); // in-order traversal: doesn't need the old order to be valid
+		ySortedElements.clear();
+		uncoveredElements.clear();
+		Arrays.sort(elements, uncoveredElements.comparator());
+		E yGreatest = null;
+		for(E element : elements) {
+			ySortedElements.add(element);
+			if(yGreatest == null || comparator.YCompare(element, yGreatest) == 1) {
+				uncoveredElements.add(element);
+				yGreatest = element;
+			}
+		}
+	}
+	
+	/*** O(N log(N)): for testing, and audits when invariant checking is on (see Invariants) */
 	public boolean checkConsistency() {
 		E last = null;
 		for(E element : uncoveredElements) {
@@ -179,8 +207,8 @@ public class PriorityQueue2D<E> implements Iterable<E>, Serializable {
 					System.out.println("uncovered elements are not monotonically increasing");
 					return(false);
 				}
-				last = element;
 			}
+			last = element;
 		}
 		for(E element : ySortedElements) {
 			if(isUncovered(element) && !uncoveredElements.contains(element)) {
@@ -215,6 +243,7 @@ public class PriorityQueue2D<E> implements Iterable<E>, Serializable {
 	}
 	
 	public int size() {return(ySortedElements.size());}
+	public XYComparator<E> getComparator() {return(comparator);}
 	public int uncoveredSize() {return(uncoveredElements.size());}
 	public boolean contains(Object element) {return(ySortedElements.contains(element));}
 	public void clear() {
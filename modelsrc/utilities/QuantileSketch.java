@@ -0,0 +1,155 @@
+package utilities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of a few quantiles of a series of values, in constant
+ * memory, with the extended P-squared algorithm (Jain and Chlamtac 1985;
+ * Raatikainen 1987).
+ *
+ * The sketch keeps 2m+3 markers for m quantiles: the minimum, the maximum,
+ * the quantiles themselves and the points midway between them. Each new
+ * value moves the markers' positions, and any marker that drifts more than
+ * one position from where it should be is adjusted by piecewise-parabolic
+ * interpolation. The minimum and maximum are exact, as are all quantiles
+ * until there are more values than markers.
+ *
+ * Sketches with the same quantiles can share a Markers object.
+ */
+public class QuantileSketch implements Serializable {
+	private static final long serialVersionUID = 3384950658736025437L;
+
+	/**
+	 * The probabilities of the markers of a set of quantiles
+	 */
+	public static class Markers implements Serializable {
+		private static final long serialVersionUID = -6409108339736431950L;
+
+		/**
+		 * @param quantiles the quantiles to estimate, in increasing order, each strictly between 0 and 1
+		 */
+		public Markers(double... quantiles) {
+			p = new double[2*quantiles.length + 3];
+			p[0] = 0.0;
+			double last = 0.0;
+			for(int j=0; j<quantiles.length; ++j) {
+				if(quantiles[j] <= last || quantiles[j] >= 1.0) throw(new IllegalArgumentException("quantiles must be increasing, between 0 and 1"));
+				p[2*j+1] = 0.5*(last + quantiles[j]);
+				p[2*j+2] = quantiles[j];
+				last = quantiles[j];
+			}
+			p[p.length-2] = 0.5*(last + 1.0);
+			p[p.length-1] = 1.0;
+		}
+
+		public int size() {
+			return(p.length);
+		}
+
+		double [] p;	// probability of each marker
+	}
+
+	public QuantileSketch(Markers markers) {
+		this.markers = markers;
+		q = new double[markers.p.length];
+		n = new int[markers.p.length];
+	}
+
+	public void add(double x) {
+		int m = q.length;
+		if(count < m) { // still collecting the first values: keep them all, sorted
+			int i = count;
+			while(i > 0 && q[i-1] > x) {
+				q[i] = q[i-1];
+				--i;
+			}
+			q[i] = x;
+			++count;
+			if(count == m) {
+				for(i=0; i<m; ++i) n[i] = i+1;
+			}
+			return;
+		}
+		// --- find the cell of x and update the positions of the markers above it
+		int k;
+		if(x < q[0]) {
+			q[0] = x;
+			k = 0;
+		} else if(x >= q[m-1]) {
+			q[m-1] = x;
+			k = m-2;
+		} else {
+			k = 0;
+			while(x >= q[k+1]) ++k;
+		}
+		for(int i=k+1; i<m; ++i) ++n[i];
+		++count;
+		// --- adjust the heights of the inner markers that are off their desired positions
+		double d;
+		int s;
+		double qp;
+		for(int i=1; i<m-1; ++i) {
+			d = 1.0 + (count-1)*markers.p[i] - n[i];
+			if((d >= 1.0 && n[i+1]-n[i] > 1) || (d <= -1.0 && n[i-1]-n[i] < -1)) {
+				s = d > 0.0 ? 1 : -1;
+				qp = parabolic(i, s);
+				if(q[i-1] < qp && qp < q[i+1]) {
+					q[i] = qp;
+				} else {
+					q[i] = q[i] + s*(q[i+s] - q[i])/(n[i+s] - n[i]);
+				}
+				n[i] += s;
+			}
+		}
+	}
+
+	private double parabolic(int i, int s) {
+		return(q[i] + s/(double)(n[i+1] - n[i-1])*(
+				(n[i] - n[i-1] + s)*(q[i+1] - q[i])/(n[i+1] - n[i]) +
+				(n[i+1] - n[i] - s)*(q[i] - q[i-1])/(n[i] - n[i-1])));
+	}
+
+	/**
+	 * @param j index of the quantile, in the order given to Markers
+	 * @return estimate of the j'th quantile (NaN if there are no values)
+	 */
+	public double getQuantile(int j) {
+		return(getMarker(2*j+2));
+	}
+
+	public double getMin() {
+		return(getMarker(0));
+	}
+
+	public double getMax() {
+		return(getMarker(q.length-1));
+	}
+
+	/**
+	 * @return the height of the i'th marker (for fewer values than markers, the
+	 * exact quantile, linearly interpolated between the values)
+	 */
+	private double getMarker(int i) {
+		if(count == 0) return(Double.NaN);
+		if(count >= q.length) return(q[i]);
+		double pos = markers.p[i]*(count - 1);
+		int lower = (int)pos;
+		if(lower >= count - 1) return(q[count-1]);
+		return(q[lower] + (pos - lower)*(q[lower+1] - q[lower]));
+	}
+
+	public long getCount() {
+		return(count);
+	}
+
+	public void clear() {
+		count = 0;
+		Arrays.fill(n, 0);
+	}
+
+	Markers	markers;
+	double []	q;		// heights of the markers (while count < q.length: the values so far, sorted)
+	int []		n;		// positions of the markers (1 based)
+	int			count;	// number of values added
+}
@@ -0,0 +1,190 @@
+package utilities;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.distribution.AbstractRealDistribution;
+import org.apache.commons.math3.distribution.RealDistribution;
+import org.apache.commons.math3.exception.OutOfRangeException;
+
+/***
+ * Wraps a continuous RealDistribution and answers inverseCumulativeProbability()
+ * from a table, so that repeated quantile calls don't need an inverse error
+ * function (or a root-finder) each time. Everything else is delegated to the
+ * wrapped distribution.
+ *
+ * The table holds the quantile x(p) and its slope dx/dp = 1/density(x(p)) on a
+ * uniform grid of p, and is interpolated with cubic Hermite polynomials. Cells
+ * where the relative interpolation error (measured at the middle of the cell) is
+ * above the given tolerance can only be in the tails, where the quantile function
+ * diverges: p outside the run of accurate cells around the median is answered by
+ * the wrapped distribution exactly. The grid is refined (by doubling) until at
+ * most MAX_TAIL_PROBABILITY of p falls in the tails.
+ */
+public class QuantileTableDistribution extends AbstractRealDistribution {
+	private static final long serialVersionUID = -5291874051936247780L;
+
+	public QuantileTableDistribution(RealDistribution dist) {
+		this(dist, DEFAULT_TOLERANCE);
+	}
+
+	/***
+	 * @param dist the distribution to tabulate
+	 * @param tolerance maximum relative error of the tabulated quantiles
+	 */
+	public QuantileTableDistribution(RealDistribution dist, double tolerance) {
+		super(null);
+		this.dist = dist;
+		this.tolerance = tolerance;
+		int i;
+		cells = MIN_CELLS;
+		x = new double[cells+1];
+		for(i=1; i<cells; ++i) {
+			x[i] = dist.inverseCumulativeProbability(i*1.0/cells);
+		}
+		while(checkTable() > MAX_TAIL_PROBABILITY && cells < MAX_CELLS) {
+			// --- refine: the mid-points of the old cells are already in 'middle'
+			double [] newx = new double[2*cells+1];
+			for(i=1; i<cells; ++i) {
+				newx[2*i] = x[i];
+			}
+			for(i=0; i<cells; ++i) {
+				newx[2*i+1] = (Double.isNaN(middle[i]) ? dist.inverseCumulativeProbability((i+0.5)/cells) : middle[i]);
+			}
+			x = newx;
+			cells *= 2;
+		}
+		middle = null;
+	}
+
+	/***
+	 * Calculate the slopes for the current quantiles x and find the run of
+	 * cells, around the median, that are within tolerance.
+	 * @return the probability that p is outside that run
+	 */
+	private double checkTable() {
+		double h = 1.0/cells;
+		int i;
+		dxdp = new double[cells+1];
+		for(i=1; i<cells; ++i) {
+			dxdp[i] = h/dist.density(x[i]); // slope scaled by cell width
+		}
+		middle = new double[cells];
+		Arrays.fill(middle, Double.NaN);
+		firstCell = cells/2;
+		lastCell = cells/2 - 1;
+		for(i=cells/2; i<cells-1; ++i) {
+			middle[i] = dist.inverseCumulativeProbability((i+0.5)*h);
+			if(!(Math.abs(interpolate(i, 0.5) - middle[i]) <= tolerance*Math.abs(middle[i]))) break;
+			lastCell = i;
+		}
+		for(i=cells/2-1; i>0; --i) {
+			middle[i] = dist.inverseCumulativeProbability((i+0.5)*h);
+			if(!(Math.abs(interpolate(i, 0.5) - middle[i]) <= tolerance*Math.abs(middle[i]))) break;
+			firstCell = i;
+		}
+		return(1.0 - (lastCell - firstCell + 1)*h);
+	}
+
+	/***
+	 * Cubic Hermite interpolation in cell i at fraction t of the cell
+	 */
+	private double interpolate(int i, double t) {
+		double t2 = t*t;
+		double t3 = t2*t;
+		return((2.0*t3 - 3.0*t2 + 1.0)*x[i] + (t3 - 2.0*t2 + t)*dxdp[i] +
+				(3.0*t2 - 2.0*t3)*x[i+1] + (t3 - t2)*dxdp[i+1]);
+	}
+
+	@Override
+	public double inverseCumulativeProbability(double p) throws OutOfRangeException {
+		if(p < 0.0 || p > 1.0) throw(new OutOfRangeException(p, 0, 1));
+		double u = p*cells;
+		int i = (int)u;
+		if(i < firstCell || i > lastCell) return(dist.inverseCumulativeProbability(p));
+		return(interpolate(i, u-i));
+	}
+
+	/***
+	 * @return the number of cells in the table
+	 */
+	public int getTableSize() {
+		return(cells);
+	}
+
+	/***
+	 * @return the probability that a quantile is computed exactly rather than from the table
+	 */
+	public double getTailProbability() {
+		return(1.0 - (lastCell - firstCell + 1)*1.0/cells);
+	}
+
+	public RealDistribution getDistribution() {
+		return(dist);
+	}
+
+	@Override
+	public double probability(double x) {
+		return(dist.probability(x));
+	}
+
+	@Override
+	public double density(double x) {
+		return(dist.density(x));
+	}
+
+	@Override
+	public double cumulativeProbability(double x) {
+		return(dist.cumulativeProbability(x));
+	}
+
+	@Override
+	public double getNumericalMean() {
+		return(dist.getNumericalMean());
+	}
+
+	@Override
+	public double getNumericalVariance() {
+		return(dist.getNumericalVariance());
+	}
+
+	@Override
+	public double getSupportLowerBound() {
+		return(dist.getSupportLowerBound());
+	}
+
+	@Override
+	public double getSupportUpperBound() {
+		return(dist.getSupportUpperBound());
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public boolean isSupportLowerBoundInclusive() {
+		return(dist.isSupportLowerBoundInclusive());
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public boolean isSupportUpperBoundInclusive() {
+		return(dist.isSupportUpperBoundInclusive());
+	}
+
+	@Override
+	public boolean isSupportConnected() {
+		return(dist.isSupportConnected());
+	}
+
+	public static final double	DEFAULT_TOLERANCE = 1e-8;
+	public static final double	MAX_TAIL_PROBABILITY = 0.02;
+	static final int			MIN_CELLS = 256;
+	static final int			MAX_CELLS = 1<<14;
+
+	RealDistribution	dist;		// the tabulated distribution
+	double				tolerance;	// maximum relative error
+	int					cells;		// number of cells in the table
+	double []			x;			// x[i] = quantile at p = i/cells (unused at i=0 and i=cells)
+	double []			dxdp;		// dxdp[i] = slope of the quantile function at p = i/cells, times the cell width
+	int					firstCell;	// first cell of the run of accurate cells
+	int					lastCell;	// last cell of the run of accurate cells
+	transient double []	middle;		// quantiles at the middle of each cell, used while building the table
+}
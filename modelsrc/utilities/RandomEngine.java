@@ -0,0 +1,29 @@
+package utilities;
+
+import java.io.Serializable;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/***
+ * A source of random numbers for the model. Extends the apache.commons
+ * RandomGenerator (so engines can be used with apache.commons distributions)
+ * with bulk-fill methods.
+ *
+ * Implementations:
+ *  Model.MersenneTwister	- the original generator (polar-method Gaussians), reproduces existing runs exactly
+ *  Xoshiro256PlusPlus		- small, fast generator with jump-ahead for independent streams
+ *  Philox4x32				- counter-based generator: stream n of seed s is random-access
+ */
+public interface RandomEngine extends RandomGenerator, Serializable {
+	/***
+	 * Fill an array with uniform samples on [0,1). Equivalent to calling
+	 * nextDouble() out.length times.
+	 */
+	public void nextDoubles(double [] out);
+
+	/***
+	 * Fill an array with standard normal samples. Equivalent to calling
+	 * nextGaussian() out.length times.
+	 */
+	public void nextGaussians(double [] out);
+}
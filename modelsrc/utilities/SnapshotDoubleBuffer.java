@@ -0,0 +1,74 @@
+package utilities;
+
+import java.util.ArrayList;
+
+/**
+ * Hands snapshots from the simulation thread to a rendering thread without
+ * the simulation ever waiting for the renderer.
+ *
+ * The simulation publishes snapshots into the back buffer. When the renderer
+ * wants to draw a frame, it swaps the buffers and takes everything published
+ * since its last frame. The lock is only ever held for an append or a swap of
+ * two references, never while drawing, so the simulation can run at full speed
+ * however slow the renderer is. If the renderer falls far behind, the oldest
+ * snapshots are dropped so that the buffer stays bounded.
+ *
+ * Snapshots should be immutable, since both threads hold references to them.
+ * @param <T> type of snapshot
+ */
+public class SnapshotDoubleBuffer<T> {
+
+	/**
+	 * @param capacity maximum number of snapshots to hold between frames
+	 */
+	public SnapshotDoubleBuffer(int capacity) {
+		this.capacity = capacity;
+		back = new ArrayList<T>(capacity);
+		front = new ArrayList<T>(capacity);
+	}
+
+	/**
+	 * Publish a snapshot (simulation thread)
+	 */
+	public synchronized void publish(T snapshot) {
+		if(back.size() >= capacity) {
+			back.subList(0, back.size()/2).clear(); // renderer has fallen behind: drop the oldest half
+		}
+		back.add(snapshot);
+		latest = snapshot;
+	}
+
+	/**
+	 * Take all snapshots published since the last call (rendering thread).
+	 * The returned list is only valid until the next call.
+	 */
+	public ArrayList<T> take() {
+		front.clear();
+		synchronized(this) {
+			ArrayList<T> tmp = back;
+			back = front;
+			front = tmp;
+		}
+		return(front);
+	}
+
+	/**
+	 * @return the most recently published snapshot (or null)
+	 */
+	public synchronized T getLatest() {
+		return(latest);
+	}
+
+	/**
+	 * Throw away all snapshots (e.g. when the simulation restarts)
+	 */
+	public synchronized void clear() {
+		back.clear();
+		latest = null;
+	}
+
+	int				capacity;
+	ArrayList<T>	back;		// being filled by the simulation
+	ArrayList<T>	front;		// being read by the renderer
+	T				latest;
+}
@@ -0,0 +1,354 @@
+package utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A Flow.Publisher that the simulation can submit snapshots to without ever
+ * waiting for its subscribers.
+ *
+ * Each subscription has its own bounded buffer. Items are delivered on an
+ * Executor (by default, a daemon thread per busy subscriber), only as fast as
+ * the subscriber asks for them with Subscription.request(). If a subscriber
+ * falls so far behind that its buffer is full, its oldest item is dropped to
+ * make room for the new one (see getNDropped()), so submit() takes constant
+ * time whatever the subscribers do. A subscriber that throws from onNext is
+ * cancelled and sent onError.
+ *
+ * Like SnapshotDoubleBuffer, the snapshots should be immutable, since they are
+ * shared between the simulation thread and all the subscribers.
+ * @param <T> type of snapshot
+ */
+public class SnapshotPublisher<T> implements Flow.Publisher<T> {
+
+	/**
+	 * @param bufferSize maximum number of items held for each subscriber
+	 */
+	public SnapshotPublisher(int bufferSize) {
+		this(null, bufferSize);
+	}
+
+	/**
+	 * @param executor runs the delivery to subscribers (null for daemon threads)
+	 * @param bufferSize maximum number of items held for each subscriber
+	 */
+	public SnapshotPublisher(Executor executor, int bufferSize) {
+		if(bufferSize < 1) throw(new IllegalArgumentException("buffer size must be at least 1"));
+		this.executor = executor;
+		this.bufferSize = bufferSize;
+		subscriptions = new CopyOnWriteArrayList<BufferedSubscription>();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if(subscriber == null) throw(new NullPointerException());
+		BufferedSubscription subscription = new BufferedSubscription(subscriber);
+		for(BufferedSubscription s : subscriptions) {
+			if(s.subscriber == subscriber) {
+				subscription.fail(new IllegalStateException("already subscribed"));
+				return;
+			}
+		}
+		synchronized(this) {
+			if(closed) {
+				subscription.finish(closedException);
+				return;
+			}
+			subscriptions.add(subscription);
+		}
+		subscription.signal();
+	}
+
+	/**
+	 * Offer an item to every current subscriber, without waiting.
+	 * @return the number of subscribers that had to drop an item to make room
+	 */
+	public int submit(T item) {
+		if(item == null) throw(new NullPointerException());
+		if(closed) throw(new IllegalStateException("publisher is closed"));
+		int nLagging = 0;
+		for(BufferedSubscription s : subscriptions) {
+			if(s.offer(item)) ++nLagging;
+		}
+		return(nLagging);
+	}
+
+	/**
+	 * @return true if anyone is subscribed (so snapshots are worth taking)
+	 */
+	public boolean hasSubscribers() {
+		return(!subscriptions.isEmpty());
+	}
+
+	public int getNumberOfSubscribers() {
+		return(subscriptions.size());
+	}
+
+	/**
+	 * @return total number of items dropped because subscribers were too slow
+	 */
+	public synchronized long getNDropped() {
+		return(nDropped);
+	}
+
+	/**
+	 * Send onComplete to every subscriber once it has had its buffered items.
+	 */
+	public void close() {
+		close(null);
+	}
+
+	/**
+	 * Send onError to every subscriber (without waiting for buffered items).
+	 */
+	public void closeExceptionally(Throwable error) {
+		if(error == null) throw(new NullPointerException());
+		close(error);
+	}
+
+	private void close(Throwable error) {
+		synchronized(this) {
+			if(closed) return;
+			closed = true;
+			closedException = error;
+		}
+		for(BufferedSubscription s : subscriptions) s.finish(error); // each removes itself once it has been told
+	}
+
+	/**
+	 * Wait, after close() or closeExceptionally(), until every subscriber has
+	 * been sent onComplete or onError (or has cancelled). Delivery threads are
+	 * daemons, so call this before the JVM exits if the subscribers should get
+	 * all their buffered items.
+	 * @param timeout longest time to wait, in milliseconds
+	 * @return true if every subscriber has finished
+	 */
+	public boolean awaitFinished(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		synchronized(this) {
+			while(!subscriptions.isEmpty()) {
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) return(false);
+				wait(remaining);
+			}
+		}
+		return(true);
+	}
+
+	void removeSubscription(BufferedSubscription subscription) {
+		subscriptions.remove(subscription);
+		synchronized(this) {
+			notifyAll(); // see awaitFinished()
+		}
+	}
+
+	public boolean isClosed() {
+		return(closed);
+	}
+
+	protected Executor getExecutor() {
+		if(executor == null) {
+			synchronized(this) {
+				if(executor == null) executor = defaultExecutor();
+			}
+		}
+		return(executor);
+	}
+
+	static synchronized ExecutorService defaultExecutor() {
+		if(DEFAULT_EXECUTOR == null) {
+			DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SnapshotPublisher");
+					thread.setDaemon(true); // never keep the JVM alive for a subscriber
+					return(thread);
+				}
+			});
+		}
+		return(DEFAULT_EXECUTOR);
+	}
+
+	static ExecutorService	DEFAULT_EXECUTOR;
+
+	/**
+	 * A subscriber's buffer and demand. All the subscriber's methods are
+	 * called from run(), which is never running on more than one thread at once.
+	 */
+	class BufferedSubscription implements Flow.Subscription, Runnable {
+		BufferedSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+			buffer = new Object[bufferSize];
+		}
+
+		/** Add an item to the buffer. @return true if the oldest item had to be dropped */
+		boolean offer(T item) {
+			boolean dropped = false;
+			boolean deliverable;
+			synchronized(this) {
+				if(cancelled || complete) return(false);
+				if(count == buffer.length) { // subscriber is too slow: drop its oldest item
+					buffer[head] = null;
+					head = (head + 1) % buffer.length;
+					--count;
+					dropped = true;
+				}
+				buffer[(head + count) % buffer.length] = item;
+				++count;
+				deliverable = (demand > 0);
+			}
+			if(dropped) {
+				synchronized(SnapshotPublisher.this) {
+					++nDropped;
+				}
+			}
+			if(deliverable) signal(); // otherwise, request() will deliver it
+			return(dropped);
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized(this) {
+				if(cancelled) return;
+				if(n <= 0) {
+					error = new IllegalArgumentException("non-positive subscription request");
+					complete = true;
+					count = 0;
+				} else {
+					demand += n;
+					if(demand < 0) demand = Long.MAX_VALUE; // effectively unbounded
+				}
+			}
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized(this) {
+				cancelled = true;
+				count = 0;
+				Arrays.fill(buffer, null);
+			}
+			removeSubscription(this);
+		}
+
+		/** Complete after the buffered items (error == null), or fail now */
+		void finish(Throwable error) {
+			synchronized(this) {
+				if(error != null) {
+					this.error = error;
+					count = 0;
+				}
+				complete = true;
+			}
+			signal();
+		}
+
+		/** Fail before subscribing */
+		void fail(Throwable error) {
+			synchronized(this) {
+				this.error = error;
+				complete = true;
+			}
+			signal();
+		}
+
+		/** Make sure run() will be called to deliver whatever can be delivered */
+		void signal() {
+			synchronized(this) {
+				if(scheduled) return;
+				scheduled = true;
+			}
+			try {
+				getExecutor().execute(this);
+			} catch (RuntimeException e) { // e.g. the executor has been shut down
+				synchronized(this) {
+					scheduled = false;
+					cancelled = true;
+				}
+				removeSubscription(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			if(!subscribed) {
+				subscribed = true;
+				try {
+					subscriber.onSubscribe(this);
+				} catch (Throwable e) {
+					cancel();
+					subscriber.onError(e);
+					return;
+				}
+			}
+			while(true) {
+				Object item = null;
+				Throwable failure = null;
+				boolean done = false;
+				synchronized(this) {
+					if(cancelled) {
+						scheduled = false;
+						return;
+					}
+					if(error != null && count == 0) {
+						failure = error;
+						cancelled = true;
+					} else if(count > 0 && demand > 0) {
+						item = buffer[head];
+						buffer[head] = null;
+						head = (head + 1) % buffer.length;
+						--count;
+						if(demand != Long.MAX_VALUE) --demand;
+					} else if(count == 0 && complete) {
+						done = true;
+						cancelled = true;
+					} else {
+						scheduled = false;
+						return;
+					}
+				}
+				if(failure != null) {
+					removeSubscription(this);
+					subscriber.onError(failure);
+					return;
+				}
+				if(done) {
+					removeSubscription(this);
+					subscriber.onComplete();
+					return;
+				}
+				try {
+					@SuppressWarnings("unchecked")
+					T next = (T)item;
+					subscriber.onNext(next);
+				} catch (Throwable e) {
+					cancel();
+					subscriber.onError(e);
+					return;
+				}
+			}
+		}
+
+		Flow.Subscriber<? super T>	subscriber;
+		Object []					buffer;		// ring buffer of items not yet delivered
+		int							head;
+		int							count;
+		long						demand;		// items requested and not yet delivered
+		boolean						subscribed;	// onSubscribe has been called
+		boolean						scheduled;	// run() is running or about to
+		boolean						cancelled;
+		boolean						complete;	// no more items will be offered
+		Throwable					error;
+	}
+
+	Executor										executor;
+	int												bufferSize;
+	CopyOnWriteArrayList<BufferedSubscription>		subscriptions;
+	volatile boolean								closed;
+	Throwable										closedException;
+	long											nDropped;
+}
@@ -1,15 +1,23 @@
 package utilities;
 
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
 
 import javax.swing.JTabbedPane;
+import javax.swing.Timer;
 
 import sim.util.media.chart.TimeSeriesChartGenerator;
 import utilities.DataRecorder.Transform;
 
 /**
- * This is a convenient wrapper for plotting time series 
+ * This is a convenient wrapper for plotting time series.
+ * 
+ * recordValues() only samples the variables and publishes them in a
+ * SnapshotDoubleBuffer, so it is cheap to call from the simulation thread.
+ * The samples are added to the chart on the Swing thread, at most
+ * frameRate times a second, once startRendering() has been called.
  * @author daniel
  *
  */
@@ -22,6 +30,7 @@ public class TimeSeriesPlot {
 	 */
 	public TimeSeriesPlot(String title, String xAxisLabel, String yAxisLabel) {
 		dataSeries = new ArrayList<DataRecorder>(4);
+		samples = new SnapshotDoubleBuffer<double[]>(MAX_SNAPSHOTS);
 		chart = new TimeSeriesChartGenerator();
 		
         chart.setTitle(title);
@@ -68,11 +77,49 @@ public class TimeSeriesPlot {
 	 * @param t The timestamp to associate with this sample.
 	 */
 	public void recordValues(double t) {
-		for(DataRecorder series : dataSeries) {
-			series.record(t);
+		double [] sample = new double[dataSeries.size()+1];
+		sample[0] = t;
+		for(int i=0; i<dataSeries.size(); ++i) {
+			sample[i+1] = dataSeries.get(i).sample();
 		}
+		samples.publish(sample);
 	}
-	
+
+	/**
+	 * Start adding samples to the chart on the Swing thread
+	 * @param frameRate maximum number of times per second to redraw the chart
+	 */
+	public void startRendering(int frameRate) {
+		if(timer != null) timer.stop();
+		timer = new Timer(1000/frameRate, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {render();}
+		});
+		timer.start();
+	}
+
+	public void stopRendering() {
+		if(timer != null) timer.stop();
+		timer = null;
+	}
+
+	/**
+	 * Add all samples published since the last frame to the chart (Swing thread)
+	 */
+	void render() {
+		ArrayList<double[]> frame = samples.take();
+		if(frame.isEmpty()) return;
+		for(double [] sample : frame) {
+			for(int i=0; i<dataSeries.size(); ++i) {
+				dataSeries.get(i).addSample(sample[0], sample[i+1], false);
+			}
+		}
+		for(DataRecorder series : dataSeries) series.fireSeriesChanged();
+	}
+
+	static public int MAX_SNAPSHOTS = 4096;	// maximum number of samples to hold between frames
+
 	TimeSeriesChartGenerator 	chart;
 	ArrayList<DataRecorder>		dataSeries;
+	SnapshotDoubleBuffer<double[]>	samples;
+	Timer						timer;
 }
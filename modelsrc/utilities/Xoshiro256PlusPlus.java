@@ -0,0 +1,138 @@
+package utilities;
+
+/***
+ * xoshiro256++ generator (Blackman and Vigna, 2019). 256 bits of state,
+ * period 2^256-1. jump() and longJump() advance the state by 2^128 and 2^192
+ * draws respectively, so non-overlapping streams can be handed out, e.g.
+ * one per Monte-Carlo run.
+ */
+public class Xoshiro256PlusPlus extends AbstractRandomEngine {
+	private static final long serialVersionUID = -3410512947196315282L;
+
+	public Xoshiro256PlusPlus(long seed) {
+		setSeed(seed);
+	}
+
+	/***
+	 * @return a copy of this generator, in the same state
+	 */
+	public Xoshiro256PlusPlus copy() {
+		Xoshiro256PlusPlus result = new Xoshiro256PlusPlus(0);
+		result.s0 = s0;
+		result.s1 = s1;
+		result.s2 = s2;
+		result.s3 = s3;
+		return(result);
+	}
+
+	/***
+	 * Initialise the state from a 64 bit seed using SplitMix64, as
+	 * recommended by the authors.
+	 */
+	public void setSeed(long seed) {
+		long x = seed;
+		s0 = splitMix64(x += 0x9E3779B97F4A7C15L);
+		s1 = splitMix64(x += 0x9E3779B97F4A7C15L);
+		s2 = splitMix64(x += 0x9E3779B97F4A7C15L);
+		s3 = splitMix64(x += 0x9E3779B97F4A7C15L);
+	}
+
+	public long nextLong() {
+		final long result = Long.rotateLeft(s0 + s3, 23) + s0;
+		final long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return(result);
+	}
+
+	/***
+	 * Advance the state by 2^128 draws
+	 */
+	public void jump() {
+		jump(JUMP);
+	}
+
+	/***
+	 * Advance the state by 2^192 draws
+	 */
+	public void longJump() {
+		jump(LONG_JUMP);
+	}
+
+	private void jump(long [] polynomial) {
+		long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+		for(long word : polynomial) {
+			for(int b=0; b<64; ++b) {
+				if((word & (1L << b)) != 0) {
+					t0 ^= s0;
+					t1 ^= s1;
+					t2 ^= s2;
+					t3 ^= s3;
+				}
+				nextLong();
+			}
+		}
+		s0 = t0;
+		s1 = t1;
+		s2 = t2;
+		s3 = t3;
+	}
+
+	/***
+	 * Check the generator against known answers: outputs of the authors'
+	 * reference implementation (xoshiro256plusplus.c) from the state {1,2,3,4},
+	 * after jump() and longJump() from that state, and after seeding with
+	 * SplitMix64 (splitmix64.c) from 42. Run when the random engine is created
+	 * if invariant checking is on (see Model.newRandomEngine).
+	 *
+	 * @return true if every output is as expected
+	 */
+	public static boolean checkKnownAnswers() {
+		boolean ok = true;
+		Xoshiro256PlusPlus x = new Xoshiro256PlusPlus(0);
+		x.setState(1, 2, 3, 4);
+		for(long expected : KAT_STATE_1234) ok &= checkAnswer(x.nextLong(), expected, "from state {1,2,3,4}");
+		x.setState(1, 2, 3, 4);
+		x.jump();
+		ok &= checkAnswer(x.nextLong(), KAT_JUMP, "after jump()");
+		x.setState(1, 2, 3, 4);
+		x.longJump();
+		ok &= checkAnswer(x.nextLong(), KAT_LONG_JUMP, "after longJump()");
+		x.setSeed(42);
+		for(long expected : KAT_SEED_42) ok &= checkAnswer(x.nextLong(), expected, "from seed 42");
+		return(ok);
+	}
+
+	private static boolean checkAnswer(long value, long expected, String where) {
+		if(value == expected) return(true);
+		System.out.println("Strange: Xoshiro256PlusPlus gave "+Long.toHexString(value)+" "+where+", expected "+Long.toHexString(expected));
+		return(false);
+	}
+
+	private void setState(long a, long b, long c, long d) {
+		s0 = a;
+		s1 = b;
+		s2 = c;
+		s3 = d;
+	}
+
+	static long splitMix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return(z ^ (z >>> 31));
+	}
+
+	static final long [] JUMP = {0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL};
+	static final long [] LONG_JUMP = {0x76E15D3EFEFDCBBFL, 0xC5004E441C522FB3L, 0x77710069854EE241L, 0x39109BB02ACBE635L};
+
+	static final long [] KAT_STATE_1234 = {0x0000000002800001L, 0x0000000003800067L, 0x000CC00003800067L, 0x000CC201994400B2L, 0x8012A2019AC433CDL};
+	static final long KAT_JUMP = 0xEC879073673DF437L;
+	static final long KAT_LONG_JUMP = 0xB5C4EA370B330BF5L;
+	static final long [] KAT_SEED_42 = {0xD0764D4F4476689FL, 0x519E4174576F3791L, 0xFBE07CFB0C24ED8CL};
+
+	long s0, s1, s2, s3;	// state
+}
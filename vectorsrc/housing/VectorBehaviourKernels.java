@@ -0,0 +1,175 @@
+package housing;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**************************************************************************
+ * The batch household behaviour rules (see HouseholdBehaviourKernels.Batch)
+ * with the Java Vector API, which needs Java 16 or later: this source
+ * directory is compiled separately from modelsrc, with
+ *
+ *     javac --add-modules jdk.incubator.vector -cp bin -d bin vectorsrc/housing/*.java
+ *
+ * and the model run with --add-modules jdk.incubator.vector. It is only
+ * used if HouseholdBehaviourKernels.Config.VECTOR_API is set.
+ *
+ * Each loop handles as many elements at a time as the preferred vector
+ * species holds, in the same order of operations as the scalar rules, and
+ * leaves the last few elements to the scalar rules. The results agree with
+ * the scalar ones to within the tolerance given in HouseholdBehaviourKernels.
+ *************************************************************************/
+public class VectorBehaviourKernels implements HouseholdBehaviourKernels.Batch {
+
+	static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public void sigma(double [] x, double [] out, int n) {
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			sigma(DoubleVector.fromArray(S, x, i)).intoArray(out, i);
+		}
+		for(; i<n; ++i) out[i] = HouseholdBehaviourKernels.sigma(x[i]);
+	}
+
+	/*** 1/(1+e^(-x)) */
+	static DoubleVector sigma(DoubleVector x) {
+		return(DoubleVector.broadcast(S, 1.0).div(x.neg().lanewise(VectorOperators.EXP).add(1.0)));
+	}
+
+	@Override
+	public void desiredPurchasePrice(double [] monthlyIncome, double [] gaussian, double hpaExpectation, double [] out, int n) {
+		final double scale = HouseholdBehaviour.BUY_ALPHA*12.0;
+		final double epsilon = HouseholdBehaviour.BUY_EPSILON;
+		final double denominator = 1.0 - HouseholdBehaviour.BUY_BETA*hpaExpectation;
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			DoubleVector noise = DoubleVector.fromArray(S, gaussian, i).mul(epsilon).lanewise(VectorOperators.EXP);
+			DoubleVector.fromArray(S, monthlyIncome, i).mul(scale).mul(noise).div(denominator).intoArray(out, i);
+		}
+		for(; i<n; ++i) out[i] = HouseholdBehaviourKernels.desiredPurchasePrice(monthlyIncome[i], gaussian[i], hpaExpectation);
+	}
+
+	@Override
+	public void initialSalePrice(double [] pbar, double [] d, double [] principal, double [] gaussian, double [] out, int n) {
+		final double alpha = HouseholdBehaviour.SALE_ALPHA;
+		final double beta = HouseholdBehaviour.SALE_BETA;
+		final double epsilon = HouseholdBehaviour.SALE_EPSILON;
+		final double zeta = HouseholdBehaviour.SALE_ZETA;
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			DoubleVector daysEffect = DoubleVector.fromArray(S, d, i).add(1.0).mul(zeta).lanewise(VectorOperators.LOG).mul(beta);
+			DoubleVector exponent = DoubleVector.fromArray(S, pbar, i).lanewise(VectorOperators.LOG).add(alpha)
+					.sub(daysEffect)
+					.add(DoubleVector.fromArray(S, gaussian, i).mul(epsilon));
+			exponent.lanewise(VectorOperators.EXP).max(DoubleVector.fromArray(S, principal, i)).intoArray(out, i);
+		}
+		for(; i<n; ++i) out[i] = HouseholdBehaviourKernels.initialSalePrice(pbar[i], d[i], principal[i], gaussian[i]);
+	}
+
+	@Override
+	public void desiredConsumptionB(double [] bankBalance, double [] desiredBankBalance, double [] out, int n) {
+		final double fraction = HouseholdBehaviour.CONSUMPTION_FRACTION;
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			DoubleVector.fromArray(S, bankBalance, i).sub(DoubleVector.fromArray(S, desiredBankBalance, i)).max(0.0).mul(fraction).intoArray(out, i);
+		}
+		for(; i<n; ++i) out[i] = HouseholdBehaviourKernels.desiredConsumptionB(bankBalance[i], desiredBankBalance[i]);
+	}
+
+	@Override
+	public void sellInvestmentYield(double [] marketPrice, double [] principal, double [] monthlyRent, double [] monthlyPayment, double [] capGainCoeff,
+			double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n) {
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			DoubleVector price = DoubleVector.fromArray(S, marketPrice, i);
+			DoubleVector equity = price.sub(DoubleVector.fromArray(S, principal, i)).max(0.01);
+			DoubleVector leverage = price.div(equity);
+			DoubleVector rentalYield = DoubleVector.fromArray(S, monthlyRent, i).mul(12.0).div(price);
+			DoubleVector mortgageRate = DoubleVector.fromArray(S, monthlyPayment, i).mul(12.0).div(equity);
+			effectiveYield(leverage, rentalYield, mortgageRate, DoubleVector.fromArray(S, capGainCoeff, i),
+					hpaExpectation, longTermAverageGrossYield, yieldScaling).intoArray(out, i);
+		}
+		for(; i<n; ++i) {
+			out[i] = HouseholdBehaviourKernels.sellInvestmentYield(marketPrice[i], principal[i], monthlyRent[i], monthlyPayment[i], capGainCoeff[i],
+					hpaExpectation, longTermAverageGrossYield, yieldScaling);
+		}
+	}
+
+	@Override
+	public void buyToLetYield(double [] purchasePrice, double [] downPayment, double [] monthlyPayment, double [] capGainCoeff,
+			double rentalYield, double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling, double [] out, int n) {
+		final DoubleVector rental = DoubleVector.broadcast(S, rentalYield);
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			DoubleVector deposit = DoubleVector.fromArray(S, downPayment, i);
+			DoubleVector leverage = DoubleVector.fromArray(S, purchasePrice, i).div(deposit);
+			DoubleVector mortgageRate = DoubleVector.fromArray(S, monthlyPayment, i).mul(12.0).div(deposit);
+			effectiveYield(leverage, rental, mortgageRate, DoubleVector.fromArray(S, capGainCoeff, i),
+					hpaExpectation, longTermAverageGrossYield, yieldScaling).intoArray(out, i);
+		}
+		for(; i<n; ++i) {
+			out[i] = HouseholdBehaviourKernels.buyToLetYield(purchasePrice[i], downPayment[i], monthlyPayment[i], capGainCoeff[i],
+					rentalYield, hpaExpectation, longTermAverageGrossYield, yieldScaling);
+		}
+	}
+
+	/*** see HouseholdBehaviourKernels.effectiveYield */
+	static DoubleVector effectiveYield(DoubleVector leverage, DoubleVector rentalYield, DoubleVector mortgageRate, DoubleVector capGainCoeff,
+			double hpaExpectation, double longTermAverageGrossYield, boolean yieldScaling) {
+		if(yieldScaling) {
+			DoubleVector rent = DoubleVector.broadcast(S, 1.0).sub(capGainCoeff).mul(rentalYield);
+			return(leverage.mul(rent.add(capGainCoeff.mul(longTermAverageGrossYield + hpaExpectation))).sub(mortgageRate));
+		}
+		return(leverage.mul(rentalYield.add(capGainCoeff.mul(hpaExpectation))).sub(mortgageRate));
+	}
+
+	@Override
+	public void btlProbability(double [] effectiveYield, double [] out, int n) {
+		int i = 0;
+		for(; i<S.loopBound(n); i+=S.length()) {
+			sigma(DoubleVector.fromArray(S, effectiveYield, i).mul(HouseholdBehaviourKernels.BTL_INTENSITY))
+				.lanewise(VectorOperators.POW, HouseholdBehaviourKernels.BTL_AGGREGATE_RATE).intoArray(out, i);
+		}
+		for(; i<n; ++i) out[i] = HouseholdBehaviourKernels.btlProbability(effectiveYield[i]);
+	}
+
+	/***
+	 * Time these kernels against the plain loops, and then, once the JIT has
+	 * compiled them, check them against the scalar rules (the check that
+	 * HouseholdBehaviourKernels.batch() runs when they are loaded is mostly
+	 * interpreted, so it sees the Vector API's Java fallbacks rather than its
+	 * intrinsics):
+	 *
+	 *     java --add-modules jdk.incubator.vector housing.VectorBehaviourKernels
+	 */
+	public static void main(String [] args) {
+		HouseholdBehaviourKernels.Batch vector = new VectorBehaviourKernels();
+		final int N = 10000;
+		java.util.Random rand = new java.util.Random(1);
+		double [] pbar = new double[N], d = new double[N], principal = new double[N], gaussian = new double[N], yield = new double[N];
+		double [] out = new double[N];
+		for(int i=0; i<N; ++i) {
+			pbar[i] = 5.0e4 + 2.0e6*rand.nextDouble();
+			d[i] = 200.0*rand.nextDouble();
+			gaussian[i] = rand.nextGaussian();
+			yield[i] = rand.nextDouble() - 0.5;
+		}
+		for(HouseholdBehaviourKernels.Batch batch : new HouseholdBehaviourKernels.Batch[] {HouseholdBehaviourKernels.LOOPS, vector}) {
+			long time = 0;
+			for(int round=0; round<4; ++round) { // the first round is warm-up
+				long start = System.nanoTime();
+				for(int k=0; k<1000; ++k) {
+					batch.initialSalePrice(pbar, d, principal, gaussian, out, N);
+					batch.desiredPurchasePrice(pbar, gaussian, 0.03, out, N);
+					batch.btlProbability(yield, out, N);
+				}
+				if(round > 0) time += System.nanoTime() - start;
+			}
+			System.out.println(batch.getClass().getSimpleName()+": "+time/(3.0*1000*3*N)+" ns per household per rule");
+		}
+		long worst = 0; // by now the JIT has compiled the vector loops with the intrinsics
+		for(int round=0; round<50; ++round) worst = Math.max(worst, HouseholdBehaviourKernels.checkBatch(vector));
+		System.out.println("Largest difference from the scalar rules: "+worst+" ulps (tolerance "+HouseholdBehaviourKernels.ULP_TOLERANCE+")");
+	}
+}